@@ -30,6 +30,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumMap;
@@ -41,11 +42,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.Priority;
@@ -135,14 +141,41 @@ public class Synch {
     public static final String NULL_VALUE = "NULL";
     
     /**
-     * maximum sleep time in seconds
+     * maximum sleep time in milliseconds
      */
     public static final long MAX_SLEEP_TIME = 32 *1000;
-    
-   
+
+    /**
+     * minimum sleep time in milliseconds, used when the jobs are changing state
+     */
+    public static final long MIN_SLEEP_TIME = 1000;
+
+    /**
+     * The maximum number of job ids that AWS Batch accepts in a single
+     * describe jobs call.
+     */
+    public static final int MAX_DESCRIBE_JOBS = 100;
+
+    /**
+     * The maximum number of results to retrieve per list jobs call.
+     */
+    public static final int MAX_LIST_JOBS_RESULTS = 100;
+
+    /**
+     * The default number of threads used to submit jobs to AWS Batch.
+     */
+    public static final int DEFAULT_SUBMIT_THREADS = 8;
+
+    /**
+     * The number of job submissions that can be queued per submit thread,
+     * before the caller submitting the jobs blocks.
+     */
+    public static final int SUBMIT_QUEUE_SIZE_PER_THREAD = 128;
+
+
     private Map<String,AWSJob> mJobMap;
-   
-    
+
+
     private String mPrefix;
     private BatchClient mBatchClient;
 
@@ -154,8 +187,23 @@ public class Synch {
     
     private Region mAWSRegion;
     
-    private ExecutorService mExecutorService;
-    
+    /**
+     * The bounded thread pool used to submit the jobs.
+     */
+    private ExecutorService mSubmitExecutorService;
+
+    /**
+     * The executor running the monitoring thread.
+     */
+    private ExecutorService mMonitorExecutorService;
+
+    /**
+     * The minimum and maximum time in milliseconds the monitoring thread
+     * sleeps between querying AWS Batch.
+     */
+    private long mMinSleepTime;
+    private long mMaxSleepTime;
+
     private String mJobDefinitionARN;
     
     private String mComputeEnvironmentARN;
@@ -180,8 +228,40 @@ public class Synch {
      */
     private EnumMap<BATCH_ENTITY_TYPE,Boolean> mDeleteOnExit;
     
-    private final List mSubmitResponses = new LinkedList();
-    
+    /**
+     * The responses of the completed job submissions, that have not been
+     * picked up by the monitoring thread.
+     */
+    private final ConcurrentLinkedQueue<SubmitJobResponse> mSubmitResponses = new ConcurrentLinkedQueue();
+
+    /**
+     * The number of job submissions that have not completed.
+     */
+    private final AtomicInteger mPendingSubmits = new AtomicInteger( 0 );
+
+    /**
+     * The first exception thrown by a job submission.
+     */
+    private volatile Throwable mSubmitException;
+
+    /**
+     * Lock on which the monitoring thread waits between queries, and that
+     * is notified on completed submissions.
+     */
+    private final Object mMonitorLock = new Object();
+
+    /**
+     * Whether the monitoring thread has been woken up, guarded by the
+     * monitor lock.
+     */
+    private boolean mWakeUpMonitor;
+
+    /**
+     * The client to retrieve the cloud watch logs, created by the monitoring
+     * thread.
+     */
+    private CloudWatchLog mCloudWatchLog;
+
     /**
      * Boolean to track if user is done with job submissions
      */
@@ -214,25 +294,66 @@ public class Synch {
      * @throws IOException
      */
     public void initialze( Properties properties, Level level, EnumMap<BATCH_ENTITY_TYPE, String> jsonFileMap ) throws IOException{
+        Region region = Region.of( getProperty( properties, Synch.AWS_PROPERTY_PREFIX, "region") );//"us-west-2"
+        this.initialze( properties, level, jsonFileMap, BatchClient.builder().region( region ).build() );
+    }
+
+    /**
+     * Initialize the log, with the client to use for talking to AWS Batch.
+     *
+     * @param properties properties with pegasus prefix stripped.
+     * @param level
+     * @param jsonFileMap
+     * @param client      the AWS Batch client to use
+     * @throws IOException
+     */
+    public void initialze( Properties properties, Level level, EnumMap<BATCH_ENTITY_TYPE, String> jsonFileMap, BatchClient client ) throws IOException{
         //"405596411149";
-        mLogger       = Logger.getLogger( Synch.class.getName() ); 
+        mLogger       = Logger.getLogger( Synch.class.getName() );
         mLogger.setLevel(level);
         mAWSAccountID  = getProperty( properties, Synch.AWS_PROPERTY_PREFIX , "account" );
-        mAWSRegion     = Region.of( getProperty( properties, Synch.AWS_PROPERTY_PREFIX, "region") );//"us-west-2" 
+        mAWSRegion     = Region.of( getProperty( properties, Synch.AWS_PROPERTY_PREFIX, "region") );//"us-west-2"
         mPrefix        = getProperty( properties, Synch.AWS_BATCH_PROPERTY_PREFIX,  "prefix" );
         mDeleteOnExit  = new EnumMap<>(BATCH_ENTITY_TYPE.class);
         mCommonFilesToS3   = new LinkedList<String>();
         mS3BucketKeyPrefix = "";
-        
+
         mJobstateWriter = new AWSJobstateWriter();
         mJobstateWriter.initialze( new File("."), mPrefix, mLogger);
-        
+
         mJobMap = new HashMap();
-        mExecutorService = Executors.newFixedThreadPool(2);
-        mBatchClient = BatchClient.builder().region( mAWSRegion ).build();
+
+        //a bounded pool for the submissions, where the caller
+        //submitting the jobs runs the submission itself if the queue is full
+        int threads = Integer.parseInt( getProperty( properties, Synch.AWS_BATCH_PROPERTY_PREFIX,
+                                                     "submit.threads", Integer.toString( DEFAULT_SUBMIT_THREADS ) ) );
+        threads = Math.max( 1, threads );
+        mSubmitExecutorService = new ThreadPoolExecutor( threads, threads,
+                                                         60, TimeUnit.SECONDS,
+                                                         new ArrayBlockingQueue<Runnable>( threads * SUBMIT_QUEUE_SIZE_PER_THREAD ),
+                                                         new ThreadPoolExecutor.CallerRunsPolicy() );
+        mMonitorExecutorService = Executors.newSingleThreadExecutor();
+        mMinSleepTime = MIN_SLEEP_TIME;
+        mMaxSleepTime = Long.parseLong( getProperty( properties, Synch.AWS_BATCH_PROPERTY_PREFIX,
+                                                     "poll.interval", Long.toString( MAX_SLEEP_TIME / 1000 ) ) ) * 1000;
+        mMaxSleepTime = Math.max( mMinSleepTime, mMaxSleepTime );
+
+        mBatchClient = client;
         mDoneWithJobSubmits = false;
         mExitCode = 0;
     }
+
+    /**
+     * Sets the minimum and maximum time the monitoring thread sleeps between
+     * querying AWS Batch.
+     *
+     * @param min  the minimum time in milliseconds
+     * @param max  the maximum time in milliseconds
+     */
+    void setSleepTimes( long min, long max ){
+        mMinSleepTime = min;
+        mMaxSleepTime = Math.max( min, max );
+    }
     
     /**
      * Does the setup of the various associated entitites for AWS Batch to
@@ -344,16 +465,16 @@ public class Synch {
      */
     private boolean deleteSetup(){
         EnumMap<BATCH_ENTITY_TYPE, String> entities = new EnumMap<>(BATCH_ENTITY_TYPE.class);
-        if( mDeleteOnExit.get(BATCH_ENTITY_TYPE.job_queue) ){
+        if( Boolean.TRUE.equals( mDeleteOnExit.get(BATCH_ENTITY_TYPE.job_queue) ) ){
             entities.put(BATCH_ENTITY_TYPE.job_queue, mJobQueueARN );
         }
-        if( mDeleteOnExit.get(BATCH_ENTITY_TYPE.compute_environment) ){
+        if( Boolean.TRUE.equals( mDeleteOnExit.get(BATCH_ENTITY_TYPE.compute_environment) ) ){
             entities.put(BATCH_ENTITY_TYPE.compute_environment, mComputeEnvironmentARN );
         }
-        if( mDeleteOnExit.get(BATCH_ENTITY_TYPE.job_definition) ){
+        if( Boolean.TRUE.equals( mDeleteOnExit.get(BATCH_ENTITY_TYPE.job_definition) ) ){
             entities.put(BATCH_ENTITY_TYPE.job_definition, mJobDefinitionARN );
         }
-        if( mDeleteOnExit.get(BATCH_ENTITY_TYPE.s3_bucket) ){
+        if( Boolean.TRUE.equals( mDeleteOnExit.get(BATCH_ENTITY_TYPE.s3_bucket) ) ){
             entities.put(BATCH_ENTITY_TYPE.s3_bucket, mS3Bucket );
         }
         return this.deleteSetup(entities);
@@ -451,31 +572,51 @@ public class Synch {
         
         SubmitJobRequest jobRequest = job.createAWSBatchSubmitRequest();
         mLogger.debug( "Submitting job " + jobRequest );
-        
+
+        //track the job before the submission completes, so that
+        //the monitoring thread can find it
+        addJob( job );
+        mPendingSubmits.incrementAndGet();
         try{
-           Future<SubmitJobResponse> submitJobFuture = mExecutorService.submit( () -> mBatchClient.submitJob( jobRequest ) );
-           addSubmitJobResponse( submitJobFuture );
+            CompletableFuture.supplyAsync( () -> mBatchClient.submitJob( jobRequest ), mSubmitExecutorService ).
+                              whenComplete( (response, exception) -> this.submitCompleted( job, response, exception ) );
         }
         catch( Exception e ){
+            mPendingSubmits.decrementAndGet();
             mLogger.error( "Unable to submit job " + job, e );
             mExitCode = Synch.NON_TASK_FAILURE_EXITCODE;
         }
-        addJob( job );
-        
+
     }
-    
-    private void addSubmitJobResponse( Future<SubmitJobResponse> response ){
-        synchronized( this.mSubmitResponses ){
-            this.mSubmitResponses.add(response);
+
+    /**
+     * Callback for when the submission of a job to AWS Batch completes.
+     * Hands over the response to the monitoring thread and wakes it up.
+     *
+     * @param job        the job submitted
+     * @param response   the response if the submission succeeded
+     * @param exception  the exception if the submission failed
+     */
+    private void submitCompleted( AWSJob job, SubmitJobResponse response, Throwable exception ){
+        if( exception != null ){
+            mLogger.error( "Unable to submit job " + job.getID(), exception );
+            if( mSubmitException == null ){
+                mSubmitException = exception;
+            }
         }
+        else{
+            mSubmitResponses.add( response );
+        }
+        mPendingSubmits.decrementAndGet();
+        this.wakeUpMonitor();
     }
-    
+
     private void addJob(  AWSJob job ){
         synchronized( this.mJobMap ){
             mJobMap.put( job.getID(), job );
         }
     }
-    
+
     private AWSJob getJob( String id ){
         AWSJob j = null;
         synchronized( this.mJobMap ){
@@ -483,56 +624,30 @@ public class Synch {
         }
         return j;
     }
-    
-    private void submit( Collection<AWSJob> jobs ){
-        //submit the jobs first before polling
-        Collection<Future<SubmitJobResponse>> submitResponses = new LinkedList();
-        for( AWSJob job: jobs ){
-            SubmitJobRequest sampleJobRequest = job.createAWSBatchSubmitRequest();
-            Future<SubmitJobResponse> submitJobFuture = mExecutorService.submit( () -> mBatchClient.submitJob(sampleJobRequest) );
-            submitResponses.add(submitJobFuture);
-            job.setState(AWSJob.JOBSTATE.unsubmitted);
-            mJobMap.put( job.getID(), job );
-        }
-        
-        while(true){
-            for( Iterator<Future<SubmitJobResponse>> it = submitResponses.iterator(); it.hasNext(); ){
-                Future<SubmitJobResponse> future = it.next();
-                if( future.isDone() ){
-                    try {
-                        SubmitJobResponse response = future.get();
-                        String jobID = response.jobId();
-                        AWSJob j = mJobMap.get( response.jobName() );
-                        j.setAWSJobID( jobID );
-                        j.setState(AWSJob.JOBSTATE.submitted);
-                        mLogger.info( "Submitted Job " + response.jobName() + " with id " +  jobID);
-                        it.remove();
-                    } catch (InterruptedException ex) {
-                        mLogger.log( Priority.ERROR, null, ex);
-                    } catch (ExecutionException ex) {
-                        mLogger.log( Priority.ERROR, null, ex);
-                    }
-                   
-                }
-            }
-            if( submitResponses.isEmpty() ){
-                break;
-            }
-            //System.out.println( "Number of submit responses remaining " + submitResponses.size() );
-        }
-        mLogger.info( "Done with submission of jobs ");
-        
-    }
-    
+
     public void monitor(){
-        mMonitoringThreadFuture = this.mExecutorService.submit( ()-> this.monitor(mPrefix) );
+        mMonitoringThreadFuture = this.mMonitorExecutorService.submit( ()-> this.monitor(mPrefix) );
     }
-    
+
+    /**
+     * Monitors the jobs submitted till all of them are done, and the signal
+     * to exit after jobs complete has been received.
+     *
+     * AWS Batch is queried for the succeeded and failed jobs, paging through
+     * all the results, and then for the current state of the remaining jobs,
+     * in chunks of at most MAX_DESCRIBE_JOBS jobs. The time between the
+     * queries is reset to the minimum whenever the jobs change state, and is
+     * doubled upto the maximum otherwise. Completed submissions wake up
+     * the monitoring thread.
+     *
+     * @param basename
+     */
     public void monitor( String basename ){
-        long sleepTime = 5 * 1000;
+        long sleepTime = mMinSleepTime;
+        //the aws ids of the jobs that are not done yet
         Set<String> awsJobIDs = new HashSet();
-        
-        //first go through the internal job map to see if there 
+
+        //first go through the internal job map to see if there
         //are any previously submitted jobs
         synchronized( this.mJobMap ){
             for( Map.Entry<String,AWSJob> entry : this.mJobMap.entrySet() ){
@@ -542,166 +657,234 @@ public class Synch {
                 }
             }
         }
-        
-        
-        int numDone   = 0;
+
+
         int total     = awsJobIDs.size();
         int succeeded = 0;
         int failed    = 0;
-        Set<String> doneJobs = new HashSet();
-        BatchClient batchClient = BatchClient.builder().region( mAWSRegion ).build();
-        CloudWatchLog cwl       = new CloudWatchLog();
-        cwl.initialze( mAWSRegion, mLogger.getLevel(), CLOUD_WATCH_BATCH_LOG_GROUP);
+        //the number of submissions and state changes since the last query
+        int activity  = 0;
+        long nextQueryTime = 0;
         while(true){
-            //go through unprocessed jobs that have been submitted
-            //in another thread
-            List<Tuple> submittedJobs = new LinkedList();
-            mLogger.debug( "Going to traverse through submitted futures ");
-            synchronized( this.mSubmitResponses ){
-                for( Iterator<Future<SubmitJobResponse>> it = mSubmitResponses.iterator(); it.hasNext(); ){
-                    Future<SubmitJobResponse> future = it.next();
-                    if( future.isDone() ){
-                        try {
-                            SubmitJobResponse response = future.get();
-                            String awsJobID = response.jobId();
-                            mLogger.debug( "Future received " + response );
-                            submittedJobs.add( new Tuple( response.jobName(), awsJobID ) );
-                            total++;
-                            it.remove();
-                        }
-                        catch( Exception ex ){
-                            complainAndShutdown( ex );
-                            return;
-                        }
-                    }
-                }
+            //pick up the jobs that have been submitted
+            //in the submit threads
+            SubmitJobResponse response;
+            while( (response = mSubmitResponses.poll()) != null ){
+                mLogger.debug( "Submit response received " + response );
+                AWSJob j = this.getJob( response.jobName() );
+                j.setAWSJobID( response.jobId() );
+                j.setState(AWSJob.JOBSTATE.submitted);
+                awsJobIDs.add( j.getAWSJobID() );
+                mLogger.info("Submitted Job " + j.getID() + " with AWS id " +  j.getAWSJobID());
+                mJobstateWriter.log(j.getID(), j.getAWSJobID(), AWSJob.JOBSTATE.submitted );
+                total++;
+                activity++;
             }
-            
-            synchronized( this.mJobMap ){
-                for( Tuple<String,String> tuple: submittedJobs ){
-                    AWSJob j = mJobMap.get( tuple.getKey()  );
-                    j.setAWSJobID( tuple.getValue() );
-                    j.setState(AWSJob.JOBSTATE.submitted);
-                    awsJobIDs.add( j.getAWSJobID() );
-                    mLogger.info("Submitted Job " + j.getID() + " with AWS id " +  j.getAWSJobID());
-                    mJobstateWriter.log(j.getID(), j.getAWSJobID(), AWSJob.JOBSTATE.submitted );
-                }
+            if( mSubmitException != null ){
+                complainAndShutdown( new ExecutionException( mSubmitException ) );
+                return;
             }
-            //now query AWS Batch for the jobs
-            try {
-                
-                ListJobsRequest listSucceededJobsRequest = createListJobRequest( this.mJobQueueARN, JobStatus.SUCCEEDED );
-                ListJobsRequest listFailedJobsRequest    = createListJobRequest( this.mJobQueueARN, JobStatus.FAILED );
-                
-                //first query for succeeded
-                mLogger.debug( "Querying for successful jobs " + listSucceededJobsRequest );
-                ListJobsResponse listJobsResponse = batchClient.listJobs( listSucceededJobsRequest );
-                mLogger.debug( "Retrieved  " + listJobsResponse.jobSummaryList().size() + " responses ");
-                for( JobSummary summary: listJobsResponse.jobSummaryList() ){
-                    String succeededJobID = summary.jobId();
-                    if ( awsJobIDs.contains( succeededJobID ) ){
-                        if( !doneJobs.contains(succeededJobID) ){
-                            mLogger.info( "Job Succeeded "  + succeededJobID  );
-                            AWSJob j = this.getJob( summary.jobName() );
-                            j.setState( AWSJob.JOBSTATE.succeeded );
-                            mJobstateWriter.log(summary.jobName(), summary.jobId() , AWSJob.JOBSTATE.succeeded );
-                            doneJobs.add( summary.jobId() );
-                            numDone++;
-                            succeeded++;
-                            mLogger.debug("Querying for succeeded job details "  + succeededJobID  );
-                            Tuple<File,File> log = cwl.retrieve( j );
-                            mLogger.debug("Logs retreived for "  + succeededJobID + " to " + log  );
+
+            if( System.currentTimeMillis() >= nextQueryTime ){
+                //now query AWS Batch for the jobs
+                try {
+                    for( JobStatus status: new JobStatus[]{ JobStatus.SUCCEEDED, JobStatus.FAILED } ){
+                        if( awsJobIDs.isEmpty() ){
+                            break;
                         }
-                    }
-                }
-                
-                mLogger.debug( "Sleeping before querying for failure ");
-                Thread.sleep( sleepTime );
-                if( numDone < total ){
-                    // check for failed jobs
-                    mLogger.debug( "Querying for failed jobs " + listFailedJobsRequest );
-                    listJobsResponse = batchClient.listJobs( listFailedJobsRequest );
-                    mLogger.debug( "Retrieved  " + listJobsResponse.jobSummaryList().size() + " responses ");
-                    for( JobSummary summary: listJobsResponse.jobSummaryList() ){
-                        String failedJobID = summary.jobId();
-                        if ( awsJobIDs.contains(failedJobID) ){
-                            if( !doneJobs.contains(failedJobID) ){
-                                mLogger.info("Job Failed "  + failedJobID   );
-                                AWSJob j = this.getJob( summary.jobName() );
-                                j.setState( AWSJob.JOBSTATE.failed );
-                                mJobstateWriter.log(summary.jobName(), summary.jobId() , AWSJob.JOBSTATE.failed );
-                                doneJobs.add( summary.jobId() );
-                                //remove the job so that we don't query for detail
-                                awsJobIDs.remove(failedJobID);
-                                numDone++;
-                                failed++;
-                                mLogger.debug("Querying for failed job details "  + failedJobID   );
-                                Tuple<File,File> log = cwl.retrieve( j );
-                                mLogger.debug("Logs retreived for "  + failedJobID + " to " + log  );
+                        mLogger.debug( "Querying for jobs with status " + status );
+                        List<JobSummary> summaries = this.listJobs( this.mJobQueueARN, status );
+                        mLogger.debug( "Retrieved  " + summaries.size() + " responses ");
+                        for( JobSummary summary: summaries ){
+                            if( awsJobIDs.remove( summary.jobId() ) ){
+                                AWSJob.JOBSTATE state = ( status == JobStatus.SUCCEEDED )?
+                                                         AWSJob.JOBSTATE.succeeded:
+                                                         AWSJob.JOBSTATE.failed;
+                                this.jobDone( this.getJob( summary.jobName() ), state );
+                                if( state == AWSJob.JOBSTATE.succeeded ){
+                                    succeeded++;
+                                }
+                                else{
+                                    failed++;
+                                }
+                                activity++;
                             }
                         }
                     }
-                }
-                
-                mLogger.debug(  numDone + " jobs done of total of " + total );
-                if( numDone < total ){
-                    // still total is not done
-                    mLogger.debug( "Sleeping before querying for status of remaining jobs ");
-                    Thread.sleep( sleepTime );
-                    //now we query current state for jobs
-                    DescribeJobsRequest jobsRequest = DescribeJobsRequest.builder().
-                                                                jobs(awsJobIDs).
-                                                             build();
-                    DescribeJobsResponse jobsResponse = batchClient.describeJobs(jobsRequest);
-                    for( JobDetail jobDetail: jobsResponse.jobs() ){
-                        mLogger.debug("Current Status of Job " + jobDetail.jobId() + "->" + jobDetail.status() + " with reason " + jobDetail.statusReason() );
-                        mJobstateWriter.log(jobDetail.jobName(), jobDetail.jobId() , AWSJob.JOBSTATE.valueOf(jobDetail.status().toLowerCase()) );
-                        mLogger.debug( "Detailed Job detail " + jobDetail );
-                    }
-                }
-                else{
-                    if( receivedSignalToExitAfterJobsComplete() ){
-                        synchronized( this.mSubmitResponses ){
-                            if( this.mSubmitResponses.isEmpty() ){
-                                mLogger.info( "*** All jobs done *** ");
-                                break;
+
+                    if( !awsJobIDs.isEmpty() ){
+                        //query the current state of the remaining jobs
+                        for( JobDetail jobDetail: this.describeJobs( awsJobIDs ) ){
+                            mLogger.debug("Current Status of Job " + jobDetail.jobId() + "->" + jobDetail.status() + " with reason " + jobDetail.statusReason() );
+                            AWSJob j = this.getJob( jobDetail.jobName() );
+                            AWSJob.JOBSTATE state = AWSJob.JOBSTATE.valueOf( jobDetail.status().toLowerCase() );
+                            if( j == null || j.getJobState() == state ){
+                                continue;
+                            }
+                            activity++;
+                            if( state == AWSJob.JOBSTATE.succeeded || state == AWSJob.JOBSTATE.failed ){
+                                //job finished after the jobs were listed
+                                awsJobIDs.remove( jobDetail.jobId() );
+                                this.jobDone( j, state );
+                                if( state == AWSJob.JOBSTATE.succeeded ){
+                                    succeeded++;
+                                }
+                                else{
+                                    failed++;
+                                }
+                            }
+                            else{
+                                j.setState( state );
+                                mJobstateWriter.log(jobDetail.jobName(), jobDetail.jobId() , state );
                             }
-                            mLogger.debug( "Waiting for " + this.mSubmitResponses.size() + " responses ");
                         }
-                        
                     }
                 }
-       
+                catch( Exception ex ){
+                    complainAndShutdown( ex );
+                    return;
+                }
+
+                sleepTime = ( activity > 0 ) ? mMinSleepTime : Math.min( 2 * sleepTime, mMaxSleepTime );
+                activity  = 0;
+                nextQueryTime = System.currentTimeMillis() + sleepTime;
+                mLogger.debug( (total - awsJobIDs.size()) + " jobs done of total of " + total +
+                               ". Querying again in " + sleepTime + " ms" );
+            }
+
+            if( awsJobIDs.isEmpty() && receivedSignalToExitAfterJobsComplete() ){
+                //a submission adds its response before it is no longer pending
+                if( mPendingSubmits.get() == 0 && mSubmitResponses.isEmpty() ){
+                    mLogger.info( "*** All jobs done *** ");
+                    break;
+                }
+                mLogger.debug( "Waiting for " + mPendingSubmits.get() + " submissions ");
             }
-            catch( Exception ex ){
+
+            try{
+                this.waitForActivity( nextQueryTime - System.currentTimeMillis() );
+            }
+            catch( InterruptedException ex ){
                 complainAndShutdown( ex );
                 return;
             }
         }
-        
+
         mLogger.info( "Shutting down");
-        try {
-            batchClient.close();
-        } catch (Exception ex) {
-            mLogger.error( null, ex);
-            mExitCode = Synch.NON_TASK_FAILURE_EXITCODE;
-        }
-        
         if( failed > 0 ){
             mExitCode = Synch.TASK_FAILURE_EXITCODE;
         }
-        
+
         shutdown();
         mLogger.info( "Thread Executor Shutdown successfully " );
         //log tasks completed etc
         mLogger.info( getTaskSummaryRecory( total, succeeded, failed));
-        
+
+    }
+
+    /**
+     * Marks a job as done, and retrieves its logs.
+     *
+     * @param j      the job
+     * @param state  the final state of the job
+     */
+    private void jobDone( AWSJob j, AWSJob.JOBSTATE state ){
+        mLogger.info( "Job " + ( state == AWSJob.JOBSTATE.succeeded ? "Succeeded " : "Failed " ) + j.getAWSJobID() );
+        j.setState( state );
+        mJobstateWriter.log( j.getID(), j.getAWSJobID(), state );
+        mLogger.debug("Querying for job details "  + j.getAWSJobID() );
+        Tuple<File,File> log = this.retrieveLogs( j );
+        mLogger.debug("Logs retreived for "  + j.getAWSJobID() + " to " + log  );
+    }
+
+    /**
+     * Retrieves the cloud watch logs for a job that is done.
+     *
+     * @param j  the job
+     *
+     * @return a Tuple containing the stdout and stderr files to which it is retrieved
+     */
+    protected Tuple<File,File> retrieveLogs( AWSJob j ){
+        if( mCloudWatchLog == null ){
+            mCloudWatchLog = new CloudWatchLog();
+            mCloudWatchLog.initialze( mAWSRegion, mLogger.getLevel(), CLOUD_WATCH_BATCH_LOG_GROUP);
+        }
+        return mCloudWatchLog.retrieve( j );
+    }
+
+    /**
+     * Lists all the jobs in a job queue with a particular status, paging
+     * through the results.
+     *
+     * @param jobQueue  the job queue name or arn
+     * @param status    the status of the jobs
+     *
+     * @return the job summaries
+     */
+    public List<JobSummary> listJobs( String jobQueue, JobStatus status ){
+        List<JobSummary> summaries = new LinkedList();
+        String token = null;
+        do{
+            ListJobsResponse response = mBatchClient.listJobs( createListJobRequest( jobQueue, status, token ) );
+            summaries.addAll( response.jobSummaryList() );
+            token = response.nextToken();
+        }
+        while( token != null && !token.isEmpty() );
+        return summaries;
+    }
+
+    /**
+     * Retrieves the details of jobs, in chunks of at most MAX_DESCRIBE_JOBS
+     * jobs per call to AWS Batch.
+     *
+     * @param awsJobIDs  the aws ids of the jobs
+     *
+     * @return the job details
+     */
+    public List<JobDetail> describeJobs( Collection<String> awsJobIDs ){
+        List<JobDetail> details = new LinkedList();
+        List<String> ids = new ArrayList( awsJobIDs );
+        for( int start = 0; start < ids.size(); start += MAX_DESCRIBE_JOBS ){
+            DescribeJobsRequest request = DescribeJobsRequest.builder().
+                                                    jobs( ids.subList( start, Math.min( ids.size(), start + MAX_DESCRIBE_JOBS ) ) ).
+                                                build();
+            details.addAll( mBatchClient.describeJobs( request ).jobs() );
+        }
+        return details;
+    }
+
+    /**
+     * Waits till there is activity for the monitoring thread, or the time
+     * passed elapses.
+     *
+     * @param time  the maximum time to wait in milliseconds
+     *
+     * @throws InterruptedException
+     */
+    private void waitForActivity( long time ) throws InterruptedException{
+        synchronized( mMonitorLock ){
+            if( !mWakeUpMonitor && time > 0 ){
+                mMonitorLock.wait( time );
+            }
+            mWakeUpMonitor = false;
+        }
+    }
+
+    /**
+     * Wakes up the monitoring thread.
+     */
+    private void wakeUpMonitor(){
+        synchronized( mMonitorLock ){
+            mWakeUpMonitor = true;
+            mMonitorLock.notifyAll();
+        }
     }
     
    
     public synchronized void signalToExitAfterJobsComplete(){
         mLogger.info( "****Recieved signal to exit after completion of jobs****" );
         mDoneWithJobSubmits = true;
+        this.wakeUpMonitor();
     }
     
     /**
@@ -759,23 +942,28 @@ public class Synch {
             mLogger.error( null, ex);
         }
         mLogger.info("Shutting down threads ...");
-        if( this.mExecutorService != null ){
-            mExecutorService.shutdown(); // Disable new tasks from being submitted
+        if( this.mSubmitExecutorService != null ){
+            mSubmitExecutorService.shutdown(); // Disable new tasks from being submitted
             try {
                 // Wait a while for existing tasks to terminate
-                if (!mExecutorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                    mExecutorService.shutdownNow(); // Cancel currently executing tasks
+                if (!mSubmitExecutorService.awaitTermination(60, TimeUnit.SECONDS)) {
+                    mSubmitExecutorService.shutdownNow(); // Cancel currently executing tasks
                     // Wait a while for tasks to respond to being cancelled
-                    if (!mExecutorService.awaitTermination(60, TimeUnit.SECONDS))
+                    if (!mSubmitExecutorService.awaitTermination(60, TimeUnit.SECONDS))
                         mLogger.error("Executor Service did not terminate");
                     }
             } catch (InterruptedException ie) {
                 // (Re-)Cancel if current thread also interrupted
-                mExecutorService.shutdownNow();
+                mSubmitExecutorService.shutdownNow();
                 // Preserve interrupt status
                 Thread.currentThread().interrupt();
             }
         }
+        if( this.mMonitorExecutorService != null ){
+            //shutdown is called from the monitoring thread itself
+            //so we cannot wait for it to terminate
+            mMonitorExecutorService.shutdown();
+        }
     }
     
    
@@ -1147,6 +1335,25 @@ public class Synch {
        return ljr;
         
     }
+
+    /**
+     * Creates a list job request for a page of the jobs in a job queue
+     *
+     * @param jobQueue  the job queue name or arn
+     * @param status
+     * @param nextToken the token returned by the previous request, or null
+     *                  for the first page
+     * @return
+     */
+    public ListJobsRequest createListJobRequest(String jobQueue,  JobStatus status, String nextToken ) {
+       ListJobsRequest ljr = ListJobsRequest.builder().
+                                                    jobQueue( jobQueue ).
+                                                    jobStatus( status ).
+                                                    maxResults( MAX_LIST_JOBS_RESULTS ).
+                                                    nextToken( nextToken ).
+                                             build();
+       return ljr;
+    }
     
     /**
      * Constructs the task summary record
@@ -1270,9 +1477,24 @@ public class Synch {
         if( value == null ){
             throw new RuntimeException( "Please specify the following property in the properties " + property );
         }
-        
+
         return value;
     }
+
+    /**
+     * Returns the value of an optional property.
+     *
+     * @param properties    the properties
+     * @param prefix        the prefix of the property
+     * @param name          the name of the property
+     * @param defaultValue  the value to return if the property is not set
+     *
+     * @return the value
+     */
+    private String getProperty(Properties properties, String prefix, String name, String defaultValue ) {
+        String value = properties.getProperty( prefix + "." + name );
+        return ( value == null ) ? defaultValue : value;
+    }
     
     /**
      * Merges all the tasks stdout and setderr logs to the stdout and stderr file passed
@@ -22,11 +22,13 @@ import org.apache.log4j.Level;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 
 
 import java.util.Collection;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.Supplier;
 
 
 /**
@@ -79,6 +81,28 @@ public abstract class LogManager {
      */
     public static final String PROPERTIES_PREFIX = "pegasus.log.manager";
 
+    /**
+     * The key in the property subset, that turns on the asynchronous writing
+     * of the log messages.
+     */
+    public static final String ASYNC_PROPERTY_KEY = "async";
+
+    /**
+     * The key in the property subset, that sets the number of log messages
+     * that are buffered while being written out asynchronously.
+     */
+    public static final String ASYNC_BUFFER_PROPERTY_KEY = "async.buffer";
+
+    /**
+     * The default number of log messages buffered.
+     */
+    public static final int DEFAULT_ASYNC_BUFFER_SIZE = 8192;
+
+    /**
+     * The placeholder for the arguments in the parameterized messages.
+     */
+    public static final String ARGUMENT_PLACEHOLDER = "{}";
+
     /**
      * Suffx for an event completion message.
      */
@@ -337,6 +361,19 @@ public abstract class LogManager {
      */
     public abstract int getLevel();
 
+    /**
+     * Returns whether a message at a particular level is logged. Callers
+     * should check this before building an expensive message, so that the
+     * message is not constructed and formatted when it is discarded.
+     *
+     * @param level  the level of the message.
+     *
+     * @return boolean
+     */
+    public boolean isLoggable( int level ){
+        return level <= this.getLevel();
+    }
+
     /**
      * Sets both the output writer and the error writer to the same
      * underlying writer.
@@ -348,13 +385,23 @@ public abstract class LogManager {
      */
     public abstract void setWriters( String out );
 
+    /**
+     * Sets the output writer and the error writer to the streams passed,
+     * without touching the system streams. The previous streams are not
+     * closed.
+     *
+     * @param out  the stream to which the messages are logged.
+     * @param err  the stream to which the error messages are logged.
+     */
+    public abstract void setWriters( OutputStream out, OutputStream err );
+
     /**
      * Log the message represented by the internal log buffer.
      * The log buffer is populated via the add methods.
      * 
      * @param level    the level on which the message has to be logged.
      */
-    public  void log( int level ){
+    public synchronized void log( int level ){
         this.log( mLogFormatter.createLogMessage(), level );
     }
     
@@ -367,7 +414,7 @@ public abstract class LogManager {
      * 
      * @param level    the level on which the message has to be logged.
      */
-    public  void logAndReset( int level ){
+    public synchronized void logAndReset( int level ){
         this.logAlreadyFormattedMessage( mLogFormatter.createLogMessageAndReset(), level );
     }
     
@@ -408,11 +455,127 @@ public abstract class LogManager {
      *
      * @see #setLevel(int)
      */
-    public  void log ( String message, int level){
+    public synchronized void log ( String message, int level){
+        if( !this.isLoggable( level ) ){
+            return;
+        }
         mLogFormatter.add( message );
         this.logAlreadyFormattedMessage( mLogFormatter.createLogMessageAndReset(), level);
     }
     
+    /**
+     * Waits till the log messages buffered by the implementation are
+     * written out. Implementations that log synchronously need not
+     * override it.
+     */
+    public void flush(){
+    }
+
+    /**
+     * Logs the message returned by a supplier. The supplier is only invoked
+     * if a message at the level is logged.
+     *
+     * @param message  the supplier of the message to be logged.
+     * @param level    the level on which the message has to be logged.
+     *
+     * @see #isLoggable(int)
+     */
+    public void log( Supplier<String> message, int level ){
+        if( this.isLoggable( level ) ){
+            this.log( message.get(), level );
+        }
+    }
+
+    /**
+     * Logs a parameterized message. The placeholder {} in the pattern is
+     * replaced by the argument, only if a message at the level is logged.
+     *
+     * @param pattern  the pattern of the message.
+     * @param level    the level on which the message has to be logged.
+     * @param arg      the argument.
+     */
+    public void log( String pattern, int level, Object arg ){
+        if( this.isLoggable( level ) ){
+            this.log( LogManager.format( pattern, arg ), level );
+        }
+    }
+
+    /**
+     * Logs a parameterized message. The placeholders {} in the pattern are
+     * replaced by the arguments in order, only if a message at the level is
+     * logged.
+     *
+     * @param pattern  the pattern of the message.
+     * @param level    the level on which the message has to be logged.
+     * @param arg1     the first argument.
+     * @param arg2     the second argument.
+     */
+    public void log( String pattern, int level, Object arg1, Object arg2 ){
+        if( this.isLoggable( level ) ){
+            this.log( LogManager.format( pattern, arg1, arg2 ), level );
+        }
+    }
+
+    /**
+     * Logs a parameterized message. The placeholders {} in the pattern are
+     * replaced by the arguments in order, only if a message at the level is
+     * logged.
+     *
+     * @param pattern  the pattern of the message.
+     * @param level    the level on which the message has to be logged.
+     * @param arg1     the first argument.
+     * @param arg2     the second argument.
+     * @param arg3     the third argument.
+     */
+    public void log( String pattern, int level, Object arg1, Object arg2, Object arg3 ){
+        if( this.isLoggable( level ) ){
+            this.log( LogManager.format( pattern, arg1, arg2, arg3 ), level );
+        }
+    }
+
+    /**
+     * Logs a parameterized message. The placeholders {} in the pattern are
+     * replaced by the arguments in order, only if a message at the level is
+     * logged. The arguments array is allocated even if the message is not
+     * logged, so calls on hot paths should check isLoggable first.
+     *
+     * @param pattern  the pattern of the message.
+     * @param level    the level on which the message has to be logged.
+     * @param args     the arguments.
+     */
+    public void log( String pattern, int level, Object... args ){
+        if( this.isLoggable( level ) ){
+            this.log( LogManager.format( pattern, args ), level );
+        }
+    }
+
+    /**
+     * Replaces the placeholders {} in a pattern by the arguments in order.
+     * Placeholders without a matching argument are left as is, and the
+     * arguments without a placeholder are ignored.
+     *
+     * @param pattern  the pattern of the message.
+     * @param args     the arguments.
+     *
+     * @return the message.
+     */
+    public static String format( String pattern, Object... args ){
+        if( pattern == null || args == null || args.length == 0 ){
+            return pattern;
+        }
+        StringBuilder sb = new StringBuilder( pattern.length() + 16 * args.length );
+        int start = 0;
+        for( Object arg : args ){
+            int index = pattern.indexOf( ARGUMENT_PLACEHOLDER, start );
+            if( index < 0 ){
+                break;
+            }
+            sb.append( pattern, start, index ).append( arg );
+            start = index + ARGUMENT_PLACEHOLDER.length();
+        }
+        return sb.append( pattern, start, pattern.length() ).toString();
+    }
+
     /**
      * Log an event start message to INFO level
      * 
@@ -543,7 +706,7 @@ public abstract class LogManager {
      * 
      * @return Self-reference, so calls can be chained
      */
-    public LogManager add( String key, String value ){
+    public synchronized LogManager add( String key, String value ){
         mLogFormatter.add( key, value );
         return this;
     }
@@ -44,15 +44,37 @@ public abstract class AbstractLogFormatter implements LogFormatter {
     protected String mProgram;
     
     /**
-     * The Stack of event objects maintained internally
+     * The Stack of event objects maintained internally. Each thread has its
+     * own stack, that starts off with a copy of the stack of the thread that
+     * created it. This allows threads to log their own events, while their
+     * messages are still associated with the enclosing event.
      */
-    protected Stack<Event> mStack;
+    private final InheritableThreadLocal<Stack<Event>> mStack;
 
     /**
      * The default constructor.
      */
     public AbstractLogFormatter(){
-        mStack = new Stack<Event>();
+        mStack = new InheritableThreadLocal<Stack<Event>>(){
+            protected Stack<Event> initialValue(){
+                return new Stack<Event>();
+            }
+
+            protected Stack<Event> childValue( Stack<Event> parent ){
+                Stack<Event> stack = new Stack<Event>();
+                stack.addAll( parent );
+                return stack;
+            }
+        };
+    }
+
+    /**
+     * Returns the stack of events for the calling thread.
+     *
+     * @return the stack of events
+     */
+    protected Stack<Event> stack(){
+        return mStack.get();
     }
     
     
@@ -93,7 +115,7 @@ public abstract class AbstractLogFormatter implements LogFormatter {
      * @return event on top , else null
      */
     public Event popEvent(){
-        return mStack.pop();
+        return stack().pop();
     }
     
     /**
@@ -103,7 +125,7 @@ public abstract class AbstractLogFormatter implements LogFormatter {
      * @return  name of the event.
      */
     public String getEventName( ){
-        return mStack.peek().getEventName();
+        return stack().peek().getEventName();
     }
             
     
@@ -113,7 +135,7 @@ public abstract class AbstractLogFormatter implements LogFormatter {
      * @return start event message
      */
     public String getStartEventMessage(){
-        return mStack.peek().getStartEventMessage();
+        return stack().peek().getStartEventMessage();
     }
     
     /**
@@ -122,7 +144,7 @@ public abstract class AbstractLogFormatter implements LogFormatter {
      * @return end event message
      */
     public String getEndEventMessage(){
-        return mStack.peek().getEndEventMessage();
+        return stack().peek().getEndEventMessage();
     }
     
     /**
@@ -145,7 +167,7 @@ public abstract class AbstractLogFormatter implements LogFormatter {
      * @return Self-reference, so calls can be chained
      */
     public LogFormatter add( String key, String value ){
-        mStack.peek().add( key, value );
+        stack().peek().add( key, value );
         return this;
     }
     
@@ -155,7 +177,7 @@ public abstract class AbstractLogFormatter implements LogFormatter {
      * @return the log message
      */
     public String createLogMessage(){
-        return mStack.peek().createLogMessage();
+        return stack().peek().createLogMessage();
     }
     
     
@@ -166,7 +188,7 @@ public abstract class AbstractLogFormatter implements LogFormatter {
      * @return log message.
      */
     public String createLogMessageAndReset(){
-        return mStack.peek().createLogMessageAndReset();
+        return stack().peek().createLogMessageAndReset();
     }
     
     /**
@@ -185,7 +207,7 @@ public abstract class AbstractLogFormatter implements LogFormatter {
                                                 String parentID,
                                                 String childIdType,
                                                 Collection<String> childIDs ){
-        return mStack.peek().createEntityHierarchyMessage(parentType, parentID, childIdType, childIDs);
+        return stack().peek().createEntityHierarchyMessage(parentType, parentID, childIdType, childIDs);
     }
     
     
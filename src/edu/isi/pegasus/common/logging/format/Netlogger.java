@@ -54,7 +54,7 @@ public  class Netlogger extends AbstractLogFormatter {
         Event e = new NetloggerEvent();
         e.setProgramName( mProgram );
         e.setEvent( name, entityName, entityID );
-        mStack.addElement( e );
+        stack().addElement( e );
         return;
     }
     
@@ -72,7 +72,7 @@ public  class Netlogger extends AbstractLogFormatter {
         Event e = new NetloggerEvent();
         e.setProgramName( mProgram );
         e.setEvent( name, map );
-        mStack.addElement( e );
+        stack().addElement( e );
         return;
     }
 }
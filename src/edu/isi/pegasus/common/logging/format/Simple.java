@@ -63,7 +63,7 @@ public  class Simple extends AbstractLogFormatter {
         Event e = new SimpleEvent();
         e.setProgramName( mProgram );
         e.setEvent( name, entityName, entityID );
-        mStack.addElement( e );
+        stack().addElement( e );
         return;
     }
     
@@ -79,7 +79,7 @@ public  class Simple extends AbstractLogFormatter {
         Event e = new NetloggerEvent();
         e.setProgramName( mProgram );
         e.setEvent( name, map );
-        mStack.addElement( e );
+        stack().addElement( e );
         return;
     }
     
@@ -0,0 +1,260 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.common.logging.logger;
+
+import edu.isi.pegasus.common.util.Currently;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes log messages to their streams on a separate daemon thread. The
+ * messages are handed over through a bounded ring buffer, so that the thread
+ * logging a message does not wait on the stream, unless the buffer is full.
+ * The time of a message is taken when it is logged, but it is formatted on
+ * the writer thread.<p>
+ *
+ * The buffer is drained when the JVM shuts down, and whenever a caller asks
+ * for the messages to be flushed. A message queued while the writer is being
+ * closed is written out by the closing thread, or by the thread that logged
+ * it.
+ *
+ * @version $Revision$
+ */
+public class AsyncWriter {
+
+    /**
+     * A message waiting to be written out.
+     */
+    private static class Entry{
+
+        private final PrintStream mStream;
+
+        private final long mTime;
+
+        private final String mMessage;
+
+        private Entry( PrintStream stream, long time, String message ){
+            mStream  = stream;
+            mTime    = time;
+            mMessage = message;
+        }
+    }
+
+    /**
+     * The buffer of messages to be written out.
+     */
+    private final BlockingQueue<Entry> mQueue;
+
+    /**
+     * The formatter for the timestamps. It also serializes the writing out
+     * of the messages.
+     */
+    private final Currently mFormatter;
+
+    /**
+     * The thread writing out the messages.
+     */
+    private final Thread mThread;
+
+    /**
+     * The lock guarding the counts of messages submitted and written.
+     */
+    private final Object mLock;
+
+    /**
+     * The number of messages submitted.
+     */
+    private long mSubmitted;
+
+    /**
+     * The number of messages written out.
+     */
+    private long mWritten;
+
+    /**
+     * Whether the writer has been closed.
+     */
+    private volatile boolean mClosed;
+
+    /**
+     * The milliseconds close waits for the writer thread to stop.
+     */
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    /**
+     * The overloaded constructor. Starts the writer thread.
+     *
+     * @param size       the number of messages that can be buffered.
+     * @param timestamp  the format of the timestamp that prefixes each message.
+     */
+    public AsyncWriter( int size, String timestamp ){
+        mQueue     = new ArrayBlockingQueue<Entry>( Math.max( 1, size ) );
+        mFormatter = new Currently( timestamp );
+        mLock      = new Object();
+        mSubmitted = 0;
+        mWritten   = 0;
+        mClosed    = false;
+
+        mThread = new Thread( this::drain, "pegasus-log-writer" );
+        mThread.setDaemon( true );
+        mThread.start();
+        Runtime.getRuntime().addShutdownHook( new Thread( this::close, "pegasus-log-writer-shutdown" ) );
+    }
+
+    /**
+     * Queues a message to be written out to a stream. Waits for space in the
+     * buffer, if the buffer is full. Once the writer is closed, the message
+     * is written out directly.
+     *
+     * @param stream   the stream to write to.
+     * @param message  the message, without the timestamp.
+     */
+    public void write( PrintStream stream, String message ){
+        Entry entry = new Entry( stream, System.currentTimeMillis(), message );
+        if( mClosed ){
+            synchronized( mFormatter ){
+                this.write( entry );
+            }
+            return;
+        }
+        synchronized( mLock ){
+            mSubmitted++;
+        }
+        try{
+            mQueue.put( entry );
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while queuing log message " + message, e );
+        }
+        if( mClosed ){
+            //closed after the check above. the writer thread may have
+            //stopped before the message was queued
+            this.writeRemaining();
+        }
+    }
+
+    /**
+     * Waits till all the messages queued so far are written out.
+     */
+    public void flush(){
+        synchronized( mLock ){
+            long target = mSubmitted;
+            while( mWritten < target && mThread.isAlive() ){
+                try{
+                    mLock.wait( 100 );
+                }
+                catch( InterruptedException e ){
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes the queued messages, and stops the writer thread. The messages
+     * logged afterwards are written out directly.
+     */
+    public void close(){
+        this.flush();
+        mClosed = true;
+        mThread.interrupt();
+        try{
+            mThread.join( CLOSE_TIMEOUT );
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+        }
+        //the messages queued while the writer thread was stopping
+        this.writeRemaining();
+    }
+
+    /**
+     * The loop of the writer thread, that writes out the messages in the
+     * order they were queued.
+     */
+    private void drain(){
+        List<Entry> batch = new ArrayList<Entry>();
+        while( !mClosed || !mQueue.isEmpty() ){
+            try{
+                Entry entry = mQueue.poll( 1, TimeUnit.SECONDS );
+                if( entry == null ){
+                    continue;
+                }
+                batch.add( entry );
+            }
+            catch( InterruptedException e ){
+                //closed while waiting
+            }
+            mQueue.drainTo( batch );
+            this.write( batch );
+        }
+    }
+
+    /**
+     * Writes out the messages left in the buffer on the calling thread.
+     */
+    private void writeRemaining(){
+        List<Entry> batch = new ArrayList<Entry>();
+        mQueue.drainTo( batch );
+        this.write( batch );
+    }
+
+    /**
+     * Writes out a batch of messages in order, flushing each stream once
+     * its messages are written, and clears the batch.
+     *
+     * @param batch  the messages.
+     */
+    private void write( List<Entry> batch ){
+        if( batch.isEmpty() ){
+            return;
+        }
+        PrintStream previous = null;
+        synchronized( mFormatter ){
+            for( Entry entry : batch ){
+                if( previous != null && previous != entry.mStream ){
+                    previous.flush();
+                }
+                this.write( entry );
+                previous = entry.mStream;
+            }
+            previous.flush();
+        }
+        synchronized( mLock ){
+            mWritten += batch.size();
+            mLock.notifyAll();
+        }
+        batch.clear();
+    }
+
+    /**
+     * Writes out a message with its timestamp.
+     *
+     * @param entry  the message.
+     */
+    private void write( Entry entry ){
+        entry.mStream.print( mFormatter.now( new Date( entry.mTime ) ) );
+        entry.mStream.println( entry.mMessage );
+    }
+}
@@ -150,6 +150,17 @@ public class Default extends LogManager{
      */
     private static Currently mFormatter ;
 
+    /**
+     * The format of the timestamp that prefixes each message.
+     */
+    private static final String TIMESTAMP_FORMAT = "yyyy.MM.dd HH:mm:ss.SSS zzz: ";
+
+    /**
+     * The writer to which the messages are handed over, if the messages are
+     * written out asynchronously. Null otherwise.
+     */
+    private AsyncWriter mAsyncWriter;
+
     /**
      * The constructor.
      */
@@ -157,7 +168,7 @@ public class Default extends LogManager{
         mDebugLevel    = 0;
         mOutStream     = new PrintStream(System.out,true);
         mErrStream     = new PrintStream(System.err,true);
-        Default.mFormatter = new Currently( "yyyy.MM.dd HH:mm:ss.SSS zzz: " );
+        Default.mFormatter = new Currently( TIMESTAMP_FORMAT );
         //by default we are logging only CONSOLE
         //and all message less than WARN
         mMask = generateMask( WARNING_MESSAGE_LEVEL, false );
@@ -174,6 +185,43 @@ public class Default extends LogManager{
      */
     public void initialize( LogFormatter formatter, Properties properties ){
         mLogFormatter = formatter;
+
+        if( mAsyncWriter == null &&
+            edu.isi.pegasus.common.util.Boolean.parse( properties.getProperty( LogManager.ASYNC_PROPERTY_KEY ), false ) ){
+            int size = LogManager.DEFAULT_ASYNC_BUFFER_SIZE;
+            String value = properties.getProperty( LogManager.ASYNC_BUFFER_PROPERTY_KEY );
+            if( value != null ){
+                try{
+                    size = Integer.parseInt( value.trim() );
+                }
+                catch( NumberFormatException e ){
+                    //use the default size
+                }
+            }
+            mAsyncWriter = new AsyncWriter( size, TIMESTAMP_FORMAT );
+        }
+    }
+
+    /**
+     * Returns whether a message at a particular level is logged, as per the
+     * mask generated from the debug level.
+     *
+     * @param level  the level of the message.
+     *
+     * @return boolean
+     */
+    public boolean isLoggable( int level ){
+        return level >= 0 && level < Integer.SIZE && ( ( 1 << level ) & mMask ) != 0x0;
+    }
+
+    /**
+     * Waits till the messages queued for asynchronous writing are written
+     * out.
+     */
+    public void flush(){
+        if( mAsyncWriter != null ){
+            mAsyncWriter.flush();
+        }
     }
     
 
@@ -277,19 +325,19 @@ public class Default extends LogManager{
 
 
     /**
-     * Sets both the output writer and the error writer to the same
-     * underlying writer.
+     * Sets the output writer and the error writer to the streams passed,
+     * without redirecting the system streams. Used when the JVM is shared
+     * with other loggers, as in the planner daemon.
      *
-     * Note: The previous stream is not closed automatically.
+     * Note: The previous streams are not closed automatically.
      *
+     * @param out  the stream to which the messages are logged.
      * @param err  the stream to which error messages are to be logged.
      */
-    /*
-    public void setWriters(OutputStream err){
-        mOutStream = new PrintWriter( err, true );
-        mErrStream = mOutStream;
+    public void setWriters( OutputStream out, OutputStream err ){
+        mOutStream = new PrintStream( out, true );
+        mErrStream = ( out == err )? mOutStream : new PrintStream( err, true );
     }
-    */
 
 
     /**
@@ -414,14 +462,22 @@ public class Default extends LogManager{
      * @see #setLevel(int)
      */
      private void log(String message, int level, boolean comp){
-         int type = (int)Math.pow(2, level);
-         if( (type & mMask) != 0x0 ){
+         if( this.isLoggable( level ) ){
+             int type = 1 << level;
              //we need to log the message
              //get hold of the writer to be used to logging the message.
              PrintStream writer = getPrintStream(level);
-             writer.print(Default.mFormatter.now());
              String prefix = getPrefix(type);
              message = prefix + " " + message;
+             if( mAsyncWriter != null ){
+                 mAsyncWriter.write( writer, message );
+                 if( level == FATAL_MESSAGE_LEVEL ){
+                     //the planner usually exits right after a fatal error
+                     mAsyncWriter.flush();
+                 }
+                 return;
+             }
+             writer.print(Default.mFormatter.now());
              /*
               *uncomment if we want commpetion message for INFO
               *on same line
@@ -476,8 +532,8 @@ public class Default extends LogManager{
         String message = mLogFormatter.getEndEventMessage();
         mLogFormatter.popEvent();
         
-         int type = (int)Math.pow(2, level);
-         if( (type & mMask) != 0x0 ){
+         if( this.isLoggable( level ) ){
+             int type = 1 << level;
              PrintStream writer = getPrintStream(level);
              /*uncomment if we want commpetion message for INFO
                on same line
@@ -491,6 +547,10 @@ public class Default extends LogManager{
              */
             String prefix = getPrefix(type);
             message = prefix + " " + message;
+            if( mAsyncWriter != null ){
+                mAsyncWriter.write( writer, message );
+                return;
+            }
             writer.print(Default.mFormatter.now());
             writer.println( message );
             //writer.println(message + " (completed)");
@@ -513,7 +573,7 @@ public class Default extends LogManager{
         //construct the appropriate mask
         int mask = 0x0;
         for(int i = 0; i <= level; i++){
-            mask |= (int)Math.pow(2,i);
+            mask |= 1 << i;
         }
         if(info){
             mask |= CONSOLE_MESSAGE_TYPE;
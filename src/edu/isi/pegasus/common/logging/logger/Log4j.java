@@ -25,11 +25,15 @@ import java.util.Collection;
 import org.apache.log4j.Logger;
 import org.apache.log4j.Level;
 import org.apache.log4j.Appender;
+import org.apache.log4j.AsyncAppender;
 import org.apache.log4j.PropertyConfigurator;
 import org.apache.log4j.ConsoleAppender;
 import org.apache.log4j.PatternLayout;
 
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -111,6 +115,57 @@ public class Log4j extends LogManager{
         if( conf != null ){
             PropertyConfigurator.configure( conf ) ;
         }
+
+        if( edu.isi.pegasus.common.util.Boolean.parse( properties.getProperty( LogManager.ASYNC_PROPERTY_KEY ), false ) ){
+            int size = LogManager.DEFAULT_ASYNC_BUFFER_SIZE;
+            String value = properties.getProperty( LogManager.ASYNC_BUFFER_PROPERTY_KEY );
+            if( value != null ){
+                try{
+                    size = Integer.parseInt( value.trim() );
+                }
+                catch( NumberFormatException e ){
+                    //use the default size
+                }
+            }
+            Log4j.makeAsync( mRoot, size );
+        }
+    }
+
+    /**
+     * Moves the appenders of a logger behind an AsyncAppender, so that the
+     * messages are written out on the dispatcher thread of the AsyncAppender.
+     * The AsyncAppender blocks when its buffer is full, instead of
+     * discarding messages, and is closed when the JVM shuts down, so that the
+     * buffered messages are written out.
+     *
+     * @param logger  the logger whose appenders are moved.
+     * @param size    the number of messages buffered.
+     */
+    private static synchronized void makeAsync( Logger logger, int size ){
+        List<Appender> appenders = new ArrayList<Appender>();
+        for( Enumeration e = logger.getAllAppenders(); e.hasMoreElements(); ){
+            Appender a = ( Appender )e.nextElement();
+            if( a instanceof AsyncAppender ){
+                //already asynchronous
+                return;
+            }
+            appenders.add( a );
+        }
+        if( appenders.isEmpty() ){
+            return;
+        }
+
+        final AsyncAppender async = new AsyncAppender();
+        async.setName( "pegasus-async" );
+        async.setBufferSize( Math.max( 1, size ) );
+        async.setBlocking( true );
+        async.setLocationInfo( false );
+        for( Appender a : appenders ){
+            async.addAppender( a );
+            logger.removeAppender( a );
+        }
+        logger.addAppender( async );
+        Runtime.getRuntime().addShutdownHook( new Thread( () -> async.close(), "pegasus-log-writer-shutdown" ) );
     }
     
     /**
@@ -192,6 +247,7 @@ public class Log4j extends LogManager{
                 break;
                 
         }
+        mDebugLevel = level;
         mLogger.setLevel( l );
     }
         
@@ -220,6 +276,42 @@ public class Log4j extends LogManager{
         return mDebugLevel;
     }
 
+    /**
+     * Returns whether a message at a particular level is logged by the
+     * underlying log4j logger.
+     *
+     * @param level  the level of the message.
+     *
+     * @return boolean
+     */
+    public boolean isLoggable( int level ){
+        Level l = null;
+        switch( level ){
+            case LogManager.FATAL_MESSAGE_LEVEL:
+                l = Level.FATAL;
+                break;
+
+            case LogManager.ERROR_MESSAGE_LEVEL:
+                l = Level.ERROR;
+                break;
+
+            case LogManager.WARNING_MESSAGE_LEVEL:
+                l = Level.WARN;
+                break;
+
+            case LogManager.CONFIG_MESSAGE_LEVEL:
+            case LogManager.INFO_MESSAGE_LEVEL:
+                l = Level.INFO;
+                break;
+
+            case LogManager.DEBUG_MESSAGE_LEVEL:
+                l = Level.DEBUG;
+                break;
+        }
+        //the other levels are not logged by logAlreadyFormattedMessage
+        return l != null && mLogger.isEnabledFor( l );
+    }
+
     /**
      * Sets both the output writer and the error writer to the same
      * underlying writer.
@@ -233,6 +325,16 @@ public class Log4j extends LogManager{
         throw new UnsupportedOperationException( "Log4jLogger does not support setWriters(out)" );
     }
 
+    /**
+     * Sets the output writer and the error writer to the streams passed.
+     *
+     * @param out  the stream to which the messages are logged.
+     * @param err  the stream to which the error messages are logged.
+     */
+    public void setWriters( OutputStream out, OutputStream err ){
+        throw new UnsupportedOperationException( "Log4jLogger does not support setWriters(out,err)" );
+    }
+
 
 
 
@@ -0,0 +1,259 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.common.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * A set of strings, that stores the strings UTF-8 encoded back to back in a
+ * single byte array, indexed by an open addressing hash table of offsets into
+ * it. A short identifier takes up about 20 bytes, instead of the 80 or so
+ * bytes it takes up in a <code>HashSet</code> of strings, so that millions of
+ * identifiers can be tracked in a small heap. Strings cannot be removed from
+ * the set.
+ *
+ * @version $Revision$
+ */
+public class CompactStringSet {
+
+    /**
+     * The encoding of the strings stored.
+     */
+    private static final Charset ENCODING = Charset.forName( "UTF-8" );
+
+    /**
+     * The maximum size of the byte array.
+     */
+    private static final int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * The strings, each stored as its varint encoded length followed by its
+     * bytes.
+     */
+    private byte[] mArena;
+
+    /**
+     * The number of bytes in use in the arena.
+     */
+    private int mArenaSize;
+
+    /**
+     * The hash table of offsets into the arena, incremented by one so that 0
+     * marks an empty slot. The length is a power of two.
+     */
+    private int[] mSlots;
+
+    /**
+     * The hash codes of the strings in the slots, to compare against before
+     * comparing the bytes, and for rehashing.
+     */
+    private int[] mHashes;
+
+    /**
+     * The number of strings in the set.
+     */
+    private int mSize;
+
+    /**
+     * The default constructor.
+     */
+    public CompactStringSet(){
+        this( 1024 );
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param expected  the number of strings expected to be added.
+     */
+    public CompactStringSet( int expected ){
+        int capacity = 16;
+        while( capacity < expected * 2 && capacity < ( 1 << 30 ) ){
+            capacity <<= 1;
+        }
+        mSlots  = new int[ capacity ];
+        mHashes = new int[ capacity ];
+        mArena  = new byte[ Math.max( 256, Math.min( expected, 1 << 16 ) * 16 ) ];
+        mArenaSize = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Adds a string to the set.
+     *
+     * @param value  the string to add.
+     *
+     * @return true if the string was not in the set already.
+     */
+    public boolean add( String value ){
+        byte[] bytes = value.getBytes( ENCODING );
+        int hash = hash( bytes );
+        int slot = this.find( bytes, hash );
+        if( mSlots[ slot ] != 0 ){
+            return false;
+        }
+
+        int offset = this.append( bytes );
+        mSlots[ slot ]  = offset + 1;
+        mHashes[ slot ] = hash;
+        mSize++;
+        if( mSize * 2 > mSlots.length ){
+            this.rehash();
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a string is in the set.
+     *
+     * @param value  the string.
+     *
+     * @return boolean
+     */
+    public boolean contains( String value ){
+        byte[] bytes = value.getBytes( ENCODING );
+        return mSlots[ this.find( bytes, hash( bytes ) ) ] != 0;
+    }
+
+    /**
+     * Returns the number of strings in the set.
+     *
+     * @return the size
+     */
+    public int size(){
+        return mSize;
+    }
+
+    /**
+     * Returns the slot holding a string, or the empty slot it is to be added
+     * to.
+     *
+     * @param bytes  the encoded string.
+     * @param hash   the hash of the encoded string.
+     *
+     * @return the slot
+     */
+    private int find( byte[] bytes, int hash ){
+        int mask = mSlots.length - 1;
+        int slot = hash & mask;
+        while( mSlots[ slot ] != 0 ){
+            if( mHashes[ slot ] == hash && this.matches( mSlots[ slot ] - 1, bytes ) ){
+                break;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns whether the string stored at an offset in the arena matches
+     * the bytes passed.
+     *
+     * @param offset  the offset of the stored string.
+     * @param bytes   the encoded string.
+     *
+     * @return boolean
+     */
+    private boolean matches( int offset, byte[] bytes ){
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do{
+            b = mArena[ offset++ ];
+            length |= ( b & 0x7f ) << shift;
+            shift += 7;
+        }while( b < 0 );
+
+        if( length != bytes.length ){
+            return false;
+        }
+        for( int i = 0; i < length; i++ ){
+            if( mArena[ offset + i ] != bytes[i] ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a string to the arena.
+     *
+     * @param bytes  the encoded string.
+     *
+     * @return the offset the string is stored at.
+     */
+    private int append( byte[] bytes ){
+        long required = (long)mArenaSize + bytes.length + 5;
+        if( required > mArena.length ){
+            if( required > MAX_ARENA_SIZE ){
+                throw new RuntimeException( "Unable to store more than " + MAX_ARENA_SIZE +
+                                            " bytes of strings in the set" );
+            }
+            byte[] arena = new byte[ (int)Math.min( MAX_ARENA_SIZE, Math.max( required, 2L * mArena.length ) ) ];
+            System.arraycopy( mArena, 0, arena, 0, mArenaSize );
+            mArena = arena;
+        }
+
+        int offset = mArenaSize;
+        int length = bytes.length;
+        while( length > 0x7f ){
+            mArena[ mArenaSize++ ] = (byte)( ( length & 0x7f ) | 0x80 );
+            length >>>= 7;
+        }
+        mArena[ mArenaSize++ ] = (byte)length;
+        System.arraycopy( bytes, 0, mArena, mArenaSize, bytes.length );
+        mArenaSize += bytes.length;
+        return offset;
+    }
+
+    /**
+     * Doubles the size of the hash table.
+     */
+    private void rehash(){
+        int[] slots  = mSlots;
+        int[] hashes = mHashes;
+        mSlots  = new int[ slots.length * 2 ];
+        mHashes = new int[ slots.length * 2 ];
+        int mask = mSlots.length - 1;
+        for( int i = 0; i < slots.length; i++ ){
+            if( slots[i] != 0 ){
+                int slot = hashes[i] & mask;
+                while( mSlots[ slot ] != 0 ){
+                    slot = ( slot + 1 ) & mask;
+                }
+                mSlots[ slot ]  = slots[i];
+                mHashes[ slot ] = hashes[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the hash of the encoded string, with the bits spread so that
+     * sequential identifiers do not cluster in the table.
+     *
+     * @param bytes  the encoded string.
+     *
+     * @return the hash
+     */
+    private static int hash( byte[] bytes ){
+        int h = 1;
+        for( byte b : bytes ){
+            h = 31 * h + b;
+        }
+        h *= 0x9E3779B9;
+        return h ^ ( h >>> 16 );
+    }
+}
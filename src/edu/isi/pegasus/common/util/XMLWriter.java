@@ -301,8 +301,9 @@ public class XMLWriter {
 
     private XMLWriter indent(int indent) {
         try {
-            mWriter.write(
-                    (indent <= 0) ? "" : String.format(String.format("%%0%dd", indent), 0).replace("0", INDENT));
+            for (int i = 0; i < indent; i++) {
+                mWriter.write(INDENT);
+            }
         } catch (IOException ioe) {
             mLogger.log(
                     "Could not write xml comment using XMLWriter",
@@ -315,13 +316,43 @@ public class XMLWriter {
     }
 
     private static String escapeXML(String str) {
-        String st = str;
-        st = st.replaceAll("&", "&amp;");
-        st = st.replaceAll("<", "&lt;");
-        st = st.replaceAll(">", "&gt;");
-        st = st.replaceAll("\"", "&quot;");
-        st = st.replaceAll("'", "&apos;");
-        return st;
+        //most values have nothing to escape
+        int i = 0;
+        for (; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '&' || c == '<' || c == '>' || c == '"' || c == '\'') {
+                break;
+            }
+        }
+        if (i == str.length()) {
+            return str;
+        }
+
+        StringBuilder sb = new StringBuilder(str.length() + 16);
+        sb.append(str, 0, i);
+        for (; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                case '\'':
+                    sb.append("&apos;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
     }
 
     public void close() {
@@ -55,6 +55,23 @@ import java.util.regex.Pattern;
  *     pegasus.catalog.replica.directory.flat.lfn
  * </pre>
  *
+ * The directory is walked on multiple threads, by default as many as there
+ * are processors, unless specified by the property
+ * <pre>
+ *     pegasus.catalog.replica.directory.threads
+ * </pre>
+ *
+ * The listings of the directories can be persisted in an index file, keyed
+ * by the modification times of the directories, by specifying the property
+ * <pre>
+ *     pegasus.catalog.replica.directory.index
+ * </pre>
+ * Later connections only list the directories that changed since. For deep
+ * LFN's, the lookups are then served from the index, and only check the
+ * directories that the LFN's looked up map to, without walking the whole
+ * directory. The whole directory is walked only if all the mappings are
+ * required.
+ *
  *
  * @author Karan Vahi
  * @version $Revision$
@@ -102,6 +119,18 @@ public class Directory implements ReplicaCatalog {
      */
     public static final String FLAT_LFN_PROPERTY_KEY = "directory.flat.lfn";
 
+    /**
+     * The name of the key that specifies the file to persist the index of
+     * the directory in.
+     */
+    public static final String INDEX_PROPERTY_KEY = "directory.index";
+
+    /**
+     * The name of the key that specifies the number of threads to walk the
+     * directory with. Values less than 1 designate the number of processors.
+     */
+    public static final String THREADS_PROPERTY_KEY = "directory.threads";
+
     /**
      * Records the name of the on-disk representation.
      */
@@ -133,6 +162,27 @@ public class Directory implements ReplicaCatalog {
      */
     protected String mURLPrefix;
 
+    /**
+     * The file to persist the index of the directory in, or null.
+     */
+    protected String mIndexFile;
+
+    /**
+     * The number of threads to walk the directory with.
+     */
+    protected int mThreads;
+
+    /**
+     * The index of the directory.
+     */
+    private DirectoryIndex mIndex;
+
+    /**
+     * Whether the memory slurp holds all the mappings, or the lookups are
+     * to be served from the index.
+     */
+    private boolean mLoaded;
+
     /**
      * Default empty constructor creates an object that is not yet connected
      * to any database. You must use support methods to connect before this
@@ -148,6 +198,9 @@ public class Directory implements ReplicaCatalog {
         mConstructFlatLFN = false;
         mSiteHandle = Directory.DEFAULT_SITE_HANDLE;
         mURLPrefix  = Directory.DEFAULT_URL_PREFIX;
+        mIndexFile  = null;
+        mThreads    = Runtime.getRuntime().availableProcessors();
+        mLoaded     = false;
     }
 
 
@@ -182,6 +235,18 @@ public class Directory implements ReplicaCatalog {
             this.mURLPrefix = value;
         }
 
+        mIndexFile = props.getProperty( Directory.INDEX_PROPERTY_KEY );
+
+        value = props.getProperty( Directory.THREADS_PROPERTY_KEY );
+        if ( value != null ) {
+            try {
+                int threads = Integer.parseInt( value );
+                this.mThreads = ( threads < 1 ) ? Runtime.getRuntime().availableProcessors() : threads;
+            } catch ( NumberFormatException nfe ) {
+                //use the default
+            }
+        }
+
         if (props.containsKey( Directory.DIRECTORY_PROPERTY_KEY  )) {
             return connect(props.getProperty("directory"));
         }
@@ -191,6 +256,8 @@ public class Directory implements ReplicaCatalog {
 
     /**
      * Does the file listing on the directory to create the mappings in memory.
+     * If the directory has a persisted index, the mappings for deep LFN's
+     * are only created when all of them are required.
      *
      * @param directory is the name of the file to read.
      * @return true, if the in-memory data structures appear sound.
@@ -203,11 +270,20 @@ public class Directory implements ReplicaCatalog {
         }
         mDirectory = directory;
         mLFNMap = new LinkedHashMap();
+        mLoaded = false;
 
         try {
             File f = new File(directory);
             if (f.exists() && f.isDirectory()) {
-                traverse( f , null );
+                mIndex = new DirectoryIndex( f.getAbsoluteFile().toPath(),
+                                             ( mIndexFile == null ) ? null : new File( mIndexFile ),
+                                             mThreads );
+                boolean loaded = mIndex.load();
+                if( mConstructFlatLFN || !loaded ){
+                    //flat lfns can map to any directory. the persisted
+                    //index still spares listing the unmodified directories
+                    loadAll();
+                }
             }
             else{
                 return false;
@@ -215,51 +291,87 @@ public class Directory implements ReplicaCatalog {
         } catch (Exception ioe) {
             mLFNMap = null;
             mDirectory = null;
+            mIndex = null;
             throw new RuntimeException(ioe); // re-throw
         }
 
         return true;
     }
 
+    /**
+     * Brings the index of the directory up to date, and populates the
+     * mappings in memory from it, if not done already.
+     */
+    private void loadAll() {
+        if( mLoaded ){
+            return;
+        }
+        mLoaded = true;
+        mIndex.refresh();
+        mIndex.visit( ( directory, files ) -> {
+            for( String name : files ){
+                String lfn = ( mConstructFlatLFN || directory.isEmpty() ) ?
+                             name:
+                             directory + File.separator + name;
+                //we have a mapping to populate
+                insert( lfn, this.createEntry( directory, name ) );
+            }
+        } );
+    }
 
+    /**
+     * Returns the mappings for a LFN. If the mappings are not in memory, the
+     * deep LFN is looked up in the index of the directory it maps to.
+     *
+     * @param lfn  the LFN
+     *
+     * @return the replica catalog entries, or null if there are none.
+     */
+    private Collection entries( String lfn ) {
+        if( mLoaded ){
+            return (Collection) mLFNMap.get(lfn);
+        }
+        int index = lfn.lastIndexOf( File.separator );
+        String directory = ( index == -1 ) ? "" : lfn.substring( 0, index );
+        String name = lfn.substring( index + 1 );
+        if( !mIndex.containsFile( directory, name ) ){
+            return null;
+        }
+        List c = new ArrayList( 1 );
+        c.add( this.createEntry( directory, name ) );
+        return c;
+    }
 
     /**
-     * Traverses a directory and populates the mappings in memory
+     * Checks the directories that a set of LFN's map to against the file
+     * system in parallel, before they are looked up one by one.
      *
-     * @param directory     the directory to traverse.
-     * @param prefix        the LFN prefix to be applied
+     * @param lfns  the LFN's
      */
-    private void traverse( File directory , String prefix) {
-         //sanity check, if we can read it
-        if( !directory.canRead() ){
-            //warn and return
-            System.err.println( "Ignoring. Unable to read directory " + directory );
+    private void prefetch( Set lfns ) {
+        if( mLoaded || lfns == null ){
             return;
         }
-
-        for( File f: directory.listFiles() ){
-            StringBuffer lfn = new StringBuffer();
-            String name = f.getName();
-            if( mConstructFlatLFN || prefix == null || prefix.isEmpty() ){
-                lfn.append( name );
-            }
-            else{
-                lfn.append( prefix ).append( File.separator ).append( name );
-            }
-
-            if( f.isDirectory() ){
-                //the lfn is the prefix now
-                traverse( f, lfn.toString() );
-            }
-            else{
-                //we have a mapping to populate
-                String pfn = this.mURLPrefix + f.getAbsolutePath();
-                //System.out.println( lfn + " => " + pfn );
-                insert( lfn.toString(), new ReplicaCatalogEntry( pfn, mSiteHandle ) );
-            }
+        Set<String> directories = new HashSet<String>();
+        for( Iterator i = lfns.iterator(); i.hasNext(); ){
+            String lfn = (String) i.next();
+            int index = lfn.lastIndexOf( File.separator );
+            directories.add( ( index == -1 ) ? "" : lfn.substring( 0, index ) );
         }
+        mIndex.validate( directories );
+    }
 
-        return;
+    /**
+     * Creates the replica catalog entry for a file in the directory.
+     *
+     * @param directory  the relative path of the directory of the file.
+     * @param name       the name of the file.
+     *
+     * @return the replica catalog entry
+     */
+    private ReplicaCatalogEntry createEntry( String directory, String name ) {
+        String pfn = this.mURLPrefix + mIndex.getPath( directory, name ).toString();
+        return new ReplicaCatalogEntry( pfn, mSiteHandle );
     }
 
 
@@ -272,6 +384,14 @@ public class Directory implements ReplicaCatalog {
      * quoted and thus quote-escaped.
      */
     public void close() {
+        if( mIndex != null ){
+            try {
+                mIndex.write();
+            } catch (IOException ioe) {
+                System.err.println( "Unable to write directory index " + mIndexFile + " " + ioe.getMessage() );
+            }
+            mIndex = null;
+        }
         mLFNMap.clear();
         mLFNMap = null;
         mDirectory = null;
@@ -299,7 +419,7 @@ public class Directory implements ReplicaCatalog {
      * <code>null</code> if no match was found.
      */
     public String lookup(String lfn, String handle) {
-        Collection c = (Collection) mLFNMap.get(lfn);
+        Collection c = this.entries(lfn);
         if (c == null) {
             return null;
         }
@@ -325,7 +445,7 @@ public class Directory implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Collection lookup(String lfn) {
-        Collection c = (Collection) mLFNMap.get(lfn);
+        Collection c = this.entries(lfn);
         if (c == null) {
             return new ArrayList();
         } else {
@@ -343,7 +463,7 @@ public class Directory implements ReplicaCatalog {
      */
     public Set lookupNoAttributes(String lfn) {
         Set result = new TreeSet();
-        Collection c = (Collection) mLFNMap.get(lfn);
+        Collection c = this.entries(lfn);
 
         if (c != null) {
             for (Iterator i = c.iterator(); i.hasNext();) {
@@ -370,10 +490,11 @@ public class Directory implements ReplicaCatalog {
         if (lfns == null || lfns.size() == 0) {
             return result;
         }
+        this.prefetch(lfns);
 
         for (Iterator i = lfns.iterator(); i.hasNext();) {
             String lfn = (String) i.next();
-            Collection c = (Collection) mLFNMap.get(lfn);
+            Collection c = this.entries(lfn);
             if (c == null) {
                 result.put(lfn, new ArrayList());
             } else {
@@ -400,10 +521,12 @@ public class Directory implements ReplicaCatalog {
             return result;
         }
 
+        this.prefetch(lfns);
+
         for (Iterator i = lfns.iterator(); i.hasNext();) {
             Set value = new TreeSet();
             String lfn = (String) i.next();
-            Collection c = (Collection) mLFNMap.get(lfn);
+            Collection c = this.entries(lfn);
             if (c != null) {
                 for (Iterator j = c.iterator(); j.hasNext();) {
                     value.add(((ReplicaCatalogEntry) j.next()).getPFN());
@@ -432,10 +555,11 @@ public class Directory implements ReplicaCatalog {
         if (lfns == null || lfns.size() == 0) {
             return result;
         }
+        this.prefetch(lfns);
 
         for (Iterator i = lfns.iterator(); i.hasNext();) {
             String lfn = (String) i.next();
-            Collection c = (Collection) mLFNMap.get(lfn);
+            Collection c = this.entries(lfn);
             if (c != null) {
                 List value = new ArrayList();
 
@@ -472,10 +596,11 @@ public class Directory implements ReplicaCatalog {
         if (lfns == null || lfns.size() == 0) {
             return result;
         }
+        this.prefetch(lfns);
 
         for (Iterator i = lfns.iterator(); i.hasNext();) {
             String lfn = (String) i.next();
-            Collection c = (Collection) mLFNMap.get(lfn);
+            Collection c = this.entries(lfn);
             if (c != null) {
                 List value = new ArrayList();
 
@@ -513,6 +638,7 @@ public class Directory implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Map lookup(Map constraints) {
+        this.loadAll();
         if (constraints == null || constraints.size() == 0) {
             // return everything
             return Collections.unmodifiableMap(mLFNMap);
@@ -542,6 +668,7 @@ public class Directory implements ReplicaCatalog {
      * @return A set of all logical filenames known to the catalog.
      */
     public Set list() {
+        this.loadAll();
         return new TreeSet(mLFNMap.keySet());
     }
 
@@ -555,6 +682,7 @@ public class Directory implements ReplicaCatalog {
      * @return A set of logical filenames that match. The set may be empty
      */
     public Set list(String constraint) {
+        this.loadAll();
         Set result = new TreeSet();
         Pattern p = Pattern.compile(constraint);
 
@@ -581,6 +709,7 @@ public class Directory implements ReplicaCatalog {
      * throw an exception, don't use zero.
      */
     public int insert(String lfn, ReplicaCatalogEntry tuple) {
+        this.loadAll();
         if (lfn == null || tuple == null) {
             throw new NullPointerException();
         }
@@ -745,6 +874,7 @@ public class Directory implements ReplicaCatalog {
      * @return the number of removed entries, either 0 or 1.
      */
     public int delete(String lfn, ReplicaCatalogEntry tuple) {
+        this.loadAll();
         int result = 0;
         if (lfn == null || tuple == null) {
             return result;
@@ -830,6 +960,7 @@ public class Directory implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int remove(String lfn) {
+        this.loadAll();
         Collection c = (Collection) mLFNMap.remove(lfn);
         if (c == null) {
             return 0;
@@ -871,6 +1002,7 @@ public class Directory implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int removeByAttribute(String name, Object value) {
+        this.loadAll();
         int result = 0;
 
         for (Iterator i = mLFNMap.keySet().iterator(); i.hasNext();) {
@@ -914,6 +1046,7 @@ public class Directory implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int clear() {
+        this.loadAll();
         int result = mLFNMap.size();
         mLFNMap.clear();
         return result;
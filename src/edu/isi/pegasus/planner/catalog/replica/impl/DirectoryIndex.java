@@ -0,0 +1,519 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An index of the files in a directory tree, that records the listing of
+ * each directory together with its modification time. The index can be
+ * persisted to a file, so that later refreshes only list the directories
+ * whose modification time changed, and only need to stat the others.
+ * Directories can also be validated on their own, so that lookups for
+ * a few files do not require a walk of the whole tree.<p>
+ *
+ * The directories are identified by their path relative to the root of the
+ * tree, with the components separated by the platform separator. The root
+ * itself is the empty path.<p>
+ *
+ * Directories modified shortly before they were listed are not trusted in
+ * the persisted index, as a later modification within the granularity of
+ * the file system timestamps would go unnoticed.
+ *
+ * @version $Revision$
+ */
+public class DirectoryIndex {
+
+    /**
+     * The magic number at the start of a persisted index.
+     */
+    private static final int MAGIC = 0x50444958;
+
+    /**
+     * The version of the format of the persisted index.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The milliseconds before a listing, within which a modification of a
+     * directory makes its listing untrusted in the persisted index.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    /**
+     * The listing of a directory.
+     */
+    private static class Listing {
+
+        /**
+         * The modification time of the directory when it was listed, or -1
+         * if the listing needs to be redone.
+         */
+        private final long mModified;
+
+        /**
+         * Whether the modification time can be persisted, i.e. the directory
+         * was not modified shortly before it was listed.
+         */
+        private final boolean mTrusted;
+
+        /**
+         * The sorted names of the files in the directory.
+         */
+        private final String[] mFiles;
+
+        /**
+         * The sorted names of the subdirectories of the directory.
+         */
+        private final String[] mDirectories;
+
+        private Listing( long modified, boolean trusted, String[] files, String[] directories ){
+            mModified    = modified;
+            mTrusted     = trusted;
+            mFiles       = files;
+            mDirectories = directories;
+        }
+
+        /**
+         * Returns the modification time to persist, -1 if the listing needs
+         * to be redone when the index is loaded again.
+         */
+        private long getTrustedModified(){
+            return mTrusted ? mModified : -1;
+        }
+    }
+
+    /**
+     * The root of the directory tree.
+     */
+    private final Path mRoot;
+
+    /**
+     * The file the index is persisted in, or null if it is not persisted.
+     */
+    private final File mFile;
+
+    /**
+     * The number of threads to walk the tree with.
+     */
+    private final int mThreads;
+
+    /**
+     * The listings of the directories indexed by their relative path.
+     */
+    private Map<String,Listing> mListings;
+
+    /**
+     * The directories that have been checked against the file system since
+     * the index was loaded.
+     */
+    private Set<String> mValidated;
+
+    /**
+     * Whether the index changed since it was loaded.
+     */
+    private volatile boolean mDirty;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param root     the root of the directory tree.
+     * @param file     the file to persist the index in, or null.
+     * @param threads  the number of threads to walk the tree with.
+     */
+    public DirectoryIndex( Path root, File file, int threads ){
+        mRoot      = root;
+        mFile      = file;
+        mThreads   = Math.max( 1, threads );
+        mListings  = new ConcurrentHashMap<String,Listing>();
+        mValidated = ConcurrentHashMap.newKeySet();
+        mDirty     = false;
+    }
+
+    /**
+     * Loads the persisted index, if there is one for the root of the tree.
+     * The directories are not checked against the file system.
+     *
+     * @return true if the index was loaded, false if there is no index for
+     *         the root.
+     */
+    public boolean load(){
+        if( mFile == null || !mFile.exists() ){
+            return false;
+        }
+        Map<String,Listing> listings = new ConcurrentHashMap<String,Listing>();
+        try( DataInputStream in = new DataInputStream( new BufferedInputStream(
+                                      new GZIPInputStream( new FileInputStream( mFile ) ) ) ) ){
+            if( in.readInt() != MAGIC || in.readInt() != VERSION ||
+                !in.readUTF().equals( mRoot.toString() ) ){
+                return false;
+            }
+            for( int i = in.readInt(); i > 0; i-- ){
+                String path = in.readUTF();
+                long modified = in.readLong();
+                String[] files = readNames( in );
+                String[] directories = readNames( in );
+                listings.put( path, new Listing( modified, modified != -1, files, directories ) );
+            }
+        }
+        catch( IOException e ){
+            System.err.println( "Ignoring directory index " + mFile + " " + e.getMessage() );
+            return false;
+        }
+        mListings = listings;
+        mValidated.clear();
+        return true;
+    }
+
+    /**
+     * Brings the whole index up to date, walking the tree in parallel. Only
+     * the directories whose modification time changed are listed again.
+     */
+    public void refresh(){
+        final Map<String,Listing> previous = mListings;
+        final Map<String,Listing> listings = new ConcurrentHashMap<String,Listing>();
+        ForkJoinPool pool = new ForkJoinPool( mThreads );
+        try{
+            pool.invoke( new Scan( "", previous, listings ) );
+        }
+        finally{
+            pool.shutdown();
+        }
+        if( !listings.keySet().equals( previous.keySet() ) ){
+            mDirty = true;
+        }
+        mListings = listings;
+        mValidated.addAll( listings.keySet() );
+    }
+
+    /**
+     * Checks directories against the file system in parallel, listing them
+     * again if their modification time changed. Directories that were
+     * already checked since the index was loaded are skipped.
+     *
+     * @param directories  the relative paths of the directories.
+     */
+    public void validate( Collection<String> directories ){
+        final List<String> pending = new ArrayList<String>();
+        for( String directory : directories ){
+            if( !mValidated.contains( directory ) ){
+                pending.add( directory );
+            }
+        }
+        if( pending.size() <= 1 || mThreads == 1 ){
+            for( String directory : pending ){
+                this.validateDirectory( directory );
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool( mThreads );
+        try{
+            pool.submit( () -> pending.parallelStream().forEach( this::validateDirectory ) ).join();
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns whether a file exists in a directory, checking the directory
+     * against the file system if it was not checked since the index was
+     * loaded.
+     *
+     * @param directory  the relative path of the directory.
+     * @param name       the name of the file.
+     *
+     * @return boolean
+     */
+    public boolean containsFile( String directory, String name ){
+        if( !mValidated.contains( directory ) ){
+            this.validateDirectory( directory );
+        }
+        Listing listing = mListings.get( directory );
+        return listing != null && Arrays.binarySearch( listing.mFiles, name ) >= 0;
+    }
+
+    /**
+     * Visits the files of the directories in the index, in depth first order
+     * starting from the root.
+     *
+     * @param visitor  called with the relative path of a directory and the
+     *                 names of its files.
+     */
+    public void visit( BiConsumer<String,String[]> visitor ){
+        this.visit( "", visitor );
+    }
+
+    /**
+     * Returns the path of a file on the file system.
+     *
+     * @param directory  the relative path of the directory.
+     * @param name       the name of the file.
+     *
+     * @return the path
+     */
+    public Path getPath( String directory, String name ){
+        return directory.isEmpty() ? mRoot.resolve( name ) : mRoot.resolve( directory ).resolve( name );
+    }
+
+    /**
+     * Returns the number of directories in the index.
+     *
+     * @return the number of directories
+     */
+    public int size(){
+        return mListings.size();
+    }
+
+    /**
+     * Writes the index to its file, if it changed since it was loaded. The
+     * index is written to a temporary file first, that is then moved in
+     * place.
+     *
+     * @throws IOException in case of error while writing the index.
+     */
+    public void write() throws IOException{
+        if( mFile == null || !mDirty ){
+            return;
+        }
+        File tmp = new File( mFile.getAbsoluteFile().getParentFile(), mFile.getName() + ".tmp" );
+        try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream(
+                                        new GZIPOutputStream( new FileOutputStream( tmp ) ) ) ) ){
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeUTF( mRoot.toString() );
+            out.writeInt( mListings.size() );
+            for( Map.Entry<String,Listing> entry : mListings.entrySet() ){
+                Listing listing = entry.getValue();
+                out.writeUTF( entry.getKey() );
+                out.writeLong( listing.getTrustedModified() );
+                writeNames( out, listing.mFiles );
+                writeNames( out, listing.mDirectories );
+            }
+        }
+        try{
+            Files.move( tmp.toPath(), mFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch( AtomicMoveNotSupportedException e ){
+            Files.move( tmp.toPath(), mFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+        mDirty = false;
+    }
+
+    /**
+     * Checks a directory against the file system, listing it again if its
+     * modification time changed. A directory that no longer exists is
+     * removed from the index.
+     *
+     * @param directory  the relative path of the directory.
+     */
+    private void validateDirectory( String directory ){
+        if( !isValidPath( directory ) ){
+            return;
+        }
+        Listing previous = mListings.get( directory );
+        Listing listing = this.list( directory, previous );
+        if( listing == null ){
+            if( mListings.remove( directory ) != null ){
+                mDirty = true;
+            }
+        }
+        else if( listing != previous ){
+            mListings.put( directory, listing );
+            mDirty = true;
+        }
+        mValidated.add( directory );
+    }
+
+    /**
+     * Lists a directory, unless its modification time matches the previous
+     * listing.
+     *
+     * @param directory  the relative path of the directory.
+     * @param previous   the previous listing of the directory, or null.
+     *
+     * @return the listing, the previous listing if it is up to date, or null
+     *         if the directory does not exist or cannot be read.
+     */
+    private Listing list( String directory, Listing previous ){
+        Path dir = directory.isEmpty() ? mRoot : mRoot.resolve( directory );
+        long modified;
+        try{
+            BasicFileAttributes attributes = Files.readAttributes( dir, BasicFileAttributes.class );
+            if( !attributes.isDirectory() ){
+                return null;
+            }
+            modified = attributes.lastModifiedTime().toMillis();
+        }
+        catch( IOException e ){
+            return null;
+        }
+        if( previous != null && previous.mModified == modified && modified != -1 ){
+            return previous;
+        }
+
+        long listed = System.currentTimeMillis();
+        List<String> files = new ArrayList<String>();
+        List<String> directories = new ArrayList<String>();
+        try( DirectoryStream<Path> stream = Files.newDirectoryStream( dir ) ){
+            for( Path child : stream ){
+                String name = child.getFileName().toString();
+                if( Files.isDirectory( child ) ){
+                    directories.add( name );
+                }
+                else{
+                    files.add( name );
+                }
+            }
+        }
+        catch( NoSuchFileException | NotDirectoryException e ){
+            return null;
+        }
+        catch( IOException e ){
+            //warn and ignore the directory
+            System.err.println( "Ignoring. Unable to read directory " + dir );
+            return null;
+        }
+        String[] f = files.toArray( new String[ files.size() ] );
+        String[] d = directories.toArray( new String[ directories.size() ] );
+        Arrays.sort( f );
+        Arrays.sort( d );
+        return new Listing( modified, modified < listed - RACY_MILLIS, f, d );
+    }
+
+    /**
+     * Visits the files of a directory and its subdirectories.
+     */
+    private void visit( String directory, BiConsumer<String,String[]> visitor ){
+        Listing listing = mListings.get( directory );
+        if( listing == null ){
+            return;
+        }
+        visitor.accept( directory, listing.mFiles );
+        for( String name : listing.mDirectories ){
+            this.visit( child( directory, name ), visitor );
+        }
+    }
+
+    /**
+     * Returns the relative path of a subdirectory.
+     */
+    private static String child( String directory, String name ){
+        return directory.isEmpty() ? name : directory + File.separator + name;
+    }
+
+    /**
+     * Returns whether a relative path stays within the tree, i.e. it has no
+     * empty, current or parent directory components.
+     */
+    private static boolean isValidPath( String directory ){
+        if( directory.isEmpty() ){
+            return true;
+        }
+        for( String component : directory.split( Pattern.quote( File.separator ), -1 ) ){
+            if( component.isEmpty() || component.equals( "." ) || component.equals( ".." ) ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] readNames( DataInputStream in ) throws IOException{
+        String[] names = new String[ in.readInt() ];
+        for( int i = 0; i < names.length; i++ ){
+            names[i] = in.readUTF();
+        }
+        return names;
+    }
+
+    private static void writeNames( DataOutputStream out, String[] names ) throws IOException{
+        out.writeInt( names.length );
+        for( String name : names ){
+            out.writeUTF( name );
+        }
+    }
+
+    /**
+     * Lists a directory and recursively scans its subdirectories in
+     * parallel.
+     */
+    private class Scan extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String mDirectory;
+
+        private final Map<String,Listing> mPrevious;
+
+        private final Map<String,Listing> mResult;
+
+        private Scan( String directory, Map<String,Listing> previous, Map<String,Listing> result ){
+            mDirectory = directory;
+            mPrevious  = previous;
+            mResult    = result;
+        }
+
+        protected void compute(){
+            Listing previous = mPrevious.get( mDirectory );
+            Listing listing = DirectoryIndex.this.list( mDirectory, previous );
+            if( listing == null ){
+                if( previous != null ){
+                    mDirty = true;
+                }
+                return;
+            }
+            if( listing != previous ){
+                mDirty = true;
+            }
+            mResult.put( mDirectory, listing );
+
+            List<Scan> scans = new ArrayList<Scan>( listing.mDirectories.length );
+            for( String name : listing.mDirectories ){
+                scans.add( new Scan( child( mDirectory, name ), mPrevious, mResult ) );
+            }
+            invokeAll( scans );
+        }
+    }
+}
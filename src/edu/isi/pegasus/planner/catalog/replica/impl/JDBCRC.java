@@ -190,6 +190,54 @@ public class JDBCRC implements ReplicaCatalog
    */
   private boolean m_autoinc = false;
 
+  /**
+   * The name of the property that determines the number of LFNs that are
+   * looked up, inserted or removed in a single round trip to the database.
+   */
+  public static final String BATCH_SIZE_PROPERTY_KEY = "db.batch.size";
+
+  /**
+   * The default batch size. Kept below the default limit of 999 host
+   * parameters per statement in SQLite.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  /**
+   * The number of LFNs that are looked up, inserted or removed in a single
+   * round trip to the database. A value of 1 disables the bulk mode.
+   */
+  protected int mBatchSize;
+
+  /**
+   * The statements used in the bulk mode, as the parts of the query before
+   * and after an IN clause of mBatchSize parameters.
+   */
+  private static final String mCBatchStatements[][] =
+  { // 0:
+    { "SELECT l.lfn_id,l.lfn,p.pfn,p.site FROM rc_lfn l LEFT JOIN rc_pfn p ON l.lfn_id=p.lfn_id WHERE l.lfn",
+      "" },
+    // 1:
+    { "SELECT l.lfn_id,l.lfn,p.pfn,p.site FROM rc_lfn l LEFT JOIN rc_pfn p ON l.lfn_id=p.lfn_id WHERE l.lfn",
+      " AND p.site=?" },
+    // 2:
+    { "SELECT m.lfn_id,m.key,m.value FROM rc_meta m WHERE m.lfn_id IN ( SELECT l.lfn_id FROM rc_lfn l WHERE l.lfn",
+      " )" },
+    // 3:
+    { "SELECT l.lfn_id,l.lfn FROM rc_lfn l WHERE l.lfn",
+      "" }
+  };
+
+  /**
+   * The SQL of the statements used in the bulk mode for the current batch
+   * size. Built on demand.
+   */
+  private String mBatchSQL[];
+
+  /**
+   * The prepared statements used in the bulk mode, ready to use.
+   */
+  private PreparedStatement mBatchStatements[];
+
   /**
    * Convenience c'tor: Establishes the connection to the replica
    * catalog database. The usual suspects for the class name include:
@@ -252,6 +300,9 @@ public class JDBCRC implements ReplicaCatalog
     // make connection defunc
     mConnection = null;
     mStatements = null;
+    mBatchSQL = null;
+    mBatchStatements = new PreparedStatement[ mCBatchStatements.length ];
+    mBatchSize = DEFAULT_BATCH_SIZE;
     mLogger =  LogManagerFactory.loadSingletonInstance();
   }
 
@@ -333,6 +384,18 @@ public class JDBCRC implements ReplicaCatalog
         // class loader: Will propagate any runtime errors!!!
         String driver = (String) props.remove("db.driver");
 
+        String batchSize = (String) props.remove( BATCH_SIZE_PROPERTY_KEY );
+        if( batchSize != null ){
+            try{
+                mBatchSize = Math.max( 1, Integer.parseInt( batchSize.trim() ) );
+                mBatchSQL = null;
+            }
+            catch( NumberFormatException e ){
+                throw new RuntimeException( "Invalid value specified for replica catalog property " +
+                                            BATCH_SIZE_PROPERTY_KEY + " " + batchSize, e );
+            }
+        }
+
         Properties localProps = CommonProperties.matchingSubset( (Properties)props.clone(), "db", false );
 
         String url = (String) localProps.remove("url");
@@ -420,6 +483,17 @@ public class JDBCRC implements ReplicaCatalog
       }
     }
 
+    for ( int i=0; i < mBatchStatements.length; ++i ) {
+      if ( mBatchStatements[i] != null ) {
+        try {
+          mBatchStatements[i].close();
+        } catch ( SQLException e ) {
+          // ignore
+        }
+        mBatchStatements[i] = null;
+      }
+    }
+
     if ( mConnection != null ) {
       try {
 	mConnection.close();
@@ -484,6 +558,265 @@ public class JDBCRC implements ReplicaCatalog
     return mStatements[i];
   }
 
+  /**
+   * Singleton manager for the prepared statements used in the bulk mode.
+   * The statement has an IN clause with as many parameters as the batch
+   * size. The SQL of the statements is built once for the batch size.
+   *
+   * @param i is the index which batch statement to check.
+   * @return a handle to the prepared statement.
+   */
+  protected PreparedStatement getBatchStatement( int i )
+    throws SQLException
+  {
+      if ( mBatchSQL == null ) {
+          StringBuilder in = new StringBuilder( 2 * mBatchSize + 6 );
+          in.append( " IN (" );
+          for ( int j = 0; j < mBatchSize; ++j ) {
+              in.append( j == 0 ? "?" : ",?" );
+          }
+          in.append( ")" );
+
+          String sql[] = new String[ mCBatchStatements.length ];
+          for ( int j = 0; j < sql.length; ++j ) {
+              sql[j] = mCBatchStatements[j][0] + in + mCBatchStatements[j][1];
+          }
+          mBatchSQL = sql;
+      }
+
+      if ( mBatchStatements[i] == null ) {
+          mBatchStatements[i] = mConnection.prepareStatement( mBatchSQL[i] );
+      } else
+          mBatchStatements[i].clearParameters();
+
+      return mBatchStatements[i];
+  }
+
+  /**
+   * Sets the parameters of the IN clause of a batch statement. If the
+   * chunk is smaller than the batch size, the last LFN is repeated to fill
+   * up the remaining parameters, so that the same statement can be reused.
+   *
+   * @param ps     the batch statement.
+   * @param chunk  the quoted LFNs in the chunk.
+   * @param start  the index of the first parameter of the IN clause.
+   *
+   * @return the index of the first parameter after the IN clause.
+   */
+  private int setBatchParameters( PreparedStatement ps, List<String> chunk, int start )
+    throws SQLException
+  {
+      int last = chunk.size() - 1;
+      for ( int i = 0; i < mBatchSize; ++i ) {
+          ps.setString( start + i, chunk.get( Math.min( i, last ) ) );
+      }
+      return start + mBatchSize;
+  }
+
+  /**
+   * Splits the LFNs into chunks of the batch size. The LFNs are quoted, and
+   * each chunk maps the quoted LFN to the LFN as passed.
+   *
+   * @param lfns  the LFNs
+   *
+   * @return the chunks
+   */
+  private List<Map<String,String>> chunk( Collection lfns )
+  {
+      List<Map<String,String>> result = new ArrayList<Map<String,String>>();
+      Map<String,String> chunk = null;
+      for ( Iterator i = lfns.iterator(); i.hasNext(); ) {
+          String lfn = (String) i.next();
+          if ( lfn == null ) continue;
+          if ( chunk == null || chunk.size() == mBatchSize ) {
+              chunk = new LinkedHashMap<String,String>();
+              result.add( chunk );
+          }
+          chunk.put( quote(lfn), lfn );
+      }
+      return result;
+  }
+
+  /**
+   * Folds a stored LFN the way a collation that ignores case and trailing
+   * spaces, such as the MySQL default, compares it. The rows of a batch
+   * query are matched to the LFNs asked for exactly, and an LFN without an
+   * exact match, whose folded form was returned, is looked up on its own.
+   *
+   * @param lfn  the LFN as stored.
+   *
+   * @return the folded LFN.
+   */
+  private static String fold( String lfn )
+  {
+      int end = lfn.length();
+      while ( end > 0 && lfn.charAt(end-1) == ' ' ) --end;
+      return lfn.substring( 0, end ).toLowerCase( Locale.ENGLISH );
+  }
+
+  /**
+   * Retrieves the entries for a single LFN, one query for the PFNs and one
+   * per PFN for the attributes.
+   *
+   * @param lfn         the LFN to look up.
+   * @param handle      the resource handle restricting the PFNs, or null.
+   * @param attributes  whether to retrieve the replica catalog entries
+   *                    with their attributes, or just the PFNs.
+   *
+   * @return a list of replica catalog entries, or a set of PFN strings.
+   */
+  private Collection pointLookup( String lfn, String handle, boolean attributes )
+    throws SQLException
+  {
+      Collection result = attributes ? new ArrayList() : new TreeSet();
+      PreparedStatement ps = getStatement( handle == null ? 1 : 2 );
+      ps.setString( 1, quote(lfn) );
+      if ( handle != null ) ps.setString( 2, quote(handle) );
+
+      ResultSet rs = ps.executeQuery();
+      while ( rs.next() ) {
+          String pfn = rs.getString("pfn");
+          if ( attributes ) {
+              result.add( new ReplicaCatalogEntry( pfn,
+                      attributes(rs.getString("lfn_id"), rs.getString("site")) ) );
+          } else if ( pfn != null ) {
+              result.add( pfn );
+          }
+      }
+      rs.close();
+      return result;
+  }
+
+  /**
+   * Retrieves the entries for a set of LFNs in chunks of the batch size.
+   * For each chunk, one query retrieves the PFNs and, if required, a second
+   * query retrieves the attributes of all the LFNs in the chunk. With a
+   * batch size of 1, each LFN is looked up on its own.
+   *
+   * @param lfns        the LFNs to look up.
+   * @param handle      the resource handle restricting the PFNs, or null.
+   * @param attributes  whether to retrieve the replica catalog entries
+   *                    with their attributes, or just the PFNs.
+   *
+   * @return a map indexed by the LFN. Each value is a list of replica
+   * catalog entries, or a set of PFN strings.
+   */
+  private Map bulkLookup( Set lfns, String handle, boolean attributes )
+    throws SQLException
+  {
+      Map result = new HashMap();
+      if ( mBatchSize <= 1 ) {
+          for ( Iterator i = lfns.iterator(); i.hasNext(); ) {
+              String lfn = (String) i.next();
+              if ( lfn != null ) result.put( lfn, pointLookup( lfn, handle, attributes ) );
+          }
+          return result;
+      }
+
+      for ( Map<String,String> chunk : chunk( lfns ) ) {
+          List<String> quoted = new ArrayList<String>( chunk.keySet() );
+          for ( String lfn : chunk.values() ) {
+              result.put( lfn, attributes ? new ArrayList() : new TreeSet() );
+          }
+
+          // the PFNs for all the LFNs in the chunk
+          PreparedStatement ps = getBatchStatement( handle == null ? 0 : 1 );
+          int next = setBatchParameters( ps, quoted, 1 );
+          if ( handle != null ) ps.setString( next, quote(handle) );
+
+          List<String[]> rows = new ArrayList<String[]>();
+          Set<String> matched = new HashSet<String>();
+          Set<String> folded = new HashSet<String>();
+          ResultSet rs = ps.executeQuery();
+          while ( rs.next() ) {
+              String stored = rs.getString("lfn");
+              folded.add( fold(stored) );
+              String lfn = chunk.get( stored );
+              if ( lfn == null ) continue;
+              matched.add( lfn );
+              String pfn = rs.getString("pfn");
+              if ( attributes ) {
+                  rows.add( new String[]{ lfn, rs.getString("lfn_id"), pfn, rs.getString("site") } );
+              } else if ( pfn != null ) {
+                  ((Set) result.get(lfn)).add( pfn );
+              }
+          }
+          rs.close();
+
+          // a collation that ignores case or trailing spaces returns rows
+          // for LFNs that are not the ones asked for
+          for ( Map.Entry<String,String> e : chunk.entrySet() ) {
+              String lfn = e.getValue();
+              if ( !matched.contains(lfn) && folded.contains( fold(e.getKey()) ) ) {
+                  result.put( lfn, pointLookup( lfn, handle, attributes ) );
+              }
+          }
+          if ( !attributes || rows.isEmpty() ) continue;
+
+          // the attributes for all the LFNs in the chunk
+          Map<String,Map> meta = new HashMap<String,Map>();
+          ps = getBatchStatement( 2 );
+          setBatchParameters( ps, quoted, 1 );
+          rs = ps.executeQuery();
+          while ( rs.next() ) {
+              String id = rs.getString(1);
+              Map m = meta.get( id );
+              if ( m == null ) {
+                  m = new TreeMap();
+                  meta.put( id, m );
+              }
+              m.put( rs.getString(2), rs.getString(3) );
+          }
+          rs.close();
+
+          for ( String[] row : rows ) {
+              Map attrs = new TreeMap();
+              String site = row[3];
+              if ( site != null && !site.equals("NULL") ) {
+                  attrs.put( ReplicaCatalogEntry.RESOURCE_HANDLE, site );
+              }
+              Map m = meta.get( row[1] );
+              if ( m != null ) attrs.putAll( m );
+              ((List) result.get( row[0] )).add( new ReplicaCatalogEntry( row[2], attrs ) );
+          }
+      }
+      return result;
+  }
+
+  /**
+   * Retrieves the lfn_id for the LFNs in a chunk that exist in the catalog.
+   * An LFN that only matches a stored LFN under a collation that ignores
+   * case or trailing spaces gets the lfn_id of the stored LFN.
+   *
+   * @param chunk  maps the quoted LFN to the LFN as passed.
+   *
+   * @return a map from the LFN as passed to its lfn_id.
+   */
+  private Map<String,String> lfnIDs( Map<String,String> chunk )
+    throws SQLException
+  {
+      Map<String,String> result = new HashMap<String,String>();
+      PreparedStatement ps = getBatchStatement( 3 );
+      setBatchParameters( ps, new ArrayList<String>( chunk.keySet() ), 1 );
+      Map<String,String> folded = new HashMap<String,String>();
+      ResultSet rs = ps.executeQuery();
+      while ( rs.next() ) {
+          String stored = rs.getString(2);
+          String lfn = chunk.get( stored );
+          if ( lfn != null ) result.put( lfn, rs.getString(1) );
+          folded.put( fold(stored), rs.getString(1) );
+      }
+      rs.close();
+
+      if ( result.size() < chunk.size() ) {
+          for ( Map.Entry<String,String> e : chunk.entrySet() ) {
+              String id = folded.get( fold(e.getKey()) );
+              if ( id != null && !result.containsKey(e.getValue()) ) result.put( e.getValue(), id );
+          }
+      }
+      return result;
+  }
+
   /**
    * Retrieves the entry for a given filename and site handle from the
    * replica catalog.
@@ -644,34 +977,16 @@ public class JDBCRC implements ReplicaCatalog
    */
   public Map lookup( Set lfns )
   {
-      Map result = new HashMap();
-      String query = mCStatements[1];
-
       // sanity check
-      if ( lfns == null || lfns.size() == 0 ) return result;
+      if ( lfns == null || lfns.size() == 0 ) return new HashMap();
       if ( mConnection == null ) throw new RuntimeException( c_error );
 
       try {
-          ResultSet rs = null;
-          PreparedStatement ps = getStatement(1);
-          for ( Iterator i = lfns.iterator(); i.hasNext(); ) {
-              List value = new ArrayList();
-              String lfn = (String) i.next();
-              ps.setString( 1, quote(lfn) );
-              rs = ps.executeQuery();
-              while ( rs.next() ) {
-                  value.add( new ReplicaCatalogEntry( rs.getString("pfn"),
-                          attributes(rs.getString("lfn_id"),
-                          rs.getString("site")) ) );
-              }
-              rs.close();
-              result.put( lfn, value );
-          }
+          return bulkLookup( lfns, null, true );
       } catch ( SQLException e ) {
-          throw new RuntimeException( "Unable to query database with " +
-				  query + ": " + e.getMessage() );
+          throw new RuntimeException( "Unable to query database in bulk for " +
+				  lfns.size() + " lfns: " + e.getMessage() );
       }
-      return result;
   }
 
   /**
@@ -685,32 +1000,16 @@ public class JDBCRC implements ReplicaCatalog
    */
   public Map lookupNoAttributes( Set lfns )
   {
-      Map result = new HashMap();
-      String query = mCStatements[1];
-
       // sanity check
-      if ( lfns == null || lfns.size() == 0 ) return result;
+      if ( lfns == null || lfns.size() == 0 ) return new HashMap();
       if ( mConnection == null ) throw new RuntimeException( c_error );
 
       try {
-          ResultSet rs = null;
-          PreparedStatement ps = getStatement(1);
-          for ( Iterator i = lfns.iterator(); i.hasNext(); ) {
-              Set value = new TreeSet();
-              String lfn = (String) i.next();
-              ps.setString( 1, quote(lfn) );
-              rs = ps.executeQuery();
-              while ( rs.next() ) {
-                  value.add(rs.getString("pfn"));
-              }
-              rs.close();
-              result.put( lfn, value );
-          }
+          return bulkLookup( lfns, null, false );
       } catch ( SQLException e ) {
-          throw new RuntimeException( "Unable to query database with " +
-				  query + ": " + e.getMessage() );
+          throw new RuntimeException( "Unable to query database in bulk for " +
+				  lfns.size() + " lfns: " + e.getMessage() );
       }
-      return result;
   }
 
   /**
@@ -726,37 +1025,16 @@ public class JDBCRC implements ReplicaCatalog
    */
   public Map lookup( Set lfns, String handle )
   {
-      Map result = new HashMap();
-      int which = ( handle == null ? 1 : 2 );
-      String query = mCStatements[which];
-
       // sanity check
-      if ( lfns == null || lfns.size() == 0 ) return result;
+      if ( lfns == null || lfns.size() == 0 ) return new HashMap();
       if ( mConnection == null ) throw new RuntimeException( c_error );
 
       try {
-          ResultSet rs = null;
-          PreparedStatement ps = getStatement(which);
-          if ( handle != null ) ps.setString( 2, quote(handle) );
-
-          for ( Iterator i = lfns.iterator(); i.hasNext(); ) {
-              List value = new ArrayList();
-              String lfn = (String) i.next();
-              ps.setString( 1, quote(lfn) );
-              rs = ps.executeQuery();
-              while ( rs.next() ) {
-                  value.add( new ReplicaCatalogEntry( rs.getString("pfn"),
-                          attributes(rs.getString("lfn_id"),
-                          rs.getString("site")) ) );
-              }
-              rs.close();
-              result.put( lfn, value );
-          }
+          return bulkLookup( lfns, handle, true );
       } catch ( SQLException e ) {
-          throw new RuntimeException( "Unable to query database with " +
-				  query + ": " + e.getMessage() );
+          throw new RuntimeException( "Unable to query database in bulk for " +
+				  lfns.size() + " lfns: " + e.getMessage() );
       }
-      return result;
   }
 
   /**
@@ -771,35 +1049,16 @@ public class JDBCRC implements ReplicaCatalog
    */
   public Map lookupNoAttributes( Set lfns, String handle )
   {
-      Map result = new HashMap();
-      int which = ( handle == null ? 1 : 2 );
-      String query = mCStatements[which];
-
       // sanity check
-      if ( lfns == null || lfns.size() == 0 ) return result;
+      if ( lfns == null || lfns.size() == 0 ) return new HashMap();
       if ( mConnection == null ) throw new RuntimeException( c_error );
 
       try {
-          ResultSet rs = null;
-          PreparedStatement ps = getStatement(which);
-          if ( handle != null ) ps.setString( 2, quote(handle) );
-
-          for ( Iterator i = lfns.iterator(); i.hasNext(); ) {
-              Set value = new TreeSet();
-              String lfn = (String) i.next();
-              ps.setString( 1, quote(lfn) );
-              rs = ps.executeQuery();
-              while ( rs.next() ) {
-                  value.add( rs.getString("pfn") );
-              }
-              rs.close();
-              result.put( lfn, value );
-          }
+          return bulkLookup( lfns, handle, false );
       } catch ( SQLException e ) {
-          throw new RuntimeException( "Unable to query database with " +
-				  query + ": " + e.getMessage() );
+          throw new RuntimeException( "Unable to query database in bulk for " +
+				  lfns.size() + " lfns: " + e.getMessage() );
       }
-      return result;
   }
 
   /**
@@ -1154,23 +1413,216 @@ public class JDBCRC implements ReplicaCatalog
     if ( x == null || x.size() == 0 ) return result;
     if ( mConnection == null ) throw new RuntimeException( c_error );
 
-    // FIXME: Create a true bulk mode. This is inefficient, but will
-    // get the job done (for now).
-    Set lfns = x.keySet();
-    for ( Iterator i=lfns.iterator(); i.hasNext(); ) {
-        String lfn = (String) i.next();
-        List value = (List) x.get(lfn);
-        if ( value != null && value.size() > 0 ) {
-            for ( Iterator j=value.iterator(); j.hasNext(); ) {
-                result += insert( lfn, (ReplicaCatalogEntry) j.next() );
+    if ( mBatchSize <= 1 ) {
+        Set lfns = x.keySet();
+        for ( Iterator i=lfns.iterator(); i.hasNext(); ) {
+            String lfn = (String) i.next();
+            List value = (List) x.get(lfn);
+            if ( value != null && value.size() > 0 ) {
+                for ( Iterator j=value.iterator(); j.hasNext(); ) {
+                    result += insert( lfn, (ReplicaCatalogEntry) j.next() );
+                }
             }
         }
+        return result;
     }
-    
+
+    for ( Map<String,String> chunk : chunk( x.keySet() ) ) {
+        result += insertChunk( chunk, x );
+    }
+
     // done
     return result;
   }
 
+  /**
+   * Inserts the mappings for a chunk of LFNs. LFNs that are not yet in the
+   * catalog are inserted with batched statements in a single transaction.
+   * LFNs that already exist, or whose entries would clash with each other,
+   * are inserted one entry at a time to retain the replace semantics of
+   * {@link #insert( String, ReplicaCatalogEntry )}.
+   *
+   * @param chunk  maps the quoted LFN to the LFN as passed.
+   * @param x      is a map from logical filename string to list of replica
+   *               catalog entries.
+   *
+   * @return the number of insertions.
+   */
+  private int insertChunk( Map<String,String> chunk, Map x )
+  {
+    int result = 0;
+    String query = "[no query]";
+    Map<String,List> batch = new LinkedHashMap<String,List>();
+
+    try {
+        Map<String,String> existing = lfnIDs( chunk );
+        for ( Iterator<Map.Entry<String,String>> i = chunk.entrySet().iterator(); i.hasNext(); ) {
+            String lfn = i.next().getValue();
+            List value = (List) x.get(lfn);
+            if ( value == null || value.size() == 0 ) {
+                i.remove();
+                continue;
+            }
+            if ( existing.containsKey(lfn) || !isBatchable( value ) ) {
+                i.remove();
+                for ( Iterator j=value.iterator(); j.hasNext(); ) {
+                    result += insert( lfn, (ReplicaCatalogEntry) j.next() );
+                }
+            } else {
+                batch.put( lfn, value );
+            }
+        }
+    } catch ( SQLException e ) {
+        throw new RuntimeException( "Unable to query database in bulk for " +
+                                    chunk.size() + " lfns: " + e.getMessage() );
+    }
+    if ( batch.isEmpty() ) return result;
+
+    boolean autoCommitWasOn = false;
+    int state = 0;
+    try {
+        if ( (autoCommitWasOn = mConnection.getAutoCommit()) )
+            mConnection.setAutoCommit(false);
+        state++; // state == 1
+
+        // batches get their own statements, as some drivers do not reset
+        // the singletons properly after a batch execution
+        query = mCStatements[12];
+        PreparedStatement ps = mConnection.prepareStatement( query );
+        for ( String lfn : batch.keySet() ) {
+            ps.setString( 1, quote(lfn) );
+            ps.addBatch();
+        }
+        result += count( ps.executeBatch() );
+        ps.close();
+        state++; // state == 2
+
+        // the generated keys are not available for batches with all drivers
+        Map<String,String> ids = lfnIDs( chunk );
+
+        query = mCStatements[16];
+        ps = mConnection.prepareStatement( query );
+        for ( Map.Entry<String,List> entry : batch.entrySet() ) {
+            String id = ids.get( entry.getKey() );
+            for ( Iterator j = entry.getValue().iterator(); j.hasNext(); ) {
+                ReplicaCatalogEntry tuple = (ReplicaCatalogEntry) j.next();
+                String resourceHandle = tuple.getResourceHandle();
+                ps.setString(1, id);
+                ps.setString(2, quote(tuple.getPFN()));
+                if (resourceHandle == null) {
+                    ps.setNull(3, Types.VARCHAR);
+                } else {
+                    ps.setString(3, resourceHandle);
+                }
+                ps.addBatch();
+            }
+        }
+        ps.executeBatch();
+        ps.close();
+        state++; // state == 3
+
+        query = mCStatements[17];
+        ps = mConnection.prepareStatement( query );
+        boolean empty = true;
+        for ( Map.Entry<String,List> entry : batch.entrySet() ) {
+            long id = Long.parseLong( ids.get( entry.getKey() ) );
+            for ( Iterator j = entry.getValue().iterator(); j.hasNext(); ) {
+                ReplicaCatalogEntry tuple = (ReplicaCatalogEntry) j.next();
+                for ( Iterator i=tuple.getAttributeIterator(); i.hasNext(); ) {
+                    String name = (String) i.next();
+                    if (name.equals(ReplicaCatalogEntry.RESOURCE_HANDLE)) {
+                        continue;
+                    }
+                    Object value = tuple.getAttribute(name);
+                    ps.setLong( 1, id );
+                    ps.setString( 2, name );
+                    if ( value == null ) {
+                        ps.setNull( 3, Types.VARCHAR );
+                    } else {
+                        ps.setString( 3, value instanceof String ? (String) value : value.toString() );
+                    }
+                    ps.addBatch();
+                    empty = false;
+                }
+            }
+        }
+        if ( !empty ) ps.executeBatch();
+        ps.close();
+        state++; // state == 4
+
+        mConnection.commit();
+        state++; // state == 5
+
+    } catch ( SQLException e ) {
+        try {
+            if ( state > 0 && state < 5 ) {
+                mConnection.rollback();
+            }
+        } catch ( SQLException e2 ) {
+            // ignore rollback problems
+        }
+        throw new RuntimeException( "Unable to tell database " +
+              query + " (state=" + state + "): " +
+              e.getMessage() );
+
+    } finally {
+        // restore original auto-commit state
+        try {
+            if ( autoCommitWasOn ) mConnection.setAutoCommit(true);
+        } catch ( SQLException e ) {
+            // ignore
+        }
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether the entries for a new LFN can be inserted in a batch.
+   * The PFN and site combinations must be unique, and an attribute may
+   * only appear once across the entries, as the attributes are stored per
+   * LFN.
+   *
+   * @param entries  the replica catalog entries for the LFN.
+   *
+   * @return true if the entries can be batched.
+   */
+  private boolean isBatchable( List entries )
+  {
+      Set<String> replicas = new HashSet<String>();
+      Set<String> keys = new HashSet<String>();
+      for ( Iterator j = entries.iterator(); j.hasNext(); ) {
+          ReplicaCatalogEntry tuple = (ReplicaCatalogEntry) j.next();
+          if ( tuple == null || tuple.getPFN() == null ||
+               !replicas.add( tuple.getPFN() + "\0" + tuple.getResourceHandle() ) ) {
+              return false;
+          }
+          for ( Iterator i=tuple.getAttributeIterator(); i.hasNext(); ) {
+              String name = (String) i.next();
+              if ( !name.equals(ReplicaCatalogEntry.RESOURCE_HANDLE) && !keys.add( name ) ) {
+                  return false;
+              }
+          }
+      }
+      return true;
+  }
+
+  /**
+   * Sums up the update counts returned by a batch execution. Drivers that
+   * do not report the number of rows are counted as one row per statement.
+   *
+   * @param counts  the update counts.
+   *
+   * @return the number of rows affected.
+   */
+  private int count( int[] counts )
+  {
+      int result = 0;
+      for ( int c : counts ) {
+          result += ( c == Statement.SUCCESS_NO_INFO ) ? 1 : Math.max( c, 0 );
+      }
+      return result;
+  }
+
   /**
    * Deletes multiple mappings into the replica catalog. The input is a
    * map indexed by the LFN. The value for each LFN key is a collection
@@ -1419,15 +1871,43 @@ public class JDBCRC implements ReplicaCatalog
     if ( lfns == null || lfns.size() == 0 ) return result;
     if ( mConnection == null ) throw new RuntimeException( c_error );
 
+    boolean autoCommitWasOn = false;
+    boolean pending = false;
     try {
-      PreparedStatement ps = getStatement(5);
+      if ( (autoCommitWasOn = mConnection.getAutoCommit()) )
+        mConnection.setAutoCommit(false);
+      pending = true;
+
+      PreparedStatement ps = mConnection.prepareStatement( query );
+      int size = 0;
       for ( Iterator i = lfns.iterator(); i.hasNext(); ) {
         ps.setString( 1, quote((String) i.next()) );
-        result += ps.executeUpdate();
+        ps.addBatch();
+        if ( ++size == mBatchSize ) {
+          result += count( ps.executeBatch() );
+          size = 0;
+        }
       }
+      if ( size > 0 ) result += count( ps.executeBatch() );
+      ps.close();
+
+      mConnection.commit();
+      pending = false;
     } catch ( SQLException e ) {
+      try {
+        if ( pending ) mConnection.rollback();
+      } catch ( SQLException e2 ) {
+        // ignore rollback problems
+      }
       throw new RuntimeException( "Unable to tell database " +
 				  query + ": " + e.getMessage() );
+    } finally {
+      // restore original auto-commit state
+      try {
+        if ( autoCommitWasOn ) mConnection.setAutoCommit(true);
+      } catch ( SQLException e ) {
+        // ignore
+      }
     }
 
     // done
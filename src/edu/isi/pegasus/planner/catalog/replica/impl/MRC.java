@@ -23,8 +23,10 @@ import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
 import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
 
+import edu.isi.pegasus.common.util.Boolean;
 import edu.isi.pegasus.common.util.CommonProperties;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Iterator;
@@ -32,8 +34,20 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Collection;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
 
 
 /**
@@ -76,6 +90,20 @@ import java.util.Properties;
  * In the above example, lrc1, lrc2 are any valid identifier names and url is
  * the property key that needed to be specified.
  *
+ * <p>
+ * The catalogs are prioritized in the lexicographic order of their names,
+ * and the results of the lookups are merged in that order. The name
+ * <code>parallel</code> is reserved for the following properties, that
+ * control how the bulk lookups are fanned out to the catalogs.
+ * <pre>
+ * pegasus.catalog.replica.mrc.parallel          query the catalogs concurrently.
+ * pegasus.catalog.replica.mrc.parallel.timeout  the seconds to wait for each
+ *                                               catalog, 0 to wait forever.
+ * pegasus.catalog.replica.mrc.parallel.first    only return the replicas of an
+ *                                               LFN from the first catalog
+ *                                               that has replicas for it.
+ * </pre>
+ *
  * @author Karan Vahi
  * @version $Revision$
  */
@@ -94,11 +122,71 @@ public class MRC
      */
     public static final String TYPE_KEY = "type";
 
+    /**
+     * The reserved name for the properties that control the fan out of the
+     * lookups to the catalogs.
+     */
+    public static final String PARALLEL_KEY = "parallel";
+
+    /**
+     * The key for the seconds to wait for a catalog in the parallel mode.
+     */
+    public static final String PARALLEL_TIMEOUT_KEY = "timeout";
+
+    /**
+     * The key that designates that only the replicas from the first catalog
+     * that resolves an LFN are needed.
+     */
+    public static final String PARALLEL_FIRST_KEY = "first";
+
+    /**
+     * The seconds close waits for the lookups of the catalogs that are still
+     * running, before closing the catalogs.
+     */
+    public static final long CLOSE_TIMEOUT = 60;
+
     /**
      * The list of replica catalogs that need to be queried for.
      */
     protected List mRCList;
 
+    /**
+     * The names of the replica catalogs, in the same order as mRCList.
+     */
+    protected List<String> mRCNames;
+
+    /**
+     * Whether the bulk lookups are sent to the catalogs concurrently.
+     */
+    protected boolean mParallel;
+
+    /**
+     * The nanoseconds to wait for a catalog in the parallel mode, 0 to wait
+     * till it responds.
+     */
+    protected long mTimeout;
+
+    /**
+     * Whether the replicas of an LFN are only looked up in the catalogs
+     * till one of them resolves it.
+     */
+    protected boolean mFirstOnly;
+
+    /**
+     * The executors the lookups are submitted to in the parallel mode, one
+     * single threaded executor per catalog in the same order as mRCList, so
+     * that a catalog is never queried by two threads at the same time.
+     * Created on the first lookup.
+     */
+    private List<ExecutorService> mExecutors;
+
+    /**
+     * Whether a lookup is running on a catalog, in the same order as
+     * mRCList. A lookup that timed out may still be running, as a catalog
+     * blocked on I/O does not respond to the cancellation.
+     */
+    private List<AtomicBoolean> mBusy;
+
     /**
      * The handle to the logging manager.
      */
@@ -109,6 +197,10 @@ public class MRC
      */
     public MRC() {
         mRCList = new LinkedList();
+        mRCNames = new ArrayList<String>();
+        mParallel = false;
+        mTimeout = 0;
+        mFirstOnly = false;
         mLogger =  LogManagerFactory.loadSingletonInstance();
     }
 
@@ -133,8 +225,27 @@ public class MRC
      *
      */
     public void close() {
-        for( Iterator it = this.rcIterator(); it.hasNext() ; ){
+        List<ExecutorService> executors;
+        synchronized( this ){
+            executors = mExecutors;
+            mExecutors = null;
+            mBusy = null;
+        }
+        if( executors != null ){
+            for( ExecutorService executor : executors ){
+                executor.shutdownNow();
+            }
+        }
+        int i = 0;
+        for( Iterator it = this.rcIterator(); it.hasNext() ; i++ ){
             ReplicaCatalog catalog = ( ReplicaCatalog )it.next();
+            //wait for a lookup that is still running on the catalog
+            if( executors != null && !this.awaitTermination( executors.get( i ) ) ){
+                mLogger.log( "MRC not closing replica catalog " + mRCNames.get( i ) +
+                             " as a lookup is still running on it",
+                             LogManager.WARNING_MESSAGE_LEVEL );
+                continue;
+            }
             catalog.close();
         }
     }
@@ -154,7 +265,8 @@ public class MRC
         mLogger.log( "MRC Properties are " + subset , LogManager.DEBUG_MESSAGE_LEVEL );
 
         //container for properties for each of the different catalogs
-        Map propertiesMap = new HashMap();
+        //sorted by name, as that is the order the catalogs are queried in
+        Map propertiesMap = new TreeMap();
 
         //put each of the keys in the correct bin
         for( Iterator it = subset.entrySet().iterator(); it.hasNext(); ){
@@ -177,6 +289,23 @@ public class MRC
             p.setProperty( key, value );
         }
 
+        //the reserved name holds the settings for the fan out
+        Properties parallel = ( Properties )propertiesMap.remove( PARALLEL_KEY );
+        if( parallel != null ){
+            mParallel = Boolean.parse( parallel.getProperty( TYPE_KEY ), false );
+            mFirstOnly = Boolean.parse( parallel.getProperty( PARALLEL_FIRST_KEY ), false );
+            String timeout = parallel.getProperty( PARALLEL_TIMEOUT_KEY );
+            if( timeout != null ){
+                try{
+                    mTimeout = TimeUnit.MILLISECONDS.toNanos( (long)( Double.parseDouble( timeout ) * 1000 ) );
+                }
+                catch( NumberFormatException nfe ){
+                    mLogger.log( "Ignoring invalid MRC timeout " + timeout,
+                                 LogManager.WARNING_MESSAGE_LEVEL );
+                }
+            }
+        }
+
         //now that we have all the properties sorted accd to individual catalogs
         //try connecting to them one by one
         boolean result = true;
@@ -238,10 +367,22 @@ public class MRC
             return false;
         }
 
-        mRCList.add( catalog );
+        this.add( name, catalog );
         return true;
     }
 
+    /**
+     * Adds a connected replica catalog to the catalogs queried, with a lower
+     * priority than the catalogs already added.
+     *
+     * @param name     the name of the catalog.
+     * @param catalog  the connected catalog.
+     */
+    protected void add( String name, ReplicaCatalog catalog ){
+        mRCList.add( catalog );
+        mRCNames.add( name );
+    }
+
 
     /**
      * Returns an iterator to iterate through the list of ReplicaCatalogs that
@@ -546,29 +687,8 @@ public class MRC
      * @return a map indexed by the LFN. Each value is a collection of
      *   replica catalog entries (all attributes).
      */
-    public Map lookup( Set lfns, String handle ) {
-        Map result = new HashMap();
-
-        for( Iterator it = this.rcIterator(); it.hasNext() ; ){
-            ReplicaCatalog catalog = (ReplicaCatalog) it.next();
-            Map m = catalog.lookup(lfns, handle);
-
-            //merge all the entries in the map into the result
-            for (Iterator mit = m.entrySet().iterator(); mit.hasNext(); ) {
-                Map.Entry entry = (Map.Entry) mit.next();
-                //merge the entries into the main result
-                String lfn = (String) entry.getKey(); //the lfn
-                if ( result.containsKey( lfn ) ) {
-                    //right now no merging of RCE being done on basis
-                    //on them having same pfns. duplicate might occur.
-                    ( (Set) result.get( lfn )).addAll( (Set) entry.getValue());
-                }
-                else {
-                    result.put( lfn, entry.getValue() );
-                }
-            }
-        }
-        return result;
+    public Map lookup( Set lfns, final String handle ) {
+        return this.merge( this.fanOut( lfns, ( catalog, query ) -> catalog.lookup( query, handle ) ) );
     }
 
     /**
@@ -622,30 +742,7 @@ public class MRC
      *   replica catalog entries for the LFN.
      */
     public Map lookup( Set lfns ) {
-
-        Map result = new HashMap();
-
-        for( Iterator it = this.rcIterator(); it.hasNext() ; ){
-            ReplicaCatalog catalog = (ReplicaCatalog) it.next();
-            Map m = catalog.lookup( lfns );
-
-            //merge all the entries in the map into the result
-            for (Iterator mit = m.entrySet().iterator(); mit.hasNext(); ) {
-                Map.Entry entry = (Map.Entry) mit.next();
-                //merge the entries into the main result
-                String lfn = (String) entry.getKey(); //the lfn
-                if ( result.containsKey( lfn ) ) {
-                    //right now no merging of RCE being done on basis
-                    //on them having same pfns. duplicate might occur.
-                    ( (Collection)result.get( lfn )).addAll( (Collection) entry.getValue());
-                }
-                else {
-                    result.put( lfn, entry.getValue() );
-                }
-            }
-        }
-        return result;
-
+        return this.merge( this.fanOut( lfns, ( catalog, query ) -> catalog.lookup( query ) ) );
     }
 
     /**
@@ -671,13 +768,7 @@ public class MRC
      * @return a map indexed by the LFN. Each value is a set of PFN strings.
      */
     public Map lookupNoAttributes( Set lfns ) {
-        Map result = new HashMap();
-        for( Iterator it = lfns.iterator(); it.hasNext() ; ){
-            String lfn = ( String )it.next();
-            result.put( lfn, this.lookupNoAttributes( lfn ) );
-        }
-        return result;
-
+        return this.merge( this.fanOut( lfns, ( catalog, query ) -> catalog.lookupNoAttributes( query ) ) );
     }
 
     /**
@@ -689,33 +780,232 @@ public class MRC
      * @return a map indexed by the LFN. Each value is a set of physical
      *   filenames.
      */
-    public Map lookupNoAttributes( Set lfns, String handle ) {
-        Map result = new HashMap();
-
-        for( Iterator it = this.rcIterator(); it.hasNext() ; ){
-            ReplicaCatalog catalog = (ReplicaCatalog) it.next();
-            Map m = this.lookupNoAttributes( lfns, handle );
+    public Map lookupNoAttributes( Set lfns, final String handle ) {
+        return this.merge( this.fanOut( lfns, ( catalog, query ) -> catalog.lookupNoAttributes( query, handle ) ) );
+    }
 
-            //merge the map into the result
-            for( Iterator mit = m.entrySet().iterator(); mit.hasNext(); ){
-                Map.Entry entry = (Map.Entry)mit.next();
-                //merge the entries into the main result
-                String key   = (String)entry.getKey(); //the lfn
-                if( result.containsKey(key) ){
-                    //merge the results
-                    ( (Set)result.get( key ) ).addAll( ( Set )entry.getValue() );
-                }
-                else{
-                    result.put(key,entry.getValue());
+    /**
+     * Sends a bulk lookup to all the catalogs, concurrently in the parallel
+     * mode. If only the first catalog resolving an LFN is of interest, the
+     * LFNs resolved by a catalog are not looked up in the catalogs after it
+     * in the sequential mode.
+     *
+     * @param lfns    the LFNs to look up.
+     * @param lookup  the lookup to send to a catalog for a set of LFNs.
+     *
+     * @return the results of the catalogs, in the order of their priority.
+     *         The result is null for a catalog that timed out.
+     */
+    protected List<Map> fanOut( Set lfns, BiFunction<ReplicaCatalog,Set,Map> lookup ){
+        List<Map> results = new ArrayList<Map>( mRCList.size() );
+        List<ExecutorService> executors;
+        List<AtomicBoolean> busyFlags;
+        synchronized( this ){
+            executors = this.getExecutors();
+            busyFlags = mBusy;
+        }
+        if( executors == null ){
+            Set query = lfns;
+            for( Iterator it = this.rcIterator(); it.hasNext() && !query.isEmpty(); ){
+                ReplicaCatalog catalog = (ReplicaCatalog) it.next();
+                Map m = lookup.apply( catalog, query );
+                results.add( m );
+                if( mFirstOnly && m != null && it.hasNext() ){
+                    query = new HashSet( query );
+                    for( Iterator mit = m.entrySet().iterator(); mit.hasNext(); ){
+                        Map.Entry entry = (Map.Entry) mit.next();
+                        if( !isEmpty( (Collection) entry.getValue() ) ){
+                            query.remove( entry.getKey() );
+                        }
+                    }
                 }
             }
+            return results;
+        }
 
+        List<Future<Map>> futures = new ArrayList<Future<Map>>( mRCList.size() );
+        int index = 0;
+        for( Iterator it = this.rcIterator(); it.hasNext() ; index++ ){
+            final ReplicaCatalog catalog = (ReplicaCatalog) it.next();
+            final AtomicBoolean busy = busyFlags.get( index );
+            if( !busy.compareAndSet( false, true ) ){
+                //an earlier lookup that timed out is still running
+                futures.add( null );
+                mLogger.log( "MRC ignoring replica catalog " + mRCNames.get( index ) +
+                             " as it is still busy with an earlier lookup",
+                             LogManager.WARNING_MESSAGE_LEVEL );
+                continue;
+            }
+            try{
+                futures.add( executors.get( index ).submit( () -> {
+                    try{
+                        return lookup.apply( catalog, lfns );
+                    }
+                    finally{
+                        busy.set( false );
+                    }
+                } ) );
+            }
+            catch( RejectedExecutionException e ){
+                //the catalog is being closed
+                busy.set( false );
+                this.cancel( futures );
+                throw new RuntimeException( "Unable to query replica catalog " + mRCNames.get( index ), e );
+            }
+        }
 
+        //all the catalogs are queried at the same time, so that they share
+        //the deadline for the timeout
+        long deadline = System.nanoTime() + mTimeout;
+        for( int i = 0; i < futures.size(); i++ ){
+            Future<Map> future = futures.get( i );
+            if( future == null ){
+                results.add( null );
+                continue;
+            }
+            try{
+                results.add( ( mTimeout > 0 ) ?
+                             future.get( Math.max( 0, deadline - System.nanoTime() ), TimeUnit.NANOSECONDS ):
+                             future.get() );
+            }
+            catch( TimeoutException e ){
+                future.cancel( true );
+                results.add( null );
+                mLogger.log( "MRC ignoring replica catalog " + mRCNames.get( i ) +
+                             " as it did not respond within " +
+                             TimeUnit.NANOSECONDS.toMillis( mTimeout ) / 1000.0 + " seconds",
+                             LogManager.WARNING_MESSAGE_LEVEL );
+            }
+            catch( InterruptedException e ){
+                this.cancel( futures );
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while querying replica catalog " + mRCNames.get( i ), e );
+            }
+            catch( ExecutionException e ){
+                this.cancel( futures );
+                Throwable cause = e.getCause();
+                if( cause instanceof RuntimeException ){
+                    throw ( RuntimeException )cause;
+                }
+                throw new RuntimeException( "Unable to query replica catalog " + mRCNames.get( i ), cause );
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Merges the results of the bulk lookups of the catalogs, in the order
+     * of their priority. If only the first catalog resolving an LFN is of
+     * interest, the replicas of an LFN from the catalogs after it are
+     * ignored.
+     *
+     * @param results  the results of the catalogs, in the order of their
+     *                 priority.
+     *
+     * @return a map indexed by the LFN, with the merged collections of
+     *         replicas.
+     */
+    protected Map merge( List<Map> results ){
+        Map result = new HashMap();
+        for( Map m : results ){
+            if( m == null ){
+                continue;
+            }
+            //merge all the entries in the map into the result
+            for (Iterator mit = m.entrySet().iterator(); mit.hasNext(); ) {
+                Map.Entry entry = (Map.Entry) mit.next();
+                String lfn = (String) entry.getKey(); //the lfn
+                Collection existing = (Collection) result.get( lfn );
+                Collection replicas = (Collection) entry.getValue();
+                if ( isEmpty( existing ) ) {
+                    //the first catalog with replicas for the lfn
+                    if( existing == null || !isEmpty( replicas ) ){
+                        result.put( lfn, replicas );
+                    }
+                }
+                else if( !mFirstOnly && !isEmpty( replicas ) ){
+                    //right now no merging of RCE being done on basis
+                    //on them having same pfns. duplicate might occur.
+                    //the collections of the catalogs are not modified
+                    Collection merged = ( existing instanceof Set ) ?
+                                        new LinkedHashSet( existing ):
+                                        new ArrayList( existing );
+                    merged.addAll( replicas );
+                    result.put( lfn, merged );
+                }
+            }
         }
         return result;
+    }
+
+    /**
+     * Returns the executors to send the lookups to, one per catalog, or null
+     * if the lookups are sent to the catalogs one after another.
+     *
+     * @return the executors
+     */
+    private synchronized List<ExecutorService> getExecutors(){
+        if( !mParallel || mRCList.size() < 2 ){
+            return null;
+        }
+        if( mExecutors == null ){
+            mExecutors = new ArrayList<ExecutorService>( mRCList.size() );
+            mBusy = new ArrayList<AtomicBoolean>( mRCList.size() );
+            for( final String name : mRCNames ){
+                mExecutors.add( Executors.newSingleThreadExecutor( new ThreadFactory(){
+                    public Thread newThread( Runnable r ){
+                        Thread t = new Thread( r, "mrc-lookup-" + name );
+                        t.setDaemon( true );
+                        return t;
+                    }
+                }) );
+                mBusy.add( new AtomicBoolean( false ) );
+            }
+        }
+        return mExecutors;
+    }
 
+    /**
+     * Waits for the lookup running on a catalog, if any, to finish after the
+     * executor has been shut down.
+     *
+     * @param executor  the executor of the catalog.
+     *
+     * @return true if no lookup is running on the catalog anymore.
+     */
+    private boolean awaitTermination( ExecutorService executor ){
+        try{
+            return executor.awaitTermination( CLOSE_TIMEOUT, TimeUnit.SECONDS );
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
+    /**
+     * Cancels the lookups that are still running.
+     *
+     * @param futures  the lookups
+     */
+    private void cancel( List<Future<Map>> futures ){
+        for( Future<Map> future : futures ){
+            //no lookup was submitted to a busy catalog
+            if( future != null ){
+                future.cancel( true );
+            }
+        }
+    }
 
+    /**
+     * Returns whether a collection of replicas is null or empty.
+     *
+     * @param replicas  the replicas
+     *
+     * @return boolean
+     */
+    private static boolean isEmpty( Collection replicas ){
+        return replicas == null || replicas.isEmpty();
     }
 
     /**
@@ -36,7 +36,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 import edu.isi.pegasus.common.util.Boolean;
@@ -106,6 +111,24 @@ public class Regex implements ReplicaCatalog {
 
     protected Map<String, Pattern> m_lfn_pattern = null;
 
+    /**
+     * Index over the regex LFNs, to avoid matching every LFN against every
+     * pattern.
+     */
+    private RegexIndex m_index = null;
+
+    /**
+     * The minimum number of LFNs in a bulk lookup, to spread the lookup
+     * over multiple threads.
+     */
+    public static final int PARALLEL_LOOKUP_THRESHOLD = 1024;
+
+    /**
+     * The pool the slices of large bulk lookups are looked up on, created on
+     * the first such lookup and shut down when the catalog is closed.
+     */
+    private ExecutorService m_executor = null;
+
     /**
      * A boolean indicating whether the catalog is read only or not.
      */
@@ -128,6 +151,7 @@ public class Regex implements ReplicaCatalog {
         m_lfn = null;
         m_lfn_regex = null;
         m_lfn_pattern = null;
+        m_index = new RegexIndex();
         m_filename = null;
         m_readonly = false;
         mVariableExpander = new VariableExpander();
@@ -329,6 +353,7 @@ public class Regex implements ReplicaCatalog {
         m_lfn = new LinkedHashMap<String, Collection<ReplicaCatalogEntry>>();
         m_lfn_regex = new LinkedHashMap<String, Collection<ReplicaCatalogEntry>>();
         m_lfn_pattern = new LinkedHashMap<String, Pattern>();
+        m_index.clear();
         try {
             File f = new File(filename);
             if (f.exists()) {
@@ -428,6 +453,12 @@ public class Regex implements ReplicaCatalog {
      * quote-escaped.
      */
     public void close() {
+        synchronized (this) {
+            if (m_executor != null) {
+                m_executor.shutdownNow();
+                m_executor = null;
+            }
+        }
         String newline = System.getProperty("line.separator", "\r\n");
         // sanity check
         if (m_lfn == null && m_lfn_regex == null)
@@ -440,6 +471,7 @@ public class Regex implements ReplicaCatalog {
             if (m_lfn_regex != null) {
                 m_lfn_regex.clear();
                 m_lfn_pattern.clear();
+                m_index.clear();
             }
 
             m_lfn_regex = null;
@@ -469,6 +501,7 @@ public class Regex implements ReplicaCatalog {
             if (m_lfn_regex != null) {
                 m_lfn_regex.clear();
                 m_lfn_pattern.clear();
+                m_index.clear();
             }
             m_lfn_regex = null;
             m_lfn_pattern = null;
@@ -552,32 +585,15 @@ public class Regex implements ReplicaCatalog {
         }
 
         // Lookup regex LFN's
-        Pattern p = null;
-        Matcher m = null;
-        String pool = null;
-        ReplicaCatalogEntry rce = null;
-        for (String l : m_lfn_regex.keySet()) {
-            p = m_lfn_pattern.get(l);
-            m = p.matcher(lfn);
-            if (m.matches()) {
-                Collection<ReplicaCatalogEntry> entries = m_lfn_regex.get(l);
-                for (ReplicaCatalogEntry entry : entries) {
-                    pool = entry.getResourceHandle();
-                    if (pool == null && handle == null || pool != null && handle != null && pool.equals(handle)) {
-                        String tmpPFN = entry.getPFN();
-                        for (int k = 0, j = m.groupCount(); k <= j; ++k) {
-                            // tmpPFN = tmpPFN.replaceAll ("\\$" + k, m.group (k));
-                            tmpPFN = tmpPFN.replaceAll("\\[" + k + "\\]",
-                                    m.group(k));
-                        }
-                        if (tmpPFN.indexOf('[') >= 0) {
-                            // PFN still has variables left.
-                        }
-                        // Add new RCE
-                        rce = cloneRCE(entry);
-                        rce.setPFN(tmpPFN);
-                        c.add(rce);
-                    }
+        for (RegexIndex.Match m : index().all(lfn)) {
+            Collection<ReplicaCatalogEntry> entries = m_lfn_regex.get(m.getRegex());
+            for (ReplicaCatalogEntry entry : entries) {
+                String pool = entry.getResourceHandle();
+                if (pool == null && handle == null || pool != null && handle != null && pool.equals(handle)) {
+                    // Add new RCE
+                    ReplicaCatalogEntry rce = cloneRCE(entry);
+                    rce.setPFN(m.substitute(entry.getPFN()));
+                    c.add(rce);
                 }
             }
         }
@@ -600,37 +616,35 @@ public class Regex implements ReplicaCatalog {
         tmp = m_lfn.get(lfn);
         if (tmp != null)
             c.addAll(tmp);
-        // Lookup regex LFN's
-        ReplicaCatalogEntry rce = null;
-        Pattern p = null;
-        Matcher m = null;
-        for (String l : m_lfn_regex.keySet()) {
-            p = m_lfn_pattern.get(l);
-            m = p.matcher(lfn);
-            if (m.matches()) {
-                Collection<ReplicaCatalogEntry> entries = m_lfn_regex.get(l);
-                Collection<ReplicaCatalogEntry> entriesResult = new ArrayList<ReplicaCatalogEntry>();
-                for (ReplicaCatalogEntry entry : entries) {
-                    String tmpPFN = entry.getPFN();
-                    for (int k = 0, j = m.groupCount(); k <= j; ++k) {
-                        tmpPFN = tmpPFN
-                                .replaceAll("\\[" + k + "\\]", m.group(k));
-                    }
-                    if (tmpPFN.indexOf('[') >= 0) {
-                        // PFN still has variables left.
-                    }
-                    // Add new RCE
-                    rce = cloneRCE(entry);
-                    rce.setPFN(tmpPFN);
-                    entriesResult.add(rce);
-                }
-                c.addAll(entriesResult);
-                break;
+        // Lookup regex LFN's, only the first matching pattern counts
+        RegexIndex.Match m = index().first(lfn);
+        if (m != null) {
+            for (ReplicaCatalogEntry entry : m_lfn_regex.get(m.getRegex())) {
+                // Add new RCE
+                ReplicaCatalogEntry rce = cloneRCE(entry);
+                rce.setPFN(m.substitute(entry.getPFN()));
+                c.add(rce);
             }
         }
         return c;
     }
 
+    /**
+     * Returns the index over the regex LFNs. The index is rebuilt if the
+     * patterns were modified without going through insert.
+     *
+     * @return the index
+     */
+    private RegexIndex index() {
+        if (m_index.size() != m_lfn_pattern.size()) {
+            m_index.clear();
+            for (Map.Entry<String, Pattern> e : m_lfn_pattern.entrySet()) {
+                m_index.add(e.getKey(), e.getValue());
+            }
+        }
+        return m_index;
+    }
+
     private ReplicaCatalogEntry cloneRCE( ReplicaCatalogEntry e ) {
         
         return (ReplicaCatalogEntry) e.clone();
@@ -670,16 +684,78 @@ public class Regex implements ReplicaCatalog {
         Map<String, Collection<ReplicaCatalogEntry>> result = new HashMap<String, Collection<ReplicaCatalogEntry>>();
         if (lfns == null || lfns.size() == 0)
             return result;
-        Collection<ReplicaCatalogEntry> c = null;
-        for (Iterator<String> i = lfns.iterator(); i.hasNext(); ) {
-            String lfn = i.next();
-            c = lookup(lfn);
-            result.put(lfn, new ArrayList<ReplicaCatalogEntry>(c));
+        return bulkLookup(lfns, lfn -> lookup(lfn));
+    }
+
+    /**
+     * Looks up each LFN in a set with the given function. Large sets are
+     * split into slices, that are looked up in parallel.
+     *
+     * @param lfns   is a set of logical filename strings to look up.
+     * @param lookup the lookup function for a single LFN.
+     * @return a map indexed by the LFN, with the results of the function.
+     */
+    private <V> Map<String, V> bulkLookup( Set<String> lfns, Function<String, V> lookup ) {
+        Map<String, V> result = new HashMap<String, V>();
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(),
+                lfns.size() / (PARALLEL_LOOKUP_THRESHOLD / 2));
+        if (lfns.size() < PARALLEL_LOOKUP_THRESHOLD || threads < 2) {
+            for (String lfn : lfns) {
+                result.put(lfn, lookup.apply(lfn));
+            }
+            return result;
+        }
+
+        // bring the index up to date before the threads share it
+        index();
+        final String[] all = lfns.toArray(new String[lfns.size()]);
+        final List<Callable<Object[]>> slices = new ArrayList<Callable<Object[]>>();
+        for (int t = 0; t < threads; ++t) {
+            final int start = (int) ((long) all.length * t / threads);
+            final int end = (int) ((long) all.length * (t + 1) / threads);
+            slices.add(() -> {
+                Object[] values = new Object[end - start];
+                for (int i = start; i < end; ++i) {
+                    values[i - start] = lookup.apply(all[i]);
+                }
+                return values;
+            });
+        }
+
+        try {
+            int t = 0;
+            for (Future<Object[]> slice : executor().invokeAll(slices)) {
+                int start = (int) ((long) all.length * t++ / threads);
+                Object[] values = slice.get();
+                for (int i = 0; i < values.length; ++i) {
+                    result.put(all[start + i], (V) values[i]);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while looking up " + all.length + " lfns", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to look up " + all.length + " lfns", e.getCause());
         }
-        // done
         return result;
     }
 
+    /**
+     * Returns the pool for the bulk lookups, with a thread per processor.
+     *
+     * @return the executor
+     */
+    private synchronized ExecutorService executor() {
+        if (m_executor == null) {
+            m_executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "regex-rc-lookup");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return m_executor;
+    }
+
     /**
      * Retrieves multiple entries for a given logical filename, up to the
      * complete catalog. Retrieving full catalogs should be harmful, but may be
@@ -723,66 +799,50 @@ public class Regex implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Map lookup( Set lfns, String handle ) {
-        Collection<ReplicaCatalogEntry> c = null;
-        Pattern p = null;
-        Matcher m = null;
-        String lfn = null;
-        String pool = null;
         Map<String, Collection<ReplicaCatalogEntry>> result = new HashMap<String, Collection<ReplicaCatalogEntry>>();
-        ReplicaCatalogEntry rce = null;
-        for (Iterator<String> i = lfns.iterator(); i.hasNext(); ) {
-            lfn = i.next(); // f.a - String file name
-            List<ReplicaCatalogEntry> value = new ArrayList<ReplicaCatalogEntry>();
-            // Lookup regular LFN's
-            c = m_lfn.get(lfn);
-            if (c != null) {
-                for (Iterator j = c.iterator(); j.hasNext(); ) {
-                    rce = (ReplicaCatalogEntry) j.next();
-                    pool = rce.getResourceHandle();
-                    if (pool == null && handle == null || pool != null
-                            && handle != null && pool.equals(handle))
-                        value.add(rce);
-                }
+        if (lfns == null || lfns.size() == 0)
+            return result;
+        return bulkLookup(lfns, lfn -> lookupFirstWithHandle(lfn, handle));
+    }
+
+    /**
+     * Retrieves the entries for an LFN and a resource handle. Unlike
+     * {@link #lookupWithHandle(String, String)}, only the first matching
+     * regex LFN is considered.
+     *
+     * @param lfn    is the logical filename to obtain information for.
+     * @param handle is the resource handle, restricting the LFNs.
+     * @return a list of replica catalog entries.
+     */
+    private List<ReplicaCatalogEntry> lookupFirstWithHandle( String lfn, String handle ) {
+        List<ReplicaCatalogEntry> value = new ArrayList<ReplicaCatalogEntry>();
+        // Lookup regular LFN's
+        Collection<ReplicaCatalogEntry> c = m_lfn.get(lfn);
+        if (c != null) {
+            for (ReplicaCatalogEntry rce : c) {
+                String pool = rce.getResourceHandle();
+                if (pool == null && handle == null || pool != null
+                        && handle != null && pool.equals(handle))
+                    value.add(rce);
             }
-            // Lookup regex LFN's
-            for (String l : m_lfn_regex.keySet()) {
-                p = m_lfn_pattern.get(l); // Get one pattern
-                m = p.matcher(lfn); // See if f.a matches pattern
-                if (m.matches()) // Pattern matches?
-                {
-                    Collection<ReplicaCatalogEntry> entries = m_lfn_regex
-                            .get(l);
-                    // Get all RCE entries for the matched pattern.
-                    for (ReplicaCatalogEntry entry : entries) {
-                        pool = entry.getResourceHandle();
-                        // Entry matches handle requirement?
-                        if (pool == null && handle == null || pool != null
-                                && handle != null && pool.equals(handle)) {
-                            String tmpPFN = entry.getPFN();
-                            // Substitute variables in PFN before returning
-                            for (int k = 0, j = m.groupCount(); k <= j; ++k) {
-                                tmpPFN = tmpPFN.replaceAll("\\[" + k + "\\]",
-                                        m.group(k));
-                            }
-                            // Are there unsubstituted variables?
-                            if (tmpPFN.indexOf('[') >= 0) {
-                                // PFN still has variables left.
-                            }
-                            // Return new PFN
-                            // entry.setPFN( tmpPFN );
-                            rce = cloneRCE(entry);
-                            rce.setPFN(tmpPFN);
-                            value.add(rce);
-                            // Break if value.size == 2?
-                        }
-                    }
-                    break;
+        }
+        // Lookup regex LFN's
+        RegexIndex.Match m = index().first(lfn);
+        if (m != null) {
+            // Get all RCE entries for the matched pattern.
+            for (ReplicaCatalogEntry entry : m_lfn_regex.get(m.getRegex())) {
+                String pool = entry.getResourceHandle();
+                // Entry matches handle requirement?
+                if (pool == null && handle == null || pool != null
+                        && handle != null && pool.equals(handle)) {
+                    // Substitute variables in PFN before returning
+                    ReplicaCatalogEntry rce = cloneRCE(entry);
+                    rce.setPFN(m.substitute(entry.getPFN()));
+                    value.add(rce);
                 }
             }
-            result.put(lfn, value);
         }
-        // done
-        return result;
+        return value;
     }
 
     /**
@@ -800,19 +860,13 @@ public class Regex implements ReplicaCatalog {
         Map<String, Collection<String>> result = new HashMap<String, Collection<String>>();
         if (lfns == null || lfns.size() == 0)
             return result;
-        for (Iterator<String> i = lfns.iterator(); i.hasNext(); ) {
-            String lfn = i.next();
-            Collection<ReplicaCatalogEntry> c = lookupWithHandle(lfn, handle);
-            if (c != null) {
-                List<String> value = new ArrayList<String>();
-                for (ReplicaCatalogEntry entry : c) {
-                    value.add(entry.getPFN());
-                }
-                result.put(lfn, value);
+        return bulkLookup(lfns, lfn -> {
+            List<String> value = new ArrayList<String>();
+            for (ReplicaCatalogEntry entry : lookupWithHandle(lfn, handle)) {
+                value.add(entry.getPFN());
             }
-        }
-        // done
-        return result;
+            return value;
+        });
     }
 
     /**
@@ -961,8 +1015,12 @@ public class Regex implements ReplicaCatalog {
             c = new ArrayList<ReplicaCatalogEntry>();
 
             if (isRegex) {
+                Pattern p = Pattern.compile(lfn);
                 m_lfn_regex.put(lfn, c);
-                m_lfn_pattern.put(lfn, Pattern.compile(lfn));
+                m_lfn_pattern.put(lfn, p);
+                if (m_index.size() == m_lfn_pattern.size() - 1) {
+                    m_index.add(lfn, p);
+                }
             } else {
                 m_lfn.put(lfn, c);
             }
@@ -1206,6 +1264,7 @@ public class Regex implements ReplicaCatalog {
         m_lfn.clear();
         m_lfn_regex.clear();
         m_lfn_pattern.clear();
+        m_index.clear();
         return result;
     }
     
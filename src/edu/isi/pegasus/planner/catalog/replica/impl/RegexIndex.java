@@ -0,0 +1,427 @@
+/*
+ * Copyright 2007-2018 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An index over the regular expression LFNs of the Regex replica catalog.
+ * Instead of running every pattern against every LFN, the patterns are
+ * grouped by the literal text they start or end with. A lookup only runs the
+ * patterns whose literal prefix or suffix agrees with the LFN, and patterns
+ * that contain no regular expression syntax at all are matched with a plain
+ * string comparison.
+ * <p/>
+ * Each pattern is numbered in the order it was added, and the candidates for
+ * an LFN are always tried in that order. The matches are thus the same, and
+ * in the same order, as when iterating over all the patterns.
+ * <p/>
+ * The index is safe for concurrent lookups, as long as no patterns are added
+ * at the same time.
+ *
+ * @version $Revision$
+ */
+class RegexIndex {
+
+    /**
+     * The characters that have a special meaning in a regular expression,
+     * outside of a character class.
+     */
+    private static final String META_CHARACTERS = "\\.[]{}()*+?^$|";
+
+    /**
+     * The regular expressions in the order they were added.
+     */
+    private final List<String> m_regex;
+
+    /**
+     * The compiled patterns, in the same order as the regular expressions.
+     */
+    private final List<Pattern> m_pattern;
+
+    /**
+     * The literal prefix of each pattern.
+     */
+    private final List<String> m_prefix;
+
+    /**
+     * The literal suffix of each pattern.
+     */
+    private final List<String> m_suffix;
+
+    /**
+     * Maps the patterns without any regular expression syntax to their
+     * number.
+     */
+    private final Map<String, Integer> m_literal;
+
+    /**
+     * Maps a literal prefix to the numbers of the patterns starting with it.
+     */
+    private final Map<String, int[]> m_by_prefix;
+
+    /**
+     * Maps a literal suffix to the numbers of the patterns ending with it,
+     * for the patterns without a literal prefix.
+     */
+    private final Map<String, int[]> m_by_suffix;
+
+    /**
+     * The distinct lengths of the prefixes in m_by_prefix.
+     */
+    private final TreeSet<Integer> m_prefix_lengths;
+
+    /**
+     * The distinct lengths of the suffixes in m_by_suffix.
+     */
+    private final TreeSet<Integer> m_suffix_lengths;
+
+    /**
+     * The numbers of the patterns without a literal prefix or suffix, which
+     * have to be tried for every LFN.
+     */
+    private int[] m_unanchored;
+
+    /**
+     * The result of matching an LFN against one of the patterns.
+     */
+    public static class Match {
+
+        /**
+         * The regular expression that matched.
+         */
+        private final String m_regex;
+
+        /**
+         * The matched groups, starting with group 0 for the whole LFN.
+         */
+        private final String[] m_groups;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param regex  the regular expression that matched.
+         * @param groups the matched groups.
+         */
+        Match( String regex, String[] groups ) {
+            m_regex = regex;
+            m_groups = groups;
+        }
+
+        /**
+         * Returns the regular expression that matched.
+         *
+         * @return the regular expression, as inserted into the catalog.
+         */
+        public String getRegex() {
+            return m_regex;
+        }
+
+        /**
+         * Substitutes the [k] variables in a PFN with the matched groups.
+         *
+         * @param pfn the PFN with the variables.
+         * @return the PFN with the variables substituted.
+         */
+        public String substitute( String pfn ) {
+            if (pfn.indexOf('[') < 0)
+                return pfn;
+            for (int k = 0; k < m_groups.length; ++k) {
+                if (pfn.indexOf("[" + k + "]") >= 0) {
+                    pfn = pfn.replaceAll("\\[" + k + "\\]", m_groups[k]);
+                }
+            }
+            return pfn;
+        }
+    }
+
+    /**
+     * Default constructor creates an empty index.
+     */
+    public RegexIndex() {
+        m_regex = new ArrayList<String>();
+        m_pattern = new ArrayList<Pattern>();
+        m_prefix = new ArrayList<String>();
+        m_suffix = new ArrayList<String>();
+        m_literal = new HashMap<String, Integer>();
+        m_by_prefix = new HashMap<String, int[]>();
+        m_by_suffix = new HashMap<String, int[]>();
+        m_prefix_lengths = new TreeSet<Integer>();
+        m_suffix_lengths = new TreeSet<Integer>();
+        m_unanchored = new int[0];
+    }
+
+    /**
+     * Adds a pattern to the end of the index.
+     *
+     * @param regex   the regular expression as inserted into the catalog.
+     * @param pattern the compiled regular expression.
+     */
+    public void add( String regex, Pattern pattern ) {
+        int number = m_regex.size();
+        m_regex.add(regex);
+        m_pattern.add(pattern);
+
+        if (isLiteral(regex)) {
+            m_prefix.add(regex);
+            m_suffix.add(regex);
+            m_literal.put(regex, number);
+            return;
+        }
+
+        String prefix = literalPrefix(regex);
+        String suffix = literalSuffix(regex);
+        m_prefix.add(prefix);
+        m_suffix.add(suffix);
+        if (prefix.length() > 0) {
+            append(m_by_prefix, prefix, number);
+            m_prefix_lengths.add(prefix.length());
+        } else if (suffix.length() > 0) {
+            append(m_by_suffix, suffix, number);
+            m_suffix_lengths.add(suffix.length());
+        } else {
+            m_unanchored = Arrays.copyOf(m_unanchored, m_unanchored.length + 1);
+            m_unanchored[m_unanchored.length - 1] = number;
+        }
+    }
+
+    /**
+     * Removes all patterns from the index.
+     */
+    public void clear() {
+        m_regex.clear();
+        m_pattern.clear();
+        m_prefix.clear();
+        m_suffix.clear();
+        m_literal.clear();
+        m_by_prefix.clear();
+        m_by_suffix.clear();
+        m_prefix_lengths.clear();
+        m_suffix_lengths.clear();
+        m_unanchored = new int[0];
+    }
+
+    /**
+     * Returns the number of patterns in the index.
+     *
+     * @return the number of patterns.
+     */
+    public int size() {
+        return m_regex.size();
+    }
+
+    /**
+     * Returns the first pattern, in insertion order, that matches the LFN.
+     *
+     * @param lfn the LFN to match.
+     * @return the match, or null if no pattern matches.
+     */
+    public Match first( String lfn ) {
+        for (int number : candidates(lfn)) {
+            Match m = match(number, lfn);
+            if (m != null)
+                return m;
+        }
+        return null;
+    }
+
+    /**
+     * Returns all the patterns that match the LFN, in insertion order.
+     *
+     * @param lfn the LFN to match.
+     * @return the matches, which may be empty.
+     */
+    public List<Match> all( String lfn ) {
+        List<Match> result = new ArrayList<Match>();
+        for (int number : candidates(lfn)) {
+            Match m = match(number, lfn);
+            if (m != null)
+                result.add(m);
+        }
+        return result;
+    }
+
+    /**
+     * Matches an LFN against one pattern. The literal prefix and suffix are
+     * checked before running the regular expression engine.
+     *
+     * @param number the number of the pattern.
+     * @param lfn    the LFN to match.
+     * @return the match, or null if the pattern does not match.
+     */
+    private Match match( int number, String lfn ) {
+        String regex = m_regex.get(number);
+        String prefix = m_prefix.get(number);
+        String suffix = m_suffix.get(number);
+        if (m_literal.containsKey(regex)) {
+            // plain pattern without any regular expression syntax
+            return lfn.equals(regex) ? new Match(regex, new String[]{lfn}) : null;
+        }
+        if (!lfn.startsWith(prefix) || !lfn.endsWith(suffix)
+                || lfn.length() < prefix.length() + suffix.length()) {
+            return null;
+        }
+        Matcher m = m_pattern.get(number).matcher(lfn);
+        if (!m.matches())
+            return null;
+        String[] groups = new String[m.groupCount() + 1];
+        for (int k = 0; k < groups.length; ++k) {
+            groups[k] = m.group(k);
+        }
+        return new Match(regex, groups);
+    }
+
+    /**
+     * Collects the numbers of the patterns that may match an LFN, in
+     * insertion order.
+     *
+     * @param lfn the LFN to match.
+     * @return the sorted pattern numbers.
+     */
+    private int[] candidates( String lfn ) {
+        int[] result = new int[8];
+        int size = 0;
+
+        Integer literal = m_literal.get(lfn);
+        if (literal != null) {
+            result[size++] = literal;
+        }
+        for (Integer length : m_prefix_lengths) {
+            if (length > lfn.length())
+                break;
+            int[] numbers = m_by_prefix.get(lfn.substring(0, length));
+            if (numbers != null) {
+                result = append(result, size, numbers);
+                size += numbers.length;
+            }
+        }
+        for (Integer length : m_suffix_lengths) {
+            if (length > lfn.length())
+                break;
+            int[] numbers = m_by_suffix.get(lfn.substring(lfn.length() - length));
+            if (numbers != null) {
+                result = append(result, size, numbers);
+                size += numbers.length;
+            }
+        }
+        result = append(result, size, m_unanchored);
+        size += m_unanchored.length;
+
+        result = Arrays.copyOf(result, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Appends a pattern number to the numbers stored for a key.
+     *
+     * @param map    the map to update.
+     * @param key    the key.
+     * @param number the pattern number.
+     */
+    private static void append( Map<String, int[]> map, String key, int number ) {
+        int[] numbers = map.get(key);
+        numbers = (numbers == null) ? new int[1] : Arrays.copyOf(numbers, numbers.length + 1);
+        numbers[numbers.length - 1] = number;
+        map.put(key, numbers);
+    }
+
+    /**
+     * Appends numbers to an array, growing it as needed.
+     *
+     * @param array   the array.
+     * @param size    the number of used entries in the array.
+     * @param numbers the numbers to append.
+     * @return the array with the numbers appended.
+     */
+    private static int[] append( int[] array, int size, int[] numbers ) {
+        if (size + numbers.length > array.length) {
+            array = Arrays.copyOf(array, Math.max(array.length * 2, size + numbers.length));
+        }
+        System.arraycopy(numbers, 0, array, size, numbers.length);
+        return array;
+    }
+
+    /**
+     * Checks whether a regular expression only matches itself.
+     *
+     * @param regex the regular expression.
+     * @return true if it contains no regular expression syntax.
+     */
+    static boolean isLiteral( String regex ) {
+        for (int i = 0; i < regex.length(); ++i) {
+            if (META_CHARACTERS.indexOf(regex.charAt(i)) >= 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Determines the literal text that every match of a regular expression
+     * starts with. The analysis is conservative, and gives up on alternations
+     * and embedded flags.
+     *
+     * @param regex the regular expression.
+     * @return the literal prefix, which may be empty.
+     */
+    static String literalPrefix( String regex ) {
+        if (regex.indexOf('|') >= 0 || regex.indexOf("(?") >= 0)
+            return "";
+        int i = 0;
+        while (i < regex.length() && META_CHARACTERS.indexOf(regex.charAt(i)) < 0) {
+            ++i;
+        }
+        // a quantifier applies to the last literal character
+        if (i < regex.length() && i > 0 && "*+?{".indexOf(regex.charAt(i)) >= 0) {
+            --i;
+        }
+        return regex.substring(0, i);
+    }
+
+    /**
+     * Determines the literal text that every match of a regular expression
+     * ends with. The analysis is conservative, and gives up on alternations
+     * and embedded flags.
+     *
+     * @param regex the regular expression.
+     * @return the literal suffix, which may be empty.
+     */
+    static String literalSuffix( String regex ) {
+        if (regex.indexOf('|') >= 0 || regex.indexOf("(?") >= 0)
+            return "";
+        int i = regex.length();
+        while (i > 0 && META_CHARACTERS.indexOf(regex.charAt(i - 1)) < 0) {
+            --i;
+        }
+        if (i > 0 && i < regex.length() && regex.charAt(i - 1) == '\\') {
+            // an escaped letter or digit starts an escape sequence such as
+            // \d, \x41 or \0101, of which the literal text is unknown
+            if (Character.isLetterOrDigit(regex.charAt(i)))
+                return "";
+            // the escaped character itself
+            ++i;
+        }
+        return regex.substring(i);
+    }
+}
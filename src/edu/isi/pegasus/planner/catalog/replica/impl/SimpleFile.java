@@ -23,19 +23,26 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 
 import edu.isi.pegasus.common.util.Boolean;
@@ -74,7 +81,21 @@ import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
  * <p/>
  * The class is strict when producing (storing) results. The LFN and PFN
  * are only quoted and escaped, if necessary. The attribute values are
- * always quoted and escaped.
+ * always quoted and escaped.<p>
+ * <p/>
+ * In the journaled mode, close does not rewrite the file. Instead the
+ * entries of the LFNs changed are appended to a journal next to the file,
+ * each preceded by a record removing the previous entries of the LFN.
+ * Replaying the journal is thus idempotent. Connecting replays the journal
+ * over the file, and once the journal grows beyond a number of records,
+ * close compacts it into the file. In addition, the file can be memory
+ * mapped and indexed by LFN, in which case the entries for an LFN are only
+ * parsed when the LFN is first referred to.
+ * <pre>
+ * # a batch of changes appended on close
+ * - LFN
+ * + LFN PFN a="b" [..]
+ * </pre>
  *
  * @author Jens-S. Vöckler
  * @version $Revision$
@@ -87,6 +108,34 @@ public class SimpleFile implements ReplicaCatalog {
      */
     public static final String READ_ONLY_KEY = "read.only";
     
+    /**
+     * The name of the key that enables the journaled mode.
+     */
+    public static final String JOURNAL_KEY = "file.journal";
+
+    /**
+     * The name of the key that specifies the number of journal records
+     * beyond which close compacts the journal into the file.
+     */
+    public static final String JOURNAL_COMPACT_KEY = "file.journal.compact";
+
+    /**
+     * The name of the key that enables reading the file through a memory
+     * mapped view indexed by LFN.
+     */
+    public static final String MMAP_KEY = "file.mmap";
+
+    /**
+     * The suffix of the journal next to the file.
+     */
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    /**
+     * The default number of journal records beyond which the journal is
+     * compacted into the file.
+     */
+    public static final int DEFAULT_JOURNAL_COMPACT_RECORDS = 100000;
+
     private static final String DEFAULT_REPLICA_CATALOG_BASENAME = "rc.txt";
 
     /**
@@ -115,6 +164,47 @@ public class SimpleFile implements ReplicaCatalog {
      */
     boolean m_readonly;
 
+    /**
+     * Records whether changes are appended to a journal instead of
+     * rewriting the file on close.
+     */
+    protected boolean m_journal = false;
+
+    /**
+     * The number of journal records beyond which the journal is compacted.
+     */
+    protected int m_compact = DEFAULT_JOURNAL_COMPACT_RECORDS;
+
+    /**
+     * Records whether the file is read through a memory mapped index.
+     */
+    protected boolean m_mmap = false;
+
+    /**
+     * The LFNs changed since connecting, and whether the catalog was
+     * cleared.
+     */
+    private Set<String> m_dirty = null;
+    private boolean m_cleared = false;
+
+    /**
+     * Whether entries are being loaded from the file or the journal, and
+     * are not changes.
+     */
+    private boolean m_loading = false;
+
+    /**
+     * The number of records in the journal.
+     */
+    private int m_journalRecords = 0;
+
+    /**
+     * The memory mapped index of the file, and the LFNs whose entries have
+     * been loaded from it. The index is null if the file is read entirely.
+     */
+    private SimpleFileIndex m_index = null;
+    private Set<String> m_loaded = null;
+
     /**
      * Default empty constructor creates an object that is not yet connected
      * to any database. You must use support methods to connect before this
@@ -235,6 +325,19 @@ public class SimpleFile implements ReplicaCatalog {
      * @return true if a valid element was generated
      */
     public boolean parse( String line, int lineno ) {
+        return parse( line, lineno, (lfn, rce) -> insert(lfn, rce) );
+    }
+
+    /**
+     * Parses a line from the file replica catalog, and passes the entry on
+     * to a consumer.
+     *
+     * @param line   is the line to parse
+     * @param lineno is the line number of this line
+     * @param sink   is the consumer of the LFN and the entry
+     * @return true if a valid element was generated
+     */
+    private boolean parse( String line, int lineno, BiConsumer<String,ReplicaCatalogEntry> sink ) {
         char ch = ' ';
         String lfn = null;
         String pfn = null;
@@ -317,7 +420,7 @@ public class SimpleFile implements ReplicaCatalog {
             // valid entry
             if (state == 16){
                 ReplicaCatalogEntry rce = new ReplicaCatalogEntry(pfn, attr);
-                insert(lfn, rce );
+                sink.accept(lfn, rce);
             }
             return true;
         }
@@ -334,10 +437,21 @@ public class SimpleFile implements ReplicaCatalog {
         if (filename == null) return false;
         m_filename = filename;
         m_lfn = new LinkedHashMap();
+        m_dirty = new LinkedHashSet<String>();
+        m_cleared = false;
+        m_journalRecords = 0;
+        m_index = null;
+        m_loaded = null;
 
+        m_loading = true;
         try {
             File f = new File(filename);
-            if (f.exists()) {
+            if (f.exists() && m_mmap) {
+                // only index the file, and parse entries as looked up
+                m_index = new SimpleFileIndex( f, Charset.defaultCharset(), (line) -> this.parseLFN(line) );
+                m_loaded = new HashSet<String>();
+            }
+            else if (f.exists()) {
                 LineNumberReader lnr = new LineNumberReader(new FileReader(f));
                 String line;
                 while ((line = lnr.readLine()) != null) {
@@ -357,15 +471,157 @@ public class SimpleFile implements ReplicaCatalog {
 
                 lnr.close();
             }
+
+            // replay the changes journaled since the file was last written
+            File journal = this.getJournal();
+            if (journal.exists()) {
+                this.replay(journal);
+            }
         } catch (IOException ioe) {
             m_lfn = null;
             m_filename = null;
             throw new RuntimeException(ioe); // re-throw
+        } finally {
+            m_loading = false;
         }
 
         return true;
     }
 
+    /**
+     * Replays the journal over the entries read from the file.
+     *
+     * @param journal  the journal
+     *
+     * @throws IOException in case of error while reading the journal
+     */
+    private void replay( File journal ) throws IOException {
+        Escape e = new Escape("\"\\", '\\');
+        try( LineNumberReader lnr = new LineNumberReader(new FileReader(journal)) ){
+            String line;
+            while ((line = lnr.readLine()) != null) {
+                m_journalRecords++;
+                if (line.length() == 0 || line.charAt(0) == '#'){
+                    continue;
+                }
+                switch (line.charAt(0)) {
+                    case '*':
+                        // the catalog was cleared
+                        if (m_index != null) {
+                            m_index.close();
+                            m_index = null;
+                        }
+                        m_lfn.clear();
+                        break;
+
+                    case '-':
+                        // the entries of the LFN are replaced
+                        String lfn = this.unquote(e, line.substring(1).trim());
+                        this.entries(lfn);
+                        m_lfn.remove(lfn);
+                        break;
+
+                    case '+':
+                        parse(line.substring(1), lnr.getLineNumber());
+                        break;
+
+                    default:
+                        System.err.println("While replaying line " + lnr.getLineNumber() +
+                                " of journal " + journal + ": unknown record, ignoring line");
+                        System.err.println(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the LFN of a line of the file, for the lines that the index
+     * cannot determine the LFN for from the first token.
+     *
+     * @param line  the line
+     *
+     * @return the LFN, or null if the line is not a valid entry.
+     */
+    private String parseLFN( String line ) {
+        String[] result = new String[1];
+        //PM-831 expand the line before parsing
+        parse(mVariableExpander.expand(line), 0, (lfn, rce) -> result[0] = lfn);
+        return result[0];
+    }
+
+    /**
+     * Returns the entries for an LFN, loading them from the memory mapped
+     * index when the LFN is first referred to.
+     *
+     * @param lfn  the LFN
+     *
+     * @return the entries, or null if there are none.
+     */
+    private Collection<ReplicaCatalogEntry> entries( String lfn ) {
+        if (m_index != null && m_index.contains(lfn) && m_loaded.add(lfn)) {
+            boolean loading = m_loading;
+            m_loading = true;
+            try {
+                for (String line : m_index.getLines(lfn)) {
+                    //PM-831 expand the line before parsing
+                    parse(mVariableExpander.expand(line), 0);
+                }
+            } finally {
+                m_loading = loading;
+            }
+        }
+        return m_lfn.get(lfn);
+    }
+
+    /**
+     * Loads the entries for all the LFNs from the memory mapped index, and
+     * releases the index.
+     */
+    private void loadAll() {
+        if (m_index == null) {
+            return;
+        }
+        for (String lfn : m_index.getLFNs()) {
+            this.entries(lfn);
+        }
+        m_index.close();
+        m_index = null;
+        m_loaded = null;
+    }
+
+    /**
+     * Records a change to the entries of an LFN, to be journaled on close.
+     *
+     * @param lfn  the LFN
+     */
+    private void changed( String lfn ) {
+        if (!m_loading) {
+            m_dirty.add(lfn);
+        }
+    }
+
+    /**
+     * Returns the journal next to the file.
+     *
+     * @return the journal
+     */
+    protected File getJournal() {
+        return new File( m_filename + SimpleFile.JOURNAL_SUFFIX );
+    }
+
+    /**
+     * Reverses the quoting of a string.
+     *
+     * @param e is the Escape instance used to unescape strings.
+     * @param s is the string that may be quoted
+     * @return the unquoted string
+     */
+    private String unquote( Escape e, String s ) {
+        return (s.length() > 1 && s.charAt(0) == '"' && s.charAt(s.length() - 1) == '"') ?
+                e.unescape(s.substring(1, s.length() - 1)) :
+                s;
+    }
+
     /**
      * Establishes a connection to the database from the properties.
      * You will need to specify a "file" property to point to the
@@ -388,6 +644,17 @@ public class SimpleFile implements ReplicaCatalog {
                     false);
         }
 
+        // journaled mode and memory mapped reads
+        m_journal = Boolean.parse(props.getProperty(SimpleFile.JOURNAL_KEY), false);
+        m_mmap = Boolean.parse(props.getProperty(SimpleFile.MMAP_KEY), false);
+        if (props.containsKey(SimpleFile.JOURNAL_COMPACT_KEY)) {
+            try {
+                m_compact = Integer.parseInt(props.getProperty(SimpleFile.JOURNAL_COMPACT_KEY));
+            } catch (NumberFormatException nfe) {
+                m_compact = SimpleFile.DEFAULT_JOURNAL_COMPACT_RECORDS;
+            }
+        }
+
         if (props.containsKey("file"))
             return connect(props.getProperty("file"));
         else{
@@ -454,17 +721,40 @@ public class SimpleFile implements ReplicaCatalog {
 
         //check if the file is writeable or not
         if (m_readonly) {
-            m_lfn.clear();
-            m_lfn = null;
-            m_filename = null;
+            this.disconnect();
             return;
         }
 
         try {
+            if (m_journal) {
+                // count the records the changes take up in the journal
+                int records = m_cleared ? 2 : 1;
+                for (String lfn : m_dirty) {
+                    Collection c = m_lfn.get(lfn);
+                    records += 1 + (c == null ? 0 : c.size());
+                }
+
+                if (m_dirty.isEmpty() && !m_cleared) {
+                    // nothing changed
+                    return;
+                }
+                else if (m_journalRecords + records <= m_compact) {
+                    this.appendJournal(e, newline);
+                    return;
+                }
+            }
 
+            // write the whole catalog to a temporary file and move it
+            // over the file in the journaled mode, so that the file and
+            // the journal are consistent at all times
+            this.loadAll();
+            File file = new File(m_filename);
+            File tmp = m_journal ?
+                    new File(m_filename + ".tmp") :
+                    file;
 
             // open
-            Writer out = new BufferedWriter(new FileWriter(m_filename));
+            Writer out = new BufferedWriter(new FileWriter(tmp));
 
             // write header
             out.write("# file-based replica catalog: " +
@@ -474,22 +764,11 @@ public class SimpleFile implements ReplicaCatalog {
             // write data
             for (Iterator i = m_lfn.keySet().iterator(); i.hasNext(); ) {
                 String lfn = (String) i.next();
-                Collection c = (Collection) m_lfn.get(lfn);
+                Collection c = entries(lfn);
                 if (c != null) {
                     for (Iterator j = c.iterator(); j.hasNext(); ) {
                         ReplicaCatalogEntry rce = (ReplicaCatalogEntry) j.next();
-                        out.write(quote(e, lfn));
-                        out.write(' ');
-                        out.write(quote(e, rce.getPFN()));
-                        for (Iterator k = rce.getAttributeIterator(); k.hasNext(); ) {
-                            String key = (String) k.next();
-                            String value = (String) rce.getAttribute(key);
-                            out.write(' ');
-                            out.write(key);
-                            out.write("=\"");
-                            out.write(e.escape(value));
-                            out.write('"');
-                        }
+                        this.write(out, e, lfn, rce);
 
                         // finalize record/line
                         out.write(newline);
@@ -499,16 +778,100 @@ public class SimpleFile implements ReplicaCatalog {
 
             // close
             out.close();
+            if (tmp != file) {
+                try {
+                    Files.move(tmp.toPath(), file.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException amnse) {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            // the journal is contained in the file now
+            Files.deleteIfExists(this.getJournal().toPath());
         } catch (IOException ioe) {
             // FIXME: blurt message somewhere sane
             System.err.println(ioe.getMessage());
         } finally {
-            m_lfn.clear();
-            m_lfn = null;
-            m_filename = null;
+            this.disconnect();
         }
     }
 
+    /**
+     * Appends the entries of the LFNs changed since connecting to the
+     * journal. The entries of each LFN are preceded by a record that
+     * removes the previous entries of the LFN.
+     *
+     * @param e       is the Escape instance used to escape strings.
+     * @param newline the line separator
+     *
+     * @throws IOException in case of error while writing the journal
+     */
+    private void appendJournal( Escape e, String newline ) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(this.getJournal(), true))) {
+            out.write("# changes: " + Currently.iso8601(false, true, true, new Date()));
+            out.write(newline);
+            if (m_cleared) {
+                out.write('*');
+                out.write(newline);
+            }
+            for (String lfn : m_dirty) {
+                out.write("- ");
+                out.write(quote(e, lfn));
+                out.write(newline);
+
+                Collection<ReplicaCatalogEntry> c = m_lfn.get(lfn);
+                if (c != null) {
+                    for (ReplicaCatalogEntry rce : c) {
+                        out.write("+ ");
+                        this.write(out, e, lfn, rce);
+                        out.write(newline);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes out an entry as a line, without the line separator.
+     *
+     * @param out is the writer
+     * @param e   is the Escape instance used to escape strings.
+     * @param lfn is the LFN of the entry
+     * @param rce is the entry
+     *
+     * @throws IOException in case of error while writing
+     */
+    private void write( Writer out, Escape e, String lfn, ReplicaCatalogEntry rce ) throws IOException {
+        out.write(quote(e, lfn));
+        out.write(' ');
+        out.write(quote(e, rce.getPFN()));
+        for (Iterator k = rce.getAttributeIterator(); k.hasNext(); ) {
+            String key = (String) k.next();
+            String value = (String) rce.getAttribute(key);
+            out.write(' ');
+            out.write(key);
+            out.write("=\"");
+            out.write(e.escape(value));
+            out.write('"');
+        }
+    }
+
+    /**
+     * Releases the in-memory representation.
+     */
+    private void disconnect() {
+        if (m_index != null) {
+            m_index.close();
+        }
+        m_index = null;
+        m_loaded = null;
+        m_dirty = null;
+        m_lfn.clear();
+        m_lfn = null;
+        m_filename = null;
+    }
+
     /**
      * Predicate to check, if the connection with the catalog's
      * implementation is still active. This helps determining, if it makes
@@ -531,7 +894,7 @@ public class SimpleFile implements ReplicaCatalog {
      * <code>null</code> if no match was found.
      */
     public String lookup( String lfn, String handle ) {
-        Collection c = (Collection) m_lfn.get(lfn);
+        Collection c = entries(lfn);
         if (c == null) return null;
 
         for (Iterator i = c.iterator(); i.hasNext(); ) {
@@ -554,7 +917,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Collection lookup( String lfn ) {
-        Collection c = (Collection) m_lfn.get(lfn);
+        Collection c = entries(lfn);
         if (c == null) return new ArrayList();
         else return new ArrayList(c);
     }
@@ -569,7 +932,7 @@ public class SimpleFile implements ReplicaCatalog {
      */
     public Set lookupNoAttributes( String lfn ) {
         Set result = new TreeSet();
-        Collection c = (Collection) m_lfn.get(lfn);
+        Collection c = entries(lfn);
 
         if (c != null) {
             for (Iterator i = c.iterator(); i.hasNext(); ) {
@@ -597,7 +960,7 @@ public class SimpleFile implements ReplicaCatalog {
 
         for (Iterator i = lfns.iterator(); i.hasNext(); ) {
             String lfn = (String) i.next();
-            Collection c = (Collection) m_lfn.get(lfn);
+            Collection c = entries(lfn);
             if (c == null) result.put(lfn, new ArrayList());
             else result.put(lfn, new ArrayList(c));
         }
@@ -622,7 +985,7 @@ public class SimpleFile implements ReplicaCatalog {
         for (Iterator i = lfns.iterator(); i.hasNext(); ) {
             Set value = new TreeSet();
             String lfn = (String) i.next();
-            Collection c = (Collection) m_lfn.get(lfn);
+            Collection c = entries(lfn);
             if (c != null) {
                 for (Iterator j = c.iterator(); j.hasNext(); ) {
                     value.add(((ReplicaCatalogEntry) j.next()).getPFN());
@@ -652,7 +1015,7 @@ public class SimpleFile implements ReplicaCatalog {
 
         for (Iterator i = lfns.iterator(); i.hasNext(); ) {
             String lfn = (String) i.next();
-            Collection c = (Collection) m_lfn.get(lfn);
+            Collection c = entries(lfn);
             if (c != null) {
                 List value = new ArrayList();
 
@@ -689,7 +1052,7 @@ public class SimpleFile implements ReplicaCatalog {
 
         for (Iterator i = lfns.iterator(); i.hasNext(); ) {
             String lfn = (String) i.next();
-            Collection c = (Collection) m_lfn.get(lfn);
+            Collection c = entries(lfn);
             if (c != null) {
                 List value = new ArrayList();
 
@@ -726,6 +1089,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @see ReplicaCatalogEntry
      */
     public Map lookup( Map constraints ) {
+        loadAll();
         if (constraints == null || constraints.size() == 0) {
             // return everything
             return Collections.unmodifiableMap(m_lfn);
@@ -753,6 +1117,7 @@ public class SimpleFile implements ReplicaCatalog {
      * @return A set of all logical filenames known to the catalog.
      */
     public Set list() {
+        loadAll();
         return new TreeSet(m_lfn.keySet());
     }
 
@@ -768,6 +1133,7 @@ public class SimpleFile implements ReplicaCatalog {
     public Set list( String constraint ) {
         Set result = new TreeSet();
         Pattern p = Pattern.compile(constraint);
+        loadAll();
 
         for (Iterator i = m_lfn.keySet().iterator(); i.hasNext(); ) {
             String lfn = (String) i.next();
@@ -792,13 +1158,11 @@ public class SimpleFile implements ReplicaCatalog {
         if (lfn == null || tuple == null)
             throw new NullPointerException();
 
-        Collection c;
+        Collection c = entries(lfn);
 
-        if (m_lfn.containsKey(lfn)) {
+        if (c != null) {
             String pfn = tuple.getPFN();
             String handle = tuple.getResourceHandle();
-            c = (Collection) m_lfn.get(lfn);
-
             for (Iterator i = c.iterator(); i.hasNext(); ) {
                 ReplicaCatalogEntry rce = (ReplicaCatalogEntry) i.next();
 
@@ -818,6 +1182,7 @@ public class SimpleFile implements ReplicaCatalog {
         }
 
         c.add(tuple);
+        changed(lfn);
 
         return 1;
     }
@@ -891,7 +1256,7 @@ public class SimpleFile implements ReplicaCatalog {
         int result = 0;
         if (lfn == null || pfn == null) return result;
 
-        Collection c = (Collection) m_lfn.get(lfn);
+        Collection c = entries(lfn);
         if (c == null) return result;
 
         List l = new ArrayList();
@@ -904,6 +1269,7 @@ public class SimpleFile implements ReplicaCatalog {
         if (l.size() != c.size()) {
             result = c.size() - l.size();
             m_lfn.put(lfn, l);
+            changed(lfn);
         }
 
         // done
@@ -980,7 +1346,7 @@ public class SimpleFile implements ReplicaCatalog {
         int result = 0;
         if (lfn == null || tuple == null) return result;
 
-        Collection c = (Collection) m_lfn.get(lfn);
+        Collection c = entries(lfn);
         if (c == null) return result;
 
         List l = new ArrayList();
@@ -993,6 +1359,7 @@ public class SimpleFile implements ReplicaCatalog {
         if (l.size() != c.size()) {
             result = c.size() - l.size();
             m_lfn.put(lfn, l);
+            changed(lfn);
         }
 
         // done
@@ -1032,7 +1399,7 @@ public class SimpleFile implements ReplicaCatalog {
         int result = 0;
         if (lfn == null || name == null) return result;
 
-        Collection c = (Collection) m_lfn.get(lfn);
+        Collection c = entries(lfn);
         if (c == null) return result;
 
         List l = new ArrayList();
@@ -1045,6 +1412,7 @@ public class SimpleFile implements ReplicaCatalog {
         if (l.size() != c.size()) {
             result = c.size() - l.size();
             m_lfn.put(lfn, l);
+            changed(lfn);
         }
 
         // done
@@ -1074,9 +1442,11 @@ public class SimpleFile implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int remove( String lfn ) {
+        entries(lfn);
         Collection c = (Collection) m_lfn.remove(lfn);
         if (c == null) return 0;
-        else return c.size();
+        changed(lfn);
+        return c.size();
     }
 
     /**
@@ -1111,10 +1481,11 @@ public class SimpleFile implements ReplicaCatalog {
      */
     public int removeByAttribute( String name, Object value ) {
         int result = 0;
+        loadAll();
 
         for (Iterator i = m_lfn.keySet().iterator(); i.hasNext(); ) {
             String lfn = (String) i.next();
-            Collection c = (Collection) m_lfn.get(lfn);
+            Collection c = entries(lfn);
             if (c != null) {
                 List l = new ArrayList();
                 for (Iterator j = c.iterator(); j.hasNext(); ) {
@@ -1124,6 +1495,7 @@ public class SimpleFile implements ReplicaCatalog {
                 if (l.size() != c.size()) {
                     result += (c.size() - l.size());
                     m_lfn.put(lfn, l);
+                    changed(lfn);
                 }
             }
         }
@@ -1151,8 +1523,11 @@ public class SimpleFile implements ReplicaCatalog {
      * @return the number of removed entries.
      */
     public int clear() {
+        loadAll();
         int result = m_lfn.size();
         m_lfn.clear();
+        m_dirty.clear();
+        m_cleared = true;
         return result;
     }
 
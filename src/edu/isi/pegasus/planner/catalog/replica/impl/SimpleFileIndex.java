@@ -0,0 +1,281 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A read only view of a file based replica catalog, that memory maps the
+ * file and indexes the offsets of the lines by their LFN. The lines for an
+ * LFN are only decoded when they are looked up, so that opening a large
+ * catalog does not require parsing all of its entries.<p>
+ *
+ * The LFN of a line is taken from the first whitespace separated token of
+ * the line. Lines where the LFN is quoted, escaped or contains variables
+ * are passed to a callback that parses the line and returns its LFN.
+ *
+ * @version $Revision$
+ */
+public class SimpleFileIndex {
+
+    /**
+     * The files are mapped in regions of 1GB, as a single mapping is limited
+     * to 2GB.
+     */
+    private static final int REGION_SHIFT = 30;
+
+    private static final long REGION_MASK = ( 1L << REGION_SHIFT ) - 1;
+
+    /**
+     * The file that is indexed.
+     */
+    private File mFile;
+
+    /**
+     * The size of the file when it was mapped.
+     */
+    private long mSize;
+
+    /**
+     * The mapped regions of the file.
+     */
+    private MappedByteBuffer[] mRegions;
+
+    /**
+     * The charset the file is encoded in.
+     */
+    private Charset mCharset;
+
+    /**
+     * The offsets of the lines in the file, indexed by their LFN, in the
+     * order the LFNs appear in the file.
+     */
+    private Map<String,long[]> mOffsets;
+
+    /**
+     * The number of lines indexed.
+     */
+    private int mLines;
+
+    /**
+     * The overloaded constructor. Maps the file and indexes it.
+     *
+     * @param file      the file based replica catalog.
+     * @param charset   the charset the file is encoded in.
+     * @param parser    the callback that returns the LFN for a line that
+     *                  cannot be indexed by its first token, or null if the
+     *                  line is not a valid entry.
+     *
+     * @throws IOException in case of error while mapping the file.
+     */
+    public SimpleFileIndex( File file, Charset charset, Function<String,String> parser ) throws IOException {
+        mFile    = file;
+        mCharset = charset;
+        mOffsets = new LinkedHashMap<String,long[]>();
+        mLines   = 0;
+
+        try( RandomAccessFile raf = new RandomAccessFile( file, "r" );
+             FileChannel channel = raf.getChannel() ){
+            mSize = channel.size();
+            int regions = (int)( ( mSize + REGION_MASK ) >>> REGION_SHIFT );
+            mRegions = new MappedByteBuffer[ regions ];
+            for( int i = 0; i < regions; i++ ){
+                long start = ( (long)i ) << REGION_SHIFT;
+                mRegions[i] = channel.map( FileChannel.MapMode.READ_ONLY,
+                                           start,
+                                           Math.min( REGION_MASK + 1, mSize - start ) );
+            }
+        }
+
+        this.index( parser );
+    }
+
+    /**
+     * Returns the LFNs indexed, in the order they first appear in the file.
+     *
+     * @return the LFNs
+     */
+    public Set<String> getLFNs(){
+        return Collections.unmodifiableSet( mOffsets.keySet() );
+    }
+
+    /**
+     * Returns whether there are lines for an LFN in the file.
+     *
+     * @param lfn  the LFN
+     *
+     * @return boolean
+     */
+    public boolean contains( String lfn ){
+        return mOffsets.containsKey( lfn );
+    }
+
+    /**
+     * Returns the lines for an LFN, as they appear in the file.
+     *
+     * @param lfn  the LFN
+     *
+     * @return the lines, empty if there are none.
+     */
+    public List<String> getLines( String lfn ){
+        long[] offsets = mOffsets.get( lfn );
+        if( offsets == null ){
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<String>( offsets.length );
+        for( long offset : offsets ){
+            result.add( this.readLine( offset ) );
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of lines indexed.
+     *
+     * @return the number of lines
+     */
+    public int size(){
+        return mLines;
+    }
+
+    /**
+     * Returns the file that is indexed.
+     *
+     * @return the file
+     */
+    public File getFile(){
+        return mFile;
+    }
+
+    /**
+     * Releases the mapped regions and the index. The regions are unmapped
+     * once they are garbage collected.
+     */
+    public void close(){
+        mRegions = null;
+        mOffsets = null;
+    }
+
+    /**
+     * Indexes the offsets of all the lines that are not empty or comments.
+     *
+     * @param parser  the callback for the lines that cannot be indexed by
+     *                their first token.
+     */
+    private void index( Function<String,String> parser ){
+        long pos = 0;
+        while( pos < mSize ){
+            long start = pos;
+            //skip leading whitespace
+            byte b = 0;
+            while( pos < mSize && ( ( b = this.get( pos ) ) == ' ' || b == '\t' ) ){
+                pos++;
+            }
+            boolean skip = ( pos >= mSize || b == '\n' || b == '\r' || ( pos == start && b == '#' ) );
+
+            //the first token is the LFN, unless the line needs parsing
+            long tokenStart = pos;
+            boolean complex = false;
+            while( pos < mSize && ( b = this.get( pos ) ) != ' ' && b != '\t' && b != '\n' && b != '\r' ){
+                complex |= ( b == '"' || b == '\\' || b == '=' || b == '$' );
+                pos++;
+            }
+            long tokenEnd = pos;
+            while( pos < mSize && ( b = this.get( pos ) ) != '\n' ){
+                complex |= ( b == '$' );
+                pos++;
+            }
+            pos++;
+
+            if( skip ){
+                continue;
+            }
+            String lfn = complex ?
+                         parser.apply( this.readLine( start ) ):
+                         this.decode( tokenStart, tokenEnd );
+            if( lfn != null ){
+                long[] offsets = mOffsets.get( lfn );
+                if( offsets == null ){
+                    offsets = new long[]{ start };
+                }
+                else{
+                    offsets = Arrays.copyOf( offsets, offsets.length + 1 );
+                    offsets[ offsets.length - 1 ] = start;
+                }
+                mOffsets.put( lfn, offsets );
+                mLines++;
+            }
+        }
+    }
+
+    /**
+     * Reads the line starting at an offset, without the line terminator.
+     *
+     * @param offset  the offset of the line
+     *
+     * @return the line
+     */
+    private String readLine( long offset ){
+        long end = offset;
+        while( end < mSize && this.get( end ) != '\n' ){
+            end++;
+        }
+        if( end > offset && this.get( end - 1 ) == '\r' ){
+            end--;
+        }
+        return this.decode( offset, end );
+    }
+
+    /**
+     * Decodes the bytes between two offsets.
+     *
+     * @param start  the offset of the first byte
+     * @param end    the offset after the last byte
+     *
+     * @return the decoded string
+     */
+    private String decode( long start, long end ){
+        byte[] bytes = new byte[ (int)( end - start ) ];
+        for( int i = 0; i < bytes.length; i++ ){
+            bytes[i] = this.get( start + i );
+        }
+        return new String( bytes, mCharset );
+    }
+
+    /**
+     * Returns the byte at an offset in the file.
+     *
+     * @param pos  the offset
+     *
+     * @return the byte
+     */
+    private byte get( long pos ){
+        return mRegions[ (int)( pos >>> REGION_SHIFT ) ].get( (int)( pos & REGION_MASK ) );
+    }
+}
@@ -0,0 +1,585 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.transformation;
+
+import edu.isi.pegasus.planner.catalog.TransformationCatalog;
+import edu.isi.pegasus.planner.catalog.classes.SysInfo;
+import edu.isi.pegasus.planner.catalog.transformation.classes.TCType;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.Profile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A transformation catalog that sits in front of another transformation
+ * catalog, and caches the results of the lookups against it. The planner
+ * stages look up the same transformations on the same sites once per job,
+ * which against the Database backend results in a SQL query per job, and
+ * against the File and Text backends in a list being assembled per job.
+ *
+ * <p>
+ * The results are cached per query, including the queries that return no
+ * entries. The lookups can be done concurrently from multiple threads. The
+ * lookups that miss the cache are passed on to the backend one at a time, as
+ * the backends are not thread safe. Any call that modifies the backend clears
+ * the cache.
+ *
+ * <p>
+ * The lists returned are copies of the cached lists, as callers are free to
+ * modify the lists returned by a transformation catalog. The entries in them
+ * are shared across the callers, the same way the Text backend shares the
+ * entries in its store.
+ *
+ * @version $Revision$
+ */
+public class CachedTransformationCatalog implements TransformationCatalog {
+
+    /**
+     * The value cached for queries that return no entries.
+     */
+    private static final List<Object> NO_RESULT = Collections.emptyList();
+
+    /**
+     * The separator for the parts of the cache keys.
+     */
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    /**
+     * The catalog the lookups are passed on to.
+     */
+    private final TransformationCatalog mCatalog;
+
+    /**
+     * The cached results indexed by the query. The map is replaced when the
+     * cache is cleared, so that the results of lookups that race with a
+     * modification end up in the discarded map.
+     */
+    private volatile Map<String,List<?>> mCache;
+
+    /**
+     * The number of lookups answered from the cache.
+     */
+    private final AtomicLong mHits;
+
+    /**
+     * The number of lookups passed on to the backend.
+     */
+    private final AtomicLong mMisses;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param catalog  the initialized catalog to pass the lookups on to.
+     */
+    public CachedTransformationCatalog( TransformationCatalog catalog ){
+        mCatalog = catalog;
+        mCache   = new ConcurrentHashMap<String,List<?>>();
+        mHits    = new AtomicLong( 0 );
+        mMisses  = new AtomicLong( 0 );
+    }
+
+    /**
+     * Returns the catalog the lookups are passed on to.
+     *
+     * @return the backend catalog
+     */
+    public TransformationCatalog getBackend(){
+        return mCatalog;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits(){
+        return mHits.get();
+    }
+
+    /**
+     * Returns the number of lookups passed on to the backend.
+     *
+     * @return the number of misses
+     */
+    public long getMisses(){
+        return mMisses.get();
+    }
+
+    /**
+     * Returns the number of queries cached.
+     *
+     * @return the size of the cache
+     */
+    public int size(){
+        return mCache.size();
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public void clearCache(){
+        mCache = new ConcurrentHashMap<String,List<?>>();
+    }
+
+    /**
+     * Initializes the backend catalog.
+     *
+     * @param bag  the bag of Pegasus initialization objects.
+     */
+    public void initialize( PegasusBag bag ){
+        mCatalog.initialize( bag );
+        this.clearCache();
+    }
+
+    /**
+     * Returns TC entries for a particular logical transformation on a list of
+     * sites. Each site is looked up separately, so that the results for a site
+     * are shared with the lookups on that site alone.
+     *
+     * @param namespace   the namespace of the logical transformation.
+     * @param name        the name of the logical transformation.
+     * @param version     the version of the logical transformation.
+     * @param resourceids the sites. If null, all sites.
+     * @param type        the type of the transformation. If null, all types.
+     *
+     * @return List of TransformationCatalogEntry objects, or null if no entry
+     *         found.
+     *
+     * @throws Exception
+     */
+    public List<TransformationCatalogEntry> lookup( String namespace, String name, String version,
+        List resourceids, TCType type ) throws Exception {
+        if( resourceids == null ){
+            return this.lookup( namespace, name, version, (String)null, type );
+        }
+        List<TransformationCatalogEntry> result = null;
+        for( Object site : resourceids ){
+            List<TransformationCatalogEntry> entries = copy( this.cached( "lookup", namespace, name, version, (String)site, type ),
+                                                             TransformationCatalogEntry.class );
+            if( entries != null ){
+                if( result == null ){
+                    result = entries;
+                }
+                else{
+                    result.addAll( entries );
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns TC entries for a particular logical transformation on a site.
+     *
+     * @param namespace   the namespace of the logical transformation.
+     * @param name        the name of the logical transformation.
+     * @param version     the version of the logical transformation.
+     * @param resourceid  the site. If null, all sites.
+     * @param type        the type of the transformation. If null, all types.
+     *
+     * @return List of TransformationCatalogEntry objects, or null if no entry
+     *         found.
+     *
+     * @throws Exception
+     */
+    public List<TransformationCatalogEntry> lookup( String namespace, String name, String version,
+        String resourceid, TCType type ) throws Exception {
+        return copy( this.cached( "lookup", namespace, name, version, resourceid, type ),
+                     TransformationCatalogEntry.class );
+    }
+
+    /**
+     * Returns the sites on which a particular transformation resides.
+     *
+     * @param namespace   the namespace of the logical transformation.
+     * @param name        the name of the logical transformation.
+     * @param version     the version of the logical transformation.
+     * @param type        the type of the transformation. If null, all types.
+     *
+     * @return List of sites, or null if no entry found.
+     *
+     * @throws Exception
+     */
+    public List<String> lookupSites( String namespace, String name, String version,
+        TCType type ) throws Exception {
+        return copy( this.cached( "lookupSites", namespace, name, version, null, type ), String.class );
+    }
+
+    /**
+     * Returns TC entries for a particular logical transformation on a site,
+     * with the profiles not populated.
+     *
+     * @param namespace   the namespace of the logical transformation.
+     * @param name        the name of the logical transformation.
+     * @param version     the version of the logical transformation.
+     * @param resourceid  the site. If null, all sites.
+     * @param type        the type of the transformation. If null, all types.
+     *
+     * @return List of TransformationCatalogEntry objects, or null if no entry
+     *         found.
+     *
+     * @throws Exception
+     */
+    public List<TransformationCatalogEntry> lookupNoProfiles( String namespace,
+           String name, String version, String resourceid, TCType type ) throws Exception {
+        return copy( this.cached( "lookupNoProfiles", namespace, name, version, resourceid, type ),
+                     TransformationCatalogEntry.class );
+    }
+
+    /**
+     * Returns the profiles associated with a logical transformation.
+     *
+     * @param namespace   the namespace of the logical transformation.
+     * @param name        the name of the logical transformation.
+     * @param version     the version of the logical transformation.
+     *
+     * @return List of Profile objects, or null if none found.
+     *
+     * @throws Exception
+     */
+    public List<Profile> lookupLFNProfiles( String namespace, String name, String version ) throws
+        Exception {
+        return copy( this.cached( "lookupLFNProfiles", namespace, name, version, null, null ), Profile.class );
+    }
+
+    /**
+     * Returns the profiles associated with a physical transformation.
+     *
+     * @param pfn         the physical transformation.
+     * @param resourceid  the site.
+     * @param type        the type of the transformation.
+     *
+     * @return List of Profile objects, or null if none found.
+     *
+     * @throws Exception
+     */
+    public List<Profile> lookupPFNProfiles( String pfn, String resourceid, TCType type ) throws
+        Exception {
+        return copy( this.cached( "lookupPFNProfiles", null, pfn, null, resourceid, type ), Profile.class );
+    }
+
+    /**
+     * Passed on to the backend, as it is not used per job.
+     */
+    public List<String[]> getTCLogicalNames( String resourceid, TCType type ) throws
+        Exception {
+        synchronized( mCatalog ){
+            return mCatalog.getTCLogicalNames( resourceid, type );
+        }
+    }
+
+    /**
+     * Passed on to the backend, as it is not used per job.
+     */
+    public List<TransformationCatalogEntry> getContents() throws Exception {
+        synchronized( mCatalog ){
+            return mCatalog.getContents();
+        }
+    }
+
+    public int insert( List<TransformationCatalogEntry> tcentry ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.insert( tcentry );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int insert( TransformationCatalogEntry tcentry ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.insert( tcentry );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int insert( TransformationCatalogEntry tcentry, boolean write ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.insert( tcentry, write );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int insert( String namespace, String name, String version,
+        String physicalname, TCType type, String resourceid,
+        List lfnprofiles, List pfnprofiles, SysInfo sysinfo ) throws
+        Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.insert( namespace, name, version, physicalname, type,
+                                        resourceid, lfnprofiles, pfnprofiles, sysinfo );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int addLFNProfile( String namespace, String name, String version,
+        List profiles ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.addLFNProfile( namespace, name, version, profiles );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int addPFNProfile( String pfn, TCType type, String resourcename,
+        List profiles ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.addPFNProfile( pfn, type, resourcename, profiles );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int removeByLFN( String namespace, String name, String version,
+        String resourceid, TCType type ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.removeByLFN( namespace, name, version, resourceid, type );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int removeByPFN( String physicalname, String namespace, String name,
+        String version, String resourceid, TCType type ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.removeByPFN( physicalname, namespace, name, version, resourceid, type );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int removeByType( TCType type, String resourceid ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.removeByType( type, resourceid );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int removeBySiteID( String resourceid ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.removeBySiteID( resourceid );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int removeBySysInfo( SysInfo sysinfo ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.removeBySysInfo( sysinfo );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int clear() throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.clear();
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int deletePFNProfiles( String physicalname, TCType type,
+        String resourceid, List profiles ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.deletePFNProfiles( physicalname, type, resourceid, profiles );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public int deleteLFNProfiles( String namespace, String name, String version,
+        List profiles ) throws Exception {
+        synchronized( mCatalog ){
+            try{
+                return mCatalog.deleteLFNProfiles( namespace, name, version, profiles );
+            }
+            finally{
+                this.clearCache();
+            }
+        }
+    }
+
+    public String getDescription(){
+        return mCatalog.getDescription();
+    }
+
+    public File getFileSource(){
+        return mCatalog.getFileSource();
+    }
+
+    public boolean connect( Properties props ){
+        synchronized( mCatalog ){
+            this.clearCache();
+            return mCatalog.connect( props );
+        }
+    }
+
+    public void close(){
+        synchronized( mCatalog ){
+            mCatalog.close();
+        }
+    }
+
+    public boolean isClosed(){
+        return mCatalog.isClosed();
+    }
+
+    /**
+     * Returns the cached result of a query, passing the query on to the
+     * backend if it is not cached.
+     *
+     * @param method   the name of the lookup method.
+     * @param namespace  the namespace of the logical transformation.
+     * @param name       the name of the logical transformation, or the pfn.
+     * @param version    the version of the logical transformation.
+     * @param site       the site.
+     * @param type       the type of the transformation.
+     *
+     * @return the cached list, that is not to be modified, or null if the
+     *         query returns no results.
+     *
+     * @throws Exception  thrown by the backend
+     */
+    private List<?> cached( String method, String namespace, String name, String version,
+                         String site, TCType type ) throws Exception {
+        String key = key( method, namespace, name, version, site, type );
+        Map<String,List<?>> cache = mCache;
+        List<?> result = cache.get( key );
+        if( result != null ){
+            mHits.incrementAndGet();
+            return ( result == NO_RESULT ) ? null : result;
+        }
+
+        mMisses.incrementAndGet();
+        synchronized( mCatalog ){
+            //another thread may have looked it up in the meanwhile
+            result = cache.get( key );
+            if( result == null ){
+                switch( method ){
+                    case "lookup":
+                        result = mCatalog.lookup( namespace, name, version, site, type );
+                        break;
+                    case "lookupNoProfiles":
+                        result = mCatalog.lookupNoProfiles( namespace, name, version, site, type );
+                        break;
+                    case "lookupSites":
+                        result = mCatalog.lookupSites( namespace, name, version, type );
+                        break;
+                    case "lookupLFNProfiles":
+                        result = mCatalog.lookupLFNProfiles( namespace, name, version );
+                        break;
+                    case "lookupPFNProfiles":
+                        result = mCatalog.lookupPFNProfiles( name, site, type );
+                        break;
+                    default:
+                        throw new RuntimeException( "Unknown lookup method " + method );
+                }
+                result = ( result == null || result.isEmpty() ) ?
+                         NO_RESULT :
+                         Collections.unmodifiableList( new ArrayList<Object>( result ) );
+                cache.put( key, result );
+            }
+        }
+        return ( result == NO_RESULT ) ? null : result;
+    }
+
+    /**
+     * Returns the key for a query.
+     *
+     * @return the key
+     */
+    private static String key( String method, String namespace, String name, String version,
+                               String site, TCType type ){
+        StringBuilder key = new StringBuilder( 64 );
+        key.append( method );
+        for( Object part : new Object[]{ namespace, name, version, site, type } ){
+            key.append( KEY_SEPARATOR );
+            //distinguish between null and the empty string
+            if( part != null ){
+                key.append( '=' ).append( part );
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a copy of a cached list, that the caller can modify.
+     *
+     * @param list  the cached list, or null.
+     * @param type  the type of the elements returned by the lookup.
+     *
+     * @return the copy, or null
+     */
+    private static <T> List<T> copy( List<?> list, Class<T> type ){
+        if( list == null ){
+            return null;
+        }
+        List<T> result = new ArrayList<T>( list.size() );
+        for( Object o : list ){
+            result.add( type.cast( o ) );
+        }
+        return result;
+    }
+}
@@ -35,6 +35,7 @@ import edu.isi.pegasus.common.util.Separator;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is an interface for generating valid TC maps which will be used for
@@ -74,6 +75,15 @@ public abstract class Mapper {
      */
     protected TCMap mTCMap = null;
 
+    /**
+     * The locks for the transformations, so that the site map for a
+     * transformation is computed by one thread at a time, while the site maps
+     * for different transformations can be computed concurrently. Only used
+     * if the transformation catalog is a cached one, that can be queried
+     * concurrently.
+     */
+    private final ConcurrentHashMap<String,Object> mLocks = new ConcurrentHashMap<String,Object>();
+
     /**
      * Handle to the logger.
      */
@@ -172,8 +182,10 @@ public abstract class Mapper {
         String lfn = Separator.combine( namespace, name, version );
         siteids.add( siteid );
 
-        if ( getSiteMap( namespace, name, version, siteids ) != null ) {
-            tcentries = mTCMap.getSiteTCEntries( lfn, siteid );
+        synchronized( this.getLock( lfn ) ){
+            if ( getSiteMap( namespace, name, version, siteids ) != null ) {
+                tcentries = mTCMap.getSiteTCEntries( lfn, siteid );
+            }
         }
         return tcentries;
     }
@@ -192,8 +204,10 @@ public abstract class Mapper {
         List siteids ) {
         List sites = null;
         String lfn = Separator.combine( namespace, name, version );
-        if ( getSiteMap( namespace, name, version, siteids ) != null ) {
-            sites = mTCMap.getSiteList( lfn, siteids );
+        synchronized( this.getLock( lfn ) ){
+            if ( getSiteMap( namespace, name, version, siteids ) != null ) {
+                sites = mTCMap.getSiteList( lfn, siteids );
+            }
         }
         return sites;
     }
@@ -212,11 +226,36 @@ public abstract class Mapper {
         String siteid ) {
         List siteids = new ArrayList( 1 );
         siteids.add( siteid );
-        Map m = getSiteMap( namespace, name, version, siteids );
+        Map m;
+        synchronized( this.getLock( Separator.combine( namespace, name, version ) ) ){
+            m = getSiteMap( namespace, name, version, siteids );
+        }
         return ( m == null || m.isEmpty() ) ?
             false :
             true;
 
     }
 
+    /**
+     * Returns the lock to hold while the site map for a transformation is
+     * computed and queried. The transformation catalog backends are not
+     * thread safe, so unless the catalog is cached, the lock is the catalog
+     * itself and the lookups are serialized.
+     *
+     * @param lfn  the fully qualified name of the transformation.
+     *
+     * @return the lock
+     */
+    protected Object getLock( String lfn ){
+        if( !( mTCHandle instanceof CachedTransformationCatalog ) ){
+            return ( mTCHandle == null ) ? this : mTCHandle;
+        }
+        Object lock = mLocks.get( lfn );
+        if( lock == null ){
+            Object existing = mLocks.putIfAbsent( lfn, lock = new Object() );
+            lock = ( existing == null ) ? lock : existing;
+        }
+        return lock;
+    }
+
 }
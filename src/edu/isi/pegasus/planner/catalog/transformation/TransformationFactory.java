@@ -183,4 +183,26 @@ public class TransformationFactory {
 
     }
 
+    /**
+     * Connects the interface with the transformation catalog implementation,
+     * and puts it behind a cache of the lookups, if the caching of the
+     * lookups is enabled in the properties.
+     *
+     * @param bag is bag of initialization objects
+     *
+     * @return handle to the Transformation Catalog.
+     *
+     * @throws TransformationFactoryException that nests any error that
+     *         might occur during the instantiation
+     *
+     * @see CachedTransformationCatalog
+     */
+    public static TransformationCatalog loadCachedInstance( PegasusBag bag ) throws
+        TransformationFactoryException {
+        TransformationCatalog catalog = loadInstance( bag );
+        return ( bag.getPegasusProperties().cacheTransformationCatalogLookups() ) ?
+               new CachedTransformationCatalog( catalog ):
+               catalog;
+    }
+
 }
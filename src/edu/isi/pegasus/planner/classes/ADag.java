@@ -126,13 +126,23 @@ public class ADag extends Data implements Graph{
      * Initialises the class member variables.
      */
     public ADag() {
+        this( new MapGraph() );
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param graph  the Graph implementation that holds the nodes of the
+     *               workflow.
+     */
+    public ADag( Graph graph ) {
         mDAGInfo          = new DagInfo();
         mSubmitDirectory = ".";
         mWorkflowUUID    = generateWorkflowUUID();
         mRootWorkflowUUID = null;
         mWorkflowRefinementStarted = false;
         mNotifications = new Notifications();
-        mGraphImplementor = new MapGraph();
+        mGraphImplementor = graph;
         mProfiles = new Profiles();
         resetStores();
     }
@@ -0,0 +1,196 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package edu.isi.pegasus.planner.classes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A table used while parsing a workflow, to de-duplicate the strings and the
+ * input files that are repeated across the jobs in the workflow. Large
+ * workflows refer to the same LFNs, transformation names and profile keys and
+ * values over and over again, and without the table every reference ends up
+ * as a separate object in memory.
+ *
+ * Input files are only shared if they carry no metadata. A shared file is
+ * flagged as such, and code that needs to modify a file for a particular job
+ * has to work on a copy obtained from <code>PegasusFile.unshare()</code>.
+ *
+ * The table is not thread safe, and is meant to be discarded once the
+ * workflow has been parsed.
+ *
+ * @version $Revision$
+ */
+public class InternTable {
+
+    /**
+     * The approximate number of bytes taken by a String object and its
+     * character array, excluding the characters.
+     */
+    public static final int STRING_OVERHEAD_BYTES = 40;
+
+    /**
+     * The approximate number of bytes taken by a PegasusFile object with no
+     * metadata, including its flags, excluding the LFN.
+     */
+    public static final int FILE_BYTES = 128;
+
+    /**
+     * The interned strings.
+     */
+    private final Map<String,String> mStrings;
+
+    /**
+     * The shared input files indexed by LFN.
+     */
+    private final Map<String,PegasusFile> mFiles;
+
+    /**
+     * The number of times an interned string was reused.
+     */
+    private long mStringHits;
+
+    /**
+     * The number of times a shared file was reused.
+     */
+    private long mFileHits;
+
+    /**
+     * The approximate number of bytes saved by reusing strings and files.
+     */
+    private long mBytesSaved;
+
+    /**
+     * The default constructor.
+     */
+    public InternTable(){
+        mStrings = new HashMap<String,String>();
+        mFiles   = new HashMap<String,PegasusFile>();
+        mStringHits = 0;
+        mFileHits   = 0;
+        mBytesSaved = 0;
+    }
+
+    /**
+     * Returns the canonical instance of a string.
+     *
+     * @param value  the string
+     *
+     * @return the interned string, or null if value is null.
+     */
+    public String intern( String value ){
+        if( value == null ){
+            return null;
+        }
+        String existing = mStrings.putIfAbsent( value, value );
+        if( existing == null ){
+            return value;
+        }
+        mStringHits++;
+        mBytesSaved += STRING_OVERHEAD_BYTES + value.length();
+        return existing;
+    }
+
+    /**
+     * Returns the shared instance of an input file. The file passed is
+     * returned, and becomes the shared instance, if no file with the same LFN
+     * has been seen before. Files with metadata, files that are not plain
+     * input files, and files whose flags differ from the shared instance for
+     * the same LFN are returned as is.
+     *
+     * @param pf  the file parsed for a job
+     *
+     * @return the shared file, or the file passed.
+     */
+    public PegasusFile share( PegasusFile pf ){
+        if( pf.getClass() != PegasusFile.class ||
+            pf.getLinkage() != PegasusFile.LINKAGE.input ||
+            pf.isCheckpointFile() ||
+            !pf.getAllMetadata().isEmpty() ){
+            return pf;
+        }
+
+        pf.setLFN( this.intern( pf.getLFN() ) );
+        PegasusFile shared = mFiles.get( pf.getLFN() );
+        if( shared == null ){
+            pf.mShared = true;
+            mFiles.put( pf.getLFN(), pf );
+            return pf;
+        }
+        if( !sameState( shared, pf ) ){
+            return pf;
+        }
+        mFileHits++;
+        mBytesSaved += FILE_BYTES;
+        return shared;
+    }
+
+    /**
+     * Returns the number of times an interned string was reused.
+     *
+     * @return the count
+     */
+    public long getStringHits(){
+        return mStringHits;
+    }
+
+    /**
+     * Returns the number of times a shared file was reused.
+     *
+     * @return the count
+     */
+    public long getFileHits(){
+        return mFileHits;
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap saved by reusing the
+     * strings and files.
+     *
+     * @return the bytes saved
+     */
+    public long getBytesSaved(){
+        return mBytesSaved;
+    }
+
+    /**
+     * Clears the table. The files handed out remain shared.
+     */
+    public void clear(){
+        mStrings.clear();
+        mFiles.clear();
+    }
+
+    /**
+     * Returns whether two files for the same LFN carry the same flags.
+     *
+     * @param a  the first file
+     * @param b  the second file
+     *
+     * @return boolean
+     */
+    private boolean sameState( PegasusFile a, PegasusFile b ){
+        return a.mType == b.mType &&
+               a.mLink == b.mLink &&
+               a.mTransferFlag == b.mTransferFlag &&
+               a.mSize == b.mSize &&
+               a.mIsRawInput == b.mIsRawInput &&
+               a.mChecksumComputedInWF == b.mChecksumComputedInWF &&
+               a.mFlags.equals( b.mFlags ) &&
+               a.getAllMetadata().isEmpty() && b.getAllMetadata().isEmpty();
+    }
+}
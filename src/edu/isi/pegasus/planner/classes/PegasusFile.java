@@ -192,7 +192,16 @@ public class PegasusFile extends Data {
      * execution either by pegasus-transfer or by some jobs.
      */
     protected boolean mChecksumComputedInWF;
-    
+
+    /**
+     * Boolean indicating whether the object is shared between all the jobs
+     * that refer to the same input file, and should not be modified for a
+     * particular job.
+     *
+     * @see InternTable
+     */
+    protected boolean mShared;
+
 
     /**
      * The default constructor.
@@ -213,6 +222,7 @@ public class PegasusFile extends Data {
         mMetadata    = new Metadata();
         mIsRawInput  = false;
         mChecksumComputedInWF = false;
+        mShared      = false;
     }
 
     /**
@@ -746,6 +756,31 @@ public class PegasusFile extends Data {
         return this.mChecksumComputedInWF;
      }
 
+    /**
+     * Returns a boolean indicating whether the object is shared between the
+     * jobs that refer to the same input file.
+     *
+     * @return boolean
+     */
+    public boolean isShared(){
+        return this.mShared;
+    }
+
+    /**
+     * Returns an object that can be modified for a single job. If the object
+     * is shared between jobs, a copy is returned, else the object itself.
+     *
+     * @return PegasusFile
+     */
+    public PegasusFile unshare(){
+        if( !this.mShared ){
+            return this;
+        }
+        PegasusFile pf = (PegasusFile)this.clone();
+        pf.setLinkage( this.mLink );
+        return pf;
+    }
+
     /**
      * Returns a boolean indicating whether there is a checksum associated with
      * the file or not in the Replica Catalog or not beforehand. 
@@ -217,6 +217,12 @@ public class PlannerOptions extends Data implements Cloneable{
      * A boolean storing whether to sanitize paths or not
      */
     private boolean mSanitizePath;
+
+    /**
+     * The directory against which relative paths are sanitized. If null, the
+     * current working directory of the JVM is used.
+     */
+    private String mLaunchDirectory;
     
     /**
      * The numer of rescue's to try before replanning.
@@ -310,6 +316,7 @@ public class PlannerOptions extends Data implements Cloneable{
         mDate             = new Date();
         mPartitioningType = null;
         mSanitizePath     = true;
+        mLaunchDirectory  = null;
         mJobPrefix        = null;
         mNumOfRescueTries = DEFAULT_NUMBER_OF_RESCUE_TRIES;
         mProperties       = new Properties();
@@ -817,6 +824,29 @@ public class PlannerOptions extends Data implements Cloneable{
         mSanitizePath = value;
     }
 
+    /**
+     * Sets the directory from where the planner was launched, against which
+     * relative paths are sanitized. Required when the planner is not run in
+     * the working directory of the user, for example by the planner daemon.
+     *
+     * @param directory  the launch directory.
+     */
+    public void setLaunchDirectory( String directory ){
+        mLaunchDirectory = directory;
+    }
+
+    /**
+     * Returns the directory from where the planner was launched.
+     *
+     * @return the launch directory, defaulting to the current working
+     *         directory of the JVM.
+     */
+    public String getLaunchDirectory( ){
+        return ( mLaunchDirectory == null )?
+                System.getProperty( "user.dir" ):
+                mLaunchDirectory;
+    }
+
     /**
      * Returns whether to sanitize paths or not. Internal method only.
      *
@@ -1660,8 +1690,8 @@ public class PlannerOptions extends Data implements Cloneable{
     /**
      * A small utility method that santizes the url, converting it from
      * relative to absolute. In case the path is relative, it uses the
-     * System property user.dir to get the current working directory, from
-     * where the planner is being run.
+     * launch directory, defaulting to the System property user.dir to get the
+     * current working directory, from where the planner is being run.
      *
      * @param path the absolute or the relative path.
      *
@@ -1683,7 +1713,7 @@ public class PlannerOptions extends Data implements Cloneable{
                   //absolute path given already
                   path:
                   //get the current working dir
-                  System.getProperty( "user.dir" ) + separator
+                  this.getLaunchDirectory() + separator
                   + ( ( path.indexOf( '.' ) == 0 )? //path starts with a . ?
                       ( (path.indexOf( separator ) == 1 ) ? //path starts with a ./ ?
                                                          path.substring( 2 ):
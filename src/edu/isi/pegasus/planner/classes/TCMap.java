@@ -28,6 +28,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.Set;
 
 /**
@@ -56,7 +57,10 @@ import java.util.Set;
 public class TCMap {
 
     /**
-     * The TCMap for a dag is stored in this HashMap.
+     * The TCMap for a dag is stored in this HashMap. The map is concurrent,
+     * as the TC mappers populate it for different transformations from
+     * multiple threads. The site maps for a transformation are only accessed
+     * while the TC mapper holds the lock for the transformation.
      */
     private Map mTCMap;
 
@@ -67,7 +71,7 @@ public class TCMap {
      */
     public TCMap() {
         mLogger = LogManagerFactory.loadSingletonInstance();
-        mTCMap = new HashMap( 10 );
+        mTCMap = new ConcurrentHashMap( 10 );
     }
 
     /**
@@ -89,7 +93,12 @@ public class TCMap {
      * @see org.griphyn.common.catalog.TransformationCatalogEntry
      */
     public boolean setSiteMap( String fqlfn, Map sitemap ) {
-        mTCMap.put( fqlfn, sitemap );
+        if( sitemap == null ){
+            mTCMap.remove( fqlfn );
+        }
+        else{
+            mTCMap.put( fqlfn, sitemap );
+        }
         return true;
     }
 
@@ -34,6 +34,8 @@ public class WorkflowMetrics extends Data implements Cloneable{
 
     public enum FILE_TYPE { input, output, intermediate, total};
 
+    public enum CODE_GENERATION_PHASE { submit_render, submit_write, dag_write, total };
+
     /**
      * The number of compute tasks in the DAX
      */
@@ -139,6 +141,35 @@ public class WorkflowMetrics extends Data implements Cloneable{
      * The total number of  jobs in the executable workflow.
      */
     @SerializedName("total_jobs") @Expose private int mNumTotalJobs;
+
+    /**
+     * The approximate number of bytes saved while parsing the DAX, by
+     * de-duplicating the strings and input files of the jobs.
+     */
+    @SerializedName("dax_parser_bytes_saved") @Expose private long mDAXParserBytesSaved;
+
+    /**
+     * The time in seconds spent rendering the submit files.
+     */
+    @SerializedName("code_gen_submit_render_time") @Expose private double mSubmitRenderTime;
+
+    /**
+     * The time in seconds spent writing out the submit files. If the submit
+     * files are written out by multiple threads, it is the sum of the
+     * time spent by each thread.
+     */
+    @SerializedName("code_gen_submit_write_time") @Expose private double mSubmitWriteTime;
+
+    /**
+     * The time in seconds spent writing out the .dag file tail and the
+     * other files, once the submit files are written out.
+     */
+    @SerializedName("code_gen_dag_write_time") @Expose private double mDAGWriteTime;
+
+    /**
+     * The total time in seconds spent generating code for the workflow.
+     */
+    @SerializedName("code_gen_total_time") @Expose private double mCodeGenerationTime;
     
     
     
@@ -181,6 +212,7 @@ public class WorkflowMetrics extends Data implements Cloneable{
             mNumIntermediateFiles = 0;
             mNumOutputFiles   = 0;
             mNumTotalFiles    = 0;
+            mDAXParserBytesSaved = 0;
         }
         
         mNumTotalJobs    = 0;
@@ -195,6 +227,10 @@ public class WorkflowMetrics extends Data implements Cloneable{
         mNumChmodJobs     = 0;
         mNumDAXJobs       = 0;
         mNumDAGJobs       = 0;
+        mSubmitRenderTime   = 0;
+        mSubmitWriteTime    = 0;
+        mDAGWriteTime       = 0;
+        mCodeGenerationTime = 0;
         
     }
 
@@ -536,6 +572,80 @@ public class WorkflowMetrics extends Data implements Cloneable{
         this.mNumDeletedTasks = count;
     }
     
+    /**
+     * Sets the approximate number of bytes saved while parsing the DAX.
+     *
+     * @param bytes  the number of bytes
+     */
+    public void setDAXParserBytesSaved( long bytes ) {
+        this.mDAXParserBytesSaved = bytes;
+    }
+
+    /**
+     * Returns the approximate number of bytes saved while parsing the DAX.
+     *
+     * @return the number of bytes
+     */
+    public long getDAXParserBytesSaved() {
+        return this.mDAXParserBytesSaved;
+    }
+
+    /**
+     * Sets the time spent in a particular phase of code generation.
+     *
+     * @param phase  the code generation phase
+     * @param nanos  the time in nanoseconds
+     */
+    public void setCodeGenerationTime( CODE_GENERATION_PHASE phase, long nanos ){
+        double seconds = nanos / 1000000000.0;
+        switch( phase ){
+            case submit_render:
+                mSubmitRenderTime = seconds;
+                break;
+
+            case submit_write:
+                mSubmitWriteTime = seconds;
+                break;
+
+            case dag_write:
+                mDAGWriteTime = seconds;
+                break;
+
+            case total:
+                mCodeGenerationTime = seconds;
+                break;
+
+            default:
+                throw new RuntimeException( "Unsupported code generation phase " + phase );
+        }
+    }
+
+    /**
+     * Returns the time spent in a particular phase of code generation.
+     *
+     * @param phase  the code generation phase
+     *
+     * @return the time in seconds
+     */
+    public double getCodeGenerationTime( CODE_GENERATION_PHASE phase ){
+        switch( phase ){
+            case submit_render:
+                return mSubmitRenderTime;
+
+            case submit_write:
+                return mSubmitWriteTime;
+
+            case dag_write:
+                return mDAGWriteTime;
+
+            case total:
+                return mCodeGenerationTime;
+
+            default:
+                throw new RuntimeException( "Unsupported code generation phase " + phase );
+        }
+    }
+
     /**
      * Return the count for a particular file type
      * 
@@ -582,6 +692,7 @@ public class WorkflowMetrics extends Data implements Cloneable{
         append( sb, "intermediate-files.count", this.mNumIntermediateFiles );
         append( sb, "output-files.count", this.mNumOutputFiles );
         append( sb, "total-files.count", this.mNumTotalFiles );
+        append( sb, "dax-parser-saved.bytes", this.mDAXParserBytesSaved );
 
         //job related metrics
         append( sb, "createdir-jobs.count", this.mNumCreateDirJobs );
@@ -597,6 +708,12 @@ public class WorkflowMetrics extends Data implements Cloneable{
         append( sb, "cleanup-jobs.count", this.mNumCleanupJobs );
         append( sb, "total-jobs.count", this.mNumTotalJobs );
 
+        //code generation related metrics
+        append( sb, "code-gen-submit-render.seconds", this.mSubmitRenderTime );
+        append( sb, "code-gen-submit-write.seconds", this.mSubmitWriteTime );
+        append( sb, "code-gen-dag-write.seconds", this.mDAGWriteTime );
+        append( sb, "code-gen-total.seconds", this.mCodeGenerationTime );
+
         return sb.toString();
     }
 
@@ -622,6 +739,28 @@ public class WorkflowMetrics extends Data implements Cloneable{
         buffer.append( key ).append( " = " ).append( value ).append( "\n" );
     }
 
+    /**
+     * Appends a key=value pair to the StringBuffer.
+     *
+     * @param buffer    the StringBuffer that is to be appended to.
+     * @param key   the key.
+     * @param value the value.
+     */
+    protected void append( StringBuffer buffer, String key, long value ){
+        buffer.append( key ).append( " = " ).append( value ).append( "\n" );
+    }
+
+    /**
+     * Appends a key=value pair to the StringBuffer.
+     *
+     * @param buffer    the StringBuffer that is to be appended to.
+     * @param key   the key.
+     * @param value the value.
+     */
+    protected void append( StringBuffer buffer, String key, double value ){
+        buffer.append( key ).append( " = " ).append( value ).append( "\n" );
+    }
+
     /**
      * Converts the planner metrics to JSON
      * 
@@ -684,6 +823,11 @@ public class WorkflowMetrics extends Data implements Cloneable{
         wm.mNumIntermediateFiles = this.mNumIntermediateFiles;
         wm.mNumOutputFiles    = this.mNumOutputFiles;
         wm.mNumTotalFiles     = this.mNumTotalFiles;
+        wm.mDAXParserBytesSaved = this.mDAXParserBytesSaved;
+        wm.mSubmitRenderTime  = this.mSubmitRenderTime;
+        wm.mSubmitWriteTime   = this.mSubmitWriteTime;
+        wm.mDAGWriteTime      = this.mDAGWriteTime;
+        wm.mCodeGenerationTime = this.mCodeGenerationTime;
         return wm;
     }
 
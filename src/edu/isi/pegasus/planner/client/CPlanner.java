@@ -29,11 +29,13 @@ import edu.isi.pegasus.common.util.Version;
 
 
 import edu.isi.pegasus.planner.catalog.SiteCatalog;
+import edu.isi.pegasus.planner.catalog.TransformationCatalog;
 import edu.isi.pegasus.planner.catalog.site.SiteCatalogException;
 import edu.isi.pegasus.planner.catalog.site.SiteFactory;
 import edu.isi.pegasus.planner.catalog.site.classes.GridGateway;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.transformation.CachedTransformationCatalog;
 import edu.isi.pegasus.planner.catalog.transformation.TransformationFactory;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.Job;
@@ -56,6 +58,7 @@ import edu.isi.pegasus.planner.parser.Parser;
 import edu.isi.pegasus.planner.parser.dax.Callback;
 import edu.isi.pegasus.planner.parser.dax.DAXParser;
 import edu.isi.pegasus.planner.refiner.MainEngine;
+import edu.isi.pegasus.planner.refiner.StageExecutor;
 
 import gnu.getopt.Getopt;
 import gnu.getopt.LongOpt;
@@ -86,7 +89,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 
@@ -186,6 +193,19 @@ public class CPlanner extends Executable{
      */
     private boolean mSendMetrics;
 
+    /**
+     * The site stores loaded earlier in this JVM, indexed by the site catalog
+     * file, its modification time and the sites loaded. Only populated if
+     * site stores are to be cached.
+     */
+    private static final Map<String,SiteStore> mSiteStoreCache = new ConcurrentHashMap<String,SiteStore>();
+
+    /**
+     * Whether to cache the site stores loaded across the planning instances
+     * in this JVM.
+     */
+    private static volatile boolean mCacheSiteStores = false;
+
     /**
      * Default constructor.
      */
@@ -230,8 +250,63 @@ public class CPlanner extends Executable{
      * @param args the main arguments passed to the planner.
      */
     public static void main(String[] args) {
+        System.exit( CPlanner.run( args, null, null ) );
+    }
 
+    /**
+     * Sets whether to cache the site stores loaded from file based site
+     * catalogs, for the other planning instances in this JVM to use, as long
+     * as the site catalog file is not modified.
+     *
+     * @param cache  boolean
+     */
+    public static void setCacheSiteStores( boolean cache ){
+        mCacheSiteStores = cache;
+        if( !cache ){
+            mSiteStoreCache.clear();
+        }
+    }
+
+    /**
+     * Plans a workflow, without exiting the JVM on completion. This allows
+     * a number of workflows to be planned one after the other in the same JVM,
+     * as is done by the planner daemon.
+     *
+     * @param args            the arguments passed to the planner.
+     * @param launchDirectory the directory from where the planner was launched,
+     *                        against which relative paths in the arguments are
+     *                        resolved. If null, the current working directory
+     *                        is used. A planner launched on behalf of a client
+     *                        shares the JVM with other planners, and does not
+     *                        redirect the system streams to its log file.
+     * @param properties      the properties that override the ones in the
+     *                        properties files, as specified by -D options to
+     *                        the JVM. Can be null.
+     *
+     * @return the exitcode of the planner.
+     */
+    public static int run( String[] args, String launchDirectory, Properties properties ) {
         CPlanner cPlanner = new CPlanner();
+        cPlanner.mLaunchDirectory = launchDirectory;
+        cPlanner.mCommandLineProperties = properties;
+        cPlanner.mSharedJVM = ( launchDirectory != null );
+        try{
+            return CPlanner.run( cPlanner, args );
+        }
+        finally{
+            cPlanner.closeLogStream();
+        }
+    }
+
+    /**
+     * Plans a workflow with a planner instance.
+     *
+     * @param cPlanner  the planner.
+     * @param args      the arguments passed to the planner.
+     *
+     * @return the exitcode of the planner.
+     */
+    private static int run( CPlanner cPlanner, String[] args ) {
         int result = 0;
         Date startDate   = new Date();
         Date endDate     = null;
@@ -342,7 +417,9 @@ public class CPlanner extends Executable{
         }
 
         cPlanner.mLogger.logEventCompletion();
-        System.exit(result);
+        //drain any buffered messages before handing back the exit code
+        cPlanner.mLogger.flush();
+        return result;
     }
 
 
@@ -467,8 +544,12 @@ public class CPlanner extends Executable{
         configurator.updateSiteStoreAndOptions( s, mPOptions );
         
         mBag.add( PegasusBag.SITE_STORE, s );
-        mBag.add( PegasusBag.TRANSFORMATION_CATALOG, 
-                  TransformationFactory.loadInstance( mBag )  );
+
+        //the transformation catalog is not required for parsing the dax
+        //and is loaded while the dax is parsed
+        StageExecutor prefetch = new StageExecutor( mProps.getPlannerStageThreads(), mLogger );
+        prefetch.add( "transformation-catalog", () -> TransformationFactory.loadCachedInstance( mBag ) );
+        prefetch.start();
         
 
         //populate planner metrics
@@ -496,6 +577,8 @@ public class CPlanner extends Executable{
 
         //load the parser and parse the dax
         ADag orgDag = this.parseDAX( dax );
+        mBag.add( PegasusBag.TRANSFORMATION_CATALOG,
+                  prefetch.get( "transformation-catalog", TransformationCatalog.class ) );
         mLogger.log( "Parsed DAX with following metrics " + orgDag.getWorkflowMetrics().toJson(), 
                      LogManager.DEBUG_MESSAGE_LEVEL);
 
@@ -545,7 +628,7 @@ public class CPlanner extends Executable{
             if ( options.partOfDeferredRun() ) {
                 //PM-667 log what directory the planner is launched in 
                 //what the base submit directory is
-                String launchDir = System.getProperty("user.dir") ;
+                String launchDir = mPOptions.getLaunchDirectory() ;
                 mLogger.log( "The directory in which the planner was launched " + launchDir,
                               LogManager.CONFIG_MESSAGE_LEVEL );
                 
@@ -679,6 +762,13 @@ public class CPlanner extends Executable{
             mLogger.logEventCompletion();
         }
 
+        if( mBag.getHandleToTransformationCatalog() instanceof CachedTransformationCatalog ){
+            CachedTransformationCatalog tc = (CachedTransformationCatalog)mBag.getHandleToTransformationCatalog();
+            mLogger.log( "Transformation catalog lookups answered from cache " + tc.getHits() +
+                         " , passed on to the catalog " + tc.getMisses(),
+                         LogManager.DEBUG_MESSAGE_LEVEL );
+        }
+
         //PM-1003 update metrics with whether pmc was used or not.
         mPMetrics.setUsesPMC( Braindump.plannerUsedPMC(mBag));
         
@@ -807,6 +897,9 @@ public class CPlanner extends Executable{
         
         PlannerOptions options = new PlannerOptions();
         options.setSanitizePath( sanitizePath );
+        if( mLaunchDirectory != null ){
+            options.setLaunchDirectory( mLaunchDirectory );
+        }
         options.setOriginalArgString( args );
         //we default to inplace cleanup unless overriden on command line
 //        options.setCleanup(PlannerOptions.CLEANUP_OPTIONS.inplace );
@@ -1669,6 +1762,29 @@ public class CPlanner extends Executable{
         /* always load local site */
         toLoad.add( "local" );
 
+        String key = null;
+        if( mCacheSiteStores && catalog.getFileSource() != null ){
+            File source = catalog.getFileSource();
+            Set<String> sorted = new TreeSet<String>();
+            for( String site : toLoad ){
+                if( site != null ){
+                    sorted.add( site );
+                }
+            }
+            key = source.getAbsolutePath() + ":" + source.lastModified() + ":" + sorted;
+            SiteStore cached = mSiteStoreCache.get( key );
+            if( cached != null ){
+                try{
+                    catalog.close();
+                }catch( Exception e ){}
+                mLogger.log( "Sites loaded from cache are "  + cached.list( ) ,
+                             LogManager.DEBUG_MESSAGE_LEVEL );
+                result = (SiteStore)cached.clone();
+                result.setFileSource( source );
+                return result;
+            }
+        }
+
         /* load the sites in site catalog */
         try{
             catalog.load( new LinkedList( toLoad) );
@@ -1688,6 +1804,12 @@ public class CPlanner extends Executable{
             /* query for the sites, and print them out */
             mLogger.log( "Sites loaded are "  + result.list( ) ,
                          LogManager.DEBUG_MESSAGE_LEVEL );
+
+            if( key != null ){
+                SiteStore cached = (SiteStore)result.clone();
+                cached.setFileSource( result.getFileSource() );
+                mSiteStoreCache.put( key, cached );
+            }
             
         }
         catch ( SiteCatalogException e ){
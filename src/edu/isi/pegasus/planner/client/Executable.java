@@ -17,7 +17,9 @@
 package edu.isi.pegasus.planner.client;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.DecimalFormat;
@@ -31,6 +33,7 @@ import edu.isi.pegasus.planner.common.PegasusProperties;
 import gnu.getopt.Getopt;
 import gnu.getopt.LongOpt;
 import java.util.MissingResourceException;
+import java.util.Properties;
 
 /**
  * The interface which defines all the methods , any executable should implement.
@@ -73,6 +76,30 @@ public abstract class Executable {
      */
     
     private String[] commandLineOpts;
+
+    /**
+     * The directory against which a relative conf property file is resolved.
+     * If null, the current working directory is used.
+     */
+    protected String mLaunchDirectory;
+
+    /**
+     * The properties that override the ones loaded from the properties
+     * files. Can be null.
+     */
+    protected Properties mCommandLineProperties;
+
+    /**
+     * Whether the executable shares the JVM with other executables, as the
+     * planners run by the planner daemon do. The system streams are then not
+     * redirected to the log file.
+     */
+    protected boolean mSharedJVM;
+
+    /**
+     * The stream to the log file, if the JVM is shared. Null otherwise.
+     */
+    private OutputStream mLogStream;
     
     /**
      * The default constructor.
@@ -128,7 +155,15 @@ public abstract class Executable {
     protected void initialize(String[] opts , char confChar){
     	this.commandLineOpts = opts;
     	String propertyFile =lookupConfProperty(getCommandLineOptions(), confChar);
+        if( mLaunchDirectory != null && !new File( propertyFile ).isAbsolute() ){
+            propertyFile = new File( mLaunchDirectory, propertyFile ).getPath();
+        }
         mProps = PegasusProperties.getInstance(propertyFile);
+        if( mCommandLineProperties != null ){
+            for( String key : mCommandLineProperties.stringPropertyNames() ){
+                mProps.setProperty( key, mCommandLineProperties.getProperty( key ) );
+            }
+        }
         mVersion = Version.instance().toString();
         //setup logging before doing anything with properties
         try{
@@ -248,8 +283,34 @@ public abstract class Executable {
             }
                         
             //log both output and error messages to value specified
-            mLogger.setWriters(backupFile.getAbsolutePath ());
+            if( mSharedJVM ){
+                //the system streams belong to all the executables in the JVM
+                mLogStream = new FileOutputStream( backupFile );
+                mLogger.setWriters( mLogStream, mLogStream );
+            }
+            else{
+                mLogger.setWriters(backupFile.getAbsolutePath ());
+            }
+        }
+    }
+
+    /**
+     * Closes the stream to the log file opened for a shared JVM, after
+     * pointing the logger back to the system streams.
+     */
+    protected void closeLogStream(){
+        if( mLogStream == null ){
+            return;
+        }
+        mLogger.flush();
+        mLogger.setWriters( System.out, System.err );
+        try{
+            mLogStream.close();
+        }
+        catch( IOException e ){
+            //nothing more can be logged to it
         }
+        mLogStream = null;
     }
 
 
@@ -0,0 +1,577 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.common.util.Version;
+
+import gnu.getopt.Getopt;
+import gnu.getopt.LongOpt;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * A long running local planning service, that plans the sub workflows of a
+ * hierarchical workflow in a warm JVM, instead of launching a new pegasus-plan
+ * JVM for each of them. The prescript of a DAX job hands its deferred planning
+ * request over to the daemon, if the daemon file written out by a running
+ * daemon exists, and plans in its own JVM otherwise.<p>
+ *
+ * The planner relies on a number of singletons, so each worker thread plans
+ * in its own class loader. A worker keeps its class loader across requests,
+ * so that the classes loaded, their JIT compiled code and the site catalogs
+ * cached by the planner are reused, while sibling sub workflows are planned
+ * concurrently by the other workers. The system streams are shared by all
+ * the workers, so each planner writes its log to a stream of its own, that is
+ * closed once the workflow is planned.<p>
+ *
+ * The protocol is line based. The client sends the secret token from the
+ * daemon file, the directory it was launched in, the number of arguments and
+ * then the arguments, one per line. The daemon responds with
+ * <code>exit=</code> followed by the exitcode of the planner, or with
+ * <code>fallback</code> if the client is to plan the workflow itself.
+ *
+ * @version $Revision$
+ */
+public class PlannerDaemon implements Runnable {
+
+    /**
+     * The default path to the daemon file, relative to the home directory of
+     * the user.
+     */
+    public static final String DEFAULT_DAEMON_FILE = ".pegasus" + File.separator + "plan-daemon";
+
+    /**
+     * The default number of workflows planned concurrently.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * The time in milliseconds a client has to send its request.
+     */
+    public static final int REQUEST_TIMEOUT = 30000;
+
+    /**
+     * The prefix of the response for a planned workflow.
+     */
+    public static final String EXIT_RESPONSE_PREFIX = "exit=";
+
+    /**
+     * The response for a request that the client has to plan itself.
+     */
+    public static final String FALLBACK_RESPONSE = "fallback";
+
+    /**
+     * The planner options that exit the JVM after printing out the version.
+     */
+    private static final Pattern VERSION_OPTION = Pattern.compile( "--version|-[a-zA-Z]*V[a-zA-Z]*" );
+
+    /**
+     * The options that pegasus-plan passes on to the JVM, instead of the
+     * planner.
+     */
+    private static final Pattern JVM_OPTION = Pattern.compile( "-[XD][_a-zA-Z].*" );
+
+    /**
+     * The encoding of the protocol lines.
+     */
+    private static final Charset ENCODING = Charset.forName( "UTF-8" );
+
+    /**
+     * The socket listening for requests.
+     */
+    private final ServerSocket mServerSocket;
+
+    /**
+     * The secret token that clients have to send.
+     */
+    private final String mToken;
+
+    /**
+     * The file the port and token are written out to, or null.
+     */
+    private final File mDaemonFile;
+
+    /**
+     * The name of the planner class, with a static run method with the
+     * signature of {@link CPlanner#run(String[], String, Properties)}.
+     */
+    private final String mPlannerClass;
+
+    /**
+     * The classpath the planners are loaded from.
+     */
+    private final URL[] mClassPath;
+
+    /**
+     * The planners not planning a workflow currently.
+     */
+    private final BlockingQueue<Planner> mPlanners;
+
+    /**
+     * The threads handling the requests.
+     */
+    private final ExecutorService mExecutor;
+
+    /**
+     * The handle to the logger.
+     */
+    private final LogManager mLogger;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param port          the port to listen on, or 0 for any free port.
+     * @param threads       the number of workflows planned concurrently.
+     * @param daemonFile    the file the port and token are written out to, or
+     *                      null.
+     * @param plannerClass  the name of the planner class.
+     * @param logger        the logger to use.
+     *
+     * @throws IOException  if unable to listen on the port.
+     */
+    public PlannerDaemon( int port, int threads, File daemonFile, String plannerClass, LogManager logger )
+        throws IOException {
+        mServerSocket = new ServerSocket( port, 50, InetAddress.getLoopbackAddress() );
+        mDaemonFile   = daemonFile;
+        mPlannerClass = plannerClass;
+        mLogger       = logger;
+
+        byte[] secret = new byte[ 16 ];
+        new SecureRandom().nextBytes( secret );
+        StringBuilder token = new StringBuilder();
+        for( byte b : secret ){
+            token.append( String.format( "%02x", b ) );
+        }
+        mToken = token.toString();
+
+        String[] entries = System.getProperty( "java.class.path" ).split( File.pathSeparator );
+        mClassPath = new URL[ entries.length ];
+        for( int i = 0; i < entries.length; i++ ){
+            mClassPath[i] = new File( entries[i] ).toURI().toURL();
+        }
+
+        mPlanners = new ArrayBlockingQueue<Planner>( threads );
+        for( int i = 0; i < threads; i++ ){
+            mPlanners.add( new Planner() );
+        }
+        mExecutor = Executors.newFixedThreadPool( threads );
+    }
+
+    /**
+     * Returns the port the daemon listens on.
+     *
+     * @return the port
+     */
+    public int getPort(){
+        return mServerSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the secret token that clients have to send.
+     *
+     * @return the token
+     */
+    public String getToken(){
+        return mToken;
+    }
+
+    /**
+     * Writes out the daemon file, readable only by the user, and then accepts
+     * requests till the daemon is shut down.
+     */
+    public void run(){
+        try{
+            if( mDaemonFile != null ){
+                this.writeDaemonFile();
+            }
+            while( !mServerSocket.isClosed() ){
+                final Socket socket = mServerSocket.accept();
+                mExecutor.execute( () -> this.handle( socket ) );
+            }
+        }
+        catch( SocketException e ){
+            //the daemon was shut down
+        }
+        catch( IOException e ){
+            throw new RuntimeException( "Planner daemon unable to accept requests ", e );
+        }
+    }
+
+    /**
+     * Stops accepting requests, waits for the workflows being planned and
+     * removes the daemon file.
+     */
+    public void shutdown(){
+        if( mDaemonFile != null ){
+            mDaemonFile.delete();
+        }
+        try{
+            mServerSocket.close();
+        }
+        catch( IOException e ){}
+        mExecutor.shutdown();
+        try{
+            mExecutor.awaitTermination( 1, TimeUnit.HOURS );
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+        }
+        for( Planner planner : mPlanners ){
+            planner.close();
+        }
+    }
+
+    /**
+     * Splits the arguments of pegasus-plan in the arguments for the planner
+     * and the properties, the same way pegasus-plan passes the -D options
+     * to the JVM. Other JVM options are ignored.
+     *
+     * @param args        the arguments of pegasus-plan.
+     * @param plannerArgs the list to add the arguments for the planner to.
+     * @param properties  the properties to add the -D options to.
+     *
+     * @return false if the client has to invoke the planner itself, as the
+     *         planner would exit the JVM.
+     */
+    public static boolean splitArguments( String[] args, List<String> plannerArgs, Properties properties ){
+        for( int i = 0; i < args.length; i++ ){
+            String arg = args[i];
+            if( VERSION_OPTION.matcher( arg ).matches() ){
+                return false;
+            }
+            if( JVM_OPTION.matcher( arg ).matches() ){
+                if( arg.startsWith( "-D" ) ){
+                    PlannerDaemon.addProperty( arg.substring( 2 ), properties );
+                }
+            }
+            else if( arg.equals( "-D" ) && i + 1 < args.length && args[ i + 1 ].contains( "=" ) ){
+                PlannerDaemon.addProperty( args[ ++i ], properties );
+            }
+            else{
+                plannerArgs.add( arg );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a property specified as key=value
+     *
+     * @param property   the property.
+     * @param properties the properties to add to.
+     */
+    private static void addProperty( String property, Properties properties ){
+        int index = property.indexOf( '=' );
+        if( index > 0 ){
+            properties.setProperty( property.substring( 0, index ), property.substring( index + 1 ) );
+        }
+    }
+
+    /**
+     * Reads a request from a client, and responds once the workflow is
+     * planned. A request with a wrong token is closed without a response.
+     *
+     * @param socket  the connection to the client.
+     */
+    private void handle( Socket socket ){
+        try( Socket s = socket ){
+            s.setSoTimeout( REQUEST_TIMEOUT );
+            BufferedReader in = new BufferedReader( new InputStreamReader( s.getInputStream(), ENCODING ) );
+            String token = in.readLine();
+            if( token == null || !MessageDigest.isEqual( mToken.getBytes( ENCODING ), token.getBytes( ENCODING ) ) ){
+                mLogger.log( "Planner daemon rejected a request with a wrong token",
+                             LogManager.WARNING_MESSAGE_LEVEL );
+                return;
+            }
+            String directory = in.readLine();
+            String count = in.readLine();
+            if( directory == null || count == null ){
+                throw new IOException( "Incomplete request" );
+            }
+            String[] args = new String[ Integer.parseInt( count.trim() ) ];
+            for( int i = 0; i < args.length; i++ ){
+                if( ( args[i] = in.readLine() ) == null ){
+                    throw new IOException( "Incomplete request" );
+                }
+            }
+            s.setSoTimeout( 0 );
+
+            String response = this.plan( args, directory );
+            mLogger.flush();
+            Writer out = new OutputStreamWriter( s.getOutputStream(), ENCODING );
+            out.write( response );
+            out.write( "\n" );
+            out.flush();
+        }
+        catch( IOException | NumberFormatException e ){
+            mLogger.log( "Planner daemon unable to serve a request ", e,
+                         LogManager.ERROR_MESSAGE_LEVEL );
+        }
+    }
+
+    /**
+     * Plans a workflow with the next free planner.
+     *
+     * @param args      the arguments of pegasus-plan.
+     * @param directory the directory pegasus-plan was launched in.
+     *
+     * @return the response to the client.
+     */
+    private String plan( String[] args, String directory ){
+        List<String> plannerArgs = new ArrayList<String>( args.length );
+        Properties properties = new Properties();
+        if( !PlannerDaemon.splitArguments( args, plannerArgs, properties ) ){
+            return FALLBACK_RESPONSE;
+        }
+
+        Planner planner;
+        try{
+            planner = mPlanners.take();
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+            return FALLBACK_RESPONSE;
+        }
+
+        long start = System.currentTimeMillis();
+        try{
+            int exitcode = planner.plan( plannerArgs.toArray( new String[0] ), directory, properties );
+            mLogger.log( "Planned workflow in " + directory + " with exitcode " + exitcode + " in " +
+                         ( System.currentTimeMillis() - start ) + " ms",
+                         LogManager.INFO_MESSAGE_LEVEL );
+            return EXIT_RESPONSE_PREFIX + exitcode;
+        }
+        catch( Throwable t ){
+            //the state of the planner may be corrupt. start afresh
+            mLogger.log( "Planner daemon failed to plan workflow in " + directory,
+                         ( t instanceof Exception )? (Exception)t: new RuntimeException( t ),
+                         LogManager.ERROR_MESSAGE_LEVEL );
+            planner.close();
+            planner = new Planner();
+            return EXIT_RESPONSE_PREFIX + 1;
+        }
+        finally{
+            mPlanners.add( planner );
+        }
+    }
+
+    /**
+     * Writes out the port and token to the daemon file, readable only by the
+     * user. The file is moved in place, so that the clients never read a
+     * partial file.
+     *
+     * @throws IOException  in case of error while writing out the file.
+     */
+    private void writeDaemonFile() throws IOException {
+        File dir = mDaemonFile.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        File temp = File.createTempFile( mDaemonFile.getName(), ".tmp", dir );
+        try{
+            Files.setPosixFilePermissions( temp.toPath(), PosixFilePermissions.fromString( "rw-------" ) );
+        }
+        catch( UnsupportedOperationException e ){
+            temp.setReadable( false, false );
+            temp.setReadable( true, true );
+        }
+        Files.write( temp.toPath(), ( this.getPort() + " " + mToken + "\n" ).getBytes( ENCODING ) );
+        Files.move( temp.toPath(), mDaemonFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * A planner loaded in its own class loader.
+     */
+    private final class Planner {
+
+        /**
+         * The class loader isolating the planner.
+         */
+        private final URLClassLoader mLoader;
+
+        /**
+         * The run method of the planner class.
+         */
+        private final Method mRun;
+
+        /**
+         * The default constructor.
+         */
+        public Planner(){
+            //the parent is the loader for the JDK classes, so that the planner
+            //classes are not picked up from the application class loader
+            mLoader = new URLClassLoader( mClassPath, ClassLoader.getSystemClassLoader().getParent() );
+            try{
+                Class<?> c = mLoader.loadClass( mPlannerClass );
+                mRun = c.getMethod( "run", String[].class, String.class, Properties.class );
+                c.getMethod( "setCacheSiteStores", boolean.class ).invoke( null, true );
+            }
+            catch( ReflectiveOperationException e ){
+                throw new RuntimeException( "Unable to load planner " + mPlannerClass, e );
+            }
+        }
+
+        /**
+         * Plans a workflow.
+         *
+         * @param args       the arguments for the planner.
+         * @param directory  the directory the planner was launched in.
+         * @param properties the properties specified on the command line.
+         *
+         * @return the exitcode of the planner.
+         *
+         * @throws Throwable  any error thrown by the planner.
+         */
+        public int plan( String[] args, String directory, Properties properties ) throws Throwable {
+            Thread current = Thread.currentThread();
+            ClassLoader context = current.getContextClassLoader();
+            current.setContextClassLoader( mLoader );
+            try{
+                return (Integer)mRun.invoke( null, args, directory, properties );
+            }
+            catch( InvocationTargetException e ){
+                throw e.getCause();
+            }
+            finally{
+                current.setContextClassLoader( context );
+            }
+        }
+
+        /**
+         * Closes the class loader.
+         */
+        public void close(){
+            try{
+                mLoader.close();
+            }
+            catch( IOException e ){}
+        }
+    }
+
+    /**
+     * Prints out the usage.
+     */
+    private static void printUsage(){
+        String text =
+          "\n Usage: pegasus-plan-daemon [-t <threads>] [-p <port>] [-f <daemon file>] [-v] [-h]" +
+          "\n Plans the sub workflows of hierarchical workflows, handed over by pegasus-plan." +
+          "\n -t |--threads  the number of workflows planned concurrently. Defaults to " + DEFAULT_THREADS +
+          "\n -p |--port     the port to listen on for requests from localhost. Defaults to any free port" +
+          "\n -f |--file     the file the port is written out to, that pegasus-plan looks up." +
+          "\n                Defaults to $HOME/" + DEFAULT_DAEMON_FILE +
+          "\n -v |--verbose  increases the verbosity of messages logged by the daemon" +
+          "\n -h |--help     generates this help." +
+          "\n";
+        System.out.println( text );
+    }
+
+    /**
+     * The main program.
+     *
+     * @param args  the arguments.
+     */
+    public static void main( String[] args ){
+        LongOpt[] longOptions = new LongOpt[5];
+        longOptions[0] = new LongOpt( "threads", LongOpt.REQUIRED_ARGUMENT, null, 't' );
+        longOptions[1] = new LongOpt( "port", LongOpt.REQUIRED_ARGUMENT, null, 'p' );
+        longOptions[2] = new LongOpt( "file", LongOpt.REQUIRED_ARGUMENT, null, 'f' );
+        longOptions[3] = new LongOpt( "verbose", LongOpt.NO_ARGUMENT, null, 'v' );
+        longOptions[4] = new LongOpt( "help", LongOpt.NO_ARGUMENT, null, 'h' );
+
+        Getopt g = new Getopt( "pegasus-plan-daemon", args, "t:p:f:vh", longOptions, false );
+        int threads = DEFAULT_THREADS;
+        int port = 0;
+        File daemonFile = new File( System.getProperty( "user.home" ), DEFAULT_DAEMON_FILE );
+        int level = LogManager.INFO_MESSAGE_LEVEL;
+        int option;
+        while( ( option = g.getopt() ) != -1 ){
+            switch( option ){
+                case 't':
+                    threads = Integer.parseInt( g.getOptarg() );
+                    break;
+
+                case 'p':
+                    port = Integer.parseInt( g.getOptarg() );
+                    break;
+
+                case 'f':
+                    daemonFile = new File( g.getOptarg() );
+                    break;
+
+                case 'v':
+                    level++;
+                    break;
+
+                case 'h':
+                    printUsage();
+                    System.exit( 0 );
+                    break;
+
+                default:
+                    printUsage();
+                    System.exit( 1 );
+            }
+        }
+
+        LogManager logger = LogManagerFactory.loadSingletonInstance();
+        logger.setLevel( level );
+        logger.logEventStart( "event.pegasus.plan-daemon", "pegasus.version", new Version().toString() );
+
+        final PlannerDaemon daemon;
+        try{
+            daemon = new PlannerDaemon( port, threads, daemonFile, CPlanner.class.getName(), logger );
+        }
+        catch( IOException e ){
+            logger.log( "Unable to start the planner daemon ", e, LogManager.FATAL_MESSAGE_LEVEL );
+            System.exit( 1 );
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook( new Thread( () -> daemon.shutdown() ) );
+        logger.log( "Planner daemon listening on port " + daemon.getPort() + " with " + threads +
+                    " planners. Daemon file is " + daemonFile,
+                    LogManager.CONSOLE_MESSAGE_LEVEL );
+        daemon.run();
+    }
+}
@@ -35,6 +35,10 @@ import edu.isi.pegasus.planner.provenance.pasoa.producer.XMLProducerFactory;
 
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 /**
@@ -128,6 +132,18 @@ public class Horizontal implements Clusterer,
      */
     private boolean mDisallowClusteringOfSingleJobs;
 
+    /**
+     * The pool of threads on which the clusters are determined. null if the
+     * clusters are determined in the calling thread.
+     */
+    private ForkJoinPool mClusterPool;
+
+    /**
+     * The creation of the clustered jobs whose clusters are being determined
+     * on the pool of threads, in the order of the partitions.
+     */
+    private List<Runnable> mPendingClusters;
+
     /**
      * Singleton access to the job comparator.
      *
@@ -189,6 +205,9 @@ public class Horizontal implements Clusterer,
         mCollapseMap = this.constructMap(mProps.getCollapseFactors());
         mReplacementTable = new HashMap();
         mSubInfoMap = new HashMap();
+        mPendingClusters = new LinkedList<Runnable>();
+        int threads = mProps.getHorizontalClustererThreads();
+        mClusterPool = ( threads > 1 ) ? new ForkJoinPool( threads ) : null;
 
         for(Iterator<GraphNode> it = mScheduledDAG.jobIterator();it.hasNext();){
             //pass the jobs to the callback
@@ -245,9 +264,11 @@ public class Horizontal implements Clusterer,
     public void determineClusters( Partition partition ) throws ClustererException {
         Set s = partition.getNodeIDs();
         List l = new ArrayList(s.size());
-        mLogger.log("Clustering jobs in partition " + partition.getID() +
-                    " " +  s,
-                    LogManager.DEBUG_MESSAGE_LEVEL);
+        if( mLogger.isLoggable( LogManager.DEBUG_MESSAGE_LEVEL ) ){
+            mLogger.log("Clustering jobs in partition " + partition.getID() +
+                        " " +  s,
+                        LogManager.DEBUG_MESSAGE_LEVEL);
+        }
 
        for(Iterator it = s.iterator();it.hasNext();){
            Job job = (Job)mSubInfoMap.get(it.next());
@@ -299,7 +320,10 @@ public class Horizontal implements Clusterer,
 
     /**
      * Collapses the jobs having the same logical name according to the sites
-     * where they are scheduled.
+     * where they are scheduled. The clusters for the jobs on each site are
+     * determined on the pool of threads if one is configured, and the
+     * clustered jobs are created in the order of the partitions when the
+     * clustered workflow is retrieved.
      *
      * @param name         the logical name of the jobs in the list passed to
      *                     this function.
@@ -308,13 +332,8 @@ public class Horizontal implements Clusterer,
      * @param partitionID  the ID of the partition to which the jobs belong.
      */
     private void collapseJobs( String name, List jobs, String partitionID ){
-        String key  = null;
-        Job job = null;
-        List l      = null;
         //internal map that keeps the jobs according to the execution pool
-        Map tempMap    = new java.util.HashMap();
-        int[] cFactor  = new int[] {0, 0, 0, 0}; //the collapse factor for collapsing the jobs
-        AggregatedJob fatJob = null;
+        Map<String,List<Job>> tempMap = new java.util.HashMap<String,List<Job>>();
 
         mLogger.log("Clustering jobs of type " + name,
                     LogManager.DEBUG_MESSAGE_LEVEL);
@@ -322,37 +341,23 @@ public class Horizontal implements Clusterer,
         //traverse through all the jobs and order them by the
         //pool on which they are scheduled
         for(Iterator it = jobs.iterator();it.hasNext();){
-
-            job = (Job)it.next();
-            key = job.executionPool;
-            //check if the job logical name is already in the map
-            if(tempMap.containsKey(key)){
-                //add the job to the corresponding list.
-                l = (List)tempMap.get(key);
-                l.add(job);
-            }
-            else{
-                //first instance of this logical name
-                l = new java.util.LinkedList();
-                l.add(job);
-                tempMap.put(key,l);
+            Job job = (Job)it.next();
+            List<Job> l = tempMap.get( job.executionPool );
+            if( l == null ){
+                //first job on this pool
+                l = new ArrayList<Job>();
+                tempMap.put( job.executionPool, l );
             }
+            l.add( job );
         }
 
-        //iterate through the built up temp map to get jobs per execution pool
-        String factor = null;
-        int size = -1;
-        //the id for the fatjobs. we want ids
-        //unique across the execution pools for a
-        //particular type of job being merged.
-        int id = 1;
-
-        for( Iterator it = tempMap.entrySet().iterator();it.hasNext(); ){
-            Map.Entry entry = (Map.Entry)it.next();
-            l   = (List)entry.getValue();
-            size= l.size();
+        //determine the clusters of the jobs on each pool
+        List<SiteClusters> clusters = new ArrayList<SiteClusters>( tempMap.size() );
+        for( Map.Entry<String,List<Job>> entry : tempMap.entrySet() ){
+            List<Job> l = entry.getValue();
+            int size    = l.size();
             //the pool name on which the job is to run is the key
-            key = (String)entry.getKey();
+            String key  = entry.getKey();
 
             if( size <= 1 && mDisallowClusteringOfSingleJobs ){
                 //no need to cluster one job. go to the next iteration
@@ -361,16 +366,8 @@ public class Horizontal implements Clusterer,
                 continue;
             }
 
-            JobAggregator aggregator = mJobAggregatorFactory.loadInstance( (Job)l.get(0) );
-            if(aggregator.entryNotInTC(key)){
-                //no need to cluster one job. go to the next iteration
-                mLogger.log("\t No clustering for jobs mapped to execution site "  + key + " as no job aggregator entry  in tc ",
-                            LogManager.WARNING_MESSAGE_LEVEL);
-                continue;
-            }
-
             //checks made ensure that l is not empty at this point
-            cFactor = getCollapseFactor( key, (Job) l.get(0), size );
+            int[] cFactor = getCollapseFactor( key, l.get(0), size );
             if( cFactor[0] == 1 && cFactor[1] == 0 && mDisallowClusteringOfSingleJobs ){
                 mLogger.log("\t Collapse factor of (" + cFactor[0] + "," + cFactor[1] +
                             ") determined for pool. " + key +
@@ -378,308 +375,321 @@ public class Horizontal implements Clusterer,
                 continue;
             }
 
-        // Does the user prefer runtime based clustering?
-	    if (mProps.getHorizontalClusterPreference() != null
-		    && mProps.getHorizontalClusterPreference().equalsIgnoreCase("runtime")) {
-
-        List<List<Job>> bins = null;
-        String sMaxRunTime = (String) ((Job) l.get( 0 )).vdsNS.get(Pegasus.MAX_RUN_TIME);
-
-        // Does the user prefer to cluster jobs into bins of a fixed capacity?
-        // If not, cluster jobs evenly into a fixed number of bins.
-        // The number of bins should be specified through clusters.num property
-        if (sMaxRunTime != null) {
-            double maxRunTime = -1;
-            try {
-                maxRunTime = Double.parseDouble(sMaxRunTime);
-            } catch (RuntimeException e) {
-                throw new RuntimeException( "Profile key "
-                    + Pegasus.MAX_RUN_TIME
-                    + " is either not set, or is not a valid number.",
-                    e );
+            SiteClusters c = new SiteClusters( key, l );
+            c.mBins = ( mClusterPool == null ) ?
+                      CompletableFuture.completedFuture( this.determineBins( key, l, cFactor ) ):
+                      mClusterPool.submit( () -> this.determineBins( key, l, cFactor ) );
+            clusters.add( c );
+        }
+
+        if( mClusterPool == null ){
+            this.createClusteredJobs( name, partitionID, clusters );
+        }
+        else{
+            mPendingClusters.add( () -> this.createClusteredJobs( name, partitionID, clusters ) );
+        }
+    }
+
+    /**
+     * Creates the clustered jobs for the clusters determined for the jobs of
+     * a transformation in a partition, and adds them to the workflow.
+     *
+     * @param name         the logical name of the jobs being clustered.
+     * @param partitionID  the ID of the partition to which the jobs belong.
+     * @param clusters     the clusters determined for each site.
+     */
+    private void createClusteredJobs( String name, String partitionID, List<SiteClusters> clusters ){
+        //the id for the fatjobs. we want ids
+        //unique across the execution pools for a
+        //particular type of job being merged.
+        int id = 1;
+
+        for( SiteClusters c : clusters ){
+            JobAggregator aggregator = mJobAggregatorFactory.loadInstance( c.mJobs.get(0) );
+            if(aggregator.entryNotInTC(c.mSite)){
+                //no need to cluster one job. go to the next iteration
+                mLogger.log("\t No clustering for jobs mapped to execution site "  + c.mSite + " as no job aggregator entry  in tc ",
+                            LogManager.WARNING_MESSAGE_LEVEL);
+                continue;
             }
 
-            mLogger.log( "\t Clustering jobs mapped to execution site " + key
-                    + " having maximum run time  " + cFactor[2],
-                    LogManager.DEBUG_MESSAGE_LEVEL );
+            List<List<Job>> bins;
+            try{
+                bins = c.mBins.get();
+            }
+            catch( InterruptedException e ){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while clustering jobs of type " + name, e );
+            }
+            catch( ExecutionException e ){
+                Throwable cause = e.getCause();
+                throw ( cause instanceof RuntimeException ) ?
+                      ( RuntimeException )cause :
+                      new RuntimeException( "Unable to cluster jobs of type " + name, cause );
+            }
 
-            Collections.sort(l, getBinPackingComparator());
+            for( List<Job> bin : bins ){
+                AggregatedJob fatJob = aggregator.constructAbstractAggregatedJob( bin,
+                                                   name, constructID( partitionID, id ) );
 
-            mLogger.log(
-                    "Job Type: " + ((Job) l.get( 0 )).getCompleteTCName()
-                            + " max runtime " + maxRunTime,
-                    LogManager.DEBUG_MESSAGE_LEVEL );
+                updateReplacementTable( bin, fatJob );
 
-            mLogger.log( "Clustering into fixed capacity bins " + maxRunTime,
-                    LogManager.DEBUG_MESSAGE_LEVEL );
+                // increment the id
+                id++;
 
-            bins = bestFitBinPack( l, maxRunTime );
-        } else {
-            int clusterNum = 1;
-            String bundle = (String) job.vdsNS.get( Pegasus.BUNDLE_KEY );
+                // add the fat job to the dag
+                // use the method to add, else add explicitly to DagInfo
+                mScheduledDAG.add( fatJob );
 
-            if (bundle != null) {
-                clusterNum = Integer.parseInt(bundle);
-            } else {
-                mLogger.log( "Neither " + Pegasus.MAX_RUN_TIME + ", nor " + Pegasus.BUNDLE_KEY +
-                        " specified. Merging all tasks into one job",
-                        LogManager.WARNING_MESSAGE_LEVEL );
+                // log the refiner action capturing the creation of the job
+                this.logRefinerAction( fatJob, aggregator );
             }
+        }
+    }
 
-            mLogger.log( "Clustering into fixed number of bins " + clusterNum,
-                    LogManager.DEBUG_MESSAGE_LEVEL );
+    /**
+     * Determines the jobs that make up each clustered job, for the jobs of a
+     * transformation mapped to a site. It only refers to the jobs and the
+     * collapse factor, and can be called for different sites and partitions
+     * concurrently.
+     *
+     * @param site     the site where the jobs are mapped.
+     * @param jobs     the jobs of the same transformation mapped to the site.
+     * @param cFactor  the collapse factor determined for the jobs.
+     *
+     * @return List of List of Jobs where each List is the set of jobs that
+     *         make up a clustered job.
+     */
+    private List<List<Job>> determineBins( String site, List<Job> jobs, int[] cFactor ){
+        int size = jobs.size();
+        List<List<Job>> bins = new ArrayList<List<Job>>();
+        Job job  = jobs.get( 0 );
 
-            Collections.sort(l, getBinPackingComparator());
-            bins = bestFitBinPack( l, clusterNum );
-        }
+        // Does the user prefer runtime based clustering?
+        if (mProps.getHorizontalClusterPreference() != null
+            && mProps.getHorizontalClusterPreference().equalsIgnoreCase("runtime")) {
+
+            String sMaxRunTime = (String) job.vdsNS.get(Pegasus.MAX_RUN_TIME);
+            String bundle      = (String) job.vdsNS.get( Pegasus.BUNDLE_KEY );
+
+            // Does the user prefer to cluster jobs into bins of a fixed capacity?
+            // If not, cluster jobs evenly into a fixed number of bins.
+            // The number of bins should be specified through clusters.num property
+            if (sMaxRunTime != null) {
+                double maxRunTime = -1;
+                try {
+                    maxRunTime = Double.parseDouble(sMaxRunTime);
+                } catch (RuntimeException e) {
+                    throw new RuntimeException( "Profile key "
+                        + Pegasus.MAX_RUN_TIME
+                        + " is either not set, or is not a valid number.",
+                        e );
+                }
+
+                //bins are determined once per group of jobs, so the boxed
+                //arguments of the parameterized calls are not worth a guard
+                mLogger.log( "\t Clustering jobs of type {} mapped to execution site {} into fixed capacity bins {}",
+                        LogManager.DEBUG_MESSAGE_LEVEL, job.getCompleteTCName(), site, maxRunTime );
+
+                bins = bestFitBinPack( jobs, maxRunTime );
+            } else {
+                int clusterNum = 1;
+                if (bundle != null) {
+                    clusterNum = Integer.parseInt(bundle);
+                } else {
+                    mLogger.log( "Neither " + Pegasus.MAX_RUN_TIME + ", nor " + Pegasus.BUNDLE_KEY +
+                            " specified. Merging all tasks into one job",
+                            LogManager.WARNING_MESSAGE_LEVEL );
+                }
 
-		mLogger.log( "Jobs are merged into " + bins.size()
-		        + " clustered jobs.", LogManager.DEBUG_MESSAGE_LEVEL );
-
-		for (List<Job> bin : bins) {
-		    fatJob = aggregator.constructAbstractAggregatedJob( bin,
-			    name, constructID( partitionID, id ) );
-
-		    updateReplacementTable( bin, fatJob );
-
-		    // increment the id
-		    id++;
-
-		    // add the fat job to the dag
-		    // use the method to add, else add explicitly to DagInfo
-		    mScheduledDAG.add( fatJob );
-
-		    // log the refiner action capturing the creation of the job
-		    this.logRefinerAction( fatJob, aggregator );
-		}
-		tempMap = null;
-		return;
-	    }
-
-            //we do collapsing in chunks of 3 instead of picking up
-            //from the properties file. ceiling is (x + y -1)/y
-            //cFactor = (size + 2)/3;
-	    else {
-		mLogger.log( "\t Clustering jobs mapped to execution site " + key
-		        + " with collapse factor " + cFactor[0] + ","
-		        + cFactor[1], LogManager.DEBUG_MESSAGE_LEVEL );
-		if (cFactor[0] >= size) {
-
-		    // means collapse all the jobs in the list as a fat node
-		    // Note: Passing a link to iterator might be more efficient,
-		    // as
-		    // this would only require a single traversal through the
-		    // list
-		    fatJob = aggregator.constructAbstractAggregatedJob(
-			    l.subList( 0, size ), name,
-			    constructID( partitionID, id ) );
-		    updateReplacementTable( l.subList( 0, size ), fatJob );
-
-		    // increment the id
-		    id++;
-		    // add the fat job to the dag
-		    // use the method to add, else add explicitly to DagInfo
-		    mScheduledDAG.add( fatJob );
-
-		    // log the refiner action capturing the creation of the job
-		    this.logRefinerAction( fatJob, aggregator );
-		} else {
-		    // do collapsing in chunks of cFactor
-		    int increment = 0;
-		    for (int i = 0; i < size; i = i + increment) {
-			// compute the increment and decrement cFactor[1]
-			increment = (cFactor[1] > 0) ? cFactor[0] + 1
-			        : cFactor[0];
-			cFactor[1]--;
-
-			if (increment == 1) {
-			    // we can exit out of the loop as we do not want
-			    // any merging for single jobs
-			    break;
-			} else if ((i + increment) < size) {
-			    fatJob = aggregator.constructAbstractAggregatedJob(
-				    l.subList( i, i + increment ), name,
-				    constructID( partitionID, id ) );
-
-			    updateReplacementTable(
-				    l.subList( i, i + increment ), fatJob );
-			} else {
-			    fatJob = aggregator.constructAbstractAggregatedJob(
-				    l.subList( i, size ), name,
-				    constructID( partitionID, id ) );
-			    updateReplacementTable( l.subList( i, size ),
-				    fatJob );
-			}
-
-			// increment the id
-			id++;
-
-			// add the fat job to the dag
-			// use the method to add, else add explicitly to DagInfo
-			mScheduledDAG.add( fatJob );
-
-			// log the refiner action capturing the creation of the
-			// job
-			this.logRefinerAction( fatJob, aggregator );
-		    }
-		}
-	    }
+                mLogger.log( "\t Clustering jobs of type {} mapped to execution site {} into fixed number of bins {}",
+                        LogManager.DEBUG_MESSAGE_LEVEL, job.getCompleteTCName(), site, clusterNum );
 
+                bins = bestFitBinPack( jobs, clusterNum );
+            }
+
+            mLogger.log( "Jobs are merged into {} clustered jobs.", LogManager.DEBUG_MESSAGE_LEVEL, bins.size() );
+            return bins;
         }
 
-        //explicity free the map
-        tempMap = null;
+        //we do collapsing in chunks of 3 instead of picking up
+        //from the properties file. ceiling is (x + y -1)/y
+        //cFactor = (size + 2)/3;
+        mLogger.log( "\t Clustering jobs mapped to execution site {} with collapse factor {},{}",
+                LogManager.DEBUG_MESSAGE_LEVEL, site, cFactor[0], cFactor[1] );
+        if (cFactor[0] >= size) {
+            // means collapse all the jobs in the list as a fat node
+            bins.add( jobs );
+        } else {
+            // do collapsing in chunks of cFactor
+            int remainder = cFactor[1];
+            int increment = 0;
+            for (int i = 0; i < size; i = i + increment) {
+                // compute the increment and decrement the remainder
+                increment = (remainder > 0) ? cFactor[0] + 1
+                        : cFactor[0];
+                remainder--;
+
+                if (increment == 1) {
+                    // we can exit out of the loop as we do not want
+                    // any merging for single jobs
+                    break;
+                }
+                bins.add( jobs.subList( i, Math.min( i + increment, size ) ) );
+            }
+        }
+        return bins;
     }
 
     /**
-     * Perform best fit bin packing.
+     * Perform best fit bin packing. The jobs are packed in decreasing order
+     * of their runtimes, each into the bin with the least remaining capacity
+     * that can still hold it. The open bins are kept sorted by their
+     * runtime, so each job is placed in O(log k) for k open bins.
      *
      * @param jobs
-     *            List of jobs sorted in decreasing order of the job runtime.
+     *            List of jobs to be packed.
      * @param maxTime
      *            The maximum time for which the clustered job should run.
      * @return List of List of Jobs where each List <Job> is the set of jobs
      *         which should be clustered together so as to run in under maxTime.
      */
     private List<List<Job>> bestFitBinPack(List<Job> jobs, double maxTime) {
+        double[] runtimes = this.getRunTimes( jobs );
+        int[] order       = this.sortByDecreasingRunTime( runtimes );
+
+        List<Bin> allBins = new ArrayList<Bin>();
+        TreeSet<Bin> open = new TreeSet<Bin>();
+        int unclustered   = 0;
+        //the smallest runtime of a job that can be clustered
+        double minJobRunTime = Double.MAX_VALUE;
+        for( int i = order.length - 1; i >= 0 && minJobRunTime == Double.MAX_VALUE; i-- ){
+            if( runtimes[ order[i] ] <= maxTime ){
+                minJobRunTime = runtimes[ order[i] ];
+            }
+        }
 
-	List<List<Job>> bins = new LinkedList<List<Job>>();
-	List<List<Job>> returnBins = new LinkedList<List<Job>>();
-	List<Double> binTime = new LinkedList<Double>();
-	double minJobRunTime = Double.MAX_VALUE;
+        for( int i : order ){
+            double jobRunTime = runtimes[i];
 
-	if (jobs != null && jobs.size() > 0) {
-	    minJobRunTime = Double.parseDouble( getRunTime( jobs.get( jobs
-		    .size() - 1 ) ) );
-	}
+            // Is the job runtime greater than the max allowed runtime? Then
+            // do not cluster this job.
+            if (maxTime < jobRunTime) {
+                unclustered++;
+                continue;
+            }
 
-	for (Job j : jobs) {
-	    List<Job> bin;
-	    double currentBinTime;
-	    boolean isBreak = false;
-	    double jobRunTime = Double.parseDouble( getRunTime( j ) );
-
-	    mLogger.log( "Job " + j.getID() + " runtime " + jobRunTime,
-		    LogManager.DEBUG_MESSAGE_LEVEL );
-
-	    // Create first bin.
-	    if (bins.size() == 0) {
-		bins.add( new LinkedList<Job>() );
-		binTime.add( 0, 0d );
-	    }
-
-	    // Loop through each job.
-	    for (int i = 0, k = bins.size(); i < k; ++i) {
-		currentBinTime = binTime.get( i );
-
-		// Is the job runtime greater than the max allowed runtime? Then
-		// do not cluster this job.
-		if (maxTime < jobRunTime) {
-		    mLogger.log( "Job " + j.getID() + " runtime " + jobRunTime
-			    + " is greater than clusters max run time "
-			    + maxTime + " specified by the Pegasus profile "
-			    + Pegasus.MAX_RUN_TIME,
-			    LogManager.DEBUG_MESSAGE_LEVEL );
-		    break;
-		}
-
-		// Can we fit the job in an existing bin?
-		if (maxTime >= currentBinTime + jobRunTime) {
-		    bin = bins.get( i );
-		    bin.add( j );
-		    binTime.set( i, currentBinTime + jobRunTime );
-		    isBreak = true;
-		} else if (i == k - 1) {
-		    // We cannot fit the job in any of the open bins, so create
-		    // a new one.
-		    bin = new LinkedList<Job>();
-		    bin.add( j );
-		    bins.add( bin );
-		    binTime.add( binTime.size(), jobRunTime );
-		}
-
-		// Either this bin is full, or it does not even have space to
-		// fit the job with the smallest run time. So lets avoid trying
-		// to fit jobs in this bin.
-		if (binTime.get( i ) + minJobRunTime > maxTime) {
-		    returnBins.add( bins.remove( i ) );
-		    binTime.remove( i );
-		}
-
-		// Job has been assigned a bin, no need to check other bins for
-		// space.
-		if (isBreak)
-		    break;
-	    }
-	}
+            // The fullest bin that can still fit the job
+            Bin bin = open.floor( new Bin( Integer.MAX_VALUE, maxTime - jobRunTime ) );
+            while( bin != null && bin.mTime + jobRunTime > maxTime ){
+                bin = open.lower( bin );
+            }
+            if( bin == null ){
+                // We cannot fit the job in any of the open bins, so create
+                // a new one.
+                bin = new Bin( allBins.size(), 0 );
+                allBins.add( bin );
+            }
+            else{
+                open.remove( bin );
+            }
+            bin.add( jobs.get( i ), jobRunTime );
 
-	returnBins.addAll( bins );
-	return returnBins;
+            // Unless the bin does not even have space to fit the job with
+            // the smallest run time, keep it open for the jobs to follow.
+            if( bin.mTime + minJobRunTime <= maxTime ){
+                open.add( bin );
+            }
+        }
+
+        if( unclustered > 0 ){
+            mLogger.log( unclustered + " jobs have runtime greater than clusters max run time "
+                         + maxTime + " specified by the Pegasus profile "
+                         + Pegasus.MAX_RUN_TIME + " and are not clustered",
+                         LogManager.DEBUG_MESSAGE_LEVEL );
+        }
+
+        List<List<Job>> returnBins = new ArrayList<List<Job>>( allBins.size() );
+        for( Bin b : allBins ){
+            returnBins.add( b.mJobs );
+        }
+        return returnBins;
     }
 
     /**
-     * Perform best fit bin packing.
+     * Perform best fit bin packing. The jobs are added in decreasing order of
+     * their runtimes, each to the bin with the shortest combined runtime.
      *
-     * @param jobs    List of jobs sorted in decreasing order of the job runtime.
+     * @param jobs    List of jobs to be packed.
      * @param maxBins The fixed-number of bins taht should be created
      * @return List of List of Jobs where each List <Job> is the set of jobs
      * which should be clustered together so as to run in under maxTime.
      */
     private List<List<Job>> bestFitBinPack(List<Job> jobs, int maxBins) {
-
-        class Bin {
-            private List<Job> bin = new LinkedList<Job>();
-            private double time = 0;
-
-            public void addJob(Job j) {
-                bin.add(j);
-                double jobRunTime = Double.parseDouble(getRunTime(j));
-                time += jobRunTime;
-            }
-
-            public List<Job> getJobs() {
-                return bin;
-            }
-
-            public double getTime() {
-                return time;
-            }
-        }
-
-        PriorityQueue<Bin> bins = new PriorityQueue<Bin>(maxBins, new Comparator<Bin>() {
-            @Override
-            public int compare(Bin bin1, Bin bin2) {
-                return (int) (bin1.getTime() - bin2.getTime());
-            }
-        });
+        double[] runtimes = this.getRunTimes( jobs );
+        int[] order       = this.sortByDecreasingRunTime( runtimes );
 
         // Initialize the bins, to the specified number of bins.
         // If the number of jobs n is less than @maxBins then create n bins
-        maxBins = Math.min(maxBins, jobs.size());
-
+        maxBins = Math.max( 1, Math.min(maxBins, jobs.size()) );
+        List<Bin> allBins = new ArrayList<Bin>( maxBins );
+        PriorityQueue<Bin> bins = new PriorityQueue<Bin>( maxBins );
         for (int i = 0; i < maxBins; ++i) {
-            bins.add(new Bin());
+            Bin bin = new Bin( i, 0 );
+            allBins.add( bin );
+            bins.add( bin );
         }
 
-        for (Job j : jobs) {
-            Bin bin;
-            mLogger.log("Job " + j.getID() + " runtime " + getRunTime(j),
-                    LogManager.DEBUG_MESSAGE_LEVEL);
-
+        for( int i : order ){
             // Add the job to the bin with the shortest combined runtime
-            bin = bins.poll();
-            bin.addJob(j);
+            Bin bin = bins.poll();
+            bin.add( jobs.get( i ), runtimes[i] );
             bins.offer(bin);
         }
 
-        List<List<Job>> returnBins = new LinkedList<List<Job>>();
+        List<List<Job>> returnBins = new ArrayList<List<Job>>( maxBins );
+        for( Bin b : allBins ){
+            returnBins.add( b.mJobs );
+        }
+        return returnBins;
+    }
+
+    /**
+     * Returns the runtimes of the jobs, parsed once.
+     *
+     * @param jobs  the jobs
+     *
+     * @return the runtimes indexed by the position of the job in the list.
+     */
+    private double[] getRunTimes( List<Job> jobs ){
+        double[] runtimes = new double[ jobs.size() ];
+        int i = 0;
+        for( Job job : jobs ){
+            runtimes[ i++ ] = Double.parseDouble( getRunTime( job ) );
+        }
+        return runtimes;
+    }
 
-        for (Bin b : bins) {
-            mLogger.log("Bin Size: " + b.getTime(), LogManager.DEBUG_MESSAGE_LEVEL);
-            returnBins.add(b.getJobs());
+    /**
+     * Returns the indices of the runtimes sorted in decreasing order of the
+     * runtimes. Jobs with the same runtime stay in the order of the list.
+     *
+     * @param runtimes  the runtimes.
+     *
+     * @return the sorted indices
+     */
+    private int[] sortByDecreasingRunTime( double[] runtimes ){
+        Integer[] indices = new Integer[ runtimes.length ];
+        for( int i = 0; i < indices.length; i++ ){
+            indices[i] = i;
         }
+        Arrays.sort( indices, ( i, j ) -> Double.compare( runtimes[j], runtimes[i] ) );
 
-        return returnBins;
+        int[] order = new int[ indices.length ];
+        for( int i = 0; i < order.length; i++ ){
+            order[i] = indices[i];
+        }
+        return order;
     }
 
     private String getRunTime(Job job) {
@@ -701,46 +711,6 @@ public class Horizontal implements Clusterer,
 	        + " is not set for the job " + job.getID() );
     }
 
-    /**
-     * The comparator is used to sort a collection of jobs in decreasing order
- of their run times as specified by the Pegasus.DEPRECATED_RUNTIME_KEY property.
-     *
-     * @return
-     */
-    private Comparator<Job> getBinPackingComparator() {
-	return new Comparator<Job>() {
-
-	    @Override
-	    public int compare(Job job1, Job job2) {
-		String s1 = getRunTime( job1 );
-		String s2 = getRunTime( job2 );
-
-		double jobTime1 = Double.parseDouble( s1 );
-		double jobTime2 = Double.parseDouble( s2 );
-
-		return (int) (jobTime2 - jobTime1);
-	    }
-
-	    private String getRunTime (Job job) {
-
-		String sTmp = (String) job.vdsNS.get( Pegasus.RUNTIME_KEY );
-		if (sTmp != null && sTmp.length() > 0) {
-		    return sTmp;
-		}
-
-		sTmp = (String) job.vdsNS.get(Pegasus.DEPRECATED_RUNTIME_KEY );
-		if (sTmp != null && sTmp.length() > 0) {
-		    return sTmp;
-		}
-
-		throw new RuntimeException( "Profile Key: "
-		        + Pegasus.RUNTIME_KEY + " is not set for the job "
-		        + job.getID() );
-	    }
-
-	};
-    }
-
     /**
      * Returns the clustered workflow.
      *
@@ -749,6 +719,24 @@ public class Horizontal implements Clusterer,
      * @throws ClustererException in case of error.
      */
     public ADag getClusteredDAG() throws ClustererException{
+        //create the clustered jobs whose clusters were
+        //determined on the pool of threads
+        try{
+            for( Runnable r : mPendingClusters ){
+                r.run();
+            }
+        }
+        catch( RuntimeException e ){
+            throw new ClustererException( "Unable to cluster jobs", e );
+        }
+        finally{
+            mPendingClusters.clear();
+            if( mClusterPool != null ){
+                mClusterPool.shutdown();
+                mClusterPool = null;
+            }
+        }
+
         //do all the replacement of jobs in the main data structure
         //that needs to be returned
         replaceJobs();
@@ -1052,7 +1040,9 @@ public class Horizontal implements Clusterer,
         List l = null;
         List nl = null;
         Job sub = new Job();
-        String msg;
+        String msg = null;
+        //the edge messages are only built if they are logged
+        boolean debug = mLogger.isLoggable( LogManager.DEBUG_MESSAGE_LEVEL );
         
         //Set mergedEdges = new java.util.HashSet();
         //this is temp thing till the hast thing sorted out correctly
@@ -1067,7 +1057,9 @@ public class Horizontal implements Clusterer,
                 PCRelation rel = new PCRelation( parentJob.getID(), childJob.getID());
                 String parent = rel.getParent();
                 String child  = rel.getChild();
-                msg = ("\n Replacing " + rel);
+                if( debug ){
+                    msg = ("\n Replacing " + rel);
+                }
 
                 String value = (String)mReplacementTable.get(parent);
                 if(value != null){
@@ -1077,17 +1069,19 @@ public class Horizontal implements Clusterer,
                 if(value != null){
                     rel.child = value;
                 }
-                msg += (" with " + rel);
-
                 //put in the merged edges set
                 if(!mergedEdges.contains(rel)){
                     val = mergedEdges.add(rel);
-                    msg += "Add to set : " + val;
+                    if( debug ){
+                        msg += " with " + rel + "Add to set : " + val;
+                    }
                 }
-               else{
-                   msg += "\t Duplicate Entry for " + rel;
+               else if( debug ){
+                   msg += " with " + rel + "\t Duplicate Entry for " + rel;
+               }
+               if( debug ){
+                   mLogger.log( msg, LogManager.DEBUG_MESSAGE_LEVEL );
                }
-               mLogger.log( msg, LogManager.DEBUG_MESSAGE_LEVEL );
             }
         }
         
@@ -1102,8 +1096,7 @@ public class Horizontal implements Clusterer,
         for( Iterator it = mReplacementTable.entrySet().iterator(); it.hasNext(); ){
             Map.Entry entry = (Map.Entry)it.next();
             String key = (String)entry.getKey();
-            mLogger.log("Replacing job " + key +" with " + entry.getValue(),
-                        LogManager.DEBUG_MESSAGE_LEVEL);
+            mLogger.log("Replacing job {} with {}", LogManager.DEBUG_MESSAGE_LEVEL, key, entry.getValue() );
             //remove the old job
             //remove by just creating a subinfo object with the same key
             sub.jobName = key;
@@ -1132,6 +1125,71 @@ public class Horizontal implements Clusterer,
    }
 
 
+    /**
+     * The jobs of a transformation mapped to a site in a partition, and the
+     * clusters determined for them.
+     */
+    private static class SiteClusters{
+
+        /**
+         * The site where the jobs are mapped.
+         */
+        private final String mSite;
+
+        /**
+         * The jobs.
+         */
+        private final List<Job> mJobs;
+
+        /**
+         * The jobs that make up each clustered job.
+         */
+        private Future<List<List<Job>>> mBins;
+
+        public SiteClusters( String site, List<Job> jobs ){
+            mSite = site;
+            mJobs = jobs;
+        }
+    }
+
+    /**
+     * A bin of jobs while bin packing. Bins are ordered by their combined
+     * runtime, and then by the order in which they were created.
+     */
+    private static class Bin implements Comparable<Bin>{
+
+        /**
+         * The order in which the bin was created.
+         */
+        private final int mIndex;
+
+        /**
+         * The combined runtime of the jobs in the bin.
+         */
+        private double mTime;
+
+        /**
+         * The jobs in the bin.
+         */
+        private final List<Job> mJobs;
+
+        public Bin( int index, double time ){
+            mIndex = index;
+            mTime  = time;
+            mJobs  = new ArrayList<Job>();
+        }
+
+        public void add( Job job, double runtime ){
+            mJobs.add( job );
+            mTime += runtime;
+        }
+
+        public int compareTo( Bin other ){
+            int result = Double.compare( mTime, other.mTime );
+            return ( result == 0 ) ? Integer.compare( mIndex, other.mIndex ) : result;
+        }
+    }
+
     /**
     * A job comparator, that allows me to compare jobs according to the
     * transformation names. It is applied to group jobs in a particular partition,
@@ -65,6 +65,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import edu.isi.pegasus.planner.catalog.classes.Profiles;
 import edu.isi.pegasus.planner.classes.PegasusFile;
+import edu.isi.pegasus.planner.classes.WorkflowMetrics;
 import edu.isi.pegasus.planner.namespace.Metadata;
 import edu.isi.pegasus.planner.refiner.cleanup.Cleanup;
 import edu.isi.pegasus.planner.transfer.implementation.Transfer;
@@ -333,6 +334,28 @@ public class CondorGenerator extends Abstract {
      */
     private String mAppName;
 
+    /**
+     * The number of threads to use for writing out the submit files.
+     */
+    private int mCodeGeneratorThreads;
+
+    /**
+     * The writer used to write out the submit files on a pool of threads,
+     * while the code for the workflow is being generated. Null if the submit
+     * files are written out on the calling thread.
+     */
+    private SubmitFileWriter mSubmitFileWriter;
+
+    /**
+     * The time in nanoseconds spent rendering the submit files.
+     */
+    private long mSubmitRenderTime;
+
+    /**
+     * The time in nanoseconds spent writing out the submit files.
+     */
+    private long mSubmitWriteTime;
+
 
     /**
      * The default constructor.
@@ -367,6 +390,7 @@ public class CondorGenerator extends Abstract {
         mSiteStore   = bag.getHandleToSiteStore();
         mAssignDefaultJobPriorities = mProps.assignDefaultJobPriorities();
         mAssociateConcurrencyLimits = mProps.associateCondorConcurrencyLimits();
+        mCodeGeneratorThreads = mProps.getCodeGeneratorThreads();
         mAppName     = mProps.getProperty( PegasusProperties.PEGASUS_APP_METRICS_PREFIX );
         if( mAppName == null ){
             //can still be null but it is fine
@@ -489,100 +513,125 @@ public class CondorGenerator extends Abstract {
         //write out any category based dagman knobs to the dagman file
         printDagString( this.getCategoryDAGManKnobs( mProps ) );
 
-                    
-        for( Iterator it = dag.iterator(); it.hasNext(); ){
-            GraphNode node = ( GraphNode )it.next();
-            Job job = (Job)node.getContent();
+        long start = System.nanoTime();
+        mSubmitRenderTime = 0;
+        mSubmitWriteTime  = 0;
+        if( mCodeGeneratorThreads > 1 ){
+            //submit files are written out on a pool of threads, while
+            //the .dag file is written out in order on this thread
+            mLogger.log( "Writing out submit files using " + mCodeGeneratorThreads + " threads",
+                         LogManager.DEBUG_MESSAGE_LEVEL );
+            mSubmitFileWriter = new SubmitFileWriter( mCodeGeneratorThreads );
+        }
+
+        try{
+            for( Iterator it = dag.iterator(); it.hasNext(); ){
+                GraphNode node = ( GraphNode )it.next();
+                Job job = (Job)node.getContent();
             
-            //only apply priority if job is not associated with a priority
-            //beforehand and assign priorities by default is true
-            if( !job.condorVariables.containsKey( Condor.PRIORITY_KEY ) &&
-                 this.mAssignDefaultJobPriorities ){
-                int priority = getJobPriority( job, node.getDepth() );
+                //only apply priority if job is not associated with a priority
+                //beforehand and assign priorities by default is true
+                if( !job.condorVariables.containsKey( Condor.PRIORITY_KEY ) &&
+                     this.mAssignDefaultJobPriorities ){
+                    int priority = getJobPriority( job, node.getDepth() );
                 
-                //apply a priority to the job overwriting any preexisting priority
-                job.condorVariables.construct( Condor.PRIORITY_KEY,
-                                               new Integer(priority).toString() );
+                    //apply a priority to the job overwriting any preexisting priority
+                    job.condorVariables.construct( Condor.PRIORITY_KEY,
+                                                   new Integer(priority).toString() );
                                                
-                //log to debug
-                StringBuffer sb = new StringBuffer();
-                sb.append( "Applying priority of " ).append( priority ).
-                        append( " to " ).append( job.getID() );
-                mLogger.log( sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL );
-            }
+                    //log to debug
+                    StringBuffer sb = new StringBuffer();
+                    sb.append( "Applying priority of " ).append( priority ).
+                            append( " to " ).append( job.getID() );
+                    mLogger.log( sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL );
+                }
             
-            // HTCondor ticket 5749 . We can assign DAG priorities only if
-            // detected condor version is greater than 8.5.6
-            if( mCondorVersion >= CondorVersion.v_8_5_6 ){
-                //PM-1105 assign a DAGMAN priority that mirrors the condor
-                //job priority if set, only if DAGMAN priority is not already set
-                if( !job.dagmanVariables.containsKey( Dagman.PRIORITY_KEY) ){
-                    //check again if condor priority is set and mirror it
-                    if( job.condorVariables.containsKey( Condor.PRIORITY_KEY)){
-                        job.dagmanVariables.construct( Dagman.PRIORITY_KEY, 
-                                                       (String)job.condorVariables.get(Condor.PRIORITY_KEY) );
+                // HTCondor ticket 5749 . We can assign DAG priorities only if
+                // detected condor version is greater than 8.5.6
+                if( mCondorVersion >= CondorVersion.v_8_5_6 ){
+                    //PM-1105 assign a DAGMAN priority that mirrors the condor
+                    //job priority if set, only if DAGMAN priority is not already set
+                    if( !job.dagmanVariables.containsKey( Dagman.PRIORITY_KEY) ){
+                        //check again if condor priority is set and mirror it
+                        if( job.condorVariables.containsKey( Condor.PRIORITY_KEY)){
+                            job.dagmanVariables.construct( Dagman.PRIORITY_KEY, 
+                                                           (String)job.condorVariables.get(Condor.PRIORITY_KEY) );
+                        }
                     }
                 }
-            }
            
                  
-            if( job instanceof DAGJob ){
-                //SUBDAG EXTERNAL  B  inner.dag
-                DAGJob djob = ( DAGJob )job;
+                if( job instanceof DAGJob ){
+                    //SUBDAG EXTERNAL  B  inner.dag
+                    DAGJob djob = ( DAGJob )job;
                 
-                //djob.dagmanVariables.checkKeyInNS( Dagman.SUBDAG_EXTERNAL_KEY,
-                //                                  djob.getDAGFile() );
-                StringBuffer sb = new StringBuffer();
-                sb.append( Dagman.SUBDAG_EXTERNAL_KEY ).append( " " ).append( job.getName() ).
-                   append( " " ).append( djob.getDAGFile() );
+                    //djob.dagmanVariables.checkKeyInNS( Dagman.SUBDAG_EXTERNAL_KEY,
+                    //                                  djob.getDAGFile() );
+                    StringBuffer sb = new StringBuffer();
+                    sb.append( Dagman.SUBDAG_EXTERNAL_KEY ).append( " " ).append( job.getName() ).
+                       append( " " ).append( djob.getDAGFile() );
                 
-                //check if dag needs to run in a specific directory
-                String dagDir = djob.getDirectory();
-                if( dagDir != null){
-                    sb.append( " " ).append( Dagman.DIRECTORY_EXTERNAL_KEY ).
-                       append( " " ).append( dagDir );
-                }
+                    //check if dag needs to run in a specific directory
+                    String dagDir = djob.getDirectory();
+                    if( dagDir != null){
+                        sb.append( " " ).append( Dagman.DIRECTORY_EXTERNAL_KEY ).
+                           append( " " ).append( dagDir );
+                    }
                 
-                //if no category is associated with the job, add a default
-                //category
-                if( !job.dagmanVariables.containsKey( Dagman.CATEGORY_KEY ) ){
-                    job.dagmanVariables.construct( Dagman.CATEGORY_KEY, DEFAULT_SUBDAG_CATEGORY_KEY );
-                }
+                    //if no category is associated with the job, add a default
+                    //category
+                    if( !job.dagmanVariables.containsKey( Dagman.CATEGORY_KEY ) ){
+                        job.dagmanVariables.construct( Dagman.CATEGORY_KEY, DEFAULT_SUBDAG_CATEGORY_KEY );
+                    }
                 
-                printDagString( sb.toString() );
+                    printDagString( sb.toString() );
             
-                printDagString( job.dagmanVariables.toString( job.getName()) );
-            }
-            else{ //normal jobs and subdax jobs
+                    printDagString( job.dagmanVariables.toString( job.getName()) );
+                }
+                else{ //normal jobs and subdax jobs
                 
-                if( job.typeRecursive() ){
-                    Job daxJob = job;
-                    job = subdaxGen.generateCode( job  );
+                    if( job.typeRecursive() ){
+                        Job daxJob = job;
+                        job = subdaxGen.generateCode( job  );
                     
-                    //set the arguments to the DAX job to the ones
-                    //in the generated DAGJob to ensure stampede event
-                    //is generated correctly
-                    daxJob.setRemoteExecutable( job.getRemoteExecutable() );
-                    daxJob.setArguments( job.getArguments() );
-                }
+                        //set the arguments to the DAX job to the ones
+                        //in the generated DAGJob to ensure stampede event
+                        //is generated correctly
+                        daxJob.setRemoteExecutable( job.getRemoteExecutable() );
+                        daxJob.setArguments( job.getArguments() );
+                    }
                 
-                if( job != null ){
-                    //the submit file for the job needs to be written out
-                    //write out a condor submit file
-                    generateCode( dag, job  );
-                }
+                    if( job != null ){
+                        //the submit file for the job needs to be written out
+                        //write out a condor submit file
+                        generateCode( dag, job  );
+                    }
                 
-                //write out all the dagman profile variables associated
-                //with the job to the .dag file.
-                printDagString( job.dagmanVariables.toString( job.getName()) );
+                    //write out all the dagman profile variables associated
+                    //with the job to the .dag file.
+                    printDagString( job.dagmanVariables.toString( job.getName()) );
 
-            }
+                }
             
             
-            mLogger.log("Written Submit file : " +
-                        job.getFileFullPath( this.mSubmitFileDir, SUBMIT_FILE_SUFFIX), LogManager.DEBUG_MESSAGE_LEVEL);
+                mLogger.log("Written Submit file : " +
+                            job.getFileFullPath( this.mSubmitFileDir, SUBMIT_FILE_SUFFIX), LogManager.DEBUG_MESSAGE_LEVEL);
+            }
+
+            if( mSubmitFileWriter != null ){
+                //wait for the submit files to be written out
+                mSubmitFileWriter.close();
+                mSubmitWriteTime = mSubmitFileWriter.getWriteTime();
+            }
+        }
+        finally{
+            if( mSubmitFileWriter != null ){
+                mSubmitFileWriter.abort();
+                mSubmitFileWriter = null;
+            }
         }
         mLogger.logEventCompletion( LogManager.DEBUG_MESSAGE_LEVEL );
+        long submitEnd = System.nanoTime();
 
         //writing the tail of .dag file
         //that contains the relation pairs
@@ -639,6 +688,9 @@ public class CondorGenerator extends Abstract {
         
         //we are donedirectory
         mDone = true;
+
+        long end = System.nanoTime();
+        this.recordCodeGenerationTimes( dag, start, submitEnd, end );
         
         
         return result;
@@ -670,13 +722,22 @@ public class CondorGenerator extends Abstract {
         }
 
         // intialize the print stream to the file
+        long start = System.nanoTime();
         PrintWriter writer = null;
-        try{
-            writer = getWriter(job , SUBMIT_FILE_SUFFIX);
-        }catch(IOException ioe ){
-            throw new CodeGeneratorException( "IOException while writing submit file for job " +
-                                              job.getName(), ioe);
+        if( mSubmitFileWriter != null ){
+            //rendered in memory and written out by the pool
+            writer = mSubmitFileWriter.open( new File( File.separator +
+                                                       job.getFileFullPath( mSubmitFileDir, SUBMIT_FILE_SUFFIX ) ) );
+        }
+        else{
+            try{
+                writer = getWriter(job , SUBMIT_FILE_SUFFIX);
+            }catch(IOException ioe ){
+                throw new CodeGeneratorException( "IOException while writing submit file for job " +
+                                                  job.getName(), ioe);
+            }
         }
+        long rendering = System.nanoTime();
 
         //handle the globus rsl parameters
         //for the job from various resources
@@ -738,10 +799,50 @@ public class CondorGenerator extends Abstract {
         writer.println( fragment );
 
         // close the print stream to the file (flush)
+        long closing = System.nanoTime();
         writer.close();
+        mSubmitRenderTime += closing - rendering;
+        if( mSubmitFileWriter == null ){
+            //the time writing out is measured by the pool otherwise
+            mSubmitWriteTime += ( rendering - start ) + ( System.nanoTime() - closing );
+        }
         return;
     }
 
+    /**
+     * Records the time spent in the various phases of code generation in
+     * the workflow metrics, and logs them.
+     *
+     * @param dag        the concrete workflow.
+     * @param start      the time in nanoseconds the submit files started to be
+     *                   generated.
+     * @param submitEnd  the time in nanoseconds all the submit files were
+     *                   written out.
+     * @param end        the time in nanoseconds code generation finished.
+     */
+    private void recordCodeGenerationTimes( ADag dag, long start, long submitEnd, long end ){
+        WorkflowMetrics metrics = dag.getWorkflowMetrics();
+        metrics.setCodeGenerationTime( WorkflowMetrics.CODE_GENERATION_PHASE.submit_render,
+                                       mSubmitRenderTime );
+        metrics.setCodeGenerationTime( WorkflowMetrics.CODE_GENERATION_PHASE.submit_write,
+                                       mSubmitWriteTime );
+        metrics.setCodeGenerationTime( WorkflowMetrics.CODE_GENERATION_PHASE.dag_write,
+                                       end - submitEnd );
+        metrics.setCodeGenerationTime( WorkflowMetrics.CODE_GENERATION_PHASE.total,
+                                       end - start );
+
+        StringBuilder sb = new StringBuilder();
+        sb.append( "Code generation times (seconds) - rendering submit files: " ).
+           append( metrics.getCodeGenerationTime( WorkflowMetrics.CODE_GENERATION_PHASE.submit_render ) ).
+           append( " writing submit files: " ).
+           append( metrics.getCodeGenerationTime( WorkflowMetrics.CODE_GENERATION_PHASE.submit_write ) ).
+           append( " writing dag and other files: " ).
+           append( metrics.getCodeGenerationTime( WorkflowMetrics.CODE_GENERATION_PHASE.dag_write ) ).
+           append( " total: " ).
+           append( metrics.getCodeGenerationTime( WorkflowMetrics.CODE_GENERATION_PHASE.total ) );
+        mLogger.log( sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL );
+    }
+
 
     /**
      * Starts monitoring of the workflow by invoking a workflow monitor daemon
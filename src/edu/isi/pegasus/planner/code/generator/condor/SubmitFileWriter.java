@@ -0,0 +1,369 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.code.generator.condor;
+
+import edu.isi.pegasus.planner.code.CodeGeneratorException;
+
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes out the submit files for the jobs on a pool of worker threads.
+ * The contents of a submit file are rendered on the calling thread into
+ * a buffer taken from a fixed pool, and the buffer is handed over to a
+ * worker thread when the writer is closed. The worker encodes the contents
+ * into a reusable byte buffer, writes them out through a file channel,
+ * and returns the buffer to the pool.
+ *
+ * Since the number of buffers is fixed, the calling thread blocks on
+ * opening a writer when all the buffers are waiting to be written out.
+ *
+ * @version $Revision$
+ */
+public class SubmitFileWriter {
+
+    /**
+     * The number of pooled buffers per worker thread.
+     */
+    public static final int BUFFERS_PER_THREAD = 16;
+
+    /**
+     * The initial size of a buffer in characters.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    /**
+     * The pool of worker threads.
+     */
+    private final ExecutorService mExecutor;
+
+    /**
+     * The buffers free to be rendered into.
+     */
+    private final BlockingQueue<Buffer> mFreeBuffers;
+
+    /**
+     * The charset the submit files are written out in.
+     */
+    private final Charset mCharset;
+
+    /**
+     * The encoder per worker thread.
+     */
+    private final ThreadLocal<CharsetEncoder> mEncoder;
+
+    /**
+     * The reusable byte buffer per worker thread.
+     */
+    private final ThreadLocal<ByteBuffer> mBytes;
+
+    /**
+     * The number of files written out.
+     */
+    private final AtomicInteger mFilesWritten;
+
+    /**
+     * The cumulative time in nanoseconds the workers spent writing files.
+     */
+    private final AtomicLong mWriteTime;
+
+    /**
+     * The first error encountered while writing out a file.
+     */
+    private volatile CodeGeneratorException mException;
+
+    /**
+     * Boolean indicating whether the writer has been closed.
+     */
+    private boolean mClosed;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param threads  the number of worker threads to write out files.
+     */
+    public SubmitFileWriter( int threads ){
+        threads       = Math.max( 1, threads );
+        mCharset      = Charset.defaultCharset();
+        mFilesWritten = new AtomicInteger( 0 );
+        mWriteTime    = new AtomicLong( 0 );
+        mFreeBuffers  = new ArrayBlockingQueue<Buffer>( threads * BUFFERS_PER_THREAD );
+        for( int i = 0; i < threads * BUFFERS_PER_THREAD; i++ ){
+            mFreeBuffers.add( new Buffer() );
+        }
+
+        mEncoder = new ThreadLocal<CharsetEncoder>(){
+            protected CharsetEncoder initialValue(){
+                //same as a FileWriter would do
+                return mCharset.newEncoder().
+                            onMalformedInput( CodingErrorAction.REPLACE ).
+                            onUnmappableCharacter( CodingErrorAction.REPLACE );
+            }
+        };
+        mBytes = new ThreadLocal<ByteBuffer>(){
+            protected ByteBuffer initialValue(){
+                return ByteBuffer.allocateDirect( INITIAL_BUFFER_SIZE * 2 );
+            }
+        };
+
+        final AtomicInteger count = new AtomicInteger( 0 );
+        mExecutor = Executors.newFixedThreadPool( threads, new ThreadFactory(){
+            public Thread newThread( Runnable r ){
+                Thread t = new Thread( r, "submit-writer-" + count.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Returns a writer to render the contents of a file into. The file is
+     * written out asynchronously once the writer is closed. Blocks while
+     * all the buffers are waiting to be written out.
+     *
+     * @param file  the file to be written out.
+     *
+     * @return the writer
+     *
+     * @throws CodeGeneratorException if writing out an earlier file failed
+     *         or the writer is closed.
+     */
+    public PrintWriter open( File file ) throws CodeGeneratorException{
+        this.checkForError();
+        if( mClosed ){
+            throw new CodeGeneratorException( "Submit file writer is already closed" );
+        }
+        Buffer buffer;
+        try {
+            buffer = mFreeBuffers.take();
+        } catch ( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw new CodeGeneratorException( "Interrupted while waiting to write " + file, ex );
+        }
+        buffer.mFile = file;
+        return buffer;
+    }
+
+    /**
+     * Waits for all the files to be written out, and shuts down the
+     * worker threads.
+     *
+     * @throws CodeGeneratorException if writing out any file failed.
+     */
+    public void close() throws CodeGeneratorException{
+        if( !mClosed ){
+            mClosed = true;
+            mExecutor.shutdown();
+            try {
+                while( !mExecutor.awaitTermination( 1, TimeUnit.MINUTES ) ){
+                    //keep waiting for the writes to finish
+                }
+            } catch ( InterruptedException ex ) {
+                mExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new CodeGeneratorException( "Interrupted while waiting for submit files to be written", ex );
+            }
+        }
+        this.checkForError();
+    }
+
+    /**
+     * Shuts down the worker threads without waiting for the pending files to
+     * be written out. To be called when code generation fails.
+     */
+    public void abort(){
+        mClosed = true;
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the number of files written out.
+     *
+     * @return the number of files
+     */
+    public int getFilesWritten(){
+        return mFilesWritten.get();
+    }
+
+    /**
+     * Returns the cumulative time the worker threads spent writing out
+     * files.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getWriteTime(){
+        return mWriteTime.get();
+    }
+
+    /**
+     * Throws the first error encountered by the worker threads, if any.
+     *
+     * @throws CodeGeneratorException
+     */
+    private void checkForError() throws CodeGeneratorException{
+        if( mException != null ){
+            throw mException;
+        }
+    }
+
+    /**
+     * Hands over a rendered buffer to the worker threads.
+     *
+     * @param buffer  the buffer
+     */
+    private void submit( final Buffer buffer ){
+        mExecutor.execute( new Runnable(){
+            public void run(){
+                long start = System.nanoTime();
+                try{
+                    write( buffer );
+                    mFilesWritten.incrementAndGet();
+                }
+                catch( IOException ioe ){
+                    if( mException == null ){
+                        mException = new CodeGeneratorException( "IOException while writing submit file " +
+                                                                 buffer.mFile, ioe );
+                    }
+                }
+                finally{
+                    mWriteTime.addAndGet( System.nanoTime() - start );
+                    buffer.recycle();
+                    mFreeBuffers.add( buffer );
+                }
+            }
+        });
+    }
+
+    /**
+     * Encodes the contents of a buffer and writes them out to its file.
+     *
+     * @param buffer  the buffer
+     *
+     * @throws IOException
+     */
+    private void write( Buffer buffer ) throws IOException{
+        CharBuffer chars = buffer.mChars.contents();
+        CharsetEncoder encoder = mEncoder.get();
+        encoder.reset();
+
+        ByteBuffer bytes = mBytes.get();
+        int required = (int)Math.ceil( chars.remaining() * encoder.maxBytesPerChar() );
+        if( bytes.capacity() < required ){
+            bytes = ByteBuffer.allocateDirect( Math.max( required, bytes.capacity() * 2 ) );
+            mBytes.set( bytes );
+        }
+        bytes.clear();
+        CoderResult result = encoder.encode( chars, bytes, true );
+        if( !result.isUnderflow() ){
+            result.throwException();
+        }
+        encoder.flush( bytes );
+        bytes.flip();
+
+        FileChannel channel = FileChannel.open( buffer.mFile.toPath(),
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.WRITE );
+        try{
+            while( bytes.hasRemaining() ){
+                channel.write( bytes );
+            }
+        }
+        finally{
+            channel.close();
+        }
+    }
+
+    /**
+     * A CharArrayWriter that exposes its contents without copying them.
+     */
+    private static class Chars extends CharArrayWriter{
+
+        public Chars(){
+            super( INITIAL_BUFFER_SIZE );
+        }
+
+        /**
+         * Returns a read only view of the characters written so far.
+         *
+         * @return CharBuffer
+         */
+        public synchronized CharBuffer contents(){
+            return CharBuffer.wrap( buf, 0, count ).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * A pooled buffer for the contents of a single file. Closing the writer
+     * hands over the buffer to be written out, and does not release the
+     * underlying characters, so that the buffer can be reused.
+     */
+    private class Buffer extends PrintWriter{
+
+        /**
+         * The characters rendered.
+         */
+        private final Chars mChars;
+
+        /**
+         * The file the contents are to be written out to.
+         */
+        private File mFile;
+
+        public Buffer(){
+            this( new Chars() );
+        }
+
+        private Buffer( Chars chars ){
+            super( chars );
+            mChars = chars;
+        }
+
+        /**
+         * Hands over the contents rendered to be written out.
+         */
+        public void close(){
+            this.flush();
+            SubmitFileWriter.this.submit( this );
+        }
+
+        /**
+         * Resets the buffer for reuse.
+         */
+        private void recycle(){
+            mChars.reset();
+            mFile = null;
+        }
+    }
+}
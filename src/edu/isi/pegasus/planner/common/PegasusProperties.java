@@ -108,6 +108,9 @@ public class PegasusProperties implements Cloneable {
 
     public static final String DEFAULT_STORAGE_DIR = "";
 
+    //the number of output locations the Replica output mapper keeps in memory
+    public static final String DEFAULT_OUTPUT_REPLICA_MAPPER_PREFETCH = "500000";
+
     public static final String DEFAULT_TC_MODE = "Text";
 
     public static final String TC_TEXT_FILE = "tc.txt";
@@ -140,6 +143,20 @@ public class PegasusProperties implements Cloneable {
 
     public static final String DEFAULT_SITE_SELECTOR_KEEP = "onerror";
 
+    public static final String DEFAULT_SITE_SELECTOR_BATCH = "64";
+
+    //the number of threads for running independent planner stages
+    public static final String DEFAULT_PLANNER_STAGE_THREADS = "4";
+
+    //the number of threads the site selectors map jobs on
+    public static final String DEFAULT_SITE_SELECTOR_THREADS = "1";
+
+    //the number of threads the horizontal clusterer determines clusters on
+    public static final String DEFAULT_HORIZONTAL_CLUSTERER_THREADS = "1";
+
+    //the number of threads for writing out the submit files
+    public static final String DEFAULT_CODE_GENERATOR_THREADS = "1";
+
     ///some simulator constants that are used
     public static final String DEFAULT_DATA_MULTIPLICATION_FACTOR = "1";
 
@@ -482,11 +499,9 @@ public class PegasusProperties implements Cloneable {
             //Karan April 27, 2011
             mProps = CommonProperties.nonSingletonInstance( confProperties );
         } catch ( IOException e ) {
-            System.err.println( "unable to read property file: " + e.getMessage() );
-            System.exit( 1 );
+            throw new RuntimeException( "unable to read property file: " + e.getMessage(), e );
         } catch ( MissingResourceException e ) {
-            System.err.println( "A required property is missing: " + e.getMessage() );
-            System.exit( 1 );
+            throw new RuntimeException( "A required property is missing: " + e.getMessage(), e );
         }
 
     }
@@ -783,6 +798,28 @@ public class PegasusProperties implements Cloneable {
                               false );
     }
 
+    /**
+     * Returns the maximum number of output locations that the Replica output
+     * mapper looks up in bulk when it is initialized, and keeps in memory.
+     * A value less than 1 disables the bulk lookup.
+     *
+     * Referred to by the "pegasus.dir.storage.mapper.replica.prefetch" property.
+     *
+     * @return the value specified in the properties file, else
+     *         DEFAULT_OUTPUT_REPLICA_MAPPER_PREFETCH.
+     *
+     * @see #DEFAULT_OUTPUT_REPLICA_MAPPER_PREFETCH
+     */
+    public int getOutputReplicaMapperPrefetch(){
+        String prop = mProps.getProperty( "pegasus.dir.storage.mapper.replica.prefetch",
+                                          DEFAULT_OUTPUT_REPLICA_MAPPER_PREFETCH );
+        try {
+            return Integer.parseInt( prop );
+        } catch ( Exception e ) {
+            return Integer.parseInt( DEFAULT_OUTPUT_REPLICA_MAPPER_PREFETCH );
+        }
+    }
+
     //PROPERTIES RELATED TO CLEANUP
     /**
      * Returns the name of the Strategy class that the user wants, to insert the
@@ -921,6 +958,20 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty( "pegasus.catalog.transformation.mapper", DEFAULT_TC_MAPPER_MODE );
     }
 
+    /**
+     * Returns a boolean indicating whether the planner caches the lookups
+     * against the transformation catalog, so that each distinct lookup is
+     * only passed on to the catalog once per plan.
+     *
+     * Referred to by the "pegasus.catalog.transformation.cache" property.
+     *
+     * @return the boolean value specified in the properties file, else true.
+     */
+    public boolean cacheTransformationCatalogLookups(){
+        return Boolean.parse( mProps.getProperty( "pegasus.catalog.transformation.cache" ),
+                              true );
+    }
+
     //REPLICA CATALOG PROPERTIES
     /**
      * Returns the replica mode. It identifies the ReplicaMechanism being used
@@ -1628,6 +1679,43 @@ public class PegasusProperties implements Cloneable {
                                    DEFAULT_SITE_SELECTOR_KEEP );
     }
 
+    /**
+     * Returns a boolean indicating whether the external site selector is
+     * to be run as a single long lived co-process, that is passed all the
+     * jobs over its stdin, instead of being invoked once per job.
+     *
+     * Referred to by the "pegasus.selector.site.coprocess" property.
+     *
+     * @return the boolean value specified in the properties file, else false.
+     */
+    public boolean useSiteSelectorCoProcess() {
+        return Boolean.parse( mProps.getProperty( "pegasus.selector.site.coprocess" ),
+                              false );
+    }
+
+    /**
+     * Returns the number of jobs that are written out together to the
+     * external site selector co-process, before waiting for its solutions.
+     *
+     * Referred to by the "pegasus.selector.site.coprocess.batch" property.
+     *
+     * @return the batch size if a valid value is specified, else
+     *         DEFAULT_SITE_SELECTOR_BATCH.
+     *
+     * @see #DEFAULT_SITE_SELECTOR_BATCH
+     */
+    public int getSiteSelectorBatchSize() {
+        String prop = mProps.getProperty( "pegasus.selector.site.coprocess.batch",
+                                          DEFAULT_SITE_SELECTOR_BATCH );
+        int val;
+        try {
+            val = Integer.parseInt( prop );
+        } catch ( Exception e ) {
+            return Integer.parseInt( DEFAULT_SITE_SELECTOR_BATCH );
+        }
+        return ( val < 1 ) ? Integer.parseInt( DEFAULT_SITE_SELECTOR_BATCH ) : val;
+    }
+
 
 
     //PROPERTIES RELATED TO KICKSTART AND EXITCODE
@@ -2237,6 +2325,101 @@ public class PegasusProperties implements Cloneable {
         return Boolean.parse( mProps.getProperty( "pegasus.parser.dax.data.dependencies" ),
                               true) ;
     }
+
+    /**
+     * Returns the Graph implementation that the parsed workflow is held in.
+     *
+     * Referred to by the "pegasus.parser.dax.graph" property.
+     *
+     * @return value in the properties file, else Map
+     */
+    public String getGraphImplementation(){
+        return mProps.getProperty( "pegasus.parser.dax.graph", "Map" );
+    }
+
+    /**
+     * Returns a boolean indicating whether the DAX parser should de-duplicate
+     * the strings and the input files that are repeated across the jobs.
+     *
+     * Referred to by the "pegasus.parser.dax.intern" property.
+     *
+     * @return boolean value in the properties file, else false if not
+     *         specified or an invalid value specified.
+     */
+    public boolean internDAXStrings(){
+        return Boolean.parse( mProps.getProperty( "pegasus.parser.dax.intern" ),
+                              false ) ;
+    }
+
+    /**
+     * Returns the implementation to use for removing the redundant edges
+     * in the workflow, before the executable workflow is written out.
+     *
+     * Referred to by the "pegasus.reduce.edges" property.
+     *
+     * @return value in the properties file, else None
+     */
+    public String getEdgeReducer(){
+        return mProps.getProperty( "pegasus.reduce.edges", "None" );
+    }
+
+    /**
+     * Returns the number of threads the site selectors map independent jobs
+     * on. A value less than 1 means the number of available processors.
+     *
+     * Referred to by the "pegasus.selector.site.threads" property.
+     *
+     * @return the value specified in the properties file, else
+     *         DEFAULT_SITE_SELECTOR_THREADS.
+     *
+     * @see #DEFAULT_SITE_SELECTOR_THREADS
+     */
+    public int getSiteSelectorThreads(){
+        String prop = mProps.getProperty( "pegasus.selector.site.threads",
+                                          DEFAULT_SITE_SELECTOR_THREADS );
+        int val;
+        try {
+            val = Integer.parseInt( prop );
+        } catch ( Exception e ) {
+            return Integer.parseInt( DEFAULT_SITE_SELECTOR_THREADS );
+        }
+        return ( val < 1 ) ? Runtime.getRuntime().availableProcessors() : val;
+    }
+
+    /**
+     * Returns the seed for the Random site selector, that makes the mapping
+     * of the jobs repeatable.
+     *
+     * Referred to by the "pegasus.selector.site.random.seed" property.
+     *
+     * @return the value specified in the properties file, else null.
+     */
+    public String getSiteSelectorRandomSeed(){
+        return mProps.getProperty( "pegasus.selector.site.random.seed" );
+    }
+
+    /**
+     * Returns the number of threads used to run independent stages of the
+     * planner concurrently. A value of 1 runs the stages one after the other.
+     *
+     * Referred to by the "pegasus.planner.stage.threads" property.
+     *
+     * @return the number of threads if a valid value is specified, else
+     *         DEFAULT_PLANNER_STAGE_THREADS.
+     *
+     * @see #DEFAULT_PLANNER_STAGE_THREADS
+     */
+    public int getPlannerStageThreads(){
+        String prop = mProps.getProperty( "pegasus.planner.stage.threads",
+                                          DEFAULT_PLANNER_STAGE_THREADS );
+        int val;
+        try {
+            val = Integer.parseInt( prop );
+        } catch ( Exception e ) {
+            return Integer.parseInt( DEFAULT_PLANNER_STAGE_THREADS );
+        }
+        return ( val < 1 ) ? Integer.parseInt( DEFAULT_PLANNER_STAGE_THREADS ) : val;
+    }
     
     /**
      * Returns the path to the wings properties file.
@@ -2287,6 +2470,30 @@ public class PegasusProperties implements Cloneable {
         return mProps.getProperty( "pegasus.code.generator", "condor" );
     }
 
+    /**
+     * Returns the number of threads used by the Condor code generator to
+     * write out the submit files. A value of 1 writes out the submit files
+     * on the planner thread.
+     *
+     * Referred to by the "pegasus.code.generator.threads" property.
+     *
+     * @return the number of threads if a valid value is specified, else
+     *         DEFAULT_CODE_GENERATOR_THREADS.
+     *
+     * @see #DEFAULT_CODE_GENERATOR_THREADS
+     */
+    public int getCodeGeneratorThreads(){
+        String prop = mProps.getProperty( "pegasus.code.generator.threads",
+                                          DEFAULT_CODE_GENERATOR_THREADS );
+        int val;
+        try {
+            val = Integer.parseInt( prop );
+        } catch ( Exception e ) {
+            return Integer.parseInt( DEFAULT_CODE_GENERATOR_THREADS );
+        }
+        return ( val < 1 ) ? Integer.parseInt( DEFAULT_CODE_GENERATOR_THREADS ) : val;
+    }
+
     /**
      * Returns the mode for parsing the dax while writing out the partitioned
      * daxes.
@@ -2414,6 +2621,30 @@ public class PegasusProperties implements Cloneable {
                               false );
     }
 
+    /**
+     * Returns the number of threads on which the horizontal clusterer
+     * determines the clusters for the levels of the workflow. A value less
+     * than 1 means the number of available processors.
+     *
+     * Referred to by the "pegasus.clusterer.horizontal.threads" property.
+     *
+     * @return the value specified in the properties file, else
+     *         DEFAULT_HORIZONTAL_CLUSTERER_THREADS.
+     *
+     * @see #DEFAULT_HORIZONTAL_CLUSTERER_THREADS
+     */
+    public int getHorizontalClustererThreads(){
+        String prop = mProps.getProperty( "pegasus.clusterer.horizontal.threads",
+                                          DEFAULT_HORIZONTAL_CLUSTERER_THREADS );
+        int val;
+        try {
+            val = Integer.parseInt( prop );
+        } catch ( Exception e ) {
+            return Integer.parseInt( DEFAULT_HORIZONTAL_CLUSTERER_THREADS );
+        }
+        return ( val < 1 ) ? Runtime.getRuntime().availableProcessors() : val;
+    }
+
     
     
     /**
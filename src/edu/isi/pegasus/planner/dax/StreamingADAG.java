@@ -0,0 +1,603 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.dax;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.common.util.CompactStringSet;
+import edu.isi.pegasus.common.util.Version;
+import edu.isi.pegasus.common.util.XMLWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A DAX writer that writes out the jobs as they are added, instead of holding
+ * the whole workflow in memory like {@link ADAG} does, so that DAXes with
+ * millions of jobs can be generated in a small heap. Only the IDs of the jobs
+ * are kept, in a compact set, to check that they are unique and that the
+ * dependencies refer to jobs added.<p>
+ *
+ * The DAX schema requires the dependencies to follow all the jobs, so the
+ * dependencies are spooled to a temporary file as they are added, and copied
+ * to the end of the DAX on close. Consecutive dependencies for the same child
+ * are written out as one child element. The metadata, notifications, files,
+ * executables and transformations precede the jobs, and have to be added
+ * before the first job.
+ * <pre>
+ *      StreamingADAG dax = new StreamingADAG( "diamond.dax.gz", "diamond", true );
+ *      dax.addExecutable( preprocess );
+ *      for( ... ){
+ *          dax.addJob( job );
+ *          dax.addDependency( parent, job );
+ *      }
+ *      dax.close();
+ * </pre>
+ *
+ * @version $Revision$
+ */
+public class StreamingADAG implements Closeable {
+
+    /**
+     * The encoding of the DAX.
+     */
+    private static final Charset ENCODING = Charset.forName( "UTF-8" );
+
+    /**
+     * The size of the buffers for writing out the DAX and the spool.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The sections of the DAX, in the order they are written out.
+     */
+    private static enum SECTION { header, jobs, closed };
+
+    /**
+     * The section of the DAX written out currently.
+     */
+    private SECTION mSection;
+
+    private String mName;
+    private int mIndex;
+    private int mCount;
+
+    /**
+     * The elements preceding the jobs, held till the first job is added.
+     */
+    private Set<MetaData> mMetaDataAttributes;
+    private List<Invoke> mInvokes;
+    private List<File> mFiles;
+    private Set<Executable> mExecutables;
+    private Set<Transformation> mTransformations;
+
+    /**
+     * The IDs of the jobs, daxes and dags added.
+     */
+    private CompactStringSet mJobIDs;
+
+    /**
+     * The number of dependencies spooled.
+     */
+    private long mDependencies;
+
+    /**
+     * The writer for the DAX.
+     */
+    private XMLWriter mWriter;
+
+    /**
+     * The temporary file the dependencies are spooled to, and the stream to
+     * it.
+     */
+    private java.io.File mSpoolFile;
+    private DataOutputStream mSpool;
+
+    private LogManager mLogger;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param daxfile the file to write the DAX to.
+     * @param name    the DAX label.
+     * @param gzip    whether to gzip compress the DAX.
+     */
+    public StreamingADAG( String daxfile, String name, boolean gzip ){
+        this( daxfile, name, 0, 1, gzip );
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param daxfile the file to write the DAX to.
+     * @param name    the DAX label.
+     * @param index   index of DAX out of N DAX's
+     * @param count   number of DAXS in a group
+     * @param gzip    whether to gzip compress the DAX.
+     */
+    public StreamingADAG( String daxfile, String name, int index, int count, boolean gzip ){
+        this( open( daxfile, gzip ), name, index, count );
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param out     the stream to write the DAX to. It is closed on close.
+     * @param name    the DAX label.
+     * @param index   index of DAX out of N DAX's
+     * @param count   number of DAXS in a group
+     */
+    public StreamingADAG( OutputStream out, String name, int index, int count ){
+        mName  = name;
+        mIndex = index;
+        mCount = count;
+        mMetaDataAttributes = new LinkedHashSet<MetaData>();
+        mInvokes = new LinkedList<Invoke>();
+        mFiles = new LinkedList<File>();
+        mExecutables = new LinkedHashSet<Executable>();
+        mTransformations = new LinkedHashSet<Transformation>();
+        mJobIDs = new CompactStringSet();
+        mDependencies = 0;
+        mSection = SECTION.header;
+
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.logEventStart( "event.dax.generate", "pegasus.version", Version.instance().toString() );
+        mWriter = new XMLWriter( new BufferedWriter( new OutputStreamWriter( out, ENCODING ), BUFFER_SIZE ) );
+        try{
+            mSpoolFile = java.io.File.createTempFile( "dax-dependencies", ".spool" );
+            mSpoolFile.deleteOnExit();
+            mSpool = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( mSpoolFile ), BUFFER_SIZE ) );
+        }
+        catch( IOException e ){
+            throw new RuntimeException( "Unable to create spool file for the dependencies", e );
+        }
+    }
+
+    /**
+     * Add workflow level metadata
+     *
+     * @param key   key
+     * @param value value
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addMetaData( String key, String value ){
+        this.checkSection( "Metadata" );
+        mMetaDataAttributes.add( new MetaData( key, value ) );
+        return this;
+    }
+
+    /**
+     * Add a Notification for this Workflow
+     *
+     * @param when  when to invoke
+     * @param what  what executable and arguments to invoke
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addNotification( Invoke.WHEN when, String what ){
+        return this.addNotification( new Invoke( when, what ) );
+    }
+
+    /**
+     * Add a Notification for this Workflow
+     *
+     * @param invoke the invoke object
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addNotification( Invoke invoke ){
+        this.checkSection( "Notification" );
+        mInvokes.add( invoke.clone() );
+        return this;
+    }
+
+    /**
+     * Add a RC File object to the top of the DAX.
+     *
+     * @param file File object to be added to the RC section
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addFile( File file ){
+        this.checkSection( "File" );
+        mFiles.add( file );
+        return this;
+    }
+
+    /**
+     * Add Files to the RC Section on top of the DAX
+     *
+     * @param files List of file objects to be added to the RC Section
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addFiles( List<File> files ){
+        for( File file : files ){
+            this.addFile( file );
+        }
+        return this;
+    }
+
+    /**
+     * Add Executable to the DAX
+     *
+     * @param executable Executable to be added
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addExecutable( Executable executable ){
+        this.checkSection( "Executable" );
+        if( executable != null && !mExecutables.add( executable ) ){
+            throw new RuntimeException( "Error: Executable " + executable.toString() + " already exists in the DAX.\n" );
+        }
+        return this;
+    }
+
+    /**
+     * Add Multiple Executable objects to the DAX
+     *
+     * @param executables List of Executable objects to be added
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addExecutables( List<Executable> executables ){
+        for( Executable executable : executables ){
+            this.addExecutable( executable );
+        }
+        return this;
+    }
+
+    /**
+     * Add Transformation to the DAX
+     *
+     * @param transformation Transformation object to be added
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addTransformation( Transformation transformation ){
+        this.checkSection( "Transformation" );
+        if( transformation != null && !mTransformations.add( transformation ) ){
+            throw new RuntimeException( "Error: Transformation " + transformation.toString() + " already exists in the DAX.\n" );
+        }
+        return this;
+    }
+
+    /**
+     * Add Multiple Transformation to the DAX
+     *
+     * @param transformations List of Transformation objects
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addTransformations( List<Transformation> transformations ){
+        for( Transformation transformation : transformations ){
+            this.addTransformation( transformation );
+        }
+        return this;
+    }
+
+    /**
+     * Writes out a Job to the DAX
+     *
+     * @param job the job
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addJob( Job job ){
+        return this.addAbstractJob( job );
+    }
+
+    /**
+     * Writes out multiple Jobs to the DAX
+     *
+     * @param jobs the jobs
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addJobs( List<Job> jobs ){
+        for( Job job : jobs ){
+            this.addJob( job );
+        }
+        return this;
+    }
+
+    /**
+     * Writes out a DAG to the DAX
+     *
+     * @param dag the DAG
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addDAG( DAG dag ){
+        return this.addAbstractJob( dag );
+    }
+
+    /**
+     * Writes out a DAX to the DAX
+     *
+     * @param dax the DAX
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addDAX( DAX dax ){
+        return this.addAbstractJob( dax );
+    }
+
+    /**
+     * Check if a job, dax or dag with an id was added to the DAX
+     *
+     * @param jobid the id
+     *
+     * @return boolean
+     */
+    public boolean containsJobId( String jobid ){
+        return mJobIDs.contains( jobid );
+    }
+
+    /**
+     * Returns the number of jobs, daxes and dags added to the DAX.
+     *
+     * @return the number of jobs
+     */
+    public int getJobCount(){
+        return mJobIDs.size();
+    }
+
+    /**
+     * Add a parent child dependency between two jobs,dax,dag
+     *
+     * @param parent String job,dax,dag id
+     * @param child  String job,dax,dag,id
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addDependency( String parent, String child ){
+        return this.addDependency( parent, child, null );
+    }
+
+    /**
+     * Add a parent child dependency between two jobs,dax,dag
+     *
+     * @param parent Job|DAX|DAG object
+     * @param child  Job|DAX|DAG object
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addDependency( AbstractJob parent, AbstractJob child ){
+        return this.addDependency( parent.getId(), child.getId(), null );
+    }
+
+    /**
+     * Add a parent child dependency with a dependency label
+     *
+     * @param parent Job|DAX|DAG object
+     * @param child  Job|DAX|DAG object
+     * @param label  String label for annotation
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addDependency( AbstractJob parent, AbstractJob child, String label ){
+        return this.addDependency( parent.getId(), child.getId(), label );
+    }
+
+    /**
+     * Add a parent child dependency with a dependency label. The jobs have to
+     * be added before the dependency.
+     *
+     * @param parent String job,dax,dag id
+     * @param child  String job,dax,dag id
+     * @param label  String dependency label
+     *
+     * @return StreamingADAG
+     */
+    public StreamingADAG addDependency( String parent, String child, String label ){
+        if( mSection == SECTION.closed ){
+            throw new RuntimeException( "The DAX " + mName + " is already closed" );
+        }
+        if( !mJobIDs.contains( parent ) || !mJobIDs.contains( child ) ){
+            throw new RuntimeException(
+                    "Either Job with id " + parent + " or " + child + "is not added to the DAX.\n"
+                    + "Please add the jobs first to the dax and then add the dependencies between them\n" );
+        }
+        try{
+            mSpool.writeUTF( child );
+            mSpool.writeUTF( parent );
+            mSpool.writeUTF( label == null ? "" : label );
+        }
+        catch( IOException e ){
+            throw new RuntimeException( "Unable to spool dependency " + parent + " -> " + child, e );
+        }
+        mDependencies++;
+        return this;
+    }
+
+    /**
+     * Writes out the dependencies after the jobs, and closes the DAX.
+     */
+    public void close(){
+        if( mSection == SECTION.closed ){
+            return;
+        }
+        this.writeHeader();
+        try{
+            mSpool.close();
+            mWriter.writeXMLComment( "Section 7: Dependencies - Parent Child relationships (can be empty)", true );
+            if( mDependencies > 0 ){
+                this.writeDependencies();
+            }
+            mWriter.endElement();
+        }
+        catch( IOException e ){
+            throw new RuntimeException( "Unable to write out the dependencies from " + mSpoolFile, e );
+        }
+        finally{
+            mWriter.close();
+            mSpoolFile.delete();
+            mSection = SECTION.closed;
+            mLogger.logEventCompletion();
+        }
+    }
+
+    /**
+     * Writes out a job, dax or dag.
+     *
+     * @param ajob the job
+     *
+     * @return StreamingADAG
+     */
+    private StreamingADAG addAbstractJob( AbstractJob ajob ){
+        if( mSection == SECTION.closed ){
+            throw new RuntimeException( "The DAX " + mName + " is already closed" );
+        }
+        if( !mJobIDs.add( ajob.getId() ) ){
+            throw new RuntimeException(
+                    "Job of type" + ajob.getClass().getSimpleName() + " with jobid " + ajob.getId() + " already exists in the DAX" );
+        }
+        this.writeHeader();
+        ajob.toXML( mWriter, 1 );
+        return this;
+    }
+
+    /**
+     * Throws an exception if the jobs are being written out already.
+     *
+     * @param element the element being added.
+     */
+    private void checkSection( String element ){
+        if( mSection != SECTION.header ){
+            throw new RuntimeException( element + " has to be added to the DAX " + mName + " before the first job" );
+        }
+    }
+
+    /**
+     * Writes out the adag element and the sections preceding the jobs, if
+     * not written out already.
+     */
+    private void writeHeader(){
+        if( mSection != SECTION.header ){
+            return;
+        }
+        int indent = 0;
+        mWriter.startElement( "adag" );
+        mWriter.writeAttribute( "xmlns", ADAG.SCHEMA_NAMESPACE );
+        mWriter.writeAttribute( "xmlns:xsi", ADAG.SCHEMA_NAMESPACE_XSI );
+        mWriter.writeAttribute( "xsi:schemaLocation", ADAG.SCHEMA_NAMESPACE + " " + ADAG.SCHEMA_LOCATION );
+        mWriter.writeAttribute( "version", ADAG.SCHEMA_VERSION );
+        mWriter.writeAttribute( "name", mName );
+        mWriter.writeAttribute( "index", Integer.toString( mIndex ) );
+        mWriter.writeAttribute( "count", Integer.toString( mCount ) );
+
+        mWriter.writeXMLComment( "Section 1: Metadata attributes for the workflow (can be empty) ", true );
+        for( MetaData md : mMetaDataAttributes ){
+            md.toXML( mWriter, indent + 1 );
+        }
+        mWriter.writeXMLComment( "Section 2: Invokes - Adds notifications for a workflow (can be empty)", true );
+        for( Invoke i : mInvokes ){
+            i.toXML( mWriter, indent + 1 );
+        }
+        mWriter.writeXMLComment( "Section 3: Files - Acts as a Replica Catalog (can be empty)", true );
+        for( File f : mFiles ){
+            f.toXML( mWriter, indent + 1 );
+        }
+        mWriter.writeXMLComment( "Section 4: Executables - Acts as a Transformaton Catalog (can be empty)", true );
+        for( Executable e : mExecutables ){
+            e.toXML( mWriter, indent + 1 );
+        }
+        mWriter.writeXMLComment( "Section 5: Transformations - Aggregates executables and Files (can be empty)", true );
+        for( Transformation t : mTransformations ){
+            t.toXML( mWriter, indent + 1 );
+        }
+        mWriter.writeXMLComment( "Section 6: Job's, DAX's or Dag's - Defines a JOB or DAX or DAG (Atleast 1 required)", true );
+
+        //nothing more can be added to these sections
+        mMetaDataAttributes = null;
+        mInvokes = null;
+        mFiles = null;
+        mExecutables = null;
+        mTransformations = null;
+        mSection = SECTION.jobs;
+    }
+
+    /**
+     * Copies the spooled dependencies to the DAX, grouping consecutive
+     * dependencies for the same child in one child element.
+     *
+     * @throws IOException in case of error while reading the spool file
+     */
+    private void writeDependencies() throws IOException {
+        try( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( mSpoolFile ), BUFFER_SIZE ) ) ){
+            String current = null;
+            Set<Edge> edges = new HashSet<Edge>();
+            for( long i = 0; i < mDependencies; i++ ){
+                String child  = in.readUTF();
+                String parent = in.readUTF();
+                String label  = in.readUTF();
+                if( !child.equals( current ) ){
+                    if( current != null ){
+                        mWriter.endElement( 1 );
+                    }
+                    mWriter.startElement( "child", 1 ).writeAttribute( "ref", child );
+                    current = child;
+                    edges.clear();
+                }
+                Edge e = new Edge( parent, child, label );
+                if( edges.add( e ) ){
+                    e.toXMLParent( mWriter, 2 );
+                }
+            }
+            mWriter.endElement( 1 );
+        }
+        catch( EOFException e ){
+            throw new IOException( "Spool file " + mSpoolFile + " is truncated", e );
+        }
+    }
+
+    /**
+     * Opens a file to write the DAX to.
+     *
+     * @param daxfile the file
+     * @param gzip    whether to gzip compress the DAX
+     *
+     * @return the stream
+     */
+    private static OutputStream open( String daxfile, boolean gzip ){
+        try{
+            OutputStream out = new FileOutputStream( daxfile );
+            return gzip ? new GZIPOutputStream( out, BUFFER_SIZE ) : out;
+        }
+        catch( IOException e ){
+            throw new RuntimeException( "Unable to open DAX file " + daxfile + " for writing", e );
+        }
+    }
+}
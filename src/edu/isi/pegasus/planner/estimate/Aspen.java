@@ -61,13 +61,13 @@ public class Aspen implements Estimator {
      */
     public static final String ASPEN_MODELS_PATH_ENV_VARIABLE = "ASPENPATH";
     
-    private PegasusProperties mProps;
+    protected PegasusProperties mProps;
     
-    private File mAspenEstimateClient;
+    protected File mAspenEstimateClient;
     
-    private LogManager mLogger;
+    protected LogManager mLogger;
     
-    private String[] mEnvVariables;
+    protected String[] mEnvVariables;
     
     /**
      * Initialization method
@@ -178,7 +178,7 @@ public class Aspen implements Estimator {
      * 
      * @return the estimates parsed from the stdout
      */
-    private Map<String,String> executeAspenCommand( String args ){
+    protected Map<String,String> executeAspenCommand( String args ){
        
         String command = this.mAspenEstimateClient.getAbsolutePath() + " " + args;
         mLogger.log("Executing  " + command,
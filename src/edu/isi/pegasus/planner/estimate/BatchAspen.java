@@ -0,0 +1,469 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.estimate;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.util.Boolean;
+import edu.isi.pegasus.common.util.DefaultStreamGobblerCallback;
+import edu.isi.pegasus.common.util.StreamGobbler;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.namespace.Metadata;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An Aspen estimator for workflows with many jobs with the same metadata,
+ * such as parameter sweeps.
+ *
+ * The estimates are memoized by the metadata of the jobs, sorted by key, so
+ * that the Aspen estimate client is invoked only once for the jobs with the
+ * same metadata. When the workflow is estimated in a batch, the distinct
+ * metadata are estimated concurrently on a bounded pool of threads, set by
+ * the property <code>pegasus.estimator.aspen.threads</code>.
+ *
+ * If the property <code>pegasus.estimator.aspen.batch</code> is set to true,
+ * each thread starts the estimate client once, with the single argument
+ * <code>--batch</code>, and passes it the metadata of one job per line on its
+ * stdin, as the key=value arguments the client is otherwise invoked with. The
+ * client answers each line with the key=value estimates, one per line,
+ * followed by an empty line. If the client fails in batch mode, it is invoked
+ * once per metadata instead.
+ *
+ * @version $Revision$
+ */
+public class BatchAspen extends Aspen implements BatchEstimator {
+
+    /**
+     * The property key for the number of threads to estimate with.
+     */
+    public static final String ASPEN_THREADS_PROPERTY_KEY = "pegasus.estimator.aspen.threads";
+
+    /**
+     * The property key to enable the batch mode of the estimate client.
+     */
+    public static final String ASPEN_BATCH_PROPERTY_KEY = "pegasus.estimator.aspen.batch";
+
+    /**
+     * The default number of threads to estimate with.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * The argument to start the estimate client in batch mode with.
+     */
+    public static final String BATCH_ARGUMENT = "--batch";
+
+    /**
+     * The estimates indexed by the sorted metadata of the jobs.
+     */
+    private final Map<String,Future<Map<String,String>>> mCache;
+
+    /**
+     * The estimate clients started in batch mode that are not in use.
+     */
+    private final BlockingQueue<BatchClient> mIdleClients;
+
+    /**
+     * The number of times the estimate client was invoked, or passed a job
+     * in batch mode.
+     */
+    private final AtomicInteger mInvocations;
+
+    /**
+     * The number of threads to estimate with.
+     */
+    private int mThreads;
+
+    /**
+     * Boolean indicating whether to start the estimate client in batch mode.
+     */
+    private volatile boolean mUseBatchClient;
+
+    /**
+     * The default constructor.
+     */
+    public BatchAspen(){
+        super();
+        mCache          = new ConcurrentHashMap<String,Future<Map<String,String>>>();
+        mIdleClients    = new LinkedBlockingQueue<BatchClient>();
+        mInvocations    = new AtomicInteger( 0 );
+    }
+
+    /**
+     * Initialization method
+     *
+     * @param dag  the workflow
+     * @param bag  bag of Pegasus initialization objects.
+     */
+    public void initialize( ADag dag, PegasusBag bag ){
+        super.initialize( dag, bag );
+        mThreads = DEFAULT_THREADS;
+        String value = mProps.getProperty( ASPEN_THREADS_PROPERTY_KEY );
+        if( value != null ){
+            try{
+                mThreads = Math.max( 1, Integer.parseInt( value ) );
+            }
+            catch( NumberFormatException e ){
+                mLogger.log( "Invalid value " + value + " for property " + ASPEN_THREADS_PROPERTY_KEY,
+                             LogManager.WARNING_MESSAGE_LEVEL );
+            }
+        }
+        mUseBatchClient = Boolean.parse( mProps.getProperty( ASPEN_BATCH_PROPERTY_KEY ), false );
+    }
+
+    /**
+     * Returns all estimates for a job, reusing the estimates for an earlier
+     * job with the same metadata.
+     *
+     * @param job  the job for which estimation is required
+     *
+     * @return the estimates, that are not to be modified.
+     */
+    public Map<String,String> getAllEstimates( Job job ){
+        String signature = this.getSignature( job );
+        FutureTask<Map<String,String>> task = this.newTask( signature );
+        if( task != null ){
+            task.run();
+            this.stopClients();
+        }
+        return this.get( mCache.get( signature ) );
+    }
+
+    /**
+     * Returns all estimates for a number of jobs. The jobs with distinct
+     * metadata are estimated concurrently.
+     *
+     * @param jobs  the jobs for which estimation is required
+     *
+     * @return the estimates indexed by the jobs, that are not to be modified.
+     */
+    public Map<Job,Map<String,String>> getAllEstimates( Collection<Job> jobs ){
+        long start = System.currentTimeMillis();
+        int invocations = mInvocations.get();
+
+        Map<Job,String> signatures = new IdentityHashMap<Job,String>( jobs.size() );
+        List<FutureTask<Map<String,String>>> tasks = new ArrayList<FutureTask<Map<String,String>>>();
+        for( Job job : jobs ){
+            String signature = this.getSignature( job );
+            signatures.put( job, signature );
+            FutureTask<Map<String,String>> task = this.newTask( signature );
+            if( task != null ){
+                tasks.add( task );
+            }
+        }
+
+        try{
+            this.run( tasks );
+        }
+        finally{
+            this.stopClients();
+        }
+
+        Map<Job,Map<String,String>> result = new IdentityHashMap<Job,Map<String,String>>( jobs.size() );
+        for( Map.Entry<Job,String> entry : signatures.entrySet() ){
+            result.put( entry.getKey(), this.get( mCache.get( entry.getValue() ) ) );
+        }
+        mLogger.log( "Estimated " + jobs.size() + " jobs with " + tasks.size() + " distinct metadata using " +
+                     ( mInvocations.get() - invocations ) + " estimate client invocations in " +
+                     ( System.currentTimeMillis() - start ) + " ms",
+                     LogManager.DEBUG_MESSAGE_LEVEL );
+        return result;
+    }
+
+    /**
+     * Runs the estimation tasks on a bounded pool of threads, and waits for
+     * them to complete.
+     *
+     * @param tasks  the tasks
+     */
+    private void run( List<FutureTask<Map<String,String>>> tasks ){
+        if( tasks.size() == 1 || mThreads == 1 ){
+            for( FutureTask<Map<String,String>> task : tasks ){
+                task.run();
+            }
+        }
+        else if( !tasks.isEmpty() ){
+            final AtomicInteger count = new AtomicInteger( 0 );
+            ExecutorService executor = Executors.newFixedThreadPool( Math.min( mThreads, tasks.size() ), new ThreadFactory(){
+                public Thread newThread( Runnable r ){
+                    Thread t = new Thread( r, "aspen-estimator-" + count.incrementAndGet() );
+                    t.setDaemon( true );
+                    return t;
+                }
+            });
+            try{
+                for( FutureTask<Map<String,String>> task : tasks ){
+                    executor.execute( task );
+                }
+                for( FutureTask<Map<String,String>> task : tasks ){
+                    this.get( task );
+                }
+            }
+            finally{
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of times the estimate client was invoked, or passed
+     * a job in batch mode.
+     *
+     * @return the number of invocations
+     */
+    public int getInvocations(){
+        return mInvocations.get();
+    }
+
+    /**
+     * Returns the normalized metadata of a job, as the arguments for the
+     * estimate client sorted by key.
+     *
+     * @param job  the job
+     *
+     * @return the arguments
+     */
+    protected String getSignature( Job job ){
+        Metadata m = (Metadata) job.getMetadata();
+        Map<String,String> sorted = new TreeMap<String,String>();
+        for( Iterator<?> it = m.getProfileKeyIterator(); it.hasNext(); ){
+            String key = (String) it.next();
+            sorted.put( key, (String) m.get( key ) );
+        }
+        StringBuilder args = new StringBuilder();
+        for( Map.Entry<String,String> entry : sorted.entrySet() ){
+            args.append( entry.getKey() ).append( "=" ).append( entry.getValue() ).append( " " );
+        }
+        return args.toString();
+    }
+
+    /**
+     * Creates the task that estimates the jobs with a signature, if no task
+     * has been created for it yet.
+     *
+     * @param signature  the signature
+     *
+     * @return the task that is to be run, else null if the estimates for
+     *         the signature are already known or being computed.
+     */
+    private FutureTask<Map<String,String>> newTask( final String signature ){
+        if( mCache.containsKey( signature ) ){
+            return null;
+        }
+        FutureTask<Map<String,String>> task = new FutureTask<Map<String,String>>( new Callable<Map<String,String>>(){
+            public Map<String,String> call() throws Exception {
+                return estimate( signature );
+            }
+        });
+        return ( mCache.putIfAbsent( signature, task ) == null ) ? task : null;
+    }
+
+    /**
+     * Waits for the estimates computed by a task.
+     *
+     * @param future  the task
+     *
+     * @return the estimates
+     */
+    private Map<String,String> get( Future<Map<String,String>> future ){
+        try{
+            return future.get();
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while waiting for Aspen estimates", e );
+        }
+        catch( ExecutionException e ){
+            Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException ){
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException( "Unable to compute Aspen estimates", cause );
+        }
+    }
+
+    /**
+     * Computes the estimates for a signature, using an estimate client in
+     * batch mode if enabled.
+     *
+     * @param signature  the arguments for the estimate client
+     *
+     * @return the estimates
+     */
+    private Map<String,String> estimate( String signature ){
+        mInvocations.incrementAndGet();
+        Map<String,String> estimates = null;
+        BatchClient client = mUseBatchClient ? this.acquireClient() : null;
+        if( client != null ){
+            try{
+                estimates = client.estimate( signature );
+                mIdleClients.add( client );
+            }
+            catch( IOException e ){
+                mLogger.log( "Estimate client failed in batch mode, invoking it once per job instead: " + e.getMessage(),
+                             LogManager.WARNING_MESSAGE_LEVEL );
+                mUseBatchClient = false;
+                client.stop();
+            }
+        }
+        if( estimates == null ){
+            estimates = this.executeAspenCommand( signature );
+        }
+        return ( estimates == null ) ?
+               Collections.<String,String>emptyMap() :
+               Collections.unmodifiableMap( estimates );
+    }
+
+    /**
+     * Returns an idle estimate client in batch mode, starting a new one if
+     * none are idle.
+     *
+     * @return the client, else null if it could not be started.
+     */
+    private BatchClient acquireClient(){
+        BatchClient client = mIdleClients.poll();
+        if( client != null ){
+            return client;
+        }
+        try{
+            client = new BatchClient();
+            return client;
+        }
+        catch( IOException e ){
+            mLogger.log( "Unable to start estimate client in batch mode: " + e.getMessage(),
+                         LogManager.WARNING_MESSAGE_LEVEL );
+            mUseBatchClient = false;
+            return null;
+        }
+    }
+
+    /**
+     * Stops all the idle estimate clients in batch mode.
+     */
+    private void stopClients(){
+        for( BatchClient client; ( client = mIdleClients.poll() ) != null; ){
+            client.stop();
+        }
+    }
+
+    /**
+     * An estimate client started in batch mode.
+     */
+    private class BatchClient {
+
+        private final Process mProcess;
+
+        private final BufferedWriter mStdin;
+
+        private final BufferedReader mStdout;
+
+        public BatchClient() throws IOException{
+            String command = mAspenEstimateClient.getAbsolutePath() + " " + BATCH_ARGUMENT;
+            mLogger.log( "Executing  " + command, LogManager.DEBUG_MESSAGE_LEVEL );
+            mProcess = Runtime.getRuntime().exec( command, mEnvVariables );
+            mStdin   = new BufferedWriter( new OutputStreamWriter( mProcess.getOutputStream() ) );
+            mStdout  = new BufferedReader( new InputStreamReader( mProcess.getInputStream() ) );
+            StreamGobbler eps = new StreamGobbler( mProcess.getErrorStream(),
+                                                   new DefaultStreamGobblerCallback( LogManager.ERROR_MESSAGE_LEVEL ) );
+            eps.setDaemon( true );
+            eps.start();
+        }
+
+        /**
+         * Passes a job to the client and reads its estimates.
+         *
+         * @param args  the key=value arguments
+         *
+         * @return the estimates
+         *
+         * @throws IOException if the client exits or fails to answer
+         */
+        public Map<String,String> estimate( String args ) throws IOException{
+            mStdin.write( args.trim() );
+            mStdin.newLine();
+            mStdin.flush();
+
+            Map<String,String> estimates = new HashMap<String,String>();
+            for( String line; ( line = mStdout.readLine() ) != null; ){
+                line = line.trim();
+                if( line.length() == 0 ){
+                    return estimates;
+                }
+                int index = line.indexOf( '=' );
+                if( index <= 0 ){
+                    throw new IOException( "Unable to parse aspen output " + line );
+                }
+                estimates.put( line.substring( 0, index ), line.substring( index + 1 ) );
+            }
+            throw new IOException( "Estimate client exited with status " + this.exitValue() );
+        }
+
+        /**
+         * Closes the stdin of the client, so that it exits.
+         */
+        public void stop(){
+            try{
+                mStdin.close();
+            }
+            catch( IOException e ){
+                //client exited already
+            }
+            try{
+                mProcess.waitFor();
+            }
+            catch( InterruptedException e ){
+                Thread.currentThread().interrupt();
+                mProcess.destroy();
+            }
+        }
+
+        private String exitValue(){
+            try{
+                return Integer.toString( mProcess.waitFor() );
+            }
+            catch( InterruptedException e ){
+                Thread.currentThread().interrupt();
+                return "unknown";
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.estimate;
+
+import edu.isi.pegasus.planner.classes.Job;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * An estimator that can estimate a number of jobs together, more efficiently
+ * than one job at a time.
+ *
+ * @version $Revision$
+ */
+public interface BatchEstimator extends Estimator {
+
+    /**
+     * Returns all estimates for a number of jobs
+     *
+     * @param jobs  the jobs for which estimation is required
+     *
+     * @return the estimates indexed by the jobs
+     */
+    public Map<Job,Map<String,String>> getAllEstimates( Collection<Job> jobs );
+
+}
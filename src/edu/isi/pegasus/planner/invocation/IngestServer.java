@@ -0,0 +1,665 @@
+/*
+ * This file or a portion of this file is licensed under the terms of
+ * the Globus Toolkit Public License, found in file GTPL, or at
+ * http://www.globus.org/toolkit/download/license.html. This notice must
+ * appear in redistributions of this file, with or without modification.
+ *
+ * Redistributions of this Software, with or without modification, must
+ * reproduce the GTPL in: (1) the Software, or (2) the Documentation or
+ * some other similar material which is provided with the Software (if
+ * any).
+ *
+ * Copyright 1999-2004 University of Chicago and The University of
+ * Southern California. All rights reserved.
+ */
+package edu.isi.pegasus.planner.invocation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.isi.pegasus.planner.parser.InvocationParser;
+import org.griphyn.vdl.toolkit.FriendlyNudge;
+import org.griphyn.vdl.dbschema.DatabaseSchema;
+import org.griphyn.vdl.dbschema.PTC;
+import org.griphyn.vdl.directive.Connect;
+import org.griphyn.vdl.util.ChimeraProperties;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.Level;
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.PatternLayout;
+
+/**
+ * A non-blocking replacement for the {@link SimpleServer}, that speaks the
+ * same line based protocol. A single selector thread accepts and reads
+ * all connections, and hands the PARSE requests to a fixed pool of
+ * worker threads. Each worker owns its own invocation parser, so that
+ * the requests do not serialize on one parser. The parsed records are
+ * inserted into the PTC in batches by an {@link InvocationBatchWriter}.
+ * The result code of a request is returned once the record is queued
+ * for insertion, not once it is inserted.<p>
+ *
+ * A connection has at most one request in flight. While it does, the
+ * server stops reading from the connection, and while the insertion
+ * queue is full, the workers block. Together, this pushes back on the
+ * clients when the database falls behind. The STATS request returns the
+ * throughput counters of the server.
+ *
+ * @version $Revision$
+ */
+public class IngestServer implements Runnable
+{
+  /**
+   * The default port to listen on.
+   */
+  public static final int DEFAULT_PORT = 65533;
+
+  /**
+   * The default number of worker threads that parse the records.
+   */
+  public static final int DEFAULT_THREADS = 8;
+
+  /**
+   * The default maximum number of records inserted per transaction.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /**
+   * The number of records that may wait for insertion per batch.
+   */
+  public static final int QUEUE_BATCHES = 10;
+
+  /**
+   * The time in milliseconds to wait for a batch to fill.
+   */
+  public static final long LINGER = 200;
+
+  /**
+   * The time in milliseconds given to the clients to read the pending
+   * responses on shutdown.
+   */
+  public static final long DRAIN_TIME = 10000;
+
+  /**
+   * The protocol version expected in PARSE requests.
+   */
+  public static final String PROTOCOL_VERSION = "ECP/1.0";
+
+  /**
+   * The encoding of the protocol lines.
+   */
+  private static final Charset c_charset = Charset.forName( "ISO-8859-1" );
+
+  /**
+   * The logger to use.
+   */
+  private static Logger c_logger = Logger.getLogger( IngestServer.class );
+
+  private boolean m_emptyFail = true;
+
+  /**
+   * The database schema, or null in no-database mode.
+   */
+  private DatabaseSchema m_dbschema;
+
+  /**
+   * The writer that inserts the records, or null in no-database mode.
+   */
+  private InvocationBatchWriter m_writer;
+
+  /**
+   * The per-thread invocation parsers.
+   */
+  private ThreadLocal<InvocationParser> m_parsers;
+
+  /**
+   * The pool of worker threads.
+   */
+  private ExecutorService m_workers;
+
+  private Selector m_selector;
+  private ServerSocketChannel m_server;
+
+  /**
+   * The tasks the selector thread runs on behalf of the workers.
+   */
+  private ConcurrentLinkedQueue<Runnable> m_tasks;
+
+  /**
+   * Whether a shutdown was requested.
+   */
+  private volatile boolean m_terminate;
+
+  /**
+   * The number of requests handed to the workers and not answered yet.
+   */
+  private AtomicInteger m_inFlight;
+
+  /**
+   * The throughput counters.
+   */
+  private AtomicLong m_connections;
+  private AtomicLong m_requests;
+  private AtomicLong m_parsed;
+  private AtomicLong m_failures;
+
+  /**
+   * Constructs a server listening on the loopback interface.
+   *
+   * @param port is the port to listen on, 0 for any free port.
+   * @param threads is the number of worker threads.
+   * @param ptc is the catalog to insert the records into, or null to
+   * run in no-database mode.
+   * @param schemaLocation is the location of the invocation schema.
+   * @param batchSize is the maximum number of records per transaction.
+   * @exception IOException if unable to listen on the port.
+   */
+  public IngestServer( int port, int threads, PTC ptc,
+		       final String schemaLocation, int batchSize )
+    throws IOException
+  {
+    if ( ptc != null ) {
+      this.m_writer = new InvocationBatchWriter( ptc, batchSize * QUEUE_BATCHES,
+						 batchSize, LINGER );
+      this.m_writer.start();
+    }
+    if ( ptc instanceof DatabaseSchema ) {
+      this.m_dbschema = (DatabaseSchema) ptc;
+    }
+
+    this.m_parsers = new ThreadLocal<InvocationParser>() {
+	protected InvocationParser initialValue() {
+	  return new InvocationParser( schemaLocation );
+	}
+      };
+    this.m_workers = Executors.newFixedThreadPool( Math.max( 1, threads ) );
+    this.m_tasks = new ConcurrentLinkedQueue<Runnable>();
+    this.m_inFlight = new AtomicInteger( 0 );
+    this.m_connections = new AtomicLong( 0 );
+    this.m_requests = new AtomicLong( 0 );
+    this.m_parsed = new AtomicLong( 0 );
+    this.m_failures = new AtomicLong( 0 );
+    this.m_terminate = false;
+
+    byte[] loopback = { 127, 0, 0, 1 };
+    this.m_selector = Selector.open();
+    this.m_server = ServerSocketChannel.open();
+    this.m_server.socket().bind(
+      new InetSocketAddress( InetAddress.getByAddress(loopback), port ), 128 );
+    this.m_server.configureBlocking( false );
+    this.m_server.register( m_selector, SelectionKey.OP_ACCEPT );
+  }
+
+  /**
+   * @return the port the server listens on.
+   */
+  public int getPort()
+  {
+    return m_server.socket().getLocalPort();
+  }
+
+  /**
+   * Requests the server to shut down, once the requests in flight are
+   * answered.
+   */
+  public void shutdown()
+  {
+    m_terminate = true;
+    m_selector.wakeup();
+  }
+
+  /**
+   * Runs the selector loop till shut down, and then waits for the
+   * records to be inserted.
+   */
+  public void run()
+  {
+    long drain = Long.MAX_VALUE;
+    try {
+      while ( ! m_terminate || m_inFlight.get() > 0 ||
+	      ( hasPendingOutput() && System.currentTimeMillis() < drain ) ) {
+	if ( m_terminate && m_server.isOpen() ) {
+	  // stop accepting, and give the clients a while for the responses
+	  m_server.close();
+	  drain = System.currentTimeMillis() + DRAIN_TIME;
+	}
+	m_selector.select( 1000 );
+
+	// responses and such from the workers
+	Runnable task;
+	while ( (task = m_tasks.poll()) != null ) task.run();
+
+	for ( Iterator<SelectionKey> i=m_selector.selectedKeys().iterator(); i.hasNext(); ) {
+	  SelectionKey key = i.next();
+	  i.remove();
+	  try {
+	    if ( ! key.isValid() ) continue;
+	    if ( key.isAcceptable() ) accept();
+	    if ( key.isValid() && key.isReadable() ) read( key );
+	    if ( key.isValid() && key.isWritable() ) write( key );
+	  } catch ( IOException e ) {
+	    Connection c = (Connection) key.attachment();
+	    c_logger.warn( (c == null ? "" : c.m_remote + ": ") +
+			   "I/O error: " + e.getMessage() );
+	    close( key );
+	  }
+	}
+      }
+    } catch ( IOException e ) {
+      c_logger.fatal( "selector failed: " + e.getMessage() );
+    }
+
+    // done
+    c_logger.info( "received shutdown" );
+    for ( Iterator<SelectionKey> i=m_selector.keys().iterator(); i.hasNext(); ) {
+      close( i.next() );
+    }
+    try {
+      m_server.close();
+      m_selector.close();
+    } catch ( IOException e ) {
+      // ignore
+    }
+
+    m_workers.shutdown();
+    try {
+      m_workers.awaitTermination( 60, TimeUnit.SECONDS );
+      if ( m_writer != null ) m_writer.close();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+    if ( m_dbschema != null ) {
+      try {
+	m_dbschema.close();
+      } catch ( Exception e ) {
+	c_logger.warn( "During database disconnect: " + e.getMessage() );
+      }
+    }
+    c_logger.info( "finished shutdown: " + getStatistics() );
+  }
+
+  /**
+   * Checks whether any of the connections has responses not written yet.
+   */
+  private boolean hasPendingOutput()
+  {
+    for ( Iterator<SelectionKey> i=m_selector.keys().iterator(); i.hasNext(); ) {
+      SelectionKey key = i.next();
+      Connection c = (Connection) key.attachment();
+      if ( key.isValid() && c != null && ! c.m_out.isEmpty() ) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Accepts a new connection.
+   */
+  private void accept()
+    throws IOException
+  {
+    SocketChannel channel = m_server.accept();
+    if ( channel == null ) return;
+    channel.configureBlocking( false );
+    Connection c = new Connection( channel );
+    channel.register( m_selector, SelectionKey.OP_READ, c );
+    m_connections.incrementAndGet();
+    c_logger.debug( c.m_remote + ": starting" );
+  }
+
+  /**
+   * Reads the available data of a connection, and processes the
+   * complete lines.
+   */
+  private void read( SelectionKey key )
+    throws IOException
+  {
+    Connection c = (Connection) key.attachment();
+    c.m_buffer.clear();
+    int n = c.m_channel.read( c.m_buffer );
+    if ( n == -1 ) {
+      c.m_eof = true;
+    } else {
+      c.m_buffer.flip();
+      while ( c.m_buffer.hasRemaining() ) {
+	byte b = c.m_buffer.get();
+	if ( b == '\n' ) {
+	  String line = new String( c.m_line.toByteArray(), c_charset );
+	  if ( line.endsWith("\r") ) line = line.substring( 0, line.length()-1 );
+	  c.m_lines.add( line );
+	  c.m_line.reset();
+	} else {
+	  c.m_line.write( b );
+	}
+      }
+    }
+    process( key );
+  }
+
+  /**
+   * Processes the pending lines of a connection in order, till one of
+   * them needs a worker.
+   */
+  private void process( SelectionKey key )
+  {
+    Connection c = (Connection) key.attachment();
+    while ( ! c.m_busy && ! c.m_closing && ! c.m_lines.isEmpty() ) {
+      String line = c.m_lines.poll();
+      if ( c_logger.isDebugEnabled() )
+	c_logger.debug( c.m_remote + ": received >>" + line + "<<" );
+
+      if ( line.startsWith("PARSE") ) {
+	// request to parse a given file
+	String[] request = line.split("[ \t]",3);
+	if ( request.length != 3 ) {
+	  respond( key, "400 Illegal request format" );
+	} else if ( ! request[2].equals(PROTOCOL_VERSION) ) {
+	  respond( key, "501 Unrecognized version" );
+	} else {
+	  dispatch( key, request[1] );
+	}
+      } else if ( line.equals("STATS") ) {
+	respond( key, "200 " + getStatistics() );
+      } else if ( line.equals("QUIT") ) {
+	respond( key, "200 Good-bye" );
+	c.m_closing = true;
+      } else if ( line.equals("SHUTDOWN") ) {
+	respond( key, "200 Shutting down server, good-bye" );
+	c.m_closing = true;
+	m_terminate = true;
+      } else {
+	// illegal request
+	respond( key, "500 Illegal request" );
+	c.m_closing = true;
+      }
+    }
+
+    if ( c.m_eof && ! c.m_busy ) c.m_closing = true;
+    updateInterest( key );
+  }
+
+  /**
+   * Hands a PARSE request to the workers. The connection is not read
+   * from till the request is answered.
+   */
+  private void dispatch( final SelectionKey key, final String filename )
+  {
+    final Connection c = (Connection) key.attachment();
+    c.m_busy = true;
+    m_inFlight.incrementAndGet();
+    m_requests.incrementAndGet();
+    m_workers.execute( new Runnable() {
+	public void run() {
+	  final int result = checkFile( filename );
+	  m_tasks.add( new Runnable() {
+	      public void run() {
+		c.m_busy = false;
+		m_inFlight.decrementAndGet();
+		if ( key.isValid() ) {
+		  respond( key, "300 Result code " + result );
+		  process( key );
+		}
+	      }
+	    } );
+	  m_selector.wakeup();
+	}
+      } );
+  }
+
+  /**
+   * Queues a response line on a connection.
+   */
+  private void respond( SelectionKey key, String line )
+  {
+    Connection c = (Connection) key.attachment();
+    c.m_out.add( ByteBuffer.wrap( (line + "\r\n").getBytes(c_charset) ) );
+  }
+
+  /**
+   * Writes the pending responses of a connection.
+   */
+  private void write( SelectionKey key )
+    throws IOException
+  {
+    Connection c = (Connection) key.attachment();
+    while ( ! c.m_out.isEmpty() ) {
+      ByteBuffer b = c.m_out.peek();
+      c.m_channel.write( b );
+      if ( b.hasRemaining() ) break;
+      c.m_out.poll();
+    }
+    updateInterest( key );
+  }
+
+  /**
+   * Sets what the selector waits for on a connection, and closes it
+   * once it is done.
+   */
+  private void updateInterest( SelectionKey key )
+  {
+    if ( ! key.isValid() ) return;
+    Connection c = (Connection) key.attachment();
+    if ( c.m_closing && c.m_out.isEmpty() && ! c.m_busy ) {
+      close( key );
+      return;
+    }
+    int ops = 0;
+    if ( ! c.m_busy && ! c.m_closing && ! c.m_eof ) ops |= SelectionKey.OP_READ;
+    if ( ! c.m_out.isEmpty() ) ops |= SelectionKey.OP_WRITE;
+    key.interestOps( ops );
+  }
+
+  /**
+   * Closes a connection.
+   */
+  private void close( SelectionKey key )
+  {
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch ( IOException e ) {
+      // ignore
+    }
+    Connection c = (Connection) key.attachment();
+    if ( c != null ) c_logger.debug( c.m_remote + ": finished" );
+  }
+
+  /**
+   * Reads the contents of the specified file, queues the invocation
+   * record for insertion, and returns with the remote exit code
+   * contained in the job chain. Called by the worker threads.
+   *
+   * @param filename is the name of the file with the kickstart record.
+   * @return the exit code derived from the remote exit code.
+   */
+  public int checkFile( String filename )
+  {
+    int result = 0;
+
+    try {
+      // tests 1-4: check the file and extract the XML
+      String temp = SimpleServer.extractRecord( filename, m_emptyFail );
+
+      // test 5: try to parse XML with the parser of this thread
+      InvocationParser parser = m_parsers.get();
+      InvocationRecord invocation = parser.parse( new StringReader(temp) );
+      if ( invocation == null )
+	throw new FriendlyNudge( "invalid XML invocation record in " +
+				 filename + ", assuming failure", 5 );
+      m_parsed.incrementAndGet();
+
+      // queue for insertion into the database
+      if ( m_writer != null ) m_writer.add( invocation );
+
+      // determine result code, just look at the main job for now
+      result = SimpleServer.determineExitStatus( invocation );
+      c_logger.info( filename + ": exit status = " + result );
+
+    } catch ( FriendlyNudge fn ) {
+      c_logger.warn( fn.getMessage() );
+      result = fn.getResult();
+
+    } catch ( Exception e ) {
+      c_logger.warn( e.getMessage() );
+      result = 5;
+    }
+
+    if ( result != 0 ) m_failures.incrementAndGet();
+    return result;
+  }
+
+  /**
+   * @return the number of connections accepted.
+   */
+  public long getConnections()
+  {
+    return m_connections.get();
+  }
+
+  /**
+   * @return the number of PARSE requests received.
+   */
+  public long getRequests()
+  {
+    return m_requests.get();
+  }
+
+  /**
+   * @return the number of records parsed successfully.
+   */
+  public long getParsed()
+  {
+    return m_parsed.get();
+  }
+
+  /**
+   * @return the number of requests with a non-zero result code.
+   */
+  public long getFailures()
+  {
+    return m_failures.get();
+  }
+
+  /**
+   * @return the writer inserting the records, or null in no-database mode.
+   */
+  public InvocationBatchWriter getWriter()
+  {
+    return m_writer;
+  }
+
+  /**
+   * Formats the throughput counters of the server and its writer.
+   *
+   * @return the counters as key=value pairs.
+   */
+  public String getStatistics()
+  {
+    StringBuffer result = new StringBuffer();
+    result.append( "connections=" ).append( getConnections() );
+    result.append( " requests=" ).append( getRequests() );
+    result.append( " parsed=" ).append( getParsed() );
+    result.append( " failures=" ).append( getFailures() );
+    result.append( " inflight=" ).append( m_inFlight.get() );
+    if ( m_writer != null ) {
+      result.append( " queued=" ).append( m_writer.getQueued() );
+      result.append( " pending=" ).append( m_writer.getPending() );
+      result.append( " highwater=" ).append( m_writer.getHighWater() );
+      result.append( " inserted=" ).append( m_writer.getInserted() );
+      result.append( " batches=" ).append( m_writer.getBatches() );
+      result.append( " duplicates=" ).append( m_writer.getDuplicates() );
+      result.append( " dbfailures=" ).append( m_writer.getFailed() );
+    }
+    return result.toString();
+  }
+
+  /**
+   * The state of a client connection, only accessed by the selector
+   * thread.
+   */
+  private static class Connection
+  {
+    SocketChannel m_channel;
+    String m_remote;
+    ByteBuffer m_buffer = ByteBuffer.allocate( 4096 );
+    ByteArrayOutputStream m_line = new ByteArrayOutputStream( 256 );
+    ArrayDeque<String> m_lines = new ArrayDeque<String>();
+    ArrayDeque<ByteBuffer> m_out = new ArrayDeque<ByteBuffer>();
+    boolean m_busy = false;
+    boolean m_closing = false;
+    boolean m_eof = false;
+
+    Connection( SocketChannel channel )
+    {
+      this.m_channel = channel;
+      InetSocketAddress remote =
+	(InetSocketAddress) channel.socket().getRemoteSocketAddress();
+      this.m_remote = remote == null ? "?" :
+	remote.getAddress().getHostAddress() + ":" + remote.getPort();
+    }
+  }
+
+  /**
+   * Starts the server.
+   *
+   * @param args are the optional port, number of worker threads and
+   * batch size, in that order.
+   */
+  public static void main( String args[] )
+  {
+    // setup logging
+    System.setProperty( "log4j.defaultInitOverride", "true" );
+    Logger root = Logger.getRootLogger();
+    root.addAppender(
+	new ConsoleAppender(
+	new PatternLayout("%d{yyyy-MM-dd HH:mm:ss.SSS} %-5p [%t] %m%n") ) );
+    root.setLevel( Level.INFO );
+    c_logger.info( "starting" );
+
+    IngestServer me = null;
+    try {
+      int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+      int threads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_THREADS;
+      int batch = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BATCH_SIZE;
+
+      // stand up the connection to the PTC
+      ChimeraProperties props = ChimeraProperties.instance();
+      String ptcSchemaName = props.getPTCSchemaName();
+      PTC ptc = null;
+      if ( ptcSchemaName != null ) {
+	DatabaseSchema dbschema = new Connect().connectDatabase(ptcSchemaName);
+	if ( dbschema instanceof PTC ) {
+	  ptc = (PTC) dbschema;
+	} else {
+	  c_logger.warn( "Your database cannot store invocation records" +
+			 ", assuming no-database-mode" );
+	  dbschema.close();
+	}
+      }
+      me = new IngestServer( port, threads, ptc,
+			     props.getPTCSchemaLocation(), batch );
+    } catch ( Exception e ) {
+      c_logger.fatal( "Unable to instantiate a server: " + e.getMessage() );
+      System.exit(1);
+    }
+
+    // run till shut down
+    me.run();
+  }
+}
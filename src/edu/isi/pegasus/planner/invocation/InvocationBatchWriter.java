@@ -0,0 +1,309 @@
+/*
+ * This file or a portion of this file is licensed under the terms of
+ * the Globus Toolkit Public License, found in file GTPL, or at
+ * http://www.globus.org/toolkit/download/license.html. This notice must
+ * appear in redistributions of this file, with or without modification.
+ *
+ * Redistributions of this Software, with or without modification, must
+ * reproduce the GTPL in: (1) the Software, or (2) the Documentation or
+ * some other similar material which is provided with the Software (if
+ * any).
+ *
+ * Copyright 1999-2004 University of Chicago and The University of
+ * Southern California. All rights reserved.
+ */
+package edu.isi.pegasus.planner.invocation;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.griphyn.vdl.dbschema.PTC;
+import org.apache.log4j.Logger;
+
+/**
+ * This class inserts invocation records into the provenance tracking
+ * catalog in batches. A single writer thread owns the database
+ * connection, and drains the records handed to it through a bounded
+ * queue. Producers block once the queue is full, which throttles them
+ * to the speed of the database.
+ *
+ * @version $Revision$
+ */
+public class InvocationBatchWriter extends Thread
+{
+  /**
+   * The marker that tells the writer thread to flush and exit.
+   */
+  private static final InvocationRecord c_done = new InvocationRecord();
+
+  /**
+   * The logger to use.
+   */
+  private static Logger c_logger = Logger.getLogger( InvocationBatchWriter.class );
+
+  /**
+   * The catalog to insert the records into.
+   */
+  private PTC m_ptc;
+
+  /**
+   * The queue of records waiting to be inserted.
+   */
+  private BlockingQueue<InvocationRecord> m_queue;
+
+  /**
+   * The maximum number of records inserted in one transaction.
+   */
+  private int m_batchSize;
+
+  /**
+   * The time in milliseconds to wait for more records to fill a batch.
+   */
+  private long m_linger;
+
+  /**
+   * The largest number of records seen waiting in the queue.
+   */
+  private AtomicLong m_highWater;
+
+  /**
+   * The throughput counters.
+   */
+  private AtomicLong m_queued;
+  private AtomicLong m_inserted;
+  private AtomicLong m_batches;
+  private AtomicLong m_duplicates;
+  private AtomicLong m_failed;
+
+  /**
+   * Constructs a writer, that needs to be started.
+   *
+   * @param ptc is the catalog to insert the records into.
+   * @param capacity is the number of records that may wait for insertion.
+   * @param batchSize is the maximum number of records per transaction.
+   * @param linger is the time in milliseconds to wait for a batch to fill.
+   */
+  public InvocationBatchWriter( PTC ptc, int capacity, int batchSize,
+				long linger )
+  {
+    super( "InvocationBatchWriter" );
+    this.m_ptc = ptc;
+    this.m_queue = new ArrayBlockingQueue<InvocationRecord>( Math.max( 1, capacity ) );
+    this.m_batchSize = Math.max( 1, batchSize );
+    this.m_linger = linger;
+    this.m_highWater = new AtomicLong( 0 );
+    this.m_queued = new AtomicLong( 0 );
+    this.m_inserted = new AtomicLong( 0 );
+    this.m_batches = new AtomicLong( 0 );
+    this.m_duplicates = new AtomicLong( 0 );
+    this.m_failed = new AtomicLong( 0 );
+    setDaemon( true );
+  }
+
+  /**
+   * Hands a record over for insertion, blocking while the queue is full.
+   *
+   * @param ivr is the invocation record to insert.
+   * @exception InterruptedException if interrupted while waiting.
+   */
+  public void add( InvocationRecord ivr )
+    throws InterruptedException
+  {
+    m_queue.put( ivr );
+    m_queued.incrementAndGet();
+
+    long size = m_queue.size();
+    long high = m_highWater.get();
+    while ( size > high && ! m_highWater.compareAndSet( high, size ) ) {
+      high = m_highWater.get();
+    }
+  }
+
+  /**
+   * Inserts the records still waiting, and waits for the writer thread
+   * to exit.
+   *
+   * @exception InterruptedException if interrupted while waiting.
+   */
+  public void close()
+    throws InterruptedException
+  {
+    m_queue.put( c_done );
+    join();
+  }
+
+  /**
+   * Drains the queue into batches and inserts them, till closed.
+   */
+  public void run()
+  {
+    List<InvocationRecord> batch = new ArrayList<InvocationRecord>( m_batchSize );
+    boolean done = false;
+    while ( ! done ) {
+      try {
+	InvocationRecord ivr = m_queue.take();
+	if ( ivr == c_done ) {
+	  done = true;
+	} else {
+	  batch.add( ivr );
+	  // wait a little for more records to fill the batch
+	  long deadline = System.nanoTime() +
+	    TimeUnit.MILLISECONDS.toNanos( m_linger );
+	  while ( batch.size() < m_batchSize ) {
+	    ivr = m_queue.poll( deadline - System.nanoTime(),
+				TimeUnit.NANOSECONDS );
+	    if ( ivr == null ) break;
+	    if ( ivr == c_done ) {
+	      done = true;
+	      break;
+	    }
+	    batch.add( ivr );
+	  }
+	}
+      } catch ( InterruptedException e ) {
+	// insert whatever is left and exit
+	m_queue.drainTo( batch );
+	batch.remove( c_done );
+	done = true;
+      }
+
+      if ( ! batch.isEmpty() ) {
+	flush( batch );
+	batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Inserts a batch of records in a single transaction, skipping the
+   * records that are already in the catalog. If the transaction fails,
+   * the records are inserted one at a time, so that one bad record does
+   * not lose the whole batch.
+   *
+   * @param batch is the list of records to insert.
+   */
+  protected void flush( List<InvocationRecord> batch )
+  {
+    List<InvocationRecord> fresh = new ArrayList<InvocationRecord>( batch.size() );
+    try {
+      int duplicates = 0;
+      Set<String> seen = new HashSet<String>();
+      for ( Iterator<InvocationRecord> i=batch.iterator(); i.hasNext(); ) {
+	InvocationRecord ivr = i.next();
+	// FIXME: (start,host,pid) may not be a sufficient secondary key
+	if ( seen.add( key(ivr) ) &&
+	     m_ptc.getInvocationID( ivr.getStart(), ivr.getHostAddress(),
+				    ivr.getPID() ) == -1 ) {
+	  fresh.add( ivr );
+	} else {
+	  ++duplicates;
+	}
+      }
+
+      if ( ! fresh.isEmpty() ) {
+	m_ptc.saveInvocations( fresh );
+	m_inserted.addAndGet( fresh.size() );
+	m_batches.incrementAndGet();
+      }
+      m_duplicates.addAndGet( duplicates );
+      c_logger.info( "inserted " + fresh.size() + " invocations, skipped " +
+		     duplicates + " existing ones" );
+    } catch ( SQLException e ) {
+      c_logger.warn( "batch insert of " + batch.size() + " invocations" +
+		     " failed, inserting one at a time: " + e.getMessage() );
+      Set<String> seen = new HashSet<String>();
+      for ( Iterator<InvocationRecord> i=batch.iterator(); i.hasNext(); ) {
+	InvocationRecord ivr = i.next();
+	try {
+	  if ( seen.add( key(ivr) ) &&
+	       m_ptc.getInvocationID( ivr.getStart(), ivr.getHostAddress(),
+				      ivr.getPID() ) == -1 ) {
+	    m_ptc.saveInvocation( ivr );
+	    m_inserted.incrementAndGet();
+	  } else {
+	    m_duplicates.incrementAndGet();
+	  }
+	} catch ( SQLException se ) {
+	  c_logger.warn( "unable to insert invocation: " + se.getMessage() );
+	  m_failed.incrementAndGet();
+	}
+      }
+    }
+  }
+
+  /**
+   * Constructs the secondary key of an invocation record.
+   *
+   * @param ivr is the invocation record.
+   * @return the (start,host,pid) tuple as a string.
+   */
+  private static String key( InvocationRecord ivr )
+  {
+    return ( ivr.getStart() == null ? "" : Long.toString(ivr.getStart().getTime()) ) +
+      '/' + ivr.getHostAddress() + '/' + ivr.getPID();
+  }
+
+  /**
+   * @return the number of records handed over for insertion.
+   */
+  public long getQueued()
+  {
+    return m_queued.get();
+  }
+
+  /**
+   * @return the number of records inserted.
+   */
+  public long getInserted()
+  {
+    return m_inserted.get();
+  }
+
+  /**
+   * @return the number of batches inserted.
+   */
+  public long getBatches()
+  {
+    return m_batches.get();
+  }
+
+  /**
+   * @return the number of records skipped, as they already existed.
+   */
+  public long getDuplicates()
+  {
+    return m_duplicates.get();
+  }
+
+  /**
+   * @return the number of records that could not be inserted.
+   */
+  public long getFailed()
+  {
+    return m_failed.get();
+  }
+
+  /**
+   * @return the number of records waiting for insertion.
+   */
+  public int getPending()
+  {
+    return m_queue.size();
+  }
+
+  /**
+   * @return the largest number of records seen waiting for insertion.
+   */
+  public long getHighWater()
+  {
+    return m_highWater.get();
+  }
+}
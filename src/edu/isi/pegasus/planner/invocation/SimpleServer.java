@@ -114,7 +114,7 @@ public class SimpleServer extends Toolkit
    * @param input is the file instance from which to read contents.
    * @return the result code from reading the file
    */
-  private String extractToMemory( java.io.File input )
+  private static String extractToMemory( java.io.File input )
     throws FriendlyNudge
   {
     StringWriter out = null;
@@ -181,7 +181,7 @@ public class SimpleServer extends Toolkit
    *   6   impossible case
    * </pre>
    */
-  private int determineExitStatus( InvocationRecord ivr )
+  static int determineExitStatus( InvocationRecord ivr )
   {
     boolean seen = false;
     for ( Iterator i=ivr.iterateJob(); i.hasNext(); ) {
@@ -223,6 +223,47 @@ public class SimpleServer extends Toolkit
     return seen ? 0 : 5;
   }
 
+  /**
+   * Checks that the specified file exists, is readable and not empty,
+   * and extracts the invocation record it contains into memory.
+   *
+   * @param filename is the name of the file with the kickstart record.
+   * @param emptyFail whether an empty file is a failure, or a success.
+   * @return the XML of the invocation record.
+   * @exception FriendlyNudge with the result code, if any of the checks
+   * fail.
+   */
+  static String extractRecord( String filename, boolean emptyFail )
+    throws FriendlyNudge
+  {
+    // check input file
+    java.io.File check = new java.io.File(filename);
+
+    // test 1: file exists
+    if ( ! check.exists() )
+      throw new FriendlyNudge( "file does not exist " + filename +
+			       ", assuming failure", 5 );
+
+    // test 2: file is readable
+    if ( ! check.canRead() )
+      throw new FriendlyNudge( "unable to read file " + filename +
+			       ", assuming failure", 5 );
+
+    // test 3: file has nonzero size
+    if ( check.length() == 0 ) {
+      if ( emptyFail ) {
+	throw new FriendlyNudge( "file " + filename + " has zero length" +
+				 ", assuming failure", 5 );
+      } else {
+	throw new FriendlyNudge( "file " + filename + " has zero length" +
+				 ", assuming success", 0 );
+      }
+    }
+
+    // test 4: extract XML into memory
+    return extractToMemory(check);
+  }
+
   /**
    * Reads the contents of the specified file, and returns with the
    * remote exit code contained in the job chain.
@@ -235,32 +276,8 @@ public class SimpleServer extends Toolkit
     int result = 0;
 
     try {
-      // check input file
-      java.io.File check = new java.io.File(filename);
-
-      // test 1: file exists
-      if ( ! check.exists() )
-	throw new FriendlyNudge( "file does not exist " + filename +
-				 ", assuming failure", 5 );
-
-      // test 2: file is readable
-      if ( ! check.canRead() )
-	throw new FriendlyNudge( "unable to read file " + filename +
-				 ", assuming failure", 5 );
-
-      // test 3: file has nonzero size
-      if ( check.length() == 0 ) {
-	if ( m_emptyFail ) {
-	  throw new FriendlyNudge( "file " + filename + " has zero length" +
-				   ", assuming failure", 5 );
-	} else {
-	  throw new FriendlyNudge( "file " + filename + " has zero length" +
-				   ", assuming success", 0 );
-	}
-      }
-
-      // test 4: extract XML into tmp file
-      String temp = extractToMemory(check);
+      // tests 1-4: check the file and extract the XML
+      String temp = extractRecord( filename, m_emptyFail );
 
       // test 5: try to parse XML -- but there is only one parser
       InvocationRecord invocation = null;
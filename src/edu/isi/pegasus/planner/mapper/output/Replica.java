@@ -21,17 +21,27 @@ import edu.isi.pegasus.planner.catalog.replica.ReplicaFactory;
 
 import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
 import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
 import edu.isi.pegasus.planner.classes.PlannerOptions;
 
 import edu.isi.pegasus.planner.mapper.MapperException;
 import edu.isi.pegasus.planner.mapper.OutputMapper;
 
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 
 /**
@@ -50,6 +60,14 @@ import java.util.Properties;
  *                                          if using a file based RC
  * </pre>
  * 
+ * The locations of the output files of the workflow on the output site are
+ * looked up in bulk when the mapper is initialized, and are kept in memory
+ * up to the number specified by the property
+ * <pre>
+ * pegasus.dir.storage.mapper.replica.prefetch
+ * </pre>
+ * Files whose locations are not in memory are looked up one at a time.
+ * 
  * 
  * @author Karan Vahi
  */
@@ -102,6 +120,27 @@ public class Replica implements OutputMapper {
     
     
     protected ReplicaCatalog mRCCatalog;
+
+    /**
+     * The locations of the files on the output site indexed by lfn, with
+     * the least recently used dropped beyond the prefetch limit.
+     */
+    private Map<String,String> mLocations;
+
+    /**
+     * The maximum number of locations to keep in memory.
+     */
+    private int mPrefetch;
+
+    /**
+     * The number of lookups that were served from memory.
+     */
+    private volatile long mHits;
+
+    /**
+     * The number of lookups that were sent to the replica catalog.
+     */
+    private volatile long mMisses;
     
     /**
      * The default constructor.
@@ -150,6 +189,53 @@ public class Replica implements OutputMapper {
             throw new MapperException( "Unable to connect to replica catalog backend for output mapper " + catalogImplementor , e);
         }
 
+        mPrefetch = bag.getPegasusProperties().getOutputReplicaMapperPrefetch();
+        mLocations = new LinkedHashMap<String,String>( 16, 0.75f, true ){
+            protected boolean removeEldestEntry( Map.Entry<String,String> eldest ){
+                return size() > mPrefetch;
+            }
+        };
+        if( mPrefetch > 0 && workflow != null ){
+            this.prefetch( workflow );
+        }
+    }
+
+    /**
+     * Looks up the locations of the output files of the workflow on the
+     * output site in one bulk lookup, up to the prefetch limit.
+     *
+     * @param workflow   the workflow refined so far.
+     */
+    protected void prefetch( ADag workflow ){
+        Set<String> lfns = new LinkedHashSet<String>();
+        for( Iterator<GraphNode> it = workflow.jobIterator(); it.hasNext() && lfns.size() < mPrefetch; ){
+            Job job = (Job)it.next().getContent();
+            for( PegasusFile pf : job.getOutputFiles() ){
+                //files that are not transferred are never mapped
+                if( !pf.getTransientTransferFlag() ){
+                    lfns.add( pf.getLFN() );
+                    if( lfns.size() >= mPrefetch ){
+                        break;
+                    }
+                }
+            }
+        }
+        if( lfns.isEmpty() ){
+            return;
+        }
+
+        Map result = mRCCatalog.lookup( lfns, mOutputSite );
+        for( Iterator it = result.entrySet().iterator(); it.hasNext(); ){
+            Map.Entry entry = (Map.Entry)it.next();
+            Collection c = (Collection)entry.getValue();
+            if( c != null && !c.isEmpty() ){
+                //the first matching entry, as for a lookup of a single lfn
+                mLocations.put( (String)entry.getKey(), ((ReplicaCatalogEntry)c.iterator().next()).getPFN() );
+            }
+        }
+        mLogger.log( "Output Replica Mapper prefetched locations of " + mLocations.size() + " out of " +
+                     lfns.size() + " output files on site " + mOutputSite,
+                     LogManager.DEBUG_MESSAGE_LEVEL );
     }
     
     /**
@@ -189,7 +275,7 @@ public class Replica implements OutputMapper {
     public String map( String lfn, String site, FileServer.OPERATION operation, boolean existing ) throws MapperException{
         
         //we just return the first matching URL
-        String url = mRCCatalog.lookup(lfn, site);
+        String url = this.lookup( lfn, site );
         
         if( url == null ){
             throw new MapperException( this.getErrorMessagePrefix() + "Unable to retrive location from Mapper Replica Backend for lfn " + lfn );
@@ -223,6 +309,56 @@ public class Replica implements OutputMapper {
 
     
     
+    /**
+     * Returns the first matching location of a file on a site, from memory
+     * for the output site, else from the replica catalog.
+     * 
+     * @param lfn    the lfn
+     * @param site   the site
+     * 
+     * @return the location, or null if there is none.
+     */
+    protected String lookup( String lfn, String site ){
+        boolean outputSite = ( mLocations != null && site != null && site.equals( mOutputSite ) );
+        if( outputSite ){
+            synchronized( mLocations ){
+                String url = mLocations.get( lfn );
+                if( url != null ){
+                    mHits++;
+                    return url;
+                }
+                mMisses++;
+            }
+        }
+        String url = mRCCatalog.lookup( lfn, site );
+        if( outputSite && url != null && mPrefetch > 0 ){
+            synchronized( mLocations ){
+                mLocations.put( lfn, url );
+            }
+        }
+        return url;
+    }
+
+    /**
+     * Returns the number of lookups of locations on the output site that
+     * were served from memory.
+     * 
+     * @return the number of lookups
+     */
+    public long getHits(){
+        return mHits;
+    }
+
+    /**
+     * Returns the number of lookups of locations on the output site that
+     * were sent to the replica catalog.
+     * 
+     * @return the number of lookups
+     */
+    public long getMisses(){
+        return mMisses;
+    }
+    
     /**
      * Returns the prefix message to be attached to an error message
      * 
@@ -1000,7 +1000,7 @@ public class Condor extends Namespace{
      * @return the Cloned object
      */
     public Object clone(){
-        return new Condor(this.mProfileMap);
+        return this.copyOnWrite();
     }
 
 }
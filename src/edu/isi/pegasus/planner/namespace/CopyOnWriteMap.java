@@ -0,0 +1,219 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package edu.isi.pegasus.planner.namespace;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A map that holds the profiles of a namespace, and shares them with its
+ * copies until either the map or the copy is modified. Cloning a job clones
+ * all its namespaces, and most of the clones are never modified, or only
+ * modified in one or two namespaces. Sharing the underlying map makes the
+ * clone of a namespace a constant time operation.
+ *
+ * The first modification of a shared map copies the underlying map, retaining
+ * its type, so a sorted map stays sorted and a linked map retains its
+ * insertion order. The views of the map are read only, and always reflect the
+ * current contents of the map.
+ *
+ * @version $Revision$
+ */
+public class CopyOnWriteMap<K,V> extends AbstractMap<K,V> {
+
+    /**
+     * The underlying map.
+     */
+    private Map<K,V> mMap;
+
+    /**
+     * Whether the underlying map is shared with another copy.
+     */
+    private volatile boolean mShared;
+
+    /**
+     * The read only view of the entries.
+     */
+    private transient Set<Map.Entry<K,V>> mEntrySet;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param map  the underlying map, that is owned by this object
+     *             from now on.
+     */
+    public CopyOnWriteMap( Map<K,V> map ){
+        this( map, false );
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param map     the underlying map.
+     * @param shared  whether the map is shared with another copy.
+     */
+    private CopyOnWriteMap( Map<K,V> map, boolean shared ){
+        mMap    = map;
+        mShared = shared;
+    }
+
+    /**
+     * Returns a copy of the map, that shares the underlying map until either
+     * of them is modified.
+     *
+     * @return the copy
+     */
+    public CopyOnWriteMap<K,V> copy(){
+        mShared = true;
+        return new CopyOnWriteMap<K,V>( mMap, true );
+    }
+
+    /**
+     * Returns whether the underlying map is shared with another copy.
+     *
+     * @return boolean
+     */
+    public boolean isShared(){
+        return mShared;
+    }
+
+    public int size(){
+        return mMap.size();
+    }
+
+    public boolean isEmpty(){
+        return mMap.isEmpty();
+    }
+
+    public boolean containsKey( Object key ){
+        return mMap.containsKey( key );
+    }
+
+    public boolean containsValue( Object value ){
+        return mMap.containsValue( value );
+    }
+
+    public V get( Object key ){
+        return mMap.get( key );
+    }
+
+    public V put( K key, V value ){
+        own();
+        return mMap.put( key, value );
+    }
+
+    public V remove( Object key ){
+        if( !mMap.containsKey( key ) ){
+            return null;
+        }
+        own();
+        return mMap.remove( key );
+    }
+
+    public void putAll( Map<? extends K, ? extends V> m ){
+        if( m.isEmpty() ){
+            return;
+        }
+        own();
+        mMap.putAll( m );
+    }
+
+    public void clear(){
+        if( mMap.isEmpty() ){
+            return;
+        }
+        if( mShared ){
+            //no need to copy the entries that are cleared
+            mMap = emptyCopy( mMap );
+            mShared = false;
+            return;
+        }
+        mMap.clear();
+    }
+
+    /**
+     * Returns a read only view of the entries in the map.
+     *
+     * @return the entry set
+     */
+    public Set<Map.Entry<K,V>> entrySet(){
+        if( mEntrySet == null ){
+            mEntrySet = new AbstractSet<Map.Entry<K,V>>(){
+                public Iterator<Map.Entry<K,V>> iterator(){
+                    return Collections.unmodifiableMap( mMap ).entrySet().iterator();
+                }
+
+                public int size(){
+                    return mMap.size();
+                }
+            };
+        }
+        return mEntrySet;
+    }
+
+    /**
+     * Copies the underlying map if it is shared, before it is modified.
+     */
+    private void own(){
+        if( mShared ){
+            mMap = duplicate( mMap );
+            mShared = false;
+        }
+    }
+
+    /**
+     * Copies a map, retaining the type of the map.
+     *
+     * @param map  the map to copy
+     *
+     * @return the copy
+     */
+    private static <K,V> Map<K,V> duplicate( Map<K,V> map ){
+        if( map instanceof SortedMap ){
+            return new TreeMap<K,V>( (SortedMap<K,V>)map );
+        }
+        if( map instanceof LinkedHashMap ){
+            return new LinkedHashMap<K,V>( map );
+        }
+        return new HashMap<K,V>( map );
+    }
+
+    /**
+     * Creates an empty map of the same type as a map.
+     *
+     * @param map  the map
+     *
+     * @return the empty map
+     */
+    private static <K,V> Map<K,V> emptyCopy( Map<K,V> map ){
+        if( map instanceof SortedMap ){
+            return new TreeMap<K,V>( ((SortedMap<K,V>)map).comparator() );
+        }
+        if( map instanceof LinkedHashMap ){
+            return new LinkedHashMap<K,V>();
+        }
+        return new HashMap<K,V>();
+    }
+}
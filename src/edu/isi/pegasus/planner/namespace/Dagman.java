@@ -761,9 +761,8 @@ public class Dagman extends Namespace {
      * @return the Cloned object
      */
     public Object clone() {
-        Dagman ns = (mProfileMap == null) ? new Dagman():new Dagman(this.mProfileMap);
-        ns.mJobName = (mJobName == null)? null : new String(this.mJobName);
-        return ns;
+        //the job name is copied along with the profiles
+        return this.copyOnWrite();
     }
 
 }
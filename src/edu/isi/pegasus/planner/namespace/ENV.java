@@ -301,7 +301,7 @@ public class ENV extends Namespace {
      * @return the Cloned object
      */
     public Object clone() {
-        return ( mProfileMap == null ? new ENV() : new ENV(this.mProfileMap) );
+        return this.copyOnWrite();
     }
 
 }
@@ -486,7 +486,7 @@ public class Globus extends Namespace {
      * @return the Cloned object
      */
     public Object clone(){
-       return new Globus(this.mProfileMap);
+       return this.copyOnWrite();
     }
  
 
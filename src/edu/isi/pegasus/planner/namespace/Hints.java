@@ -314,7 +314,7 @@ public class Hints extends Namespace {
      * @return the Cloned object
      */
     public Object clone() {
-        return (mProfileMap == null)?new Hints():new Hints(this.mProfileMap);
+        return this.copyOnWrite();
     }
 
 
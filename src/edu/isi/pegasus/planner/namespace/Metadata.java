@@ -211,7 +211,7 @@ public class Metadata extends Namespace {
      * @return the Cloned object
      */
     public Object clone() {
-        return (mProfileMap == null)?new Metadata():new Metadata(this.mProfileMap);
+        return this.copyOnWrite();
     }
 
 
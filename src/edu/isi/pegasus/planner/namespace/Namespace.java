@@ -43,7 +43,7 @@ import java.util.Set;
  * @version $Revision$
  */
 
-public abstract class Namespace /*extends Data*/{
+public abstract class Namespace /*extends Data*/ implements Cloneable{
 
     /**
      * The LogManager object which is used to log all the messages.
@@ -613,6 +613,31 @@ public abstract class Namespace /*extends Data*/{
         return obj;
     }
 
+    /**
+     * Returns a copy of the namespace, that shares the profiles with this
+     * namespace until either of them is modified. Namespaces use this to
+     * implement clone.
+     *
+     * @return the copy
+     */
+    protected Namespace copyOnWrite(){
+        Namespace obj;
+        try{
+            obj = ( Namespace ) super.clone();
+        }
+        catch( CloneNotSupportedException e ){
+            throw new RuntimeException("Clone not implemented in the base class of " + this.getClass().getName(),
+                                       e );
+        }
+        if( this.mProfileMap != null ){
+            if( !( this.mProfileMap instanceof CopyOnWriteMap ) ){
+                this.mProfileMap = new CopyOnWriteMap( this.mProfileMap );
+            }
+            obj.mProfileMap = ((CopyOnWriteMap)this.mProfileMap).copy();
+        }
+        return obj;
+    }
+
 
     
    /**
@@ -1075,7 +1075,7 @@ public class Pegasus extends Namespace {
      * @return the Cloned object
      */
     public Object clone() {
-        return (mProfileMap == null)?new Pegasus() : new Pegasus(this.mProfileMap);
+        return this.copyOnWrite();
     }
 
 }
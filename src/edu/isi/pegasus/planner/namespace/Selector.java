@@ -219,7 +219,7 @@ public class Selector extends Namespace {
      * @return the Cloned object
      */
     public Object clone() {
-        return ( mProfileMap == null ? new Selector() : new Selector(this.mProfileMap) );
+        return this.copyOnWrite();
     }
 
 }
@@ -219,7 +219,7 @@ public class Stat extends Namespace {
      * @return the Cloned object
      */
     public Object clone() {
-        return ( mProfileMap == null ? new Stat() : new Stat(this.mProfileMap) );
+        return this.copyOnWrite();
     }
 
 }
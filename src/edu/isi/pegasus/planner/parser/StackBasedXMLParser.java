@@ -20,6 +20,7 @@ package edu.isi.pegasus.planner.parser;
 
 
 import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.InternTable;
 import edu.isi.pegasus.planner.classes.PegasusBag;
 
 
@@ -60,6 +61,12 @@ public abstract class StackBasedXMLParser extends Parser {
      * A set of containing the unsupported element attributes
      */
     protected Set<String> mUnsupportedElementAttributes;
+
+    /**
+     * The table used to de-duplicate the attribute values. Null if the values
+     * are not to be de-duplicated.
+     */
+    protected InternTable mInternTable;
     
     /**
      * The default Constructor.
@@ -81,6 +88,7 @@ public abstract class StackBasedXMLParser extends Parser {
         mStack = new Stack();
         mDepth = 0;
         mUnsupportedElementAttributes = new HashSet();
+        mInternTable = null;
         
     }
 
@@ -166,7 +174,10 @@ public abstract class StackBasedXMLParser extends Parser {
         List values = new java.util.ArrayList();
         for ( int i=0; i < atts.getLength(); ++i ) {
             String name  =  atts.getLocalName(i) ;
-            String value =  atts.getValue(i) ;            
+            String value =  atts.getValue(i) ;
+            if( mInternTable != null ){
+                value = mInternTable.intern( value );
+            }
             names.add(name);
             values.add(value);
         }
@@ -24,6 +24,7 @@ import edu.isi.pegasus.planner.catalog.transformation.classes.TransformationStor
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.CompoundTransformation;
 import edu.isi.pegasus.planner.classes.DagInfo;
+import edu.isi.pegasus.planner.classes.InternTable;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.Notifications;
 import edu.isi.pegasus.planner.classes.PCRelation;
@@ -35,7 +36,10 @@ import edu.isi.pegasus.planner.classes.ReplicaStore;
 import edu.isi.pegasus.planner.classes.WorkflowMetrics;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.dax.Invoke;
+import edu.isi.pegasus.planner.partitioner.graph.CompactGraph;
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -115,6 +119,12 @@ public class DAX2CDAG implements Callback {
      * The handle to the logger
      */
     private LogManager mLogger;
+
+    /**
+     * The table used to de-duplicate the strings and input files of the jobs
+     * while parsing. Null if de-duplication is turned off.
+     */
+    private InternTable mInternTable;
     
     /**
      * The overloaded constructor.
@@ -124,9 +134,9 @@ public class DAX2CDAG implements Callback {
      * @param dax   the path to the DAX file.
      */
     public void initialize( PegasusBag bag, String dax ) {
-        mDag          = new ADag();
-        mJobMap       = new HashMap<String,String>();
         mProps        = bag.getPegasusProperties();
+        mDag          = new ADag( loadGraph( mProps.getGraphImplementation() ) );
+        mJobMap       = new HashMap<String,String>();
         mLogger       = bag.getLogger();
         mDone         = false;
         this.mReplicaStore = new ReplicaStore();
@@ -135,6 +145,35 @@ public class DAX2CDAG implements Callback {
         this.mNotifications = new Notifications();
         this.mAddDataDependencies = mProps.addDataDependencies();
         this.mFileCreationMap = new HashMap<String,Job>();
+        this.mInternTable = mProps.internDAXStrings() ? new InternTable() : null;
+    }
+
+    /**
+     * Returns the table that the parser should use to de-duplicate the
+     * strings and input files of the jobs.
+     *
+     * @return the table, or null if de-duplication is turned off.
+     */
+    public InternTable getInternTable(){
+        return this.mInternTable;
+    }
+
+    /**
+     * Returns the Graph implementation to hold the workflow in.
+     *
+     * @param implementation  the value of the pegasus.parser.dax.graph property
+     *
+     * @return the Graph
+     */
+    private Graph loadGraph( String implementation ){
+        if( implementation.equalsIgnoreCase( "Compact" ) ){
+            return new CompactGraph();
+        }
+        if( implementation.equalsIgnoreCase( "Map" ) ){
+            return new MapGraph();
+        }
+        throw new RuntimeException( "Unsupported graph implementation specified by property pegasus.parser.dax.graph " +
+                                    implementation );
     }
 
 
@@ -281,6 +320,16 @@ public class DAX2CDAG implements Callback {
                                 fileMetrics.getNumDAXFiles(WorkflowMetrics.FILE_TYPE.output));
         metrics.setNumDAXFiles( WorkflowMetrics.FILE_TYPE.total, 
                                 fileMetrics.getNumDAXFiles(WorkflowMetrics.FILE_TYPE.total));
+
+        if( this.mInternTable != null ){
+            mLogger.log( "Parser reused " + mInternTable.getStringHits() + " strings and " +
+                         mInternTable.getFileHits() + " input files saving approximately " +
+                         mInternTable.getBytesSaved() + " bytes",
+                         LogManager.DEBUG_MESSAGE_LEVEL );
+            metrics.setDAXParserBytesSaved( mInternTable.getBytesSaved() );
+            //the lookup tables are no longer required
+            mInternTable.clear();
+        }
         
         if( this.mAddDataDependencies ){
             this.addDataDependencies();
@@ -177,6 +177,11 @@ public class DAXParser3 extends StackBasedXMLParser implements DAXParser {
      */
     public void setDAXCallback( Callback c ){
         this.mCallback = c;
+        //de-duplicate the strings and input files of the jobs
+        //if the callback holds on to them
+        this.mInternTable = ( c instanceof DAX2CDAG ) ?
+                              ((DAX2CDAG)c).getInternTable():
+                              null;
     }
 
     /**
@@ -676,7 +681,7 @@ public class DAXParser3 extends StackBasedXMLParser implements DAXParser {
                         String value = (String) values.get( i );
 
                         if ( name.equals( "namespace" ) ) {
-                            p.setProfileNamespace( value.toLowerCase() );
+                            p.setProfileNamespace( this.intern( value.toLowerCase() ) );
                  	    this.log( element, name, value );
                         }
                         else if ( name.equals( "key" ) ) {
@@ -1039,7 +1044,7 @@ public class DAXParser3 extends StackBasedXMLParser implements DAXParser {
             case 'm':
                 if ( child instanceof Profile ) {
                     Profile md = ( Profile )child;
-                    md.setProfileValue( mTextContent.toString().trim() );
+                    md.setProfileValue( this.intern( mTextContent.toString().trim() ) );
 
                     if( parent instanceof Map ){
                         //metadata appears in adag element
@@ -1087,7 +1092,7 @@ public class DAXParser3 extends StackBasedXMLParser implements DAXParser {
                 }
                 else if ( child instanceof Profile ){
                     Profile p = ( Profile ) child;
-                    p.setProfileValue( mTextContent.toString().trim() );
+                    p.setProfileValue( this.intern( mTextContent.toString().trim() ) );
                     mLogger.log( "Set Profile Value to " + p.getProfileValue(), LogManager.TRACE_MESSAGE_LEVEL );
                     if ( parent instanceof ReplicaLocation ) {
                         //profile appears in file element
@@ -1176,6 +1181,11 @@ public class DAXParser3 extends StackBasedXMLParser implements DAXParser {
                     if( parent instanceof Job ){
                         //uses appears in job
                         Job j = ( Job )parent;
+                        if( mInternTable != null ){
+                            //reuse the same object for input files
+                            //referred to by multiple jobs
+                            pf = mInternTable.share( pf );
+                        }
 
                         if( pf.getLinkage().equals(LINKAGE.input ) ){
                             j.addInputFile(pf);
@@ -1271,6 +1281,18 @@ public class DAXParser3 extends StackBasedXMLParser implements DAXParser {
     
     
 
+    /**
+     * Returns the canonical instance of a string, if the strings parsed are
+     * being de-duplicated.
+     *
+     * @param value  the string
+     *
+     * @return the interned string, else the value passed
+     */
+    protected String intern( String value ){
+        return ( mInternTable == null ) ? value : mInternTable.intern( value );
+    }
+
     /**
      * Sanity check on the version that this parser works on.
      * 
@@ -0,0 +1,1285 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package edu.isi.pegasus.planner.partitioner.graph;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import edu.isi.pegasus.planner.classes.NameValue;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An implementation of the Graph that interns the node identifiers to int
+ * indices, and keeps the edges of the graph in compressed sparse row (CSR)
+ * form, i.e. an offset array per direction and a flat array of neighbour
+ * indices.
+ *
+ * The edges continue to be manipulated through the <code>GraphNode</code>
+ * API, so that existing callers work unchanged. Whenever the graph is traversed
+ * the CSR snapshot is ( re ) built from the nodes if required, and the
+ * parent and children sets of each node are replaced by light weight views
+ * over the shared int arrays. A view turns into a regular set the first time
+ * it is modified, which in turn marks the snapshot as stale. This gets rid of
+ * the two hash sets per node for the large, mostly read only workflows, while
+ * the traversals ( topological sort, bottom up, BFS and the cycle check ) walk
+ * contiguous int arrays instead of chasing node references.
+ *
+ * Unlike <code>MapGraph</code>, the nodes are returned in the order they were
+ * added to the graph.
+ *
+ * @version $Revision$
+ */
+public class CompactGraph implements Graph{
+
+    /**
+     * The initial capacity of the node array.
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * A view of the nodes of the graph indexed by the id of the node. Only
+     * exists, so that the graph serializes to JSON the same way as
+     * <code>MapGraph</code>.
+     */
+    @Expose @SerializedName( "jobs" )
+    protected Map<String,GraphNode> mStore;
+
+    /**
+     * The nodes of the graph indexed by their interned int index. Removed
+     * nodes leave a null slot, that is reclaimed when the snapshot is rebuilt.
+     */
+    private GraphNode[] mNodes;
+
+    /**
+     * The next free slot in the node array.
+     */
+    private int mNext;
+
+    /**
+     * The number of nodes in the graph.
+     */
+    private int mSize;
+
+    /**
+     * Maps the id of a node to its index in the node array.
+     */
+    private IDIndex mIndex;
+
+    /**
+     * The number of structural modifications made through the Graph API.
+     */
+    private int mModifications;
+
+    /**
+     * The current CSR snapshot of the graph. Can be null or stale.
+     */
+    private Snapshot mSnapshot;
+
+    /**
+     * The cyclic edge detected by the last call to hasCycles().
+     */
+    private NameValue mCyclicEdge;
+
+    /**
+     * The default constructor.
+     */
+    public CompactGraph(){
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param capacity  the expected number of nodes in the graph.
+     */
+    public CompactGraph( int capacity ){
+        capacity       = Math.max( capacity, 1 );
+        mNodes         = new GraphNode[ capacity ];
+        mIndex         = new IDIndex( capacity );
+        mNext          = 0;
+        mSize          = 0;
+        mModifications = 0;
+        mSnapshot      = null;
+        mCyclicEdge    = null;
+        mStore         = new StoreView();
+    }
+
+    /**
+     * Adds a node to the Graph. It overwrites an already existing node with the
+     * same ID.
+     *
+     * @param node  the node to be added to the Graph.
+     */
+    public void addNode( GraphNode node ){
+        mModifications++;
+        int index = mIndex.get( node.getID() );
+        if( index >= 0 ){
+            mNodes[ index ] = node;
+            return;
+        }
+
+        if( mNext == mNodes.length ){
+            //reclaim the slots of removed nodes before growing
+            if( mSize < mNext / 2 ){
+                compactSlots();
+            }
+            else{
+                mNodes = Arrays.copyOf( mNodes, mNodes.length + ( mNodes.length >> 1 ) + 1 );
+            }
+        }
+        mIndex.put( node.getID(), mNext );
+        mNodes[ mNext++ ] = node;
+        mSize++;
+    }
+
+    /**
+     * Returns the node matching the id passed.
+     *
+     * @param identifier  the id of the node.
+     *
+     * @return the node matching the ID else null.
+     */
+    public GraphNode getNode( String identifier ){
+        int index = mIndex.get( identifier );
+        return ( index < 0 ) ? null : mNodes[ index ];
+    }
+
+    /**
+     * Adds a single root node to the Graph. All the exisitng roots of the
+     * Graph become children of the root.
+     *
+     * @param root  the <code>GraphNode</code> to be added as a root.
+     *
+     * @throws RuntimeException if a node with the same id already exists.
+     */
+    public void addRoot( GraphNode root ){
+        //sanity check
+        if( mIndex.get( root.getID() ) >= 0 ){
+            throw new RuntimeException( "Node with ID already exists:"  + root.getID() );
+        }
+
+        List<GraphNode> existingRoots = getRoots();
+        root.setChildren( existingRoots );
+
+        //for existing root nodes, add a parent as the new Root
+        for( GraphNode existing : existingRoots ){
+            existing.addParent( root );
+        }
+
+        //add the new root into the graph
+        addNode( root );
+    }
+
+    /**
+     * Resets all the dependencies in the Graph, while preserving the nodes.
+     * The resulting Graph is a graph of independent nodes.
+     */
+    public void resetEdges(){
+        mModifications++;
+        for( int i = 0; i < mNext; i++ ){
+            if( mNodes[i] != null ){
+                mNodes[i].resetEdges();
+            }
+        }
+    }
+
+    /**
+     * Removes a node from the Graph.
+     *
+     * @param identifier   the id of the node to be removed.
+     *
+     * @return boolean indicating whether the node was removed or not.
+     */
+    public boolean remove( String identifier ){
+        int index = mIndex.get( identifier );
+        if ( index < 0 ){
+            //node does not exist only.
+            return false;
+        }
+
+        GraphNode removalNode = mNodes[ index ];
+
+        // the parents of the node now become parents of the children
+        Collection<GraphNode> parents  = removalNode.getParents();
+        Collection<GraphNode> children = removalNode.getChildren();
+
+        for ( GraphNode child : children ){
+            child.removeParent( removalNode );
+        }
+
+        for( GraphNode parent : parents ){
+            //for the parent the removal node is no longer a parent
+            parent.removeChild( removalNode );
+
+            //for each parent make the parent it's parent instead of removed node
+            for ( GraphNode child  : children ){
+                child.addParent( parent );
+                parent.addChild( child );
+            }
+        }
+
+        //we have the correct linkages now
+        //remove the node from the store.
+        removeSlot( index );
+        return true;
+    }
+
+    /**
+     * Returns the root nodes of the Graph.
+     *
+     * @return  a list containing <code>GraphNode</code> corressponding to the
+     *          root nodes.
+     */
+    public List<GraphNode> getRoots(){
+        List<GraphNode> rootNodes = new LinkedList<GraphNode>();
+        for( int i = 0; i < mNext; i++ ){
+            GraphNode gn = mNodes[i];
+            if( gn != null && ( gn.getParents() == null || gn.getParents().isEmpty() ) ){
+                rootNodes.add( gn );
+            }
+        }
+        return rootNodes;
+    }
+
+    /**
+     * Returns the leaf nodes of the Graph.
+     *
+     * @return  a list containing <code>GraphNode</code> corressponding to the
+     *          leaf nodes.
+     */
+    public List<GraphNode> getLeaves(){
+        List<GraphNode> leaves = new LinkedList<GraphNode>();
+        for( int i = 0; i < mNext; i++ ){
+            GraphNode gn = mNodes[i];
+            if( gn != null && ( gn.getChildren() == null || gn.getChildren().isEmpty() ) ){
+                leaves.add( gn );
+            }
+        }
+        return leaves;
+    }
+
+    /**
+     * Adds an edge between two already existing nodes in the graph.
+     *
+     * @param parent   the parent node ID.
+     * @param child    the child node ID.
+     */
+    public void addEdge( String parent, String child ){
+        //sanity check
+        if( parent.equals( child )){
+            throw new IllegalArgumentException( "Invalid Edge Specification. An Edge specified from a node to itself  for " + parent );
+        }
+
+        GraphNode childNode  = getNode( child );
+        GraphNode parentNode = getNode( parent );
+
+        String notExist = ( childNode == null )? child :
+                                                ( parentNode == null ) ? parent : null;
+
+        if ( notExist != null ) {
+            /* should be replaced by Graph Exception */
+            throw new RuntimeException( "The node with identifier doesnt exist " + notExist );
+        }
+
+        this.addEdge( parentNode, childNode );
+    }
+
+    /**
+     * Adds an edge between two already existing nodes in the graph.
+     *
+     * @param parent   the parent node .
+     * @param child    the child node .
+     */
+    public void addEdge( GraphNode parent, GraphNode child ){
+        mModifications++;
+        child.addParent( parent );
+        parent.addChild( child );
+    }
+
+    /**
+     * A convenience method that allows for bulk addition of edges between
+     * already existing nodes in the graph.
+     *
+     * @param child   the child node ID
+     * @param parents list of parent identifiers as <code>String</code>.
+     */
+    public void addEdges( String child, List<String> parents ){
+        //sanity check
+        if( parents.contains( child )){
+            throw new IllegalArgumentException( "Invalid Edge Specification. Parents " + parents + " include the child " + child );
+        }
+
+        GraphNode childNode = getNode( child );
+
+        if( childNode == null ) {
+            /* should be replaced by Graph Exception */
+            throw new RuntimeException( "The node with identifier doesnt exist " + child );
+        }
+
+        mModifications++;
+        List<GraphNode> parentList = new LinkedList<GraphNode>();
+
+        //construct the references to the parent nodes
+        for( String parentId : parents ){
+            GraphNode parentNode = getNode( parentId );
+
+            if( parentNode == null ) {
+                /* should be replaced by Graph Exception */
+                throw new RuntimeException( "The node with identifier doesnt exist " + parentId );
+            }
+
+            parentList.add( parentNode );
+
+            //add the parent to the parent's parent list
+            parentNode.addChild( childNode );
+        }
+        childNode.setParents( parentList );
+    }
+
+    /**
+     * Returns the number of nodes in the graph.
+     *
+     * @return the number of nodes
+     */
+    public int size(){
+        return mSize;
+    }
+
+    /**
+     * Returns a boolean if there are no nodes in the graph.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty(){
+        return mSize == 0;
+    }
+
+    /**
+     * Returns an iterator for the nodes in the Graph. The nodes are returned
+     * in the order they were added.
+     *
+     * @return Iterator
+     */
+    public Iterator<GraphNode> nodeIterator(){
+        return new NodeIterator();
+    }
+
+    /**
+     * Returns an iterator that traverses through the graph using a modified
+     * BFS. A node is traversed only when all it's parents have been
+     * traversed. The depth and color of the nodes are set as the traversal
+     * proceeds, in the same manner as <code>MapGraph</code>.
+     *
+     * @return Iterator through the nodes of the graph.
+     */
+    public Iterator<GraphNode> iterator(){
+        return new LevelIterator( compile(), false, true );
+    }
+
+    /**
+     * Returns an iterator that traverses the graph bottom up from the leaves.
+     *
+     * @return Iterator through the nodes of the graph.
+     */
+    public Iterator<GraphNode> bottomUpIterator(){
+        return new LevelIterator( compile(), true, true );
+    }
+
+    /**
+     * Returns an iterator for the graph that traverses in topological sort
+     * order.
+     *
+     * @return Iterator through the nodes of the graph.
+     */
+    public Iterator<GraphNode> topologicalSortIterator(){
+        return new LevelIterator( compile(), false, false );
+    }
+
+    /**
+     * Returns a boolean indicating whether a graph has cyclic edges or not.
+     * In addition to the cycles reachable from the roots, also detects the
+     * cycles in components of the graph that have no root.
+     *
+     * @return boolean
+     */
+    public boolean hasCycles(){
+        mCyclicEdge = null;
+        Snapshot s = compile();
+        int n = s.mNodes.length;
+        if( n == 0 ){
+            return false;
+        }
+
+        byte[] color   = new byte[ n ];
+        int[] stack    = new int[ n ];
+        int[] cursor   = new int[ n ];
+        boolean rooted = false;
+
+        //the DFS starts from the roots first, and then from any node
+        //not reached from the roots
+        for( int pass = 0; pass < 2; pass++ ){
+            for( int start = 0; start < n; start++ ){
+                if( color[ start ] != GraphNode.WHITE_COLOR ||
+                    ( pass == 0 && s.mParentOffsets[ start + 1 ] != s.mParentOffsets[ start ] ) ){
+                    continue;
+                }
+                if( pass == 0 ){
+                    rooted = true;
+                }
+                else if( !rooted ){
+                    //sanity check if there is a cycle at the whole dag level
+                    //roots will return empty
+                    return true;
+                }
+
+                int top = 0;
+                stack[ 0 ]  = start;
+                cursor[ 0 ] = s.mChildOffsets[ start ];
+                color[ start ] = GraphNode.GRAY_COLOR;
+                while( top >= 0 ){
+                    int node = stack[ top ];
+                    if( cursor[ top ] == s.mChildOffsets[ node + 1 ] ){
+                        //traversed all the children
+                        color[ node ] = GraphNode.BLACK_COLOR;
+                        top--;
+                        continue;
+                    }
+                    int child = s.mChildren[ cursor[ top ]++ ];
+                    if( color[ child ] == GraphNode.GRAY_COLOR ){
+                        mCyclicEdge = new NameValue( s.mNodes[ node ].getID(), s.mNodes[ child ].getID() );
+                        return true;
+                    }
+                    if( color[ child ] == GraphNode.WHITE_COLOR ){
+                        color[ child ] = GraphNode.GRAY_COLOR;
+                        stack[ ++top ]  = child;
+                        cursor[ top ]   = s.mChildOffsets[ child ];
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the detected cyclic edge if , hasCycles returns true
+     *
+     * @return the edge as parent and child id, or null
+     */
+    public NameValue getCyclicEdge(){
+        return this.mCyclicEdge;
+    }
+
+    /**
+     * Builds the CSR snapshot of the graph, and replaces the edge sets of the
+     * nodes with views over it. Happens automatically on traversal, but can
+     * be called explicitly once a graph is fully constructed to release the
+     * per node edge sets straight away.
+     */
+    public void compact(){
+        compile();
+    }
+
+    /**
+     * The textual representation of the graph.
+     *
+     * @return textual description.
+     */
+    public String toString() {
+        String newLine = System.getProperty( "line.separator", "\r\n" );
+        String indent = "\t";
+        StringBuffer sb = new StringBuffer( 32 );
+
+        for( Iterator<GraphNode> it = nodeIterator(); it.hasNext(); ){
+            GraphNode node = it.next();
+            sb.append( newLine ).append( indent ).append( "Job ->" ).append( node.getID() );
+
+            //write out the node children
+            sb.append(" Children's {");
+            for( GraphNode child : node.getChildren() ){
+                sb.append( child.getID() ).append(',');
+            }
+            sb.append("}");
+
+            //write out the node's parents
+            sb.append(" Parents {");
+            for( GraphNode parent : node.getParents() ){
+                sb.append( parent.getID() ).append(',');
+            }
+            sb.append("}");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns a copy of the object.
+     *
+     * @return clone of the object.
+     */
+    public Object clone(){
+        return new java.lang.CloneNotSupportedException(
+            "Clone() not implemented in CompactGraph");
+    }
+
+    public void setGraphNodeReference(GraphNode node) {
+        //noop
+    }
+
+    /**
+     * Returns a CSR snapshot that reflects the current state of the graph,
+     * rebuilding it only if the graph has been modified since.
+     *
+     * @return the snapshot
+     */
+    private Snapshot compile(){
+        if( mSnapshot != null && mSnapshot.isCurrent() ){
+            return mSnapshot;
+        }
+
+        if( mSize != mNext ){
+            compactSlots();
+        }
+        mSnapshot = new Snapshot();
+        return mSnapshot;
+    }
+
+    /**
+     * Removes the node at a particular slot.
+     *
+     * @param index  the index of the node
+     */
+    private void removeSlot( int index ){
+        mModifications++;
+        mIndex.remove( mNodes[ index ].getID() );
+        mNodes[ index ] = null;
+        mSize--;
+    }
+
+    /**
+     * Moves all the nodes to the front of the node array, and renumbers them.
+     */
+    private void compactSlots(){
+        mModifications++;
+        int j = 0;
+        for( int i = 0; i < mNext; i++ ){
+            GraphNode node = mNodes[i];
+            if( node != null ){
+                if( i != j ){
+                    mNodes[j] = node;
+                    mIndex.put( node.getID(), j );
+                }
+                j++;
+            }
+        }
+        Arrays.fill( mNodes, j, mNext, null );
+        mNext = j;
+    }
+
+    /**
+     * An immutable CSR representation of the graph at a point in time. The
+     * index of a node in the snapshot is the index of the node in the
+     * graph at the time the snapshot was built.
+     */
+    private class Snapshot{
+
+        /**
+         * The nodes of the graph.
+         */
+        private final GraphNode[] mNodes;
+
+        /**
+         * The offsets into mChildren for each node. Has one entry more than
+         * the number of nodes.
+         */
+        private final int[] mChildOffsets;
+
+        /**
+         * The flat array of children indices, sorted per node.
+         */
+        private final int[] mChildren;
+
+        /**
+         * The offsets into mParents for each node.
+         */
+        private final int[] mParentOffsets;
+
+        /**
+         * The flat array of parent indices, sorted per node.
+         */
+        private final int[] mParents;
+
+        /**
+         * The number of modifications to the graph when the snapshot was built.
+         */
+        private final int mModificationCount;
+
+        /**
+         * Whether some nodes have edges to nodes not in the graph. The edge
+         * sets of such nodes are left as is, and the snapshot can never be
+         * considered current.
+         */
+        private boolean mLoose;
+
+        /**
+         * Set when an edge set view over this snapshot is modified.
+         */
+        private boolean mDirty;
+
+        /**
+         * Builds the snapshot from the nodes of the graph, and installs the
+         * edge set views on the nodes.
+         */
+        Snapshot(){
+            int n = CompactGraph.this.mNext;
+            mNodes = Arrays.copyOf( CompactGraph.this.mNodes, n );
+            mChildOffsets  = new int[ n + 1 ];
+            mParentOffsets = new int[ n + 1 ];
+            mLoose = false;
+            mDirty = false;
+
+            boolean[] loose = new boolean[ n ];
+            mChildren = flatten( false, mChildOffsets, loose );
+            mParents  = flatten( true, mParentOffsets, loose );
+
+            for( int i = 0; i < n; i++ ){
+                if( loose[i] ){
+                    mLoose = true;
+                    continue;
+                }
+                mNodes[i].setChildren( new EdgeSet( i, false ) );
+                mNodes[i].setParents( new EdgeSet( i, true ) );
+            }
+            mModificationCount = CompactGraph.this.mModifications;
+        }
+
+        /**
+         * Returns whether the snapshot still reflects the graph. The check is
+         * linear in the number of nodes, to detect edge sets that were
+         * replaced directly on a node.
+         *
+         * @return boolean
+         */
+        boolean isCurrent(){
+            if( mDirty || mLoose || mModificationCount != CompactGraph.this.mModifications ){
+                return false;
+            }
+            for( int i = 0; i < mNodes.length; i++ ){
+                GraphNode node = mNodes[i];
+                if( !isView( node.getChildren(), i, false ) || !isView( node.getParents(), i, true ) ){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns whether a collection is an unmodified view over this
+         * snapshot for a particular node.
+         *
+         * @param c        the collection
+         * @param index    the index of the node
+         * @param parents  whether the parents or the children
+         *
+         * @return boolean
+         */
+        private boolean isView( Collection<GraphNode> c, int index, boolean parents ){
+            if( !( c instanceof EdgeSet ) ){
+                return false;
+            }
+            EdgeSet view = (EdgeSet)c;
+            return view.owner() == this && view.mNode == index &&
+                   view.mParentSet == parents && view.mDelegate == null;
+        }
+
+        /**
+         * Flattens one direction of the edges of all the nodes into a CSR
+         * neighbour array.
+         *
+         * @param parents  whether to flatten the parents or the children
+         * @param offsets  the offsets array to populate
+         * @param loose    set for nodes with edges to nodes not in the graph
+         *
+         * @return the neighbour array
+         */
+        private int[] flatten( boolean parents, int[] offsets, boolean[] loose ){
+            int[] edges = new int[ mNodes.length ];
+            int count = 0;
+            for( int i = 0; i < mNodes.length; i++ ){
+                offsets[i] = count;
+                Collection<GraphNode> neighbours = parents ? mNodes[i].getParents() : mNodes[i].getChildren();
+                if( neighbours == null ){
+                    continue;
+                }
+                for( GraphNode neighbour : neighbours ){
+                    int index = CompactGraph.this.mIndex.get( neighbour.getID() );
+                    if( index < 0 ){
+                        loose[i] = true;
+                        continue;
+                    }
+                    if( count == edges.length ){
+                        edges = Arrays.copyOf( edges, edges.length + ( edges.length >> 1 ) + 1 );
+                    }
+                    edges[ count++ ] = index;
+                }
+                Arrays.sort( edges, offsets[i], count );
+            }
+            offsets[ mNodes.length ] = count;
+            return ( count == edges.length ) ? edges : Arrays.copyOf( edges, count );
+        }
+
+        /**
+         * A set view over the parents or children of a node in the snapshot.
+         * The view is copied into a regular set the first time it is modified.
+         */
+        private class EdgeSet extends AbstractSet<GraphNode>{
+
+            /**
+             * The index of the node whose edges the view is over.
+             */
+            private final int mNode;
+
+            /**
+             * Whether the view is over the parents or the children.
+             */
+            private final boolean mParentSet;
+
+            /**
+             * The set the view has been copied to once modified.
+             */
+            private Set<GraphNode> mDelegate;
+
+            /**
+             * The overloaded constructor.
+             *
+             * @param node     the index of the node
+             * @param parents  whether the view is over the parents
+             */
+            EdgeSet( int node, boolean parents ){
+                mNode      = node;
+                mParentSet = parents;
+                mDelegate  = null;
+            }
+
+            /**
+             * Returns the snapshot the view is over.
+             *
+             * @return the snapshot
+             */
+            Snapshot owner(){
+                return Snapshot.this;
+            }
+
+            /**
+             * Returns the start of the neighbours in the flat array.
+             *
+             * @return the offset
+             */
+            private int start(){
+                return mParentSet ? mParentOffsets[ mNode ] : mChildOffsets[ mNode ];
+            }
+
+            /**
+             * Returns the end of the neighbours in the flat array.
+             *
+             * @return the offset
+             */
+            private int end(){
+                return mParentSet ? mParentOffsets[ mNode + 1 ] : mChildOffsets[ mNode + 1 ];
+            }
+
+            /**
+             * Returns the flat neighbour array.
+             *
+             * @return the array
+             */
+            private int[] edges(){
+                return mParentSet ? mParents : mChildren;
+            }
+
+            /**
+             * Copies the view into a regular set, and marks the snapshot as
+             * stale.
+             *
+             * @return the set
+             */
+            private Set<GraphNode> materialize(){
+                if( mDelegate == null ){
+                    int[] edges = edges();
+                    int end = end();
+                    Set<GraphNode> set = new HashSet<GraphNode>();
+                    for( int i = start(); i < end; i++ ){
+                        set.add( mNodes[ edges[i] ] );
+                    }
+                    mDelegate = set;
+                    mDirty = true;
+                }
+                return mDelegate;
+            }
+
+            public int size(){
+                return ( mDelegate == null ) ? end() - start() : mDelegate.size();
+            }
+
+            public boolean isEmpty(){
+                return ( mDelegate == null ) ? end() == start() : mDelegate.isEmpty();
+            }
+
+            public boolean contains( Object o ){
+                if( mDelegate != null ){
+                    return mDelegate.contains( o );
+                }
+                if( !( o instanceof GraphNode ) ){
+                    return false;
+                }
+                String id = ((GraphNode)o).getID();
+                int start = start(), end = end();
+                int[] edges = edges();
+                int index = CompactGraph.this.mIndex.get( id );
+                if( index >= 0 && index < mNodes.length && mNodes[ index ].getID().equals( id ) ){
+                    return Arrays.binarySearch( edges, start, end, index ) >= 0;
+                }
+                //the graph has been renumbered since the snapshot
+                for( int i = start; i < end; i++ ){
+                    if( mNodes[ edges[i] ].getID().equals( id ) ){
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            public boolean add( GraphNode node ){
+                return materialize().add( node );
+            }
+
+            public boolean remove( Object o ){
+                return ( mDelegate != null || contains( o ) ) && materialize().remove( o );
+            }
+
+            public void clear(){
+                materialize().clear();
+            }
+
+            public Iterator<GraphNode> iterator(){
+                if( mDelegate != null ){
+                    return mDelegate.iterator();
+                }
+                return new Iterator<GraphNode>(){
+                    private final int[] mEdges = edges();
+                    private final int mEnd = end();
+                    private int mCursor = start();
+                    private GraphNode mLast = null;
+
+                    public boolean hasNext(){
+                        return mCursor < mEnd;
+                    }
+
+                    public GraphNode next(){
+                        if( mCursor >= mEnd ){
+                            throw new NoSuchElementException();
+                        }
+                        mLast = mNodes[ mEdges[ mCursor++ ] ];
+                        return mLast;
+                    }
+
+                    public void remove(){
+                        if( mLast == null ){
+                            throw new IllegalStateException();
+                        }
+                        materialize().remove( mLast );
+                        mLast = null;
+                    }
+                };
+            }
+        }
+    }
+
+    /**
+     * An iterator that traverses the snapshot level by level, with a node
+     * being traversed only when all it's parents ( or children when going
+     * bottom up ) have been traversed.
+     */
+    private class LevelIterator implements Iterator<GraphNode>{
+
+        /**
+         * The snapshot being traversed.
+         */
+        private final Snapshot mGraph;
+
+        /**
+         * The offsets for the direction of traversal.
+         */
+        private final int[] mOffsets;
+
+        /**
+         * The neighbours for the direction of traversal.
+         */
+        private final int[] mNeighbours;
+
+        /**
+         * The number of untraversed predecessors for each node.
+         */
+        private final int[] mPending;
+
+        /**
+         * The queue of nodes ready to be traversed. Each node is added at
+         * most once, so the queue is a plain array.
+         */
+        private final int[] mQueue;
+
+        /**
+         * The head of the queue.
+         */
+        private int mHead;
+
+        /**
+         * The tail of the queue.
+         */
+        private int mTail;
+
+        /**
+         * Whether to set the depth and color of the nodes.
+         */
+        private final boolean mMark;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param graph     the snapshot to traverse.
+         * @param bottomUp  whether to traverse bottom up from the leaves.
+         * @param mark      whether to set the depth and color of the nodes.
+         */
+        LevelIterator( Snapshot graph, boolean bottomUp, boolean mark ){
+            mGraph      = graph;
+            mMark       = mark;
+            mOffsets    = bottomUp ? graph.mParentOffsets : graph.mChildOffsets;
+            mNeighbours = bottomUp ? graph.mParents : graph.mChildren;
+            int[] incoming = bottomUp ? graph.mChildOffsets : graph.mParentOffsets;
+
+            int n = graph.mNodes.length;
+            mPending = new int[ n ];
+            mQueue   = new int[ n ];
+            mHead    = 0;
+            mTail    = 0;
+            for( int i = 0; i < n; i++ ){
+                mPending[i] = incoming[ i + 1 ] - incoming[ i ];
+                if( mark ){
+                    graph.mNodes[i].setDepth( -1 );
+                    graph.mNodes[i].setColor( GraphNode.WHITE_COLOR );
+                }
+                if( mPending[i] == 0 ){
+                    if( mark ){
+                        graph.mNodes[i].setDepth( 0 );
+                    }
+                    mQueue[ mTail++ ] = i;
+                }
+            }
+        }
+
+        public boolean hasNext(){
+            return mHead < mTail;
+        }
+
+        public GraphNode next(){
+            if( mHead >= mTail ){
+                throw new NoSuchElementException();
+            }
+            int index = mQueue[ mHead++ ];
+            GraphNode node = mGraph.mNodes[ index ];
+            if( mMark ){
+                node.setColor( GraphNode.BLACK_COLOR );
+            }
+
+            for( int i = mOffsets[ index ]; i < mOffsets[ index + 1 ]; i++ ){
+                int next = mNeighbours[i];
+                if( --mPending[ next ] == 0 ){
+                    if( mMark ){
+                        GraphNode n = mGraph.mNodes[ next ];
+                        n.setDepth( node.getDepth() + 1 );
+                        n.setColor( GraphNode.GRAY_COLOR );
+                    }
+                    mQueue[ mTail++ ] = next;
+                }
+            }
+            return node;
+        }
+
+        public void remove(){
+            throw new java.lang.UnsupportedOperationException( "Method remove() not supported" );
+        }
+    }
+
+    /**
+     * Iterates over the nodes in the order they were added.
+     */
+    private class NodeIterator implements Iterator<GraphNode>{
+
+        /**
+         * The slot of the next node.
+         */
+        private int mCursor;
+
+        /**
+         * The slot of the node last returned.
+         */
+        private int mLast;
+
+        /**
+         * The default constructor.
+         */
+        NodeIterator(){
+            mLast   = -1;
+            mCursor = advance( 0 );
+        }
+
+        /**
+         * Returns the first occupied slot at or after a position.
+         *
+         * @param from  the position
+         *
+         * @return the slot
+         */
+        private int advance( int from ){
+            while( from < mNext && mNodes[ from ] == null ){
+                from++;
+            }
+            return from;
+        }
+
+        public boolean hasNext(){
+            return mCursor < mNext;
+        }
+
+        public GraphNode next(){
+            if( mCursor >= mNext ){
+                throw new NoSuchElementException();
+            }
+            mLast   = mCursor;
+            mCursor = advance( mCursor + 1 );
+            return mNodes[ mLast ];
+        }
+
+        /**
+         * Removes the node from the graph, without updating the edges of the
+         * nodes linked to it.
+         */
+        public void remove(){
+            if( mLast < 0 || mNodes[ mLast ] == null ){
+                throw new IllegalStateException();
+            }
+            removeSlot( mLast );
+        }
+    }
+
+    /**
+     * A read only map view of the nodes, keyed by the node id.
+     */
+    private class StoreView extends AbstractMap<String,GraphNode>{
+
+        public int size(){
+            return mSize;
+        }
+
+        public boolean containsKey( Object key ){
+            return ( key instanceof String ) && mIndex.get( (String)key ) >= 0;
+        }
+
+        public GraphNode get( Object key ){
+            return ( key instanceof String ) ? getNode( (String)key ) : null;
+        }
+
+        public Set<Map.Entry<String,GraphNode>> entrySet(){
+            return new AbstractSet<Map.Entry<String,GraphNode>>(){
+                public int size(){
+                    return mSize;
+                }
+
+                public Iterator<Map.Entry<String,GraphNode>> iterator(){
+                    final Iterator<GraphNode> it = new NodeIterator();
+                    return new Iterator<Map.Entry<String,GraphNode>>(){
+                        public boolean hasNext(){
+                            return it.hasNext();
+                        }
+
+                        public Map.Entry<String,GraphNode> next(){
+                            GraphNode node = it.next();
+                            return new AbstractMap.SimpleImmutableEntry<String,GraphNode>( node.getID(), node );
+                        }
+
+                        public void remove(){
+                            throw new UnsupportedOperationException( "The node store is read only" );
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * An open addressing hash index from node ids to int indices, that avoids
+     * the entry objects and boxed integers of a HashMap.
+     */
+    private static class IDIndex{
+
+        /**
+         * The keys of the table. A null entry is an empty slot.
+         */
+        private String[] mKeys;
+
+        /**
+         * The values of the table.
+         */
+        private int[] mValues;
+
+        /**
+         * The number of keys in the table.
+         */
+        private int mCount;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param expected  the expected number of keys.
+         */
+        IDIndex( int expected ){
+            int capacity = 16;
+            while( capacity < expected * 2 ){
+                capacity <<= 1;
+            }
+            mKeys   = new String[ capacity ];
+            mValues = new int[ capacity ];
+            mCount  = 0;
+        }
+
+        /**
+         * Returns the index associated with a key.
+         *
+         * @param key  the key
+         *
+         * @return the index, or -1 if the key does not exist
+         */
+        int get( String key ){
+            int mask = mKeys.length - 1;
+            for( int i = slot( key, mask ); mKeys[i] != null; i = ( i + 1 ) & mask ){
+                if( mKeys[i].equals( key ) ){
+                    return mValues[i];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Associates an index with a key, overwriting any existing index.
+         *
+         * @param key    the key
+         * @param value  the index
+         */
+        void put( String key, int value ){
+            if( ( mCount + 1 ) * 2 > mKeys.length ){
+                rehash( mKeys.length << 1 );
+            }
+            int mask = mKeys.length - 1;
+            int i = slot( key, mask );
+            for( ; mKeys[i] != null; i = ( i + 1 ) & mask ){
+                if( mKeys[i].equals( key ) ){
+                    mValues[i] = value;
+                    return;
+                }
+            }
+            mKeys[i]   = key;
+            mValues[i] = value;
+            mCount++;
+        }
+
+        /**
+         * Removes a key, shifting back the entries that follow it in the
+         * probe sequence.
+         *
+         * @param key  the key
+         */
+        void remove( String key ){
+            int mask = mKeys.length - 1;
+            int i = slot( key, mask );
+            for( ; mKeys[i] != null; i = ( i + 1 ) & mask ){
+                if( mKeys[i].equals( key ) ){
+                    break;
+                }
+            }
+            if( mKeys[i] == null ){
+                return;
+            }
+            mCount--;
+            int hole = i;
+            for( int j = ( i + 1 ) & mask; mKeys[j] != null; j = ( j + 1 ) & mask ){
+                int home = slot( mKeys[j], mask );
+                //move the entry into the hole if its home slot is not
+                //cyclically between the hole and its current position
+                if( ( ( j - home ) & mask ) >= ( ( j - hole ) & mask ) ){
+                    mKeys[ hole ]   = mKeys[j];
+                    mValues[ hole ] = mValues[j];
+                    hole = j;
+                }
+            }
+            mKeys[ hole ] = null;
+        }
+
+        /**
+         * Grows the table.
+         *
+         * @param capacity  the new capacity, a power of two
+         */
+        private void rehash( int capacity ){
+            String[] keys = mKeys;
+            int[] values  = mValues;
+            mKeys   = new String[ capacity ];
+            mValues = new int[ capacity ];
+            int mask = capacity - 1;
+            for( int i = 0; i < keys.length; i++ ){
+                if( keys[i] != null ){
+                    int j = slot( keys[i], mask );
+                    while( mKeys[j] != null ){
+                        j = ( j + 1 ) & mask;
+                    }
+                    mKeys[j]   = keys[i];
+                    mValues[j] = values[i];
+                }
+            }
+        }
+
+        /**
+         * Returns the home slot of a key.
+         *
+         * @param key   the key
+         * @param mask  the table mask
+         *
+         * @return the slot
+         */
+        private static int slot( String key, int mask ){
+            int h = key.hashCode();
+            return ( h ^ ( h >>> 16 ) ) & mask;
+        }
+    }
+}
@@ -336,8 +336,7 @@ public class DataReuseEngine extends Engine implements Refiner{
                 //marked as a job in the RC
                 //Otherwise it can result in whole workflow being reduced
                 //if such a node is the leaf of the workflow.
-                mLogger.log("Job "  + job.getName() + " has no o/p files",
-                            LogManager.DEBUG_MESSAGE_LEVEL);
+                mLogger.log("Job {} has no o/p files", LogManager.DEBUG_MESSAGE_LEVEL, job.getName() );
                 continue;
             }
 
@@ -348,8 +347,8 @@ public class DataReuseEngine extends Engine implements Refiner{
                 if( !(job.vdsNS.containsKey( Pegasus.ENABLE_FOR_DATA_REUSE_KEY ) ||
                       job.vdsNS.getBooleanValue( Pegasus.ENABLE_FOR_DATA_REUSE_KEY))){
                     
-                    mLogger.log( "Partial Data Reuse Enabled. Not looking for output files in RC for job " + job.getID(),
-                                 LogManager.DEBUG_MESSAGE_LEVEL );
+                    mLogger.log( "Partial Data Reuse Enabled. Not looking for output files in RC for job {}",
+                                 LogManager.DEBUG_MESSAGE_LEVEL, job.getID() );
                     continue;
                 }
             }
@@ -390,7 +389,7 @@ public class DataReuseEngine extends Engine implements Refiner{
             //only if noOfSuccessFulMatches is equal to the number of output
             //files in job
             if(noOfOutputFilesInJob == noOfSuccessfulMatches){
-                mLogger.log("\t" + jobName, LogManager.DEBUG_MESSAGE_LEVEL);
+                mLogger.log("\t{}", LogManager.DEBUG_MESSAGE_LEVEL, jobName );
                 jobsInReplica.add( node );
             }
             //reinitialise the variables
@@ -35,6 +35,7 @@ import edu.isi.pegasus.planner.code.CodeGeneratorFactory;
 import edu.isi.pegasus.planner.code.generator.Stampede;
 import edu.isi.pegasus.planner.common.PegRandom;
 import edu.isi.pegasus.planner.common.PegasusConfiguration;
+import edu.isi.pegasus.planner.estimate.BatchEstimator;
 import edu.isi.pegasus.planner.estimate.Estimator;
 import edu.isi.pegasus.planner.estimate.EstimatorFactory;
 import edu.isi.pegasus.planner.namespace.Globus;
@@ -262,6 +263,12 @@ public class InterPoolEngine extends Engine implements Refiner {
         //clear the XML store
         mXMLStore.clear();
 
+        //a batch estimator estimates all the jobs together once they are mapped
+        BatchEstimator batchEstimator = ( mEstimator instanceof BatchEstimator )?
+                                        (BatchEstimator) mEstimator:
+                                        null;
+        List<Job> estimated = new ArrayList<Job>();
+
 
         //Iterate through the jobs and hand them to
         //the site selector if required
@@ -273,8 +280,7 @@ public class InterPoolEngine extends Engine implements Refiner {
             incorporateHint(job, Hints.EXECUTION_SITE_KEY );
             
             String site  = job.getSiteHandle();
-            mLogger.log( "Setting up site mapping for job "  + job.getName(), 
-                         LogManager.DEBUG_MESSAGE_LEVEL );
+            mLogger.log( "Setting up site mapping for job {}", LogManager.DEBUG_MESSAGE_LEVEL, job.getName() );
             
             if ( site == null ) {
                 error = new StringBuffer();
@@ -324,7 +330,12 @@ public class InterPoolEngine extends Engine implements Refiner {
             
             //PM-882 incorporate estimates on runtimes of the jobs
             //after the site selection has been done
-            incorporateEstimates( job );
+            if( batchEstimator == null ){
+                incorporateEstimates( job );
+            }
+            else{
+                estimated.add( job );
+            }
             
             //log actions as XML fragment
             try{
@@ -337,6 +348,13 @@ public class InterPoolEngine extends Engine implements Refiner {
 
         }//end of mapping all jobs
 
+        if( batchEstimator != null ){
+            Map<Job,Map<String,String>> estimates = batchEstimator.getAllEstimates( estimated );
+            for( Job job : estimated ){
+                incorporateEstimates( job, estimates.get( job ) );
+            }
+        }
+
         //PM-916 write out all the metadata related events for the
         //mapped workflow
         generateStampedeMetadataEvents( dag );
@@ -781,8 +799,16 @@ public class InterPoolEngine extends Engine implements Refiner {
      * @param job 
      */
     protected void incorporateEstimates(Job job) {
-        Map<String,String> estimates = mEstimator.getAllEstimates(job);
-        
+        incorporateEstimates( job, mEstimator.getAllEstimates(job) );
+    }
+
+    /**
+     * Incorporate estimates already computed for a job
+     * 
+     * @param job 
+     * @param estimates  the estimates for the job
+     */
+    protected void incorporateEstimates(Job job, Map<String,String> estimates ) {
         for( Map.Entry<String,String> entry: estimates.entrySet() ){
             String key = entry.getKey();
             String value = entry.getValue();
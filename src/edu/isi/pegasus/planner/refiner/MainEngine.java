@@ -154,26 +154,38 @@ public class MainEngine
         mOriginalDag.setWorkflowRefinementStarted( true );
         
         String message = null;
-        mRCBridge = new ReplicaCatalogBridge( mOriginalDag, mBag );
-        
-        //PM-1047 copy all catalog file sources to submit directory
-        copyCatalogFiles( mBag.getHandleToSiteStore(), 
-                          mBag.getHandleToTransformationCatalog(),
-                          mRCBridge,
-                          new File( this.mPOptions.getSubmitDirectory(), CATALOGS_DIR_BASENAME ));
-        
+
         //lock down on the workflow task metrics
         //the refinement process will not update them
         mOriginalDag.getWorkflowMetrics().lockTaskMetrics( true );
-        
-        //check for cyclic dependencies
-        mLogger.logEventStart( LoggingKeys.EVENT_PEGASUS_CYCLIC_DEPENDENCY_CHECK, LoggingKeys.DAX_ID, abstractWFName );
-        if( mOriginalDag.hasCycles() ){
-            NameValue nv = mOriginalDag.getCyclicEdge();
-            throw new RuntimeException( "Cyclic dependency detected " + nv.getKey() + " -> " + nv.getValue() );
-        }
-        mLogger.logEventCompletion();
-        
+
+        //the replica catalog lookups, the copying of the catalogs
+        //and the cycle check only read the workflow, and are run
+        //concurrently
+        final ADag dag = mOriginalDag;
+        StageExecutor stages = new StageExecutor( mProps.getPlannerStageThreads(), mLogger );
+        stages.add( "replica-catalog", () -> new ReplicaCatalogBridge( dag, mBag ) );
+        stages.add( "copy-catalogs", () -> {
+                        //PM-1047 copy all catalog file sources to submit directory
+                        copyCatalogFiles( mBag.getHandleToSiteStore(),
+                                          mBag.getHandleToTransformationCatalog(),
+                                          stages.get( "replica-catalog", ReplicaCatalogBridge.class ),
+                                          new File( this.mPOptions.getSubmitDirectory(), CATALOGS_DIR_BASENAME ));
+                        return null;
+                    }, "replica-catalog" );
+        stages.add( "cycle-check", () -> {
+                        //check for cyclic dependencies
+                        mLogger.logEventStart( LoggingKeys.EVENT_PEGASUS_CYCLIC_DEPENDENCY_CHECK, LoggingKeys.DAX_ID, abstractWFName );
+                        if( dag.hasCycles() ){
+                            NameValue nv = dag.getCyclicEdge();
+                            throw new RuntimeException( "Cyclic dependency detected " + nv.getKey() + " -> " + nv.getValue() );
+                        }
+                        mLogger.logEventCompletion();
+                        return null;
+                    } );
+        stages.run();
+        mRCBridge = stages.get( "replica-catalog", ReplicaCatalogBridge.class );
+
 
         mRedEng     = new DataReuseEngine( mOriginalDag, mBag );
         mReducedDag = mRedEng.reduceWorkflow(mOriginalDag, mRCBridge );
@@ -285,17 +297,38 @@ public class MainEngine
             mRemoveEng = null;
         }
         
-        /* PM-714. The approach does not scale for the planner performace test case.
-        mLogger.logEventStart( "workflow.prune", LoggingKeys.DAX_ID, abstractWFName );
-        ReduceEdges p = new ReduceEdges();
-        p.reduce(mReducedDag);
-        mLogger.logEventCompletion();
-        */
+        //PM-714 the LCA based approach does not scale for the planner
+        //performance test case. edges are only reduced if configured
+        String reducer = mProps.getEdgeReducer();
+        if( !reducer.equalsIgnoreCase( "None" ) ){
+            mLogger.logEventStart( "workflow.prune", LoggingKeys.DAX_ID, abstractWFName );
+            mReducedDag = reduceEdges( reducer, mReducedDag );
+            mLogger.logEventCompletion();
+        }
         
         mLogger.logEventCompletion();
         return mReducedDag;
     }
 
+    /**
+     * Removes the redundant edges in the workflow.
+     *
+     * @param reducer   the value of the pegasus.reduce.edges property
+     * @param workflow  the workflow
+     *
+     * @return the workflow with the redundant edges removed
+     */
+    static ADag reduceEdges( String reducer, ADag workflow ){
+        if( reducer.equalsIgnoreCase( "Transitive" ) ){
+            return new TransitiveReduction().reduce( workflow );
+        }
+        if( reducer.equalsIgnoreCase( "LCA" ) ){
+            return new ReduceEdges().reduce( workflow );
+        }
+        throw new RuntimeException( "Unsupported edge reducer specified by property pegasus.reduce.edges " +
+                                    reducer );
+    }
+
     /**
      * Returns the cleanup dag for the concrete dag.
      *
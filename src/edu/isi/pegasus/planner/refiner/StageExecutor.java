@@ -0,0 +1,239 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.common.logging.LogManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs stages of the planner, that only depend on some of the other stages,
+ * concurrently on a bounded pool of threads. A stage can only depend on
+ * stages that were added before it. The stages are started in the order
+ * they were added, so a stage waiting for its dependencies never holds up
+ * the stages it waits for.
+ *
+ * With a single thread, the stages are run on the calling thread, one after
+ * the other in the order they were added, when the executor is started.
+ *
+ * If a stage fails, the exception of the first failed stage, in the order
+ * the stages were added, is thrown when waiting for the stages.
+ *
+ * @version $Revision$
+ */
+public class StageExecutor {
+
+    /**
+     * The number of threads to use.
+     */
+    private final int mThreads;
+
+    /**
+     * The handle to the logger.
+     */
+    private final LogManager mLogger;
+
+    /**
+     * The stages indexed by name, in the order they were added.
+     */
+    private final Map<String,FutureTask<Object>> mStages;
+
+    /**
+     * The pool the stages run on. Null until the executor is started, and
+     * when running with a single thread.
+     */
+    private ExecutorService mExecutor;
+
+    /**
+     * Whether the executor was started.
+     */
+    private boolean mStarted;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param threads  the maximum number of stages to run at the same time.
+     * @param logger   the handle to the logger.
+     */
+    public StageExecutor( int threads, LogManager logger ){
+        mThreads = Math.max( 1, threads );
+        mLogger  = logger;
+        mStages  = new LinkedHashMap<String,FutureTask<Object>>();
+        mStarted = false;
+    }
+
+    /**
+     * Adds a stage.
+     *
+     * @param name          the name of the stage.
+     * @param stage         the work done by the stage.
+     * @param dependencies  the names of the stages that need to finish first.
+     */
+    public void add( final String name, final Callable<?> stage, String... dependencies ){
+        if( mStarted ){
+            throw new IllegalStateException( "Unable to add stage " + name + " to a started executor" );
+        }
+        if( mStages.containsKey( name ) ){
+            throw new IllegalArgumentException( "Stage " + name + " is already added" );
+        }
+        final Future<?>[] parents = new Future<?>[ dependencies.length ];
+        for( int i = 0; i < dependencies.length; i++ ){
+            parents[i] = mStages.get( dependencies[i] );
+            if( parents[i] == null ){
+                throw new IllegalArgumentException( "Stage " + name + " depends on unknown stage " + dependencies[i] );
+            }
+        }
+
+        mStages.put( name, new FutureTask<Object>( new Callable<Object>(){
+            public Object call() throws Exception{
+                for( Future<?> parent : parents ){
+                    //rethrows the failure of the parent
+                    parent.get();
+                }
+                long start = System.currentTimeMillis();
+                Object result = stage.call();
+                mLogger.log( "Planner stage " + name + " took " + ( System.currentTimeMillis() - start ) + " ms",
+                             LogManager.DEBUG_MESSAGE_LEVEL );
+                return result;
+            }
+        }));
+    }
+
+    /**
+     * Starts running the stages. With a single thread, this runs all the
+     * stages before returning.
+     */
+    public void start(){
+        if( mStarted ){
+            return;
+        }
+        mStarted = true;
+        if( mThreads == 1 ){
+            for( FutureTask<Object> stage : mStages.values() ){
+                stage.run();
+            }
+            return;
+        }
+
+        mExecutor = Executors.newFixedThreadPool( Math.min( mThreads, Math.max( 1, mStages.size() ) ),
+                                                  new StageThreadFactory() );
+        for( FutureTask<Object> stage : mStages.values() ){
+            mExecutor.execute( stage );
+        }
+        //the threads exit once the queued stages are done
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Waits for all the stages to finish.
+     *
+     * @throws RuntimeException the exception of the first failed stage.
+     */
+    public void await(){
+        start();
+        try{
+            for( Map.Entry<String,FutureTask<Object>> entry : mStages.entrySet() ){
+                get( entry.getKey(), Object.class );
+            }
+        }
+        finally{
+            if( mExecutor != null ){
+                mExecutor.shutdownNow();
+                mExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * Runs all the stages and waits for them to finish.
+     *
+     * @throws RuntimeException the exception of the first failed stage.
+     */
+    public void run(){
+        start();
+        await();
+    }
+
+    /**
+     * Returns the result of a stage, waiting for the stage to finish if
+     * required.
+     *
+     * @param name  the name of the stage.
+     * @param type  the type of the value returned by the stage.
+     *
+     * @return the value returned by the stage.
+     *
+     * @throws RuntimeException the exception thrown by the stage.
+     */
+    public <T> T get( String name, Class<T> type ){
+        FutureTask<Object> stage = mStages.get( name );
+        if( stage == null ){
+            throw new IllegalArgumentException( "Unknown stage " + name );
+        }
+        start();
+        try{
+            return type.cast( stage.get() );
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while waiting for planner stage " + name, e );
+        }
+        catch( ExecutionException e ){
+            Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException ){
+                throw (RuntimeException)cause;
+            }
+            if( cause instanceof Error ){
+                throw (Error)cause;
+            }
+            throw new RuntimeException( "Planner stage " + name + " failed", cause );
+        }
+    }
+
+    /**
+     * Creates daemon threads for the stages, so that a failure in the
+     * calling thread does not keep the planner from exiting.
+     */
+    private static class StageThreadFactory implements ThreadFactory{
+
+        /**
+         * The number of threads created.
+         */
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        /**
+         * Creates a new thread.
+         *
+         * @param r  the runnable to run.
+         *
+         * @return the thread
+         */
+        public Thread newThread( Runnable r ){
+            Thread t = new Thread( r, "pegasus-stage-" + mCount.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
@@ -27,6 +27,12 @@ public class TestReduceEdges {
         Job e = new Job(); e.setName("e");e.setJobType( Job.COMPUTE_JOB );
         
 
+        a.add(aa);
+        a.add(b);
+        a.add(c);
+        a.add(d);
+        a.add(e);
+
         a.addNewRelation("a", "b");
         a.addNewRelation("a", "c");
 
@@ -38,11 +44,6 @@ public class TestReduceEdges {
         a.addNewRelation("a", "e");
         a.addNewRelation("c", "e");
 
-        a.add(aa);
-        a.add(b);
-        a.add(c);
-        a.add(d);
-        a.add(e);
         
         return a;
     }   
@@ -63,6 +64,18 @@ public class TestReduceEdges {
         Job k = new Job(); k.setName("k");k.setJobType( Job.COMPUTE_JOB );
         
 
+        ad.add(a);
+        ad.add(b);
+        ad.add(c);
+        ad.add(d);
+        ad.add(e);
+        ad.add(f);
+        ad.add(g);
+        ad.add(h);
+        ad.add(i);
+        ad.add(j);
+        ad.add(k);
+
         ad.addNewRelation("a", "b");
         ad.addNewRelation("a", "g");
 
@@ -84,17 +97,6 @@ public class TestReduceEdges {
         ad.addNewRelation("j", "k");
         ad.addNewRelation("k", "f");
 
-        ad.add(a);
-        ad.add(b);
-        ad.add(c);
-        ad.add(d);
-        ad.add(e);
-        ad.add(f);
-        ad.add(g);
-        ad.add(h);
-        ad.add(i);
-        ad.add(j);
-        ad.add(k);
         
         return ad;
     }   
@@ -695,18 +695,32 @@ public class TransferEngine extends Engine {
         //check if node ip files are in the parents out files
         //if files are not, then these are to be got
         //from the RC based on the transiency characteristic
+        List<PegasusFile> unshared = new LinkedList();
         for( Iterator it = nodeIpFiles.iterator(); it.hasNext(); ){
             PegasusFile pf = (PegasusFile) it.next();
             if( !parentsOutFiles.contains( pf ) ){
+                //the file is updated for this job below and
+                //while retrieving the locations from the RC
+                if( pf.isShared() ){
+                    pf = pf.unshare();
+                    unshared.add( pf );
+                }
+
                 //PM-976 all input files that are not generated
                 //by parent jobs should be looked up in the replica catalog
                 //we don't consider the value of the transfer flag
                 vRCSearchFiles.addElement(pf);
-                
+
                 //PM-1250 any file fetched from RC is a raw input file
                 pf.setRawInput( true );
             }
         }
+        //replace the files shared with other jobs by the job's own copies.
+        //files are equal on the basis of lfn
+        for( PegasusFile pf : unshared ){
+            nodeIpFiles.remove( pf );
+            nodeIpFiles.add( pf );
+        }
 
         if( job instanceof DAXJob ){
             //for the DAX jobs we should always call the method
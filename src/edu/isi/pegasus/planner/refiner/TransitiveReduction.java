@@ -0,0 +1,277 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Removes the redundant edges in the workflow by computing the transitive
+ * reduction of the graph. An edge A->C is redundant, if C is reachable from
+ * another child B of A. The transitive reduction of a DAG is unique, so the
+ * result is the same as the LCA based <code>ReduceEdges</code>.
+ *
+ * The nodes are numbered in topological order, and for every node the set of
+ * nodes reachable from it is computed as a bitset, going up from the leaves.
+ * To bound the memory, the reachability sets are only computed for a window
+ * of target nodes at a time. The windows are independent of each other, and
+ * are processed in parallel. A node can only reach nodes that come after it
+ * in the topological order, so for a window only the nodes before the end of
+ * the window need to be considered.
+ *
+ * @version $Revision$
+ */
+public class TransitiveReduction {
+
+    /**
+     * The maximum number of bytes used for the reachability bitsets of a
+     * single window.
+     */
+    public static final long MAX_WINDOW_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * The number of threads used to process the windows.
+     */
+    private final int mThreads;
+
+    /**
+     * The default constructor. Uses as many threads as there are processors.
+     */
+    public TransitiveReduction(){
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param threads  the number of threads to use.
+     */
+    public TransitiveReduction( int threads ){
+        mThreads = Math.max( 1, threads );
+    }
+
+    /**
+     * Prunes redundant edges from the workflow.
+     * For example if
+     *  A->B->C and A->C exists, we can delete edge A->C
+     *
+     * @param dag  the workflow
+     *
+     * @return the workflow with non essential edges removed
+     */
+    public ADag reduce( ADag dag ){
+        return (ADag)this.reduce( (Graph)dag );
+    }
+
+    /**
+     * Prunes redundant edges from the workflow.
+     *
+     * @param workflow  the workflow
+     *
+     * @return the workflow with non essential edges removed
+     */
+    public Graph reduce( Graph workflow ){
+        //number the nodes in topological order
+        int n = workflow.size();
+        GraphNode[] nodes = new GraphNode[ n ];
+        Map<String,Integer> index = new HashMap<String,Integer>( n * 4 / 3 + 1 );
+        int count = 0;
+        for( Iterator<GraphNode> it = workflow.topologicalSortIterator(); it.hasNext(); ){
+            GraphNode node = it.next();
+            nodes[ count ] = node;
+            index.put( node.getID(), count++ );
+        }
+        if( count != n ){
+            throw new RuntimeException( "Unable to reduce edges as the workflow has cycles. Sorted " +
+                                        count + " of " + n + " nodes" );
+        }
+
+        //children in CSR form. children always have a higher index
+        //than the parent
+        int[] offsets  = new int[ n + 1 ];
+        int[] children = new int[ n ];
+        int edges = 0;
+        for( int i = 0; i < n; i++ ){
+            offsets[i] = edges;
+            for( GraphNode child : nodes[i].getChildren() ){
+                if( edges == children.length ){
+                    children = Arrays.copyOf( children, children.length * 2 );
+                }
+                children[ edges++ ] = index.get( child.getID() );
+            }
+        }
+        offsets[ n ] = edges;
+        index = null;
+
+        //figure out the windows
+        int words = (int)Math.max( 1, Math.min( ( n + 63 ) / 64, MAX_WINDOW_BYTES / 8 / Math.max( n, 1 ) ) );
+        int width = words * 64;
+        boolean[] redundant = new boolean[ edges ];
+
+        List<Window> windows = new ArrayList<Window>();
+        for( int start = 0; start < n; start += width ){
+            windows.add( new Window( offsets, children, redundant, start, Math.min( n, start + width ), words ) );
+        }
+
+        if( mThreads == 1 || windows.size() == 1 ){
+            for( Window w : windows ){
+                w.call();
+            }
+        }
+        else{
+            ExecutorService executor = Executors.newFixedThreadPool( Math.min( mThreads, windows.size() ) );
+            try{
+                List<Future<Void>> results = executor.invokeAll( windows );
+                for( Future<Void> result : results ){
+                    result.get();
+                }
+            }
+            catch( InterruptedException e ){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while reducing edges in the workflow", e );
+            }
+            catch( ExecutionException e ){
+                throw new RuntimeException( "Unable to reduce edges in the workflow", e.getCause() );
+            }
+            finally{
+                executor.shutdownNow();
+            }
+        }
+
+        //remove the redundant edges
+        for( int i = 0; i < n; i++ ){
+            for( int e = offsets[i]; e < offsets[ i + 1 ]; e++ ){
+                if( redundant[e] ){
+                    GraphNode parent = nodes[i];
+                    GraphNode child  = nodes[ children[e] ];
+                    parent.removeChild( child );
+                    child.removeParent( parent );
+                }
+            }
+        }
+        return workflow;
+    }
+
+    /**
+     * Computes the redundant edges whose child falls within a window of
+     * target nodes.
+     */
+    private static class Window implements java.util.concurrent.Callable<Void>{
+
+        /**
+         * The offsets into the children array.
+         */
+        private final int[] mOffsets;
+
+        /**
+         * The children of the nodes.
+         */
+        private final int[] mChildren;
+
+        /**
+         * Flag for each edge, set if the edge is redundant. Each window only
+         * writes the entries for edges to nodes in the window.
+         */
+        private final boolean[] mRedundant;
+
+        /**
+         * The first node in the window.
+         */
+        private final int mStart;
+
+        /**
+         * One past the last node in the window.
+         */
+        private final int mEnd;
+
+        /**
+         * The number of longs per reachability bitset.
+         */
+        private final int mWords;
+
+        /**
+         * The overloaded constructor.
+         *
+         * @param offsets    the offsets into the children array
+         * @param children   the children of the nodes
+         * @param redundant  the redundant edge flags to populate
+         * @param start      the first node in the window
+         * @param end        one past the last node in the window
+         * @param words      the number of longs per bitset
+         */
+        Window( int[] offsets, int[] children, boolean[] redundant, int start, int end, int words ){
+            mOffsets   = offsets;
+            mChildren  = children;
+            mRedundant = redundant;
+            mStart     = start;
+            mEnd       = end;
+            mWords     = words;
+        }
+
+        /**
+         * Computes the reachability for the window going up from the end of
+         * the window, and flags the redundant edges.
+         *
+         * @return null
+         */
+        public Void call(){
+            int words = mWords;
+            //reach[ i * words ... ] are the window nodes reachable from node i
+            long[] reach = new long[ mEnd * words ];
+            long[] union = new long[ words ];
+            for( int node = mEnd - 1; node >= 0; node-- ){
+                Arrays.fill( union, 0 );
+                int base = node * words;
+                int first = mOffsets[ node ], last = mOffsets[ node + 1 ];
+                //union of what the children reach
+                for( int e = first; e < last; e++ ){
+                    int child = mChildren[e];
+                    if( child < mEnd ){
+                        int cbase = child * words;
+                        for( int w = 0; w < words; w++ ){
+                            union[w] |= reach[ cbase + w ];
+                        }
+                    }
+                }
+                //a child in the window, reachable through another child
+                //makes the edge redundant
+                for( int e = first; e < last; e++ ){
+                    int bit = mChildren[e] - mStart;
+                    if( bit >= 0 && bit < mEnd - mStart ){
+                        if( ( union[ bit >>> 6 ] & ( 1L << bit ) ) != 0 ){
+                            mRedundant[e] = true;
+                        }
+                        union[ bit >>> 6 ] |= 1L << bit;
+                    }
+                }
+                System.arraycopy( union, 0, reach, base, words );
+            }
+            return null;
+        }
+    }
+}
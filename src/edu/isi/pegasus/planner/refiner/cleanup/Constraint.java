@@ -22,14 +22,18 @@ import edu.isi.pegasus.planner.classes.TransferJob;
 import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.Choice;
+import edu.isi.pegasus.planner.refiner.cleanup.constraint.CompressedBitSet;
+import edu.isi.pegasus.planner.refiner.cleanup.constraint.DependencyIndex;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.FloatingFile;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.OutOfSpaceError;
 import edu.isi.pegasus.planner.refiner.cleanup.constraint.Utilities;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +41,7 @@ import java.util.NavigableMap;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  *
@@ -81,9 +86,35 @@ public class Constraint extends AbstractCleanupStrategy {
     private static boolean deferStageins;
 
     /**
-     * Dependency list. Maps from a node to the set of nodes dependent on it.
+     * Dependency index. Maps from a node to the set of nodes it depends on.
      */
-    private static Map<GraphNode, Set<GraphNode>> dependencies;
+    private static DependencyIndex dependencies;
+
+    /**
+     * Mask of the jobs at the current site that are yet to execute.
+     */
+    private static long[] pendingSiteJobs;
+
+    /**
+     * The current choice for each head.
+     */
+    private static Map<GraphNode, Choice> choices;
+
+    /**
+     * The choices that free space, ordered by their intermediate space
+     * requirement.
+     */
+    private static TreeSet<Choice> freeingChoices;
+
+    /**
+     * The choices that do not free space, ordered by their balance.
+     */
+    private static TreeSet<Choice> otherChoices;
+
+    /**
+     * The heads whose choices need to be recalculated.
+     */
+    private static Set<GraphNode> staleHeads;
 
     /**
      * Set of current heads (jobs that can be run immediately.
@@ -137,10 +168,12 @@ public class Constraint extends AbstractCleanupStrategy {
             try {
                 Utilities.loadHashMap(CSVName);
             } catch (IOException e) {
-                mLogger.log("Falling back to the old mechanism due to IOException while reading CSV: " + CSVName, LogManager.WARNING_MESSAGE_LEVEL);
+                mLogger.log("Falling back to the old mechanism due to IOException while reading CSV: {}", LogManager.WARNING_MESSAGE_LEVEL, CSVName);
             }
         }
-        dependencies = Utilities.calculateDependencies(workflow, mLogger);
+        dependencies = new DependencyIndex(workflow);
+        mLogger.log("Dependency index for {} jobs uses {} bytes", LogManager.DEBUG_MESSAGE_LEVEL,
+                dependencies.size(), dependencies.getSizeInBytes());
 
         //for each site do the process of adding cleanup jobs
         for (Iterator it = mResMap.entrySet().iterator(); it.hasNext();) {
@@ -148,8 +181,8 @@ public class Constraint extends AbstractCleanupStrategy {
             addCleanUpJobs((String) entry.getKey(), (Set) entry.getValue(), workflow);
         }
 
-        mLogger.log("Constrainer completed in " + (System.currentTimeMillis()
-                - constrainerStartTime) + " ms", LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log("Constrainer completed in {} ms", LogManager.DEBUG_MESSAGE_LEVEL,
+                System.currentTimeMillis() - constrainerStartTime);
 
         return workflow;
     }
@@ -165,10 +198,12 @@ public class Constraint extends AbstractCleanupStrategy {
      */
     private void addCleanUpJobs(String site, Set<GraphNode> leaves, Graph workflow) {
 
-        mLogger.log(site + " " + leaves.size(), LogManager.DEBUG_MESSAGE_LEVEL);
-
-        for (GraphNode currentNode : leaves) {
-            mLogger.log("Found node " + currentNode.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log("{} {}", LogManager.DEBUG_MESSAGE_LEVEL, site, leaves.size());
+        //the loop is only there for the messages
+        if (mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL)) {
+            for (GraphNode currentNode : leaves) {
+                mLogger.log("Found node {}", LogManager.DEBUG_MESSAGE_LEVEL, currentNode.getID());
+            }
         }
 
         simulatedExecute(workflow, site, leaves);
@@ -187,6 +222,10 @@ public class Constraint extends AbstractCleanupStrategy {
         executed = new HashSet<GraphNode>();
         floatingFiles = new TreeMap<Long, List<FloatingFile>>();
         reservations = new HashSet<Job>();
+        choices = new HashMap<GraphNode, Choice>();
+        freeingChoices = new TreeSet<Choice>(new ChoiceComparator(true));
+        otherChoices = new TreeSet<Choice>(new ChoiceComparator(false));
+        staleHeads = new LinkedHashSet<GraphNode>();
 
         // Set available space from the property
         String maxSiteSpace = mProps.getProperty(getPropertyName(site, PROPERTY_MAXSPACE_SUFFIX));
@@ -211,17 +250,18 @@ public class Constraint extends AbstractCleanupStrategy {
 
         //locate initial set of heads
         locateInitialHeads(site, currentSiteJobs);
-        mLogger.log(site + ": All jobs processed, " + availableSpacePerSite.get(site) + "/"
-                + maxAvailableSpacePerSite.get(site) + " space left", LogManager.DEBUG_MESSAGE_LEVEL);
+        mLogger.log("{}: All jobs processed, {}/{} space left", LogManager.DEBUG_MESSAGE_LEVEL,
+                site, availableSpacePerSite.get(site), maxAvailableSpacePerSite.get(site));
 
         //we should have a list of heads for this site by this point
         for (GraphNode currentNode : heads) {
-            mLogger.log("Found head " + currentNode.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+            mLogger.log("Found head {}", LogManager.DEBUG_MESSAGE_LEVEL, currentNode.getID());
+            staleHeads.add(currentNode);
         }
+        updateChoices(site);
 
         while (true) {
-            List<Choice> choices = getCurrentChoices(site);
-            Choice selected = choose(choices);
+            Choice selected = choose();
             if (selected == null) {
                 if (!floatingFiles.isEmpty()) {
                     //we have to remove the last few floating files
@@ -282,73 +322,125 @@ public class Constraint extends AbstractCleanupStrategy {
      * @param currentSiteJobs The set of jobs at the current site
      */
     private void locateInitialHeads(String site, Set<GraphNode> currentSiteJobs) {
+        //masks of the jobs running here, and of the stage-ins running elsewhere
+        long[] siteJobs = dependencies.newMask();
+        long[] remoteStageIns = dependencies.newMask();
         for (GraphNode currentNode : currentSiteJobs) {
-            //assume all nodes are head nodes
-            boolean currentNodeIsHead = true;
-            //iterate over all dependencies
-            Set<GraphNode> dependenciesForNode = dependencies.get(currentNode);
-            for (GraphNode dependency : dependenciesForNode) {
-                //if we find a dependency thats running here this is not a head job
-                if (currentSiteJobs.contains(dependency)) {
-                    //the dependency is scheduled to run here
-                    currentNodeIsHead = false;
-                } else {
-                    //this dependency node is running elsewhere
-                    //we must check if it is an inter-site stage-in and reserve space if so
-                    Job j = (Job) dependency.getContent();
-                    int type = j.getJobType();
-                    if ((type == Job.STAGE_IN_JOB || type == Job.INTER_POOL_JOB) && !reservations.contains(j)) {
-                        reservations.add(j);
-                        mLogger.log("Input stage in job " + j.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
-                        //figure out sizes and reserve that much space
-                        Set<PegasusFile> outputs = j.getOutputFiles();
-                        for (PegasusFile currentOutput : outputs) {
-                            long currentOutputFileSize = Utilities.getFileSize(currentOutput);
-                            mLogger.log("Found stage in of file " + currentOutput.getLFN() + " of size "
-                                    + currentOutputFileSize, LogManager.DEBUG_MESSAGE_LEVEL);
-                            availableSpacePerSite.put(site, availableSpacePerSite.get(site) - currentOutputFileSize);
-                        }
+            dependencies.setInMask(siteJobs, currentNode, true);
+        }
+        pendingSiteJobs = siteJobs.clone();
+        for (int i = 0; i < dependencies.size(); i++) {
+            GraphNode node = dependencies.getNode(i);
+            int type = ((Job) node.getContent()).getJobType();
+            if ((type == Job.STAGE_IN_JOB || type == Job.INTER_POOL_JOB) && !currentSiteJobs.contains(node)) {
+                dependencies.setInMask(remoteStageIns, node, true);
+            }
+        }
+
+        for (GraphNode currentNode : currentSiteJobs) {
+            CompressedBitSet dependenciesForNode = dependencies.getAncestors(currentNode);
+            if (dependenciesForNode == null) {
+                dependenciesForNode = CompressedBitSet.EMPTY;
+            }
+            //if we find a dependency thats running here this is not a head job
+            boolean currentNodeIsHead = !dependenciesForNode.intersects(siteJobs);
+
+            //for the dependencies running elsewhere
+            //we must check if they are inter-site stage-ins and reserve space if so
+            for (int i = dependenciesForNode.nextSetBit(0, remoteStageIns); i >= 0;
+                    i = dependenciesForNode.nextSetBit(i + 1, remoteStageIns)) {
+                Job j = (Job) dependencies.getNode(i).getContent();
+                if (!reservations.contains(j)) {
+                    reservations.add(j);
+                    mLogger.log("Input stage in job {}", LogManager.DEBUG_MESSAGE_LEVEL, j.getID());
+                    //figure out sizes and reserve that much space
+                    Set<PegasusFile> outputs = j.getOutputFiles();
+                    for (PegasusFile currentOutput : outputs) {
+                        long currentOutputFileSize = Utilities.getFileSize(currentOutput);
+                        mLogger.log("Found stage in of file {} of size {}", LogManager.DEBUG_MESSAGE_LEVEL,
+                                currentOutput.getLFN(), currentOutputFileSize);
+                        availableSpacePerSite.put(site, availableSpacePerSite.get(site) - currentOutputFileSize);
                     }
                 }
             }
             if (currentNodeIsHead) {
                 if (((Job) currentNode.getContent()).getJobType() == Job.CREATE_DIR_JOB) {
-                    mLogger.log("Job " + currentNode.getID() + " is a create dir.", LogManager.DEBUG_MESSAGE_LEVEL);
+                    mLogger.log("Job {} is a create dir.", LogManager.DEBUG_MESSAGE_LEVEL, currentNode.getID());
                     //when create dir, add immediate children if they are scheduled to run here
-                    executed.add(currentNode);
+                    markExecuted(currentNode);
                     for (GraphNode child : currentNode.getChildren()) {
                         if (currentSiteJobs.contains(child)) {
                             heads.add(child);
                         }
                     }
                 } else {
-                    //It may still not be a head if its indirect dependencies run on this node
-                    for (GraphNode dependency : dependencies.get(currentNode)) {
-                        if (currentSiteJobs.contains(dependency)) {
-                            currentNodeIsHead = false;
-                            break;
-                        }
-                    }
-                    if (currentNodeIsHead) {
-                        heads.add(currentNode);
-                    }
+                    heads.add(currentNode);
                 }
             }
         }
     }
 
     /**
+     * Marks a job as executed.
      *
-     * @return
+     * @param node the job
+     */
+    private void markExecuted(GraphNode node) {
+        executed.add(node);
+        dependencies.setInMask(pendingSiteJobs, node, false);
+    }
+
+    /**
+     * Recalculates the choices of the heads whose choices are stale.
+     *
+     * @param site the site
      */
-    private List<Choice> getCurrentChoices(String site) {
-        List<Choice> choices = new LinkedList<Choice>();
-        //Look at the execution of each head to decide how to proceed
-        for (GraphNode currentHead : heads) {
-            Choice c = calcSpaceFreedBy(site, currentHead);
-            choices.add(c);
+    private void updateChoices(String site) {
+        for (GraphNode currentHead : staleHeads) {
+            removeChoice(currentHead);
+            if (heads.contains(currentHead)) {
+                Choice c = calcSpaceFreedBy(site, currentHead);
+                mLogger.log("Choice {}", LogManager.DEBUG_MESSAGE_LEVEL, c);
+                choices.put(currentHead, c);
+                if (c.balance <= 0) {
+                    freeingChoices.add(c);
+                } else {
+                    otherChoices.add(c);
+                }
+            }
+        }
+        staleHeads.clear();
+    }
+
+    /**
+     * Removes the current choice for a head.
+     *
+     * @param head the head
+     */
+    private void removeChoice(GraphNode head) {
+        Choice c = choices.remove(head);
+        if (c != null) {
+            freeingChoices.remove(c);
+            otherChoices.remove(c);
+        }
+    }
+
+    /**
+     * Marks the choices of the heads affected by a change to a job as stale.
+     * The choice for a head depends on its parents, its children, and the
+     * other children of its parents.
+     *
+     * @param node the job that was executed, or whose edges changed
+     */
+    private void invalidateChoices(GraphNode node) {
+        if (heads.contains(node)) {
+            staleHeads.add(node);
+        }
+        for (GraphNode child : node.getChildren()) {
+            if (heads.contains(child)) {
+                staleHeads.add(child);
+            }
         }
-        return choices;
     }
 
     /**
@@ -369,10 +461,10 @@ public class Constraint extends AbstractCleanupStrategy {
             intermediateRequirement = 0;
             for (PegasusFile outputFile : (Set<PegasusFile>) currentJob.getOutputFiles()) {
                 if (mDoNotClean.contains(outputFile)) {
-                    mLogger.log("Cannot clean file " + outputFile.getLFN() + "!", LogManager.WARNING_MESSAGE_LEVEL);
+                    mLogger.log("Cannot clean file {}!", LogManager.WARNING_MESSAGE_LEVEL, outputFile.getLFN());
                 } else {
-                    mLogger.log("We can free file '" + outputFile.getLFN()
-                            + "' on executing '" + currentJob.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+                    mLogger.log("We can free file '{}' on executing '{}", LogManager.DEBUG_MESSAGE_LEVEL,
+                            outputFile.getLFN(), currentJob.getID());
                     final long fileSize = Utilities.getFileSize(outputFile);
                     if (!floatsForChoice.containsKey(fileSize)) {
                         List<FloatingFile> floats = new ArrayList<FloatingFile>(1);
@@ -405,7 +497,7 @@ public class Constraint extends AbstractCleanupStrategy {
                 //Get the Job object corresponding to the parent
                 Job currentParentJob = (Job) currentParent.getContent();
 
-                mLogger.log("Analysing parent " + currentParentJob.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+                mLogger.log("Analysing parent {}", LogManager.DEBUG_MESSAGE_LEVEL, currentParentJob.getID());
 
                 //Iterate over each output file of this parent
                 for (PegasusFile candidateFile : (Set<PegasusFile>) currentParentJob.getOutputFiles()) {
@@ -443,10 +535,10 @@ public class Constraint extends AbstractCleanupStrategy {
                         //If no one else uses the current file, we can free it
                         if (!candidateFileUsed) {
                             if (mDoNotClean.contains(candidateFile)) {
-                                mLogger.log("Cannot clean file " + candidateFile.getLFN(), LogManager.DEBUG_MESSAGE_LEVEL);
+                                mLogger.log("Cannot clean file {}", LogManager.DEBUG_MESSAGE_LEVEL, candidateFile.getLFN());
                             } else {
-                                mLogger.log("We can free file '" + candidateFile.getLFN()
-                                        + "' on executing '" + currentJob.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+                                mLogger.log("We can free file '{}' on executing '{}", LogManager.DEBUG_MESSAGE_LEVEL,
+                                        candidateFile.getLFN(), currentJob.getID());
                                 final long fileSize = Utilities.getFileSize(candidateFile);
                                 if (!floatsForChoice.containsKey(fileSize)) {
                                     List<FloatingFile> files = new ArrayList<FloatingFile>(1);
@@ -473,9 +565,8 @@ public class Constraint extends AbstractCleanupStrategy {
                         }
                     }
                     if (!outputFileUsed) {
-                        mLogger.log("We can free file '" + outputFile.getLFN()
-                                + "' on executing '" + toExecute.getID()
-                                + "' since no children need", LogManager.DEBUG_MESSAGE_LEVEL);
+                        mLogger.log("We can free file '{}' on executing '{}' since no children need",
+                                LogManager.DEBUG_MESSAGE_LEVEL, outputFile.getLFN(), toExecute.getID());
                         Set<GraphNode> dependenciesForFile = new HashSet<GraphNode>(1);
                         dependenciesForFile.add(toExecute);
                         Long fileSize = Utilities.getFileSize(outputFile);
@@ -527,36 +618,17 @@ public class Constraint extends AbstractCleanupStrategy {
     }
 
     /**
+     * Selects the choice to execute next, amongst the current choices.
      *
-     * @param choices
-     * @return
+     * @return the choice, or null if there are no choices left
      */
-    private Choice choose(Iterable<Choice> choices) {
-        final Choice placeholder = new Choice(Long.MAX_VALUE, Long.MAX_VALUE, null, null);
-        Choice candidateChoice = placeholder;
-        mLogger.log("Current choices are:", LogManager.DEBUG_MESSAGE_LEVEL);
-
-        for (Choice currentChoice : choices) {
-            mLogger.log(currentChoice.toString(), LogManager.DEBUG_MESSAGE_LEVEL);
-            //We're interested in the choice (amongst the choices that free) space with the least intermediate requirement
-            if (currentChoice.balance <= 0) {
-
-                //We're interested in the job with the least intermediate space requirement
-                if (currentChoice.intermediateSpaceRequirement < candidateChoice.intermediateSpaceRequirement) {
-                    candidateChoice = currentChoice;
-                }
-            }
+    private Choice choose() {
+        //We're interested in the choice (amongst the choices that free space) with the least intermediate requirement
+        if (!freeingChoices.isEmpty()) {
+            return freeingChoices.first();
         }
-        if (candidateChoice == placeholder) {
-            //There was no choice that released space. So, select the choice with least balance from all the choices
-            for (Choice currentChoice : choices) {
-                if (currentChoice.balance < candidateChoice.balance) {
-                    candidateChoice = currentChoice;
-                }
-            }
-        }
-        Choice selectedChoice = (candidateChoice == placeholder ? null : candidateChoice);
-        return selectedChoice;
+        //There was no choice that released space. So, select the choice with least balance from all the choices
+        return otherChoices.isEmpty() ? null : otherChoices.first();
     }
 
     /**
@@ -615,11 +687,26 @@ public class Constraint extends AbstractCleanupStrategy {
             node.removeChild(node);
             node.removeParent(node);
 
-            mLogger.log(Utilities.cleanUpJobToString(parents, heads, listOfFiles), LogManager.DEBUG_MESSAGE_LEVEL);
+            //the new cleanup job changes the peers of the jobs around it
+            for (GraphNode parent : node.getParents()) {
+                invalidateChoices(parent);
+            }
+            for (GraphNode child : node.getChildren()) {
+                invalidateChoices(child);
+            }
+
+            //freeSpace and execute run for every step of the simulation.
+            //their messages need map lookups, boxing and more than three
+            //arguments, so they are concatenated behind a level check
+            if (mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL)) {
+                mLogger.log(Utilities.cleanUpJobToString(parents, heads, listOfFiles), LogManager.DEBUG_MESSAGE_LEVEL);
+            }
             workflow.addNode(node);
         }
 
-        mLogger.log(site + ": Space available is now " + availableSpacePerSite.get(site), LogManager.DEBUG_MESSAGE_LEVEL);
+        if (mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL)) {
+            mLogger.log(site + ": Space available is now " + availableSpacePerSite.get(site), LogManager.DEBUG_MESSAGE_LEVEL);
+        }
     }
 
     /**
@@ -638,40 +725,47 @@ public class Constraint extends AbstractCleanupStrategy {
 
         if (availableSpacePerSite.get(site) < selected.intermediateSpaceRequirement) {
             final long requiredSpace = selected.intermediateSpaceRequirement - availableSpacePerSite.get(site);
-            mLogger.log("Require " + requiredSpace + " more space, creating cleanup job", LogManager.DEBUG_MESSAGE_LEVEL);
+            if (mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL)) {
+                mLogger.log("Require " + requiredSpace + " more space, creating cleanup job", LogManager.DEBUG_MESSAGE_LEVEL);
+            }
             freeSpace(workflow, site, selected, requiredSpace);
         }
         availableSpacePerSite.put(site, availableSpacePerSite.get(site) - selected.intermediateSpaceRequirement);
 
-        mLogger.log(site + ": Selected choice (" + availableSpacePerSite.get(site) + "/" + maxAvailableSpacePerSite.get(site)
-                + " free after exec): " + selected, LogManager.DEBUG_MESSAGE_LEVEL);
+        if (mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL)) {
+            mLogger.log(site + ": Selected choice (" + availableSpacePerSite.get(site) + "/" + maxAvailableSpacePerSite.get(site)
+                    + " free after exec): " + selected, LogManager.DEBUG_MESSAGE_LEVEL);
+        }
 
         //Phase I: Mark nodes as executed and remove them from head
         for (GraphNode node : selected.listOfJobs) {
-            executed.add(node);
+            markExecuted(node);
             heads.remove(node);
+            removeChoice(node);
             candidateHeads.addAll(node.getChildren());
+            //the choices of the heads sharing a parent depend on what has executed
+            for (GraphNode parent : node.getParents()) {
+                invalidateChoices(parent);
+            }
         }
 
         //Phase II:Examine candidate heads and add if necessary
         for (GraphNode candidateHead : candidateHeads) {
-            boolean unsatisfiedDependency = false;
-            if (dependencies.containsKey(candidateHead)) {
-                for (GraphNode dependency : dependencies.get(candidateHead)) {
-                    if (!executed.contains(dependency) && currentSiteJobs.contains(dependency)) {
-                        unsatisfiedDependency = true;
-                        break;
-                    }
-                }
-            }
+            CompressedBitSet dependenciesForNode = dependencies.getAncestors(candidateHead);
+            boolean unsatisfiedDependency = dependenciesForNode != null
+                    && dependenciesForNode.intersects(pendingSiteJobs);
             if (!unsatisfiedDependency && currentSiteJobs.contains(candidateHead)) {
-                mLogger.log("Can now execute " + candidateHead.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+                if (mLogger.isLoggable(LogManager.DEBUG_MESSAGE_LEVEL)) {
+                    mLogger.log("Can now execute " + candidateHead.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
+                }
                 heads.add(candidateHead);
+                staleHeads.add(candidateHead);
             }
         }
 
         //finally update the floating file list
         updateFloats(selected.floatingFiles);
+        updateChoices(site);
     }
 
     /**
@@ -697,6 +791,36 @@ public class Constraint extends AbstractCleanupStrategy {
         }
     }
 
+    /**
+     * Orders the choices on the basis of their intermediate space requirement
+     * or their balance, and then on the order of their job in the workflow,
+     * so that the selection is deterministic.
+     */
+    private static class ChoiceComparator implements Comparator<Choice> {
+
+        /**
+         * Whether to order by the intermediate space requirement or the
+         * balance.
+         */
+        private final boolean byRequirement;
+
+        public ChoiceComparator(boolean byRequirement) {
+            this.byRequirement = byRequirement;
+        }
+
+        @Override
+        public int compare(Choice a, Choice b) {
+            long x = byRequirement ? a.intermediateSpaceRequirement : a.balance;
+            long y = byRequirement ? b.intermediateSpaceRequirement : b.balance;
+            if (x != y) {
+                return x < y ? -1 : 1;
+            }
+            int i = dependencies.indexOf(a.listOfJobs.get(0));
+            int j = dependencies.indexOf(b.listOfJobs.get(0));
+            return i < j ? -1 : (i == j ? 0 : 1);
+        }
+    }
+
     /**
      * Returns the name of the property, for a particular site X.
      *
@@ -0,0 +1,636 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner.cleanup.constraint;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An immutable, compressed set of non negative integers.
+ * <p/>
+ * The integers are split into chunks of 65536 on the basis of their high
+ * 16 bits. The low bits of a chunk are stored either in a sorted array, when
+ * the chunk is sparse, or in a bitmap once it holds more than 4096 values.
+ * Operations that do not change a chunk reuse it, and adding a value larger
+ * than all the values in a set appends it to the storage of its last chunk in
+ * place, so that the sets derived from one another, such as the ancestor sets
+ * of the jobs in a workflow numbered in topological order, share most of
+ * their storage. Sets are not safe to derive from concurrently.
+ *
+ * @version $Revision$
+ */
+public final class CompressedBitSet {
+
+    /**
+     * The number of low bits stored in a chunk.
+     */
+    private static final int CHUNK_BITS = 16;
+
+    /**
+     * The mask for the low bits stored in a chunk.
+     */
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    /**
+     * The maximum number of values in an array chunk.
+     */
+    private static final int ARRAY_LIMIT = 4096;
+
+    /**
+     * The number of words in a bitmap chunk.
+     */
+    private static final int BITMAP_WORDS = (1 << CHUNK_BITS) / 64;
+
+    /**
+     * The empty set.
+     */
+    public static final CompressedBitSet EMPTY = new CompressedBitSet(new int[0], new Container[0], 0);
+
+    /**
+     * The high bits of the chunks in the set, sorted.
+     */
+    private final int[] keys;
+
+    /**
+     * The chunks corresponding to the keys.
+     */
+    private final Container[] containers;
+
+    /**
+     * The number of values in the set.
+     */
+    private final int cardinality;
+
+    private CompressedBitSet(int[] keys, Container[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return the cardinality
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Returns whether the set is empty.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Returns whether a value is in the set.
+     *
+     * @param value the value
+     *
+     * @return boolean
+     */
+    public boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, value >>> CHUNK_BITS);
+        return i >= 0 && containers[i].contains(value & CHUNK_MASK);
+    }
+
+    /**
+     * Returns a set with the value added to this set.
+     *
+     * @param value the non negative value to add
+     *
+     * @return this set if it already contains the value, else a new set
+     */
+    public CompressedBitSet with(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        int key = value >>> CHUNK_BITS;
+        int i = Arrays.binarySearch(keys, key);
+        if (i >= 0) {
+            Container c = containers[i].add(value & CHUNK_MASK);
+            if (c == containers[i]) {
+                return this;
+            }
+            Container[] cs = containers.clone();
+            cs[i] = c;
+            return new CompressedBitSet(keys, cs, cardinality + 1);
+        }
+        i = -i - 1;
+        int[] ks = new int[keys.length + 1];
+        Container[] cs = new Container[keys.length + 1];
+        System.arraycopy(keys, 0, ks, 0, i);
+        System.arraycopy(containers, 0, cs, 0, i);
+        ks[i] = key;
+        cs[i] = new ArrayContainer(new char[]{(char) (value & CHUNK_MASK)});
+        System.arraycopy(keys, i, ks, i + 1, keys.length - i);
+        System.arraycopy(containers, i, cs, i + 1, keys.length - i);
+        return new CompressedBitSet(ks, cs, cardinality + 1);
+    }
+
+    /**
+     * Returns the union of this set with another.
+     *
+     * @param other the other set
+     *
+     * @return this or the other set if it is a superset of the other one,
+     * else a new set
+     */
+    public CompressedBitSet or(CompressedBitSet other) {
+        if (other == this || other.isEmpty()) {
+            return this;
+        }
+        if (this.isEmpty()) {
+            return other;
+        }
+        int[] ks = new int[keys.length + other.keys.length];
+        Container[] cs = new Container[ks.length];
+        int n = 0, i = 0, j = 0, count = 0;
+        boolean sameAsThis = true, sameAsOther = true;
+        while (i < keys.length || j < other.keys.length) {
+            Container c;
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                ks[n] = keys[i];
+                c = containers[i++];
+                sameAsOther = false;
+            } else if (i == keys.length || other.keys[j] < keys[i]) {
+                ks[n] = other.keys[j];
+                c = other.containers[j++];
+                sameAsThis = false;
+            } else {
+                ks[n] = keys[i];
+                c = containers[i].or(other.containers[j]);
+                sameAsThis &= (c == containers[i]);
+                sameAsOther &= (c == other.containers[j]);
+                i++;
+                j++;
+            }
+            cs[n++] = c;
+            count += c.cardinality();
+        }
+        if (sameAsThis) {
+            return this;
+        }
+        if (sameAsOther) {
+            return other;
+        }
+        return new CompressedBitSet(Arrays.copyOf(ks, n), Arrays.copyOf(cs, n), count);
+    }
+
+    /**
+     * Returns the smallest value in the set that is greater than or equal to
+     * a value.
+     *
+     * @param from the value to start from
+     *
+     * @return the value, or -1 if there is none
+     */
+    public int nextSetBit(int from) {
+        return nextSetBit(from, null);
+    }
+
+    /**
+     * Returns the smallest value in the set that is greater than or equal to
+     * a value, and whose bit is set in a mask.
+     *
+     * @param from the value to start from
+     * @param mask the mask with bit i of word i/64 set for value i, or null to
+     * consider all values
+     *
+     * @return the value, or -1 if there is none
+     */
+    public int nextSetBit(int from, long[] mask) {
+        from = Math.max(from, 0);
+        int key = from >>> CHUNK_BITS;
+        int i = Arrays.binarySearch(keys, key);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        for (; i < keys.length; i++) {
+            int base = keys[i] << CHUNK_BITS;
+            int low = keys[i] == key ? from & CHUNK_MASK : 0;
+            int next = containers[i].nextSetBit(low, mask, base);
+            if (next >= 0) {
+                return base | next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the set has a value whose bit is set in a mask.
+     *
+     * @param mask the mask with bit i of word i/64 set for value i
+     *
+     * @return boolean
+     */
+    public boolean intersects(long[] mask) {
+        return nextSetBit(0, mask) >= 0;
+    }
+
+    /**
+     * Returns the approximate number of bytes used by a number of sets,
+     * counting the storage shared between them once.
+     *
+     * @param sets the sets
+     *
+     * @return the number of bytes
+     */
+    public static long getSizeInBytes(CompressedBitSet... sets) {
+        Map<Object, Object> seen = new IdentityHashMap<Object, Object>();
+        long bytes = 0;
+        for (CompressedBitSet set : sets) {
+            if (set == null || seen.put(set, set) != null) {
+                continue;
+            }
+            bytes += 32 + 8 * set.keys.length;
+            for (Container c : set.containers) {
+                if (seen.put(c, c) == null) {
+                    bytes += 24;
+                    if (seen.put(c.storage(), c) == null) {
+                        bytes += c.storageBytes();
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(i);
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Returns the bit for a value in a mask.
+     *
+     * @param mask the mask
+     * @param value the value
+     *
+     * @return boolean
+     */
+    private static boolean isSet(long[] mask, int value) {
+        int word = value >>> 6;
+        return word < mask.length && (mask[word] & (1L << value)) != 0;
+    }
+
+    /**
+     * A chunk of a set.
+     */
+    private static abstract class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        abstract Container add(int low);
+
+        abstract Container or(Container other);
+
+        abstract int nextSetBit(int low, long[] mask, int base);
+
+        abstract Object storage();
+
+        abstract long storageBytes();
+    }
+
+    /**
+     * The storage of the sparse chunks, shared between the chunks that are
+     * prefixes of one another.
+     */
+    private static final class Chars {
+
+        private char[] values;
+
+        /**
+         * The number of values written into the array.
+         */
+        private int used;
+
+        Chars(char[] values, int used) {
+            this.values = values;
+            this.used = used;
+        }
+    }
+
+    /**
+     * A sparse chunk, holding the sorted low bits of its values.
+     * <p/>
+     * The chunk is the first size values of its storage. Adding a value
+     * greater than all the values in a chunk writes it in place, if no other
+     * chunk has already done so, so that a chain of sets each adding a value to
+     * the previous one shares a single array.
+     */
+    private static final class ArrayContainer extends Container {
+
+        private final Chars shared;
+
+        private final int size;
+
+        ArrayContainer(char[] values) {
+            this(new Chars(values, values.length), values.length);
+        }
+
+        ArrayContainer(Chars shared, int size) {
+            this.shared = shared;
+            this.size = size;
+        }
+
+        int cardinality() {
+            return size;
+        }
+
+        boolean contains(int low) {
+            return Arrays.binarySearch(shared.values, 0, size, (char) low) >= 0;
+        }
+
+        Container add(int low) {
+            char[] values = shared.values;
+            if (size > 0 && low > values[size - 1]) {
+                //appending the largest value
+                if (size == ARRAY_LIMIT) {
+                    return toBitmap().add(low);
+                }
+                if (shared.used == size && size < values.length) {
+                    values[size] = (char) low;
+                    shared.used++;
+                    return new ArrayContainer(shared, size + 1);
+                }
+                char[] vs = new char[Math.min(ARRAY_LIMIT, Math.max(4, size * 2))];
+                System.arraycopy(values, 0, vs, 0, size);
+                vs[size] = (char) low;
+                return new ArrayContainer(new Chars(vs, size + 1), size + 1);
+            }
+            int i = Arrays.binarySearch(values, 0, size, (char) low);
+            if (i >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                return toBitmap().add(low);
+            }
+            i = -i - 1;
+            char[] vs = new char[size + 1];
+            System.arraycopy(values, 0, vs, 0, i);
+            vs[i] = (char) low;
+            System.arraycopy(values, i, vs, i + 1, size - i);
+            return new ArrayContainer(vs);
+        }
+
+        Container or(Container other) {
+            if (other == this) {
+                return this;
+            }
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer o = (ArrayContainer) other;
+            char[] values = shared.values;
+            char[] others = o.shared.values;
+            char[] merged = new char[size + o.size];
+            int n = 0, i = 0, j = 0;
+            while (i < size && j < o.size) {
+                if (values[i] < others[j]) {
+                    merged[n++] = values[i++];
+                } else if (others[j] < values[i]) {
+                    merged[n++] = others[j++];
+                } else {
+                    merged[n++] = values[i++];
+                    j++;
+                }
+            }
+            while (i < size) {
+                merged[n++] = values[i++];
+            }
+            while (j < o.size) {
+                merged[n++] = others[j++];
+            }
+            if (n == size) {
+                return this;
+            }
+            if (n == o.size) {
+                return other;
+            }
+            ArrayContainer result = new ArrayContainer(new Chars(merged, n), n);
+            return n > ARRAY_LIMIT ? result.toBitmap() : result;
+        }
+
+        int nextSetBit(int low, long[] mask, int base) {
+            char[] values = shared.values;
+            int i = Arrays.binarySearch(values, 0, size, (char) low);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            for (; i < size; i++) {
+                if (mask == null || isSet(mask, base | values[i])) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        Object storage() {
+            return shared;
+        }
+
+        long storageBytes() {
+            return 32 + 2 * shared.values.length;
+        }
+
+        private BitmapContainer toBitmap() {
+            long[] words = new long[BITMAP_WORDS];
+            char[] values = shared.values;
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            int limit = size == 0 ? 0 : values[size - 1] + 1;
+            return new BitmapContainer(new Words(words, limit), limit, size);
+        }
+    }
+
+    /**
+     * The storage of the dense chunks, shared between the chunks that are
+     * prefixes of one another.
+     */
+    private static final class Words {
+
+        private final long[] words;
+
+        /**
+         * One more than the largest value written into the bitmap.
+         */
+        private int used;
+
+        Words(long[] words, int used) {
+            this.words = words;
+            this.used = used;
+        }
+    }
+
+    /**
+     * A dense chunk, holding a bitmap of its values.
+     * <p/>
+     * The chunk is the values of its storage below its limit. As for the
+     * sparse chunks, adding a value greater than all the values in a chunk
+     * writes it in place if no other chunk has already done so.
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final Words shared;
+
+        private final int limit;
+
+        private final int cardinality;
+
+        BitmapContainer(Words shared, int limit, int cardinality) {
+            this.shared = shared;
+            this.limit = limit;
+            this.cardinality = cardinality;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        boolean contains(int low) {
+            return low < limit && (shared.words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        Container add(int low) {
+            if (low >= limit) {
+                //appending the largest value
+                if (shared.used == limit) {
+                    shared.words[low >>> 6] |= 1L << low;
+                    shared.used = low + 1;
+                    return new BitmapContainer(shared, low + 1, cardinality + 1);
+                }
+                long[] ws = copy();
+                ws[low >>> 6] |= 1L << low;
+                return new BitmapContainer(new Words(ws, low + 1), low + 1, cardinality + 1);
+            }
+            if (contains(low)) {
+                return this;
+            }
+            long[] ws = copy();
+            ws[low >>> 6] |= 1L << low;
+            return new BitmapContainer(new Words(ws, limit), limit, cardinality + 1);
+        }
+
+        Container or(Container other) {
+            if (other == this) {
+                return this;
+            }
+            long[] ws = copy();
+            int count = cardinality;
+            int max = limit;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer a = (ArrayContainer) other;
+                char[] values = a.shared.values;
+                for (int i = 0; i < a.size; i++) {
+                    char v = values[i];
+                    long bit = 1L << v;
+                    if ((ws[v >>> 6] & bit) == 0) {
+                        ws[v >>> 6] |= bit;
+                        count++;
+                        max = Math.max(max, v + 1);
+                    }
+                }
+                return count == cardinality ? this : new BitmapContainer(new Words(ws, max), max, count);
+            }
+            BitmapContainer b = (BitmapContainer) other;
+            max = Math.max(limit, b.limit);
+            count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                ws[i] |= b.word(i);
+                count += Long.bitCount(ws[i]);
+            }
+            if (count == cardinality) {
+                return this;
+            }
+            if (count == b.cardinality) {
+                return b;
+            }
+            return new BitmapContainer(new Words(ws, max), max, count);
+        }
+
+        int nextSetBit(int low, long[] mask, int base) {
+            int maskOffset = base >>> 6;
+            for (int w = low >>> 6; w < BITMAP_WORDS; w++) {
+                long bits = word(w);
+                if (mask != null) {
+                    bits &= (maskOffset + w < mask.length) ? mask[maskOffset + w] : 0;
+                }
+                if (w == low >>> 6) {
+                    bits &= -1L << low;
+                }
+                if (bits != 0) {
+                    return (w << 6) + Long.numberOfTrailingZeros(bits);
+                }
+            }
+            return -1;
+        }
+
+        Object storage() {
+            return shared;
+        }
+
+        long storageBytes() {
+            return 32 + 8 * BITMAP_WORDS;
+        }
+
+        /**
+         * Returns a word of the bitmap, ignoring the values at or above the
+         * limit.
+         *
+         * @param i the index of the word
+         *
+         * @return the word
+         */
+        private long word(int i) {
+            int full = limit >>> 6;
+            if (i < full) {
+                return shared.words[i];
+            }
+            if (i == full) {
+                return shared.words[i] & ((1L << (limit & 63)) - 1);
+            }
+            return 0;
+        }
+
+        /**
+         * Returns a copy of the words of the bitmap below the limit.
+         *
+         * @return the words
+         */
+        private long[] copy() {
+            long[] ws = new long[BITMAP_WORDS];
+            for (int i = 0; i <= (limit >>> 6) && i < BITMAP_WORDS; i++) {
+                ws[i] = word(i);
+            }
+            return ws;
+        }
+    }
+}
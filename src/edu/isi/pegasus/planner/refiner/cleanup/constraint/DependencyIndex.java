@@ -0,0 +1,272 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner.cleanup.constraint;
+
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the transitive dependencies (ancestors) of the nodes in a
+ * workflow.
+ * <p/>
+ * The nodes are numbered densely in topological order, and the ancestors of
+ * each node are held in a {@link CompressedBitSet} over these numbers. The
+ * ancestor set of a node is derived from the ancestor sets of its parents,
+ * and shares their storage wherever they do not differ. Nodes with a single
+ * parent, or with the same parents, share the same set.
+ * <p/>
+ * Nodes added to the workflow after the index is built are not indexed.
+ *
+ * @version $Revision$
+ */
+public class DependencyIndex {
+
+    /**
+     * Maps a node to its number.
+     */
+    private final Map<GraphNode, Integer> index;
+
+    /**
+     * The nodes, in the order of their numbers.
+     */
+    private final GraphNode[] nodes;
+
+    /**
+     * The ancestors of each node, by its number.
+     */
+    private final CompressedBitSet[] ancestors;
+
+    /**
+     * Builds the index for a workflow.
+     *
+     * @param workflow the workflow
+     */
+    public DependencyIndex(Graph workflow) {
+        int size = workflow.size();
+        index = new HashMap<GraphNode, Integer>(size * 4 / 3 + 1);
+        List<GraphNode> order = new ArrayList<GraphNode>(size);
+
+        //number the nodes in topological order, so that the number
+        //of a node is always greater than those of its ancestors
+        Map<GraphNode, Integer> pendingParents = new HashMap<GraphNode, Integer>(size * 4 / 3 + 1);
+        LinkedList<GraphNode> ready = new LinkedList<GraphNode>();
+        for (Iterator<GraphNode> it = workflow.nodeIterator(); it.hasNext();) {
+            GraphNode node = it.next();
+            int parents = node.getParents().size();
+            if (parents == 0) {
+                ready.add(node);
+            } else {
+                pendingParents.put(node, parents);
+            }
+        }
+        while (!ready.isEmpty()) {
+            GraphNode node = ready.removeFirst();
+            index.put(node, order.size());
+            order.add(node);
+            for (GraphNode child : node.getChildren()) {
+                Integer parents = pendingParents.get(child);
+                if (parents == null) {
+                    continue;
+                }
+                if (parents == 1) {
+                    pendingParents.remove(child);
+                    ready.add(child);
+                } else {
+                    pendingParents.put(child, parents - 1);
+                }
+            }
+        }
+        if (!pendingParents.isEmpty()) {
+            throw new RuntimeException("Unable to index the dependencies of "
+                    + pendingParents.size() + " nodes, the workflow has cycles");
+        }
+
+        nodes = order.toArray(new GraphNode[order.size()]);
+        ancestors = new CompressedBitSet[nodes.length];
+
+        //the ancestors of a node along with the node itself, shared by
+        //all its children
+        CompressedBitSet[] closed = new CompressedBitSet[nodes.length];
+        //the ancestors of the nodes with multiple parents, by their parents
+        Map<ParentsKey, CompressedBitSet> merged = new HashMap<ParentsKey, CompressedBitSet>();
+        for (int i = 0; i < nodes.length; i++) {
+            Collection<GraphNode> parents = nodes[i].getParents();
+            if (parents.size() == 1) {
+                ancestors[i] = closed(closed, index.get(parents.iterator().next()));
+                continue;
+            }
+            int[] ps = new int[parents.size()];
+            int j = 0;
+            for (GraphNode parent : parents) {
+                ps[j++] = index.get(parent);
+            }
+            Arrays.sort(ps);
+            ParentsKey key = new ParentsKey(ps);
+            CompressedBitSet set = merged.get(key);
+            if (set == null) {
+                set = CompressedBitSet.EMPTY;
+                for (int p : ps) {
+                    set = set.or(closed(closed, p));
+                }
+                if (ps.length > 1) {
+                    merged.put(key, set);
+                }
+            }
+            ancestors[i] = set;
+        }
+    }
+
+    /**
+     * Returns the ancestors of a node along with the node itself.
+     *
+     * @param closed the cache of the sets already computed
+     * @param i the number of the node
+     *
+     * @return the set
+     */
+    private CompressedBitSet closed(CompressedBitSet[] closed, int i) {
+        if (closed[i] == null) {
+            closed[i] = ancestors[i].with(i);
+        }
+        return closed[i];
+    }
+
+    /**
+     * Returns the number of nodes indexed.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns whether a node is indexed.
+     *
+     * @param node the node
+     *
+     * @return boolean
+     */
+    public boolean contains(GraphNode node) {
+        return index.containsKey(node);
+    }
+
+    /**
+     * Returns the number of an indexed node.
+     *
+     * @param node the node
+     *
+     * @return the number, or -1 if the node is not indexed
+     */
+    public int indexOf(GraphNode node) {
+        Integer i = index.get(node);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Returns the node with a number.
+     *
+     * @param i the number
+     *
+     * @return the node
+     */
+    public GraphNode getNode(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * Returns the numbers of the ancestors of a node.
+     *
+     * @param node the node
+     *
+     * @return the ancestors, or null if the node is not indexed
+     */
+    public CompressedBitSet getAncestors(GraphNode node) {
+        Integer i = index.get(node);
+        return i == null ? null : ancestors[i];
+    }
+
+    /**
+     * Returns a mask, with no bits set, to hold a subset of the nodes indexed.
+     *
+     * @return the mask
+     */
+    public long[] newMask() {
+        return new long[(nodes.length + 63) >>> 6];
+    }
+
+    /**
+     * Sets or clears the bit of a node in a mask. Nodes not indexed are
+     * ignored.
+     *
+     * @param mask the mask
+     * @param node the node
+     * @param value whether to set or clear the bit
+     */
+    public void setInMask(long[] mask, GraphNode node, boolean value) {
+        Integer i = index.get(node);
+        if (i == null) {
+            return;
+        }
+        if (value) {
+            mask[i >>> 6] |= 1L << i;
+        } else {
+            mask[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * Returns the approximate number of bytes used by the ancestor sets.
+     *
+     * @return the number of bytes
+     */
+    public long getSizeInBytes() {
+        return CompressedBitSet.getSizeInBytes(ancestors);
+    }
+
+    /**
+     * The sorted numbers of the parents of a node, as a key.
+     */
+    private static class ParentsKey {
+
+        private final int[] parents;
+
+        private final int hash;
+
+        public ParentsKey(int[] parents) {
+            this.parents = parents;
+            this.hash = Arrays.hashCode(parents);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ParentsKey && Arrays.equals(parents, ((ParentsKey) o).parents);
+        }
+    }
+}
@@ -15,10 +15,8 @@
  */
 package edu.isi.pegasus.planner.refiner.cleanup.constraint;
 
-import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusFile;
-import edu.isi.pegasus.planner.partitioner.graph.Graph;
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import org.supercsv.cellprocessor.ParseLong;
 import org.supercsv.cellprocessor.ift.CellProcessor;
@@ -93,82 +91,6 @@ public class Utilities {
         }
     }
 
-    /**
-     *
-     * @param workflow
-     * @param mLogger
-     * @return
-     */
-    public static Map<GraphNode, Set<GraphNode>> calculateDependencies(Graph workflow, LogManager mLogger) {
-        //Dependencies is used to map from node to its dependencies
-        Map<GraphNode, Set<GraphNode>> dependencies = new HashMap<GraphNode, Set<GraphNode>>();
-
-        //This is our BFS queue
-        LinkedList<GraphNode> bfsQueue = new LinkedList<GraphNode>();
-
-        //This is a marker node used to indicate an increase in depth while exploring
-        final GraphNode marker = new GraphNode("Marker");
-
-        //Initially, add all root nodes to the BFS queue
-        for (GraphNode currentRoot : workflow.getRoots()) {
-            bfsQueue.addLast(currentRoot);
-        }
-
-        try {
-            outer:
-            while (true) {
-                //Remove one node from the BFS queue
-                GraphNode currentNode = bfsQueue.removeFirst();
-
-                //Ensure that the removed node is not already explored
-                if (dependencies.containsKey(currentNode)) {
-                    continue;
-                }
-
-                //Move past any marker nodes we see
-                while (currentNode == marker) {
-                    currentNode = bfsQueue.removeFirst();
-                }
-                mLogger.log("Pre analysis of node " + currentNode.getID(), LogManager.DEBUG_MESSAGE_LEVEL);
-
-                //Initialise the dependency set for the current node
-                Set<GraphNode> currentNodeDependencies = new HashSet<GraphNode>();
-
-                //Iterate over all the parent nodes
-                for (GraphNode parent : currentNode.getParents()) {
-                    //Ensure that we've already calculated dependencies for this parent node
-                    //Otherwise we could end up in trouble here
-                    if (!dependencies.containsKey(parent)) {
-                        //if we've not yet calculated dependencies for even one of the parents
-                        //then push this node sufficiently back in the queue
-                        //that we would have calculated all parent dependencies when we return
-                        //Basically, push the node to the start of the next level
-                        ListIterator<GraphNode> iterator = bfsQueue.listIterator();
-                        for (GraphNode searchElement = iterator.next(); iterator.hasNext(); searchElement = iterator.next()) {
-                            if (searchElement == marker) {
-                                iterator.add(currentNode);
-                                break;
-                            }
-                        }
-                        continue outer;
-                    }
-                    //Update the current node's dependencies
-                    currentNodeDependencies.add(parent);
-                    currentNodeDependencies.addAll(dependencies.get(parent));
-                }
-
-                //Add the current node to the dependencies table
-                dependencies.put(currentNode, currentNodeDependencies);
-
-                //Add a marker followed by this node's children
-                bfsQueue.add(marker);
-                bfsQueue.addAll(currentNode.getChildren());
-            }
-        } catch (NoSuchElementException e) {
-        }
-        return dependencies;
-    }
-
     public static long getIntermediateRequirement(Job currentJob) {
         long spaceUsed = 0;
         switch (currentJob.getJobType()) {
@@ -29,6 +29,10 @@ import edu.isi.pegasus.planner.selector.SiteSelector;
 
 import edu.isi.pegasus.planner.catalog.transformation.Mapper;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 
 /**
@@ -69,6 +73,11 @@ public abstract class Abstract implements SiteSelector {
      */
     protected PegasusBag mBag;
 
+    /**
+     * The number of threads to map independent jobs on.
+     */
+    protected int mThreads;
+
     /**
      * Initializes the site selector.
      *
@@ -81,6 +90,75 @@ public abstract class Abstract implements SiteSelector {
         mLogger   = ( LogManager )bag.get( PegasusBag.PEGASUS_LOGMANAGER );
         mSiteStore = bag.getHandleToSiteStore();
         mTCMapper = ( Mapper )bag.get( PegasusBag.TRANSFORMATION_MAPPER );
+        mThreads  = mProps.getSiteSelectorThreads();
+    }
+
+    /**
+     * Performs an action on each of the items of a list. If more than one
+     * thread is configured, the list is split into ranges that are worked
+     * on by a fork join pool of that many threads, and the action should
+     * only modify the item passed to it.
+     *
+     * @param items   the items.
+     * @param action  the action to perform on each item.
+     */
+    protected <T> void forEach( List<T> items, Consumer<T> action ){
+        if( mThreads <= 1 || items.size() <= 1 ){
+            for( T item : items ){
+                action.accept( item );
+            }
+            return;
+        }
+
+        //split in a few ranges per thread, so that threads that finish
+        //their ranges early can steal the remaining ones
+        int threshold = Math.max( 1, items.size() / ( mThreads * 8 ) );
+        ForkJoinPool pool = new ForkJoinPool( mThreads );
+        try{
+            pool.invoke( new ForEachTask<T>( items, action, 0, items.size(), threshold ) );
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Performs an action on a range of items of a list, splitting the range
+     * in halves till it is no larger than the threshold.
+     */
+    private static class ForEachTask<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> mItems;
+
+        private final Consumer<T> mAction;
+
+        private final int mStart;
+
+        private final int mEnd;
+
+        private final int mThreshold;
+
+        ForEachTask( List<T> items, Consumer<T> action, int start, int end, int threshold ){
+            mItems     = items;
+            mAction    = action;
+            mStart     = start;
+            mEnd       = end;
+            mThreshold = threshold;
+        }
+
+        protected void compute(){
+            if( mEnd - mStart <= mThreshold ){
+                for( int i = mStart; i < mEnd; i++ ){
+                    mAction.accept( mItems.get( i ) );
+                }
+                return;
+            }
+            int middle = ( mStart + mEnd ) >>> 1;
+            invokeAll( new ForEachTask<T>( mItems, mAction, mStart, middle, mThreshold ),
+                       new ForEachTask<T>( mItems, mAction, middle, mEnd, mThreshold ) );
+        }
     }
 
 
@@ -21,6 +21,7 @@ import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.namespace.Hints;
 
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -33,14 +34,18 @@ import java.util.List;
 public abstract class AbstractPerJob extends Abstract {
 
     /**
-     * Maps the jobs in the workflow to the various grid sites.
+     * Maps the jobs in the workflow to the various grid sites. If the site
+     * selector maps each job independently of the others, the jobs are
+     * mapped on the configured number of threads.
      *
      * @param workflow the workflow in a Graph form.
      * @param sites the list of <code>String</code> objects representing the
      *              execution sites that can be used.
      *
+     * @see #mapsJobsIndependently()
      */
     public void mapWorkflow(ADag workflow, List sites) {
+        List<Job> jobs = new ArrayList<Job>( workflow.size() );
         //iterate through the jobs in BFS
         for (Iterator it = workflow.iterator(); it.hasNext(); ) {
             GraphNode node = (GraphNode) it.next();
@@ -56,10 +61,33 @@ public abstract class AbstractPerJob extends Abstract {
                              LogManager.DEBUG_MESSAGE_LEVEL );
             }
             else{
-                mapJob( job, sites);
+                jobs.add( job );
             }
         }
 
+        if( this.mapsJobsIndependently() ){
+            mLogger.log( "Mapping " + jobs.size() + " jobs on " + mThreads + " threads",
+                         LogManager.DEBUG_MESSAGE_LEVEL );
+            this.forEach( jobs, job -> mapJob( job, sites ) );
+        }
+        else{
+            //the jobs are mapped in BFS order
+            for( Job job : jobs ){
+                mapJob( job, sites );
+            }
+        }
+    }
+
+    /**
+     * Returns whether the mapping of a job does not depend on the jobs mapped
+     * before it, and mapJob can be called for different jobs concurrently.
+     * The site selectors that return true are to keep any state they update
+     * in mapJob thread safe. The default implementation returns false.
+     *
+     * @return boolean
+     */
+    protected boolean mapsJobsIndependently(){
+        return false;
     }
 
     /**
@@ -0,0 +1,409 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.site;
+
+import edu.isi.pegasus.common.logging.LogManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long lived external site selector, that is passed the jobs to be mapped
+ * on its stdin and writes out its solutions on its stdout.
+ *
+ * Each request is the description of a job, as written in the temporary
+ * file passed to a site selector invoked per job, enclosed in the lines
+ * <pre>
+ *   request=ID
+ *   ...
+ *   end=ID
+ * </pre>
+ * The site selector answers each request with a single line on its stdout,
+ * consisting of the ID of the request followed by a whitespace and the
+ * solution, for example
+ * <pre>
+ *   42 SOLUTION:mysite:my.job.mgr/jobmanager-batch
+ * </pre>
+ * Any other lines on stdout are ignored, and the lines on stderr are logged.
+ * The solutions can be written out in any order.<p>
+ *
+ * The requests are written out in batches on a separate thread, with at most
+ * two batches outstanding, so that the site selector can work on a batch
+ * while the next one is being written out. If the site selector does not
+ * answer within the timeout, or exits, it is destroyed and the requests not
+ * answered are returned without a solution.
+ *
+ * @version $Revision$
+ */
+public class CoProcess {
+
+    /**
+     * The single argument the site selector is invoked with.
+     */
+    public static final String COPROCESS_ARGUMENT = "--coprocess";
+
+    /**
+     * The key of the line that starts a request.
+     */
+    public static final String REQUEST_KEY = "request";
+
+    /**
+     * The key of the line that ends a request.
+     */
+    public static final String END_KEY = "end";
+
+    /**
+     * Marks the end of the stdout of the site selector in the queue of lines
+     * read.
+     */
+    private static final String EOF = new String( "EOF" );
+
+    /**
+     * The command to launch the site selector.
+     */
+    private final String mCommand;
+
+    /**
+     * The environment of the site selector.
+     */
+    private final String[] mEnvironment;
+
+    /**
+     * The timeout in seconds to wait for a solution. A value of zero or less
+     * waits forever.
+     */
+    private final int mTimeout;
+
+    /**
+     * The number of requests written out together.
+     */
+    private final int mBatchSize;
+
+    /**
+     * The handle to the logger.
+     */
+    private final LogManager mLogger;
+
+    /**
+     * The lines read from the stdout of the site selector.
+     */
+    private final BlockingQueue<String> mStdout;
+
+    /**
+     * The process of the site selector.
+     */
+    private Process mProcess;
+
+    /**
+     * The stdin of the site selector.
+     */
+    private Writer mStdin;
+
+    /**
+     * The thread writing out the requests.
+     */
+    private ExecutorService mWriter;
+
+    /**
+     * The ID of the next request.
+     */
+    private long mNextID;
+
+    /**
+     * Boolean indicating whether the site selector has failed.
+     */
+    private volatile boolean mFailed;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param command     the path to the site selector.
+     * @param environment the environment variables as name=value, or null to
+     *                    inherit the environment.
+     * @param timeout     the timeout in seconds to wait for a solution.
+     * @param batchSize   the number of requests written out together.
+     * @param logger      the handle to the logger.
+     */
+    public CoProcess( String command, String[] environment, int timeout,
+                      int batchSize, LogManager logger ){
+        mCommand     = command;
+        mEnvironment = environment;
+        mTimeout     = timeout;
+        mBatchSize   = Math.max( 1, batchSize );
+        mLogger      = logger;
+        mStdout      = new LinkedBlockingQueue<String>();
+        mNextID      = 1;
+    }
+
+    /**
+     * Launches the site selector.
+     *
+     * @throws IOException if the site selector cannot be launched.
+     */
+    public void start() throws IOException{
+        mLogger.log( "Starting site selector co-process " + mCommand + " " + COPROCESS_ARGUMENT,
+                     LogManager.DEBUG_MESSAGE_LEVEL );
+        mProcess = Runtime.getRuntime().exec( mCommand + " " + COPROCESS_ARGUMENT, mEnvironment );
+        mStdin   = new BufferedWriter( new OutputStreamWriter( mProcess.getOutputStream() ), 65536 );
+        mWriter  = Executors.newSingleThreadExecutor( new Daemon( "site-selector-stdin" ) );
+        mFailed  = false;
+
+        final BufferedReader stdout = new BufferedReader( new InputStreamReader( mProcess.getInputStream() ) );
+        final BufferedReader stderr = new BufferedReader( new InputStreamReader( mProcess.getErrorStream() ) );
+        new Daemon( "site-selector-stdout" ).newThread( new Runnable(){
+            public void run(){
+                try{
+                    for( String line; ( line = stdout.readLine() ) != null; ){
+                        mStdout.add( line );
+                    }
+                }
+                catch( IOException e ){
+                    //the process was destroyed
+                }
+                finally{
+                    mStdout.add( EOF );
+                }
+            }
+        } ).start();
+        new Daemon( "site-selector-stderr" ).newThread( new Runnable(){
+            public void run(){
+                try{
+                    for( String line; ( line = stderr.readLine() ) != null; ){
+                        mLogger.log( "[Site Selector stderr] " + line,
+                                     LogManager.ERROR_MESSAGE_LEVEL );
+                    }
+                }
+                catch( IOException e ){
+                    //the process was destroyed
+                }
+            }
+        } ).start();
+    }
+
+    /**
+     * Returns whether the site selector is running and has not failed.
+     *
+     * @return boolean
+     */
+    public boolean isAlive(){
+        return mProcess != null && !mFailed;
+    }
+
+    /**
+     * Passes the requests to the site selector and collects the solutions.
+     *
+     * @param requests the descriptions of the jobs, as key=value lines.
+     *
+     * @return the solutions, in the order of the requests, starting with
+     *         SOLUTION: . The solution of a request is null, if the site
+     *         selector failed before answering it.
+     */
+    public String[] select( final List<String> requests ){
+        final int n = requests.size();
+        String[] solutions = new String[ n ];
+        if( !this.isAlive() ){
+            return solutions;
+        }
+
+        final long base = mNextID;
+        mNextID += n;
+        int sent = 0;
+        int received = 0;
+        while( received < n ){
+            //keep up to two batches outstanding
+            while( sent < n && sent - received < 2 * mBatchSize ){
+                final int start = sent;
+                final int end   = Math.min( n, sent + mBatchSize );
+                mWriter.execute( new Runnable(){
+                    public void run(){
+                        write( requests, base, start, end );
+                    }
+                });
+                sent = end;
+            }
+
+            String line;
+            try{
+                line = ( mTimeout > 0 ) ?
+                       mStdout.poll( mTimeout, TimeUnit.SECONDS ):
+                       mStdout.take();
+            }
+            catch( InterruptedException e ){
+                Thread.currentThread().interrupt();
+                this.fail( "Interrupted while waiting for the site selector co-process" );
+                break;
+            }
+            if( line == null ){
+                this.fail( "Site selector co-process timeout after " + mTimeout + " seconds" );
+                break;
+            }
+            if( line == EOF ){
+                this.fail( "Site selector co-process exited with " +
+                           ( n - received ) + " jobs not mapped" );
+                break;
+            }
+
+            int index = this.indexOf( line, base, n );
+            if( index < 0 || solutions[ index ] != null ){
+                mLogger.log( "[Site Selector stdout] " + line,
+                             LogManager.DEBUG_MESSAGE_LEVEL );
+                continue;
+            }
+            solutions[ index ] = line.substring( line.indexOf( ' ' ) + 1 ).trim();
+            received++;
+        }
+        return solutions;
+    }
+
+    /**
+     * Closes the stdin of the site selector, and waits for it to exit.
+     */
+    public void stop(){
+        if( mProcess == null ){
+            return;
+        }
+        mWriter.shutdown();
+        try{
+            //the pending writes fail if the site selector has failed
+            mWriter.awaitTermination( Math.max( mTimeout, 1 ), TimeUnit.SECONDS );
+            mStdin.close();
+        }
+        catch( IOException e ){
+            //site selector exited already
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+        }
+
+        try{
+            if( mTimeout > 0 && !mProcess.waitFor( mTimeout, TimeUnit.SECONDS ) ){
+                mLogger.log( "Site selector co-process did not exit after " + mTimeout + " seconds",
+                             LogManager.WARNING_MESSAGE_LEVEL );
+            }
+            else if( mTimeout <= 0 ){
+                mProcess.waitFor();
+            }
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+        }
+        mProcess.destroy();
+        mProcess = null;
+    }
+
+    /**
+     * Writes out a batch of requests to the stdin of the site selector.
+     *
+     * @param requests  the requests.
+     * @param base      the ID of the first request.
+     * @param start     the index of the first request in the batch.
+     * @param end       the index after the last request in the batch.
+     */
+    private void write( List<String> requests, long base, int start, int end ){
+        if( mFailed ){
+            return;
+        }
+        try{
+            for( int i = start; i < end; i++ ){
+                long id = base + i;
+                mStdin.write( REQUEST_KEY );
+                mStdin.write( '=' );
+                mStdin.write( Long.toString( id ) );
+                mStdin.write( '\n' );
+                mStdin.write( requests.get( i ) );
+                mStdin.write( END_KEY );
+                mStdin.write( '=' );
+                mStdin.write( Long.toString( id ) );
+                mStdin.write( '\n' );
+            }
+            mStdin.flush();
+        }
+        catch( IOException e ){
+            if( !mFailed ){
+                mLogger.log( "While writing to the site selector co-process: " + e.getMessage(),
+                             LogManager.ERROR_MESSAGE_LEVEL );
+            }
+            mFailed = true;
+        }
+    }
+
+    /**
+     * Returns the index of the request a line from the site selector answers.
+     *
+     * @param line  the line.
+     * @param base  the ID of the first request.
+     * @param n     the number of requests.
+     *
+     * @return the index, else -1 if the line does not answer a request.
+     */
+    private int indexOf( String line, long base, int n ){
+        int space = line.indexOf( ' ' );
+        if( space <= 0 ){
+            return -1;
+        }
+        long id;
+        try{
+            id = Long.parseLong( line.substring( 0, space ) );
+        }
+        catch( NumberFormatException e ){
+            return -1;
+        }
+        return ( id >= base && id < base + n ) ? (int)( id - base ) : -1;
+    }
+
+    /**
+     * Marks the site selector as failed, and destroys it, so that the
+     * blocked writes fail.
+     *
+     * @param message  the reason.
+     */
+    private void fail( String message ){
+        mLogger.log( message, LogManager.ERROR_MESSAGE_LEVEL );
+        mFailed = true;
+        mProcess.destroy();
+    }
+
+    /**
+     * Creates named daemon threads, so that a hung site selector does not
+     * keep the planner from exiting.
+     */
+    private static class Daemon implements ThreadFactory {
+
+        private final String mName;
+
+        public Daemon( String name ){
+            mName = name;
+        }
+
+        public Thread newThread( Runnable r ){
+            Thread t = new Thread( r, mName );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import edu.isi.pegasus.planner.classes.PegasusBag;
 import edu.isi.pegasus.planner.namespace.Pegasus;
 
 import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -142,9 +143,6 @@ public class Group extends Abstract {
      */
     public void mapWorkflow( ADag workflow, List sites) {
           Job job;
-          List l = null;
-
-          int i = 0;
           for(Iterator it = workflow.nodeIterator();it.hasNext(); ){
               GraphNode node = ( GraphNode )it.next();
               job = ( Job )node.getContent();
@@ -152,42 +150,55 @@ public class Group extends Abstract {
               insert(job);
           }
 
-          //traverse through the group map and send off the first job
-          //in each group to the internal site selector.
+          //traverse through the group map and collect the mapping of
+          //the first job in each group, and of each job in the default
+          //group, to be handed off to the internal site selector.
+          List<Runnable> mappings = new ArrayList<Runnable>();
           for(Iterator it = mGroupMap.entrySet().iterator();it.hasNext();){
               Map.Entry entry = (Map.Entry)it.next();
               boolean defaultGroup = entry.getKey().equals( mDefaultGroup );
               mLogger.log("[Group Selector]Mapping jobs in group " + entry.getKey(),
                           LogManager.DEBUG_MESSAGE_LEVEL);
 
-              l = (List)entry.getValue();
-              String msg = "\t{";
+              final List<Job> group = (List<Job>)entry.getValue();
+              StringBuilder msg = new StringBuilder( "\t{" );
               boolean first = true;
-              for(Iterator it1 = l.iterator();it1.hasNext();){
-                  msg += (first)? "" : ",";
-                  msg += ((Job)it1.next()).jobName ;
+              for( Job j : group ){
+                  msg.append( first ? "" : "," ).append( j.jobName );
                   first = false;
               }
-              msg += "}";
-              mLogger.log(msg,LogManager.DEBUG_MESSAGE_LEVEL);
-              //hand of the first job to the internal selector
-              job = (Job)l.get(0);
-              mSelector.mapJob( job, sites );
-
-              //traverse thru the remaining jobs in the group
-              for(Iterator it1 = l.iterator();it1.hasNext();){
-                  Job j = (Job)it1.next();
-                  if ( defaultGroup ){
-                      //each job in the group has to be
-                      //mapped individually
-                      mSelector.mapJob( j, sites);
-                  }
-                  else{
-                      //mapping same as the one for
-                      //for the first job in group
-                      j.setSiteHandle( job.getSiteHandle() );
+              msg.append( "}" );
+              mLogger.log( msg.toString(), LogManager.DEBUG_MESSAGE_LEVEL );
+
+              if ( defaultGroup ){
+                  //each job in the group has to be
+                  //mapped individually
+                  for( Job j : group ){
+                      mappings.add( () -> mSelector.mapJob( j, sites ) );
                   }
               }
+              else{
+                  //hand of the first job to the internal selector and
+                  //map the remaining jobs same as the first one
+                  mappings.add( () -> {
+                      Job head = group.get( 0 );
+                      mSelector.mapJob( head, sites );
+                      for( Job j : group ){
+                          j.setSiteHandle( head.getSiteHandle() );
+                      }
+                  } );
+              }
+          }
+
+          //the groups are mapped on the configured number of threads,
+          //if the internal selector maps the jobs independently
+          if( mSelector.mapsJobsIndependently() ){
+              this.forEach( mappings, mapping -> mapping.run() );
+          }
+          else{
+              for( Runnable mapping : mappings ){
+                  mapping.run();
+              }
           }
     }
 
@@ -35,7 +35,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -43,6 +45,8 @@ import java.util.Map;
 import java.util.StringTokenizer;
 import edu.isi.pegasus.planner.classes.ADag;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.namespace.Hints;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 
 /**
  * This is the class that implements a call-out to a site selector which
@@ -171,6 +175,14 @@ import edu.isi.pegasus.planner.classes.PegasusBag;
  * <code>pegasus.selector.site.timeout</code>. By default, a site selector
  * is given up upon after 60 s.<p>
  *
+ * Launching the site selector once per job is expensive for large
+ * workflows. If the property <code>pegasus.selector.site.coprocess</code>
+ * is set to true, the site selector is launched only once with the single
+ * argument <code>--coprocess</code>, and is passed the contents of the
+ * temporary file for each job on its stdin. The protocol is described in
+ * {@link CoProcess}. The jobs the co-process fails to answer within the
+ * timeout are mapped by invoking the site selector once per job.<p>
+ *
  * @author Karan Vahi
  * @author Jens Vöckler
  *
@@ -259,6 +271,16 @@ public class NonJavaCallout extends AbstractPerJob {
      */
     private int mKeepTMP;
 
+    /**
+     * Boolean indicating whether the site selector is run as a co-process.
+     */
+    private boolean mUseCoProcess;
+
+    /**
+     * The number of jobs written out together to the co-process.
+     */
+    private int mBatchSize;
+
     /**
      * The path to the site selector.
      */
@@ -296,6 +318,9 @@ public class NonJavaCallout extends AbstractPerJob {
         this.loadEnvironmentVariables();
         //get the value from the properties file.
         mKeepTMP = getKeepTMPValue(mProps.getSiteSelectorKeep());
+
+        mUseCoProcess = mProps.useSiteSelectorCoProcess();
+        mBatchSize = mProps.getSiteSelectorBatchSize();
     }
 
 
@@ -310,11 +335,111 @@ public class NonJavaCallout extends AbstractPerJob {
      */
     public void mapWorkflow( ADag workflow, List sites ){
         mAbstractDag = workflow;
-        //PM-747 no need for conversion as ADag now implements Graph interface
-        super.mapWorkflow( workflow , sites );
+        if( !mUseCoProcess ){
+            //PM-747 no need for conversion as ADag now implements Graph interface
+            super.mapWorkflow( workflow , sites );
+            return;
+        }
+
+        List<Job> jobs = new ArrayList<Job>( workflow.size() );
+        for ( Iterator it = workflow.iterator(); it.hasNext(); ) {
+            GraphNode node = (GraphNode) it.next();
+            Job job = (Job) node.getContent();
+            job.setLevel( node.getDepth() );
+
+            //only map a job for which execute site hint
+            //is not specified in the DAX
+            if( job.hints.containsKey( Hints.EXECUTION_SITE_KEY ) ){
+                mLogger.log( "Job " + job.getID() + " will be mapped based on hints profile to site " + job.hints.get( Hints.EXECUTION_SITE_KEY ),
+                             LogManager.DEBUG_MESSAGE_LEVEL );
+            }
+            else{
+                jobs.add( job );
+            }
+        }
+        this.mapJobs( jobs, sites );
+    }
+
+    /**
+     * Maps the jobs by passing them to a single site selector co-process.
+     * The jobs the co-process does not answer are mapped one at a time
+     * by {@link #mapJob(Job, List)}.
+     *
+     * @param jobs   the jobs to be mapped.
+     * @param sites  the list of <code>String</code> objects representing the
+     *               execution sites that can be used.
+     */
+    public void mapJobs( List<Job> jobs, List sites ){
+        if ( this.mSiteSelectorPath == null ) {
+            throw new RuntimeException( "Site Selector: Please set the path to the external site " +
+                                        "selector in the properties! " );
+        }
+        long start = System.currentTimeMillis();
+
+        //the job descriptions query the TC mapper, and are
+        //generated on the configured number of threads
+        String[] descriptions = new String[ jobs.size() ];
+        List<Integer> indices = new ArrayList<Integer>( jobs.size() );
+        for( int i = 0; i < descriptions.length; i++ ){
+            indices.add( i );
+        }
+        this.forEach( indices, i -> descriptions[i] = this.describe( jobs.get( i ), sites ) );
+
+        List<Job> requested = new ArrayList<Job>( jobs.size() );
+        List<String> requests = new ArrayList<String>( jobs.size() );
+        for( int i = 0; i < descriptions.length; i++ ){
+            Job job = jobs.get( i );
+            String request = descriptions[i];
+            if( request == null ){
+                job.setSiteHandle( null );
+            }
+            else{
+                requested.add( job );
+                requests.add( request );
+            }
+        }
+
+        CoProcess selector = new CoProcess( mSiteSelectorPath, this.getEnvArrFromMap(),
+                                            mTimeout, mBatchSize, mLogger );
+        String[] solutions;
+        try{
+            selector.start();
+            solutions = selector.select( requests );
+        }
+        catch( IOException e ){
+            mLogger.log( "Unable to start site selector co-process: " + e.getMessage(),
+                         LogManager.ERROR_MESSAGE_LEVEL );
+            solutions = new String[ requests.size() ];
+        }
+        finally{
+            selector.stop();
+        }
+
+        List<Job> fallback = new ArrayList<Job>();
+        for( int i = 0; i < solutions.length; i++ ){
+            Job job = requested.get( i );
+            if( solutions[i] == null || !parseStdOut( job, solutions[i] ) ){
+                fallback.add( job );
+            }
+        }
+        this.forEach( fallback, job -> this.mapJob( job, sites ) );
+        mLogger.log( "Site selector co-process mapped " + ( requested.size() - fallback.size() ) +
+                     " jobs, " + fallback.size() + " jobs mapped one at a time, in " +
+                     ( System.currentTimeMillis() - start ) + " ms",
+                     LogManager.INFO_MESSAGE_LEVEL );
     }
 
 
+    /**
+     * Returns true, as each job is mapped by a separate invocation of the
+     * external site selector.
+     *
+     * @return true
+     */
+    protected boolean mapsJobsIndependently(){
+        return true;
+    }
+
     /**
      * Returns a brief description of the site selection technique
      * implemented by this class.
@@ -510,80 +635,7 @@ public class NonJavaCallout extends AbstractPerJob {
 
         try {
             pw = new PrintWriter(new FileWriter(f));
-
-            // write out the version of the api
-            pw.println("version=" + this.VERSION);
-
-            // fw.write("\nvds_job_name=" + job.jobName);
-            pw.println("transformation=" + job.getCompleteTCName());
-            pw.println("derivation=" + job.getCompleteDVName());
-
-            // write out the job id and level as gotten from dax
-            pw.println("job.level=" + job.level);
-            pw.println("job.id=" + job.logicalId);
-
-            //at present Pegasus always asks to schedule compute jobs
-            //User should be able to specify through vdl or the pool config file.
-            //Karan Feb 10 3:00 PM PDT
-            //pw.println("vds_scheduler_preference=regular");
-
-            // write down the list of exec Pools and their corresponding grid
-            // ftp servers
-            if ( pools.isEmpty() ) {
-                // just write out saying illustrating no exec pool or grid ftp
-                // server passed to site selector. Upto the selector to do what
-                // it wants.
-
-                // FIXME: We need to define this part of the interface. If there
-                // are not site candidates, should it ever reach this part of
-                // the code? If now, insert assertion and abort here. If yes, we
-                // need to define this case! But just silently write the below
-                // will not site will with our set of site selectors.
-                pw.println("resource.id=NONE NONE");
-            } else {
-                String st, pool;
-                for ( Iterator i = pools.iterator(); i.hasNext(); ) {
-                    pool = (String) i.next();
-                    st = "resource.id=" + pool + " ";
-
-
-                    SiteCatalogEntry site = mSiteStore.lookup( pool );
-                    /*
-                    for( Iterator it = site.getHeadNodeFS().getScratch().getSharedDirectory().getFileServersIterator(); it.hasNext();){
-                        pw.println(st + ( (FileServer) it.next()).getURLPrefix() );
-                    }*/
-                    Directory d = site.getDirectory( Directory.TYPE.shared_scratch );
-                    if( d != null ){
-                        for( FileServer.OPERATION op : FileServer.OPERATION.values() ){
-                            for( Iterator it = d.getFileServersIterator(op); it.hasNext();){
-                                pw.println(st + ( (FileServer) it.next()).getURLPrefix() );
-                            }
-                        }
-                    }
-                } // for
-            }
-
-            // write the input files
-            for ( Iterator i=job.inputFiles.iterator(); i.hasNext(); )
-                pw.println("input.lfn=" + ((PegasusFile)i.next()).getLFN());
-
-                // write workflow related metadata
-            if ( this.mAbstractDag != null ) {
-                pw.println("wf.name=" + mAbstractDag.getLabel() );
-                pw.println("wf.index=" + mAbstractDag.getIndex() );
-                // pw.println("workflow.time=" + mAbstractDag.dagInfo.time??);
-                // FIXME: Try File.lastModified() on the DAX file
-
-                // should actually be picked up from the properties file
-                pw.println("wf.manager=" + "dagman");
-            }
-
-            // uninitialized values
-            pw.println("vo.name=" + "NONE");
-            pw.println("vo.group=" + "NONE");
-
-            // done
-            pw.flush();
+            this.writeJobDescription( pw, job, pools );
             pw.close();
 
         } catch ( IOException e ) {
@@ -601,6 +653,119 @@ public class NonJavaCallout extends AbstractPerJob {
         return f;
     }
 
+    /**
+     * Returns the job knowledge, as written into the temporary file, to be
+     * passed to the site selector co-process.
+     *
+     * @param job is a representation of the DAX compute job whose site of
+     * execution need to be determined.
+     *
+     * @param pools is a list of site candidates. The items of the list are
+     * <code>String</code> objects.
+     *
+     * @return the key value pairs, one per line. A value of <code>null</code>
+     * implies that an error occured.
+     */
+    private String describe( Job job, List pools ) {
+        StringWriter sw = new StringWriter( 512 );
+        try {
+            this.writeJobDescription( new PrintWriter( sw ), job, pools );
+        } catch ( Exception ex ) {
+            mLogger.log("Unknown error while describing job " + job.getID() + " :" +
+                        ex.getMessage(), LogManager.ERROR_MESSAGE_LEVEL);
+            return null;
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Writes out the job knowledge in the format laid out in the class's
+     * introductory documentation.
+     *
+     * @param pw the writer to write to.
+     *
+     * @param job is a representation of the DAX compute job whose site of
+     * execution need to be determined.
+     *
+     * @param pools is a list of site candidates. The items of the list are
+     * <code>String</code> objects.
+     */
+    private void writeJobDescription( PrintWriter pw, Job job, List pools ) {
+        // write out the version of the api
+        pw.println("version=" + this.VERSION);
+
+        // fw.write("\nvds_job_name=" + job.jobName);
+        pw.println("transformation=" + job.getCompleteTCName());
+        pw.println("derivation=" + job.getCompleteDVName());
+
+        // write out the job id and level as gotten from dax
+        pw.println("job.level=" + job.level);
+        pw.println("job.id=" + job.logicalId);
+
+        //at present Pegasus always asks to schedule compute jobs
+        //User should be able to specify through vdl or the pool config file.
+        //Karan Feb 10 3:00 PM PDT
+        //pw.println("vds_scheduler_preference=regular");
+
+        // write down the list of exec Pools and their corresponding grid
+        // ftp servers
+        if ( pools.isEmpty() ) {
+            // just write out saying illustrating no exec pool or grid ftp
+            // server passed to site selector. Upto the selector to do what
+            // it wants.
+
+            // FIXME: We need to define this part of the interface. If there
+            // are not site candidates, should it ever reach this part of
+            // the code? If now, insert assertion and abort here. If yes, we
+            // need to define this case! But just silently write the below
+            // will not site will with our set of site selectors.
+            pw.println("resource.id=NONE NONE");
+        } else {
+            String st, pool;
+            for ( Iterator i = pools.iterator(); i.hasNext(); ) {
+                pool = (String) i.next();
+                st = "resource.id=" + pool + " ";
+
+
+                SiteCatalogEntry site = mSiteStore.lookup( pool );
+                /*
+                for( Iterator it = site.getHeadNodeFS().getScratch().getSharedDirectory().getFileServersIterator(); it.hasNext();){
+                    pw.println(st + ( (FileServer) it.next()).getURLPrefix() );
+                }*/
+                Directory d = site.getDirectory( Directory.TYPE.shared_scratch );
+                if( d != null ){
+                    for( FileServer.OPERATION op : FileServer.OPERATION.values() ){
+                        for( Iterator it = d.getFileServersIterator(op); it.hasNext();){
+                            pw.println(st + ( (FileServer) it.next()).getURLPrefix() );
+                        }
+                    }
+                }
+            } // for
+        }
+
+        // write the input files
+        for ( Iterator i=job.inputFiles.iterator(); i.hasNext(); )
+            pw.println("input.lfn=" + ((PegasusFile)i.next()).getLFN());
+
+            // write workflow related metadata
+        if ( this.mAbstractDag != null ) {
+            pw.println("wf.name=" + mAbstractDag.getLabel() );
+            pw.println("wf.index=" + mAbstractDag.getIndex() );
+            // pw.println("workflow.time=" + mAbstractDag.dagInfo.time??);
+            // FIXME: Try File.lastModified() on the DAX file
+
+            // should actually be picked up from the properties file
+            pw.println("wf.manager=" + "dagman");
+        }
+
+        // uninitialized values
+        pw.println("vo.name=" + "NONE");
+        pw.println("vo.group=" + "NONE");
+
+        // done
+        pw.flush();
+    }
+
 
     /**
      * Extracts the chosen site from the site selector's answer. Parses
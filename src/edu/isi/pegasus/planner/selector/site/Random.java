@@ -24,6 +24,7 @@ import edu.isi.pegasus.common.logging.LogManager;
 
 
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A random site selector that maps to a job to a random pool, amongst the subset
@@ -35,7 +36,11 @@ import java.util.List;
 
 public class Random extends AbstractPerJob {
 
-
+    /**
+     * The seed for the random selection, or null if the selection is not
+     * to be repeatable.
+     */
+    private Long mSeed;
 
     /**
      * The default constructor. Should not be called. Call the overloaded one.
@@ -52,6 +57,25 @@ public class Random extends AbstractPerJob {
      */
     public void initialize( PegasusBag bag ){
         super.initialize( bag );
+        String seed = mProps.getSiteSelectorRandomSeed();
+        if( seed != null ){
+            try{
+                mSeed = Long.parseLong( seed.trim() );
+            }
+            catch( NumberFormatException e ){
+                throw new RuntimeException( "Invalid value for the random site selector seed " + seed, e );
+            }
+        }
+    }
+
+    /**
+     * Returns true, as each job is mapped to a random site independently of
+     * the other jobs.
+     *
+     * @return true
+     */
+    protected boolean mapsJobsIndependently(){
+        return true;
     }
 
     /**
@@ -72,7 +96,7 @@ public class Random extends AbstractPerJob {
             job.setSiteHandle( null );
         }
         else{
-            job.setSiteHandle(selectRandomSite(rsites));
+            job.setSiteHandle( selectRandomSite( job, rsites ) );
             StringBuffer message = new StringBuffer( );
             message.append( "[Random Selector] Mapped " ).append( job.getID() ).append( " to " ).append( job.getSiteHandle() );
             mLogger.log( message.toString(),
@@ -92,24 +116,22 @@ public class Random extends AbstractPerJob {
 
     /**
      * The random selection that selects randomly one of the records returned by
-     * the transformation catalog.
+     * the transformation catalog. If a seed is specified, the selection is
+     * seeded by the seed and the job ID, so that a job is mapped to the same
+     * site regardless of the order in which the jobs are mapped.
      *
+     * @param  job    the job being mapped.
      * @param  sites  List of <code>String</code>objects.
      *
      * @return String
      */
-    private String selectRandomSite(List sites) {
-        double randNo;
+    private String selectRandomSite( Job job, List sites ) {
         int noOfRecs = sites.size();
 
         //means we have to choose a random location between 0 and (noOfLocs -1)
-        randNo = Math.random() * noOfRecs;
-        int recSelected = new Double(randNo).intValue();
-        /*
-        String message = "Random Site selected is " + (recSelected + 1) +
-            " amongst " + noOfRecs + " possible";
-        mLogger.logMessage(message, 1, false);
-        */
+        int recSelected = ( mSeed == null ) ?
+                          ThreadLocalRandom.current().nextInt( noOfRecs ) :
+                          new java.util.Random( mSeed * 31 + job.getID().hashCode() ).nextInt( noOfRecs );
         return (String)sites.get(recSelected);
     }
 }
@@ -47,8 +47,15 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Iterator;
-import java.util.Comparator;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 import edu.isi.pegasus.planner.classes.Profile;
 
 
@@ -148,6 +155,24 @@ public class Algorithm {
      */
     private Map mSiteMap;
 
+    /**
+     * The sites in the order of the list of sites, indexed by the position
+     * of the site in the list.
+     */
+    private Site[] mSiteArray;
+
+    /**
+     * Map indexed by site name, containing the position of the site in
+     * the list of sites.
+     */
+    private Map<String,Integer> mSiteIndices;
+
+    /**
+     * The runtimes from the profiles of the TC entries, indexed by
+     * transformation, site and physical transformation.
+     */
+    private Map<String,Integer> mProfileRuntimes;
+
     /**
      * Handle to the TCMapper.
      */
@@ -195,6 +220,7 @@ public class Algorithm {
 //        mSiteHandle = ( PoolInfoProvider )bag.get( PegasusBag.SITE_CATALOG );
         mSiteStore = bag.getHandleToSiteStore();
         mAverageCommunicationCost = (this.AVERAGE_BANDWIDTH / this.AVERAGE_DATA_SIZE_BETWEEN_JOBS);
+        mProfileRuntimes = new ConcurrentHashMap<String,Integer>();
 
     }
 
@@ -222,6 +248,13 @@ public class Algorithm {
     /**
      * Schedules the workflow according to the HEFT algorithm.
      *
+     * The nodes are indexed in topological order, and the downward ranks,
+     * the runnable sites, the expected runtimes on them and the schedule are
+     * kept in arrays indexed by the node index. The runnable sites and the
+     * expected runtimes of the jobs are determined on the number of threads
+     * configured for the site selectors. The results are set in the
+     * <code>HeftBag</code> associated with each node at the end.
+     *
      * @param workflow  the workflow that has to be scheduled.
      * @param sites the list of candidate sites where the workflow can potentially
      *              execute.
@@ -232,112 +265,196 @@ public class Algorithm {
         mLabel = label;
         mWorkflow = workflow;
         populateSiteMap( sites );
-
-        //compute weighted execution times for each job
-        for( Iterator it = workflow.nodeIterator(); it.hasNext(); ){
-            GraphNode node = ( GraphNode )it.next();
-            Job job    = (Job)node.getContent();
-
-            //add the heft bag to a node
-            Float averageComputeTime = new Float( calculateAverageComputeTime( job ) );
-            HeftBag b = new HeftBag();
-            b.add( HeftBag.AVG_COMPUTE_TIME, averageComputeTime );
-            node.setBag( b );
-
-            mLogger.log( "Average Compute Time " + node.getID() + " is " + averageComputeTime,
-                         LogManager.DEBUG_MESSAGE_LEVEL );
-
+        boolean debug = mLogger.getLevel() >= LogManager.DEBUG_MESSAGE_LEVEL;
+
+        //index the nodes in the breadth first order, that is topological
+        List<GraphNode> nodes = new ArrayList<GraphNode>( workflow.size() );
+        Map<GraphNode,Integer> indices = new IdentityHashMap<GraphNode,Integer>( workflow.size() );
+        for( Iterator<GraphNode> it = workflow.iterator(); it.hasNext(); ){
+            GraphNode node = it.next();
+            indices.put( node, nodes.size() );
+            nodes.add( node );
         }
-
-        //add a dummy root
-        Bag bag;
-        GraphNode dummyRoot = new GraphNode( "dummy", "dummy" );
-        workflow.addRoot( dummyRoot );
-        bag = new HeftBag();
-        //downward rank for the root is set to 0
-        bag.add( HeftBag.DOWNWARD_RANK, new Float( 0 ) );
-        dummyRoot.setBag( bag );
-
-        //do a breadth first traversal and compute the downward ranks
-        Iterator it = workflow.iterator();
-        dummyRoot = ( GraphNode )it.next(); //we have the dummy root
-        Float drank;
-        //the dummy root has a downward rank of 0
-        dummyRoot.getBag().add( HeftBag.DOWNWARD_RANK, new Float( 0 ) );
-        //stores the nodes in sorted ascending order
-        List sortedNodes = new LinkedList();
-        while ( it.hasNext() ){
-            GraphNode node = ( GraphNode ) it.next();
-            drank = new Float( computeDownwardRank( node ) );
-            bag = node.getBag();
-            bag.add( HeftBag.DOWNWARD_RANK , drank );
-            sortedNodes.add( node );
-            mLogger.log( "Downward rank for node " + node.getID() + " is " + drank,
-                         LogManager.DEBUG_MESSAGE_LEVEL );
+        int n = nodes.size();
+        int[][] parents = new int[ n ][];
+        for( int i = 0; i < n; i++ ){
+            Collection<GraphNode> p = nodes.get( i ).getParents();
+            parents[i] = new int[ p.size() ];
+            int j = 0;
+            for( GraphNode parent : p ){
+                parents[i][j++] = indices.get( parent );
+            }
         }
 
-        //sort the node
-        Collections.sort( sortedNodes, new HeftGraphNodeComparator() );
-
+        //determine the runnable sites and the expected runtimes on them,
+        //and compute the weighted execution times for each job
+        int[][] runnableSites = new int[ n ][];
+        int[][] runtimes      = new int[ n ][];
+        float[] averageComputeTimes = new float[ n ];
+        this.forEachNode( n, i -> {
+            Job job = ( Job )nodes.get( i ).getContent();
+            List rsites = mTCMapper.getSiteList( job.getTXNamespace(),
+                                                 job.getTXName(),
+                                                 job.getTXVersion(),
+                                                 mSites );
+            //sanity check
+            if( rsites == null || rsites.isEmpty() ){
+                throw new RuntimeException( "No runnable site for job " + job.getName() );
+            }
+            runnableSites[i] = new int[ rsites.size() ];
+            runtimes[i]      = new int[ rsites.size() ];
+            for( int j = 0; j < runnableSites[i].length; j++ ){
+                String site = ( String )rsites.get( j );
+                runnableSites[i][j] = mSiteIndices.get( site );
+                runtimes[i][j] = this.getExpectedRuntime( job, site );
+            }
+            averageComputeTimes[i] = this.calculateAverageComputeTime( runnableSites[i], runtimes[i] );
+        } );
+
+        //compute the downward ranks in topological order. The roots have a
+        //dummy parent with a downward rank and compute time of 0
+        float[] downwardRanks = new float[ n ];
+        for( int i = 0; i < n; i++ ){
+            downwardRanks[i] = ( parents[i].length == 0 ) ?
+                               computeDownwardRank( 0, 0 ):
+                               0;
+            for( int p : parents[i] ){
+                float value = computeDownwardRank( downwardRanks[p], averageComputeTimes[p] );
+                if( value > downwardRanks[i] ){
+                    downwardRanks[i] = value;
+                }
+            }
+        }
 
-        //the start time and end time for the dummy root is 0
-        dummyRoot.getBag().add( HeftBag.ACTUAL_START_TIME, new Long( 0 ) );
-        dummyRoot.getBag().add( HeftBag.ACTUAL_FINISH_TIME, new Long( 0 ) );
+        //sort the nodes in ascending order of the downward ranks. The sort
+        //is stable, so that nodes with the same rank stay in topological order
+        Integer[] sortedNodes = new Integer[ n ];
+        for( int i = 0; i < n; i++ ){
+            sortedNodes[i] = i;
+        }
+        Arrays.sort( sortedNodes, ( i, j ) -> Float.compare( downwardRanks[i], downwardRanks[j] ) );
 
         //schedule out the sorted order of the nodes
-        for( it = sortedNodes.iterator(); it.hasNext(); ){
-            GraphNode current = (GraphNode) it.next();
-            bag           = current.getBag();
-            mLogger.log("Scheduling node " + current.getID(),
-                        LogManager.DEBUG_MESSAGE_LEVEL);
-
-            //figure out the sites where a job can run
-            Job job = (Job) current.getContent();
-            List runnableSites = mTCMapper.getSiteList( job.getTXNamespace(),
-                                                        job.getTXName(),
-                                                        job.getTXVersion(),
-                                                        mSites);
+        long[] startTimes  = new long[ n ];
+        long[] finishTimes = new long[ n ];
+        int[] scheduledSites = new int[ n ];
+        //the latest finish time of the parents of a node on each site
+        long[] siteReadyTimes = new long[ mSiteArray.length ];
+        for( int i : sortedNodes ){
+            //the ready time on a site is the maximum of the finish times
+            //of the parents on the site, and the finish times plus the
+            //communication cost of the parents on other sites. The
+            //dummy root finishes at 0 on no site.
+            long best = 0, secondBest = 0;
+            int bestSite = -1;
+            if( parents[i].length == 0 ){
+                best = (long)( 0 + mAverageCommunicationCost );
+            }
+            for( int p : parents[i] ){
+                int site = scheduledSites[p];
+                siteReadyTimes[ site ] = Math.max( siteReadyTimes[ site ], finishTimes[p] );
+                long current = (long)( finishTimes[p] + mAverageCommunicationCost );
+                if( current > best ){
+                    if( site != bestSite ){
+                        secondBest = best;
+                    }
+                    best = current;
+                    bestSite = site;
+                }
+                else if( current > secondBest && site != bestSite ){
+                    secondBest = current;
+                }
+            }
 
             //for each runnable site get the estimated finish time
             //and schedule job on site that minimizes the finish time
-            String site;
-            long est_result[ ];
-            long result[] = new long[ 2 ];
-            result [ 1 ] = this.MAXIMUM_FINISH_TIME;
-            for( Iterator rit = runnableSites.iterator(); rit.hasNext(); ){
-                site = (String) rit.next();
-                est_result = calculateEstimatedStartAndFinishTime( current, site );
-
-                //if existing EFT is greater than the returned EFT
-                //set existing EFT to the returned EFT
-                if( result[ 1 ] > est_result[ 1 ] ){
-                    result[ 0 ] = est_result[ 0 ];
-                    result[ 1 ] = est_result[ 1 ];
-                    //tentatively schedule the job for that site
-                    bag.add( HeftBag.SCHEDULED_SITE , site );
+            long start  = 0;
+            long finish = MAXIMUM_FINISH_TIME;
+            int selected = -1;
+            for( int j = 0; j < runnableSites[i].length; j++ ){
+                int site = runnableSites[i][j];
+                long readyTime = Math.max( siteReadyTimes[ site ],
+                                           ( site == bestSite ) ? secondBest : best );
+                //the estimated start time is the maximum
+                //of the ready time and available time of the site
+                //using non insertion based policy for time being
+                long est = mSiteArray[ site ].getAvailableTime( readyTime );
+                long eft = est + runtimes[i][j];
+                if( finish > eft ){
+                    start    = est;
+                    finish   = eft;
+                    selected = site;
                 }
             }
+            for( int p : parents[i] ){
+                siteReadyTimes[ scheduledSites[p] ] = 0;
+            }
 
-            //update the site selected with the job
-            bag.add( HeftBag.ACTUAL_START_TIME, new Long( result[ 0 ] ));
-            bag.add( HeftBag.ACTUAL_FINISH_TIME, new Long( result[ 1 ] ) );
-            site = (String)bag.get( HeftBag.SCHEDULED_SITE );
-            scheduleJob( site,
-                         result[ 0 ],
-                         result[ 1 ]  );
-
-            //log the information
-            StringBuffer sb = new StringBuffer();
-            sb.append( "Scheduled job " ).append( current.getID() ).
-               append( " to site " ).append( site ).
-               append( " with from  ").append( result[ 0 ] ).
-               append( " till " ).append( result[ 1 ] );
-
-            mLogger.log( sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL );
+            startTimes[i]     = start;
+            finishTimes[i]    = finish;
+            scheduledSites[i] = selected;
+            mSiteArray[ selected ].scheduleJob( start, finish );
         }//end of going through all the sorted nodes
 
-        //remove the dummy root
-        mWorkflow.remove( dummyRoot.getID() );
+        //update the heft bags of the nodes
+        for( int i = 0; i < n; i++ ){
+            GraphNode node = nodes.get( i );
+            HeftBag b = new HeftBag();
+            b.add( HeftBag.AVG_COMPUTE_TIME, averageComputeTimes[i] );
+            b.add( HeftBag.DOWNWARD_RANK, downwardRanks[i] );
+            b.add( HeftBag.ACTUAL_START_TIME, startTimes[i] );
+            b.add( HeftBag.ACTUAL_FINISH_TIME, finishTimes[i] );
+            b.add( HeftBag.SCHEDULED_SITE, mSiteArray[ scheduledSites[i] ].getName() );
+            node.setBag( b );
+
+            if( debug ){
+                StringBuffer sb = new StringBuffer();
+                sb.append( "Scheduled job " ).append( node.getID() ).
+                   append( " with average compute time " ).append( averageComputeTimes[i] ).
+                   append( " and downward rank " ).append( downwardRanks[i] ).
+                   append( " to site " ).append( mSiteArray[ scheduledSites[i] ].getName() ).
+                   append( " with from  ").append( startTimes[i] ).
+                   append( " till " ).append( finishTimes[i] );
+                mLogger.log( sb.toString(), LogManager.DEBUG_MESSAGE_LEVEL );
+            }
+        }
+    }
+
+    /**
+     * Performs an action for each of the node indices, on the number of
+     * threads configured for the site selectors.
+     *
+     * @param n       the number of nodes.
+     * @param action  the action to perform on a node index.
+     */
+    private void forEachNode( int n, IntConsumer action ){
+        int threads = mProps.getSiteSelectorThreads();
+        if( threads <= 1 || n <= 1 ){
+            for( int i = 0; i < n; i++ ){
+                action.accept( i );
+            }
+            return;
+        }
+
+        //a parallel stream started from within a fork join pool
+        //runs on the threads of that pool
+        ForkJoinPool pool = new ForkJoinPool( threads );
+        try{
+            pool.submit( () -> IntStream.range( 0, n ).parallel().forEach( action ) ).get();
+        }
+        catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while determining the runtimes of the jobs", e );
+        }
+        catch( ExecutionException e ){
+            Throwable cause = e.getCause();
+            throw ( cause instanceof RuntimeException ) ?
+                  ( RuntimeException )cause :
+                  new RuntimeException( cause );
+        }
+        finally{
+            pool.shutdown();
+        }
     }
 
 
@@ -368,67 +485,7 @@ public class Algorithm {
 
 
     /**
-     * Estimates the start and finish time of a job on a site.
-     *
-     * @param node   the node that is being scheduled
-     * @param site  the site for which the finish time is reqd.
-     *
-     * @return  long[0] the estimated start time.
-     *          long[1] the estimated finish time.
-     */
-    protected long[] calculateEstimatedStartAndFinishTime( GraphNode node, String site ){
-
-        Job job = ( Job )node.getContent();
-        long[] result = new long[2];
-
-        //calculate the ready time for the job
-        //that is time by which all the data needed
-        //by the job has reached the site.
-        long readyTime = 0;
-        for( Iterator it = node.getParents().iterator(); it.hasNext(); ){
-            GraphNode parent = ( GraphNode )it.next();
-            long current = 0;
-            //add the parent finish time to current
-            current += (Long)parent.getBag().get( HeftBag.ACTUAL_FINISH_TIME );
-
-            //if the parent was scheduled on another site
-            //add the average data transfer time.
-            if( !parent.getBag().get( HeftBag.SCHEDULED_SITE ).equals( site ) ){
-                current += this.mAverageCommunicationCost;
-            }
-
-            if ( current > readyTime ){
-                //ready time is maximum of all currents
-                readyTime = current;
-            }
-        }
-
-        //the estimated start time is the maximum
-        //of the ready time and available time of the site
-        //using non insertion based policy for time being
-        result[ 0 ] = getAvailableTime( site , readyTime );
-
-// do not need it, as available time is always >= ready time
-//        if ( result[ 0 ] < readyTime ){
-//            result[ 0 ] = readyTime;
-//       }
-
-
-        //the estimated finish time is est + compute time on site
-        List entries = mTCMapper.getTCList( job.getTXNamespace(),
-                                            job.getTXName(),
-                                            job.getTXVersion(),
-                                            site );
-        //pick the first one for time being
-        TransformationCatalogEntry entry = ( TransformationCatalogEntry ) entries.get( 0 );
-        result[ 1 ] = result[ 0 ] + getExpectedRuntime( job, entry );
-
-        //est now stores the estimated finish time
-        return result;
-    }
-
-    /**
-     * Computes the downward rank of a node.
+     * Computes the contribution of a parent to the downward rank of a node.
      *
      * The downward rank of node i is
      *                                   _    ___
@@ -437,76 +494,56 @@ public class Algorithm {
      *
      *
      *
-     * @param node   the <code>GraphNode</code> whose rank needs to be computed.
+     * @param parentRank         the downward rank of the parent.
+     * @param parentComputeTime  the average compute time of the parent.
      *
-     * @return computed rank.
-     */
-    protected float computeDownwardRank( GraphNode node ){
-        float result = 0;
-	//value needs to be computed for each parent separately
-        //float value = 0;
-
-        for( Iterator it = node.getParents().iterator(); it.hasNext(); ){
-            GraphNode p = (GraphNode)it.next();
-            Bag pbag    = p.getBag();
-	    float value = 0;
-            value += ( getFloatValue ( pbag.get( HeftBag.DOWNWARD_RANK ) )+
-                       getFloatValue ( pbag.get( HeftBag.AVG_COMPUTE_TIME ) ) +
-                       mAverageCommunicationCost
-                     );
-
-            if( value > result ){
-                 result = value;
-            }
-        }
-
-        return result;
+     * @return the contribution to the rank.
+     */
+    protected float computeDownwardRank( float parentRank, float parentComputeTime ){
+        float value = 0;
+        value += ( parentRank + parentComputeTime + mAverageCommunicationCost );
+        return value;
     }
 
     /**
-     * Returns the average compute time in seconds for a job.
+     * Returns the average compute time in seconds for a job, weighted by the
+     * number of nodes on the runnable sites.
      *
-     * @param job the job whose average compute time is to be computed.
+     * @param runnableSites  the indices of the sites where the job can run.
+     * @param runtimes       the expected runtimes of the job on the sites.
      *
      * @return the weighted compute time in seconds.
      */
-    protected float calculateAverageComputeTime( Job job ){
-        //get all the TC entries for the sites where a job can run
-        List runnableSites = mTCMapper.getSiteList( job.getTXNamespace(),
-                                                    job.getTXName(),
-                                                    job.getTXVersion(),
-                                                    mSites );
-
-        //sanity check
-        if( runnableSites == null || runnableSites.isEmpty() ){
-            throw new RuntimeException( "No runnable site for job " + job.getName() );
-        }
-
-        mLogger.log( "Runnables sites for job " + job.getName() + " " + runnableSites , LogManager.DEBUG_MESSAGE_LEVEL );
-
-        //for each runnable site get the expected runtime
-        String site;
+    protected float calculateAverageComputeTime( int[] runnableSites, int[] runtimes ){
         int total_nodes = 0;
         int total = 0;
-        for( Iterator it = runnableSites.iterator(); it.hasNext(); ){
-            site = ( String ) it.next();
-            int nodes = getFreeNodesForSite( site );
-            List entries = mTCMapper.getTCList( job.getTXNamespace(),
-                                                job.getTXName(),
-                                                job.getTXVersion(),
-                                                site );
-
-            //pick the first one for time being
-            TransformationCatalogEntry entry = ( TransformationCatalogEntry ) entries.get( 0 );
-            int jobRuntime = getExpectedRuntime( job, entry );
+        for( int j = 0; j < runnableSites.length; j++ ){
+            int nodes = mSiteArray[ runnableSites[j] ].getAvailableProcessors();
             total_nodes += nodes;
-            total += jobRuntime * nodes;
-
+            total += runtimes[j] * nodes;
         }
 
         return total/total_nodes;
     }
 
+    /**
+     * Returns the expected runtime of a job on a site, for the first TC entry
+     * for the job's transformation on the site.
+     *
+     * @param job   the job in the workflow.
+     * @param site  the site.
+     *
+     * @return the runtime in seconds.
+     */
+    protected int getExpectedRuntime( Job job, String site ){
+        List entries = mTCMapper.getTCList( job.getTXNamespace(),
+                                            job.getTXName(),
+                                            job.getTXVersion(),
+                                            site );
+        //pick the first one for time being
+        TransformationCatalogEntry entry = ( TransformationCatalogEntry ) entries.get( 0 );
+        return getExpectedRuntime( job, entry );
+    }
 
     /**
      * Return expected runtime.
@@ -545,20 +582,7 @@ public class Algorithm {
         }
 
         //else try and get the runtime from the profiles
-        List profiles = entry.getProfiles( Profile.VDS );
-        mLogger.log( "Fetching runtime information from profiles for job " + job.getName(),
-                     LogManager.DEBUG_MESSAGE_LEVEL  );
-        mLogger.log( "Profiles are " + profiles, LogManager.DEBUG_MESSAGE_LEVEL);
-        if( profiles != null ){
-            for (Iterator it = profiles.iterator(); it.hasNext(); ) {
-                Profile p = (Profile) it.next();
-
-                if (p.getProfileKey().equals(this.RUNTIME_PROFILE_KEY)) {
-                    result = Integer.parseInt(p.getProfileValue());
-                    break;
-                }
-            }
-        }
+        result = getExpectedRuntimeFromProfiles( entry );
         //if no information . try from profiles in dax
         if( result < 1 ){
             mLogger.log( "Fetching runtime information from profiles for job " + job.getName(),
@@ -584,6 +608,43 @@ public class Algorithm {
         return result;
     }
 
+    /**
+     * Returns the runtime from the profiles of a TC entry. The runtimes are
+     * cached per transformation, site and physical transformation, as the
+     * same entries are looked up for all the jobs of a transformation.
+     *
+     * @param entry  the TC entry
+     *
+     * @return the runtime in seconds, or -1 if not specified.
+     */
+    protected int getExpectedRuntimeFromProfiles( TransformationCatalogEntry entry ){
+        String key = entry.getLogicalTransformation() + "\u0000" + entry.getResourceId() +
+                     "\u0000" + entry.getPhysicalTransformation();
+        Integer cached = mProfileRuntimes.get( key );
+        if( cached != null ){
+            return cached;
+        }
+
+        int result = -1;
+        List profiles = entry.getProfiles( Profile.VDS );
+        mLogger.log( "Fetching runtime information from profiles for transformation " +
+                     entry.getLogicalTransformation() + " on site " + entry.getResourceId(),
+                     LogManager.DEBUG_MESSAGE_LEVEL  );
+        mLogger.log( "Profiles are " + profiles, LogManager.DEBUG_MESSAGE_LEVEL);
+        if( profiles != null ){
+            for (Iterator it = profiles.iterator(); it.hasNext(); ) {
+                Profile p = (Profile) it.next();
+
+                if (p.getProfileKey().equals(this.RUNTIME_PROFILE_KEY)) {
+                    result = Integer.parseInt(p.getProfileValue());
+                    break;
+                }
+            }
+        }
+        mProfileRuntimes.put( key, result );
+        return result;
+    }
+
     /**
      * Return expected runtime from the AC only if the process catalog is
      * initialized. Since Pegasus 3.0 release it always returns -1.
@@ -607,6 +668,8 @@ public class Algorithm {
     @SuppressWarnings({"unchecked", "unchecked"})
     protected void populateSiteMap( List sites ){
         mSiteMap = new HashMap();
+        mSiteArray = new Site[ sites.size() ];
+        mSiteIndices = new HashMap<String,Integer>();
 
         //for testing purposes
         mSites = sites;
@@ -648,7 +711,10 @@ public class Algorithm {
             
             mLogger.log( "Available nodes set for site " + site + " " + nodes, 
                                  LogManager.DEBUG_MESSAGE_LEVEL );
-            mSiteMap.put( site, new Site( site,  nodes ) );
+            Site s = new Site( site,  nodes );
+            mSiteIndices.put( site, mSiteIndices.size() );
+            mSiteArray[ mSiteIndices.get( site ) ] = s;
+            mSiteMap.put( site, s );
         }
 
     }
@@ -729,62 +795,4 @@ public class Algorithm {
     public String mapJob2ExecPool(Job job, List pools) {
         return "";
     }
-
-    /**
-     * A convenience method to get the intValue for the object passed.
-     *
-     * @param key   the key to be converted
-     *
-     * @return the floatt value if object an integer, else -1
-     */
-    private float getFloatValue( Object key ){
-
-        float k = -1;
-        //try{
-            k = ( (Float) key).floatValue();
-        //}
-        //catch( Exception e ){}
-
-        return k;
-
-    }
-}
-
-/**
- * Comparator for GraphNode objects that allow us to sort on basis of
- * the downward rank computed.
- */
-class HeftGraphNodeComparator implements Comparator{
-
-/**
-   * Implementation of the {@link java.lang.Comparable} interface.
-   * Compares this object with the specified object for order. Returns a
-   * negative integer, zero, or a positive integer as this object is
-   * less than, equal to, or greater than the specified object. The
-   * definitions are compared by their type, and by their short ids.
-   *
-   * @param o1 is the object to be compared
-   * @param o2 is the object to be compared with o1.
-   *
-   * @return a negative number, zero, or a positive number, if the
-   * object compared against is less than, equals or greater than
-   * this object.
-   * @exception ClassCastException if the specified object's type
-   * prevents it from being compared to this Object.
-   */
-  public int compare( Object o1, Object o2 )
-  {
-    if ( o1 instanceof GraphNode && o2 instanceof GraphNode ) {
-      GraphNode g1 = ( GraphNode ) o1;
-      GraphNode g2 = ( GraphNode ) o2;
-
-      float drank1 = (( Float )g1.getBag().get( HeftBag.DOWNWARD_RANK ));//.floatValue();
-      float drank2 = (( Float )g2.getBag().get( HeftBag.DOWNWARD_RANK ));//.floatValue();
-
-      return (int)(drank1 - drank2);
-    } else {
-      throw new ClassCastException( "object is not a GraphNode" );
-    }
-  }
-
 }
@@ -16,14 +16,16 @@
 
 package edu.isi.pegasus.planner.selector.site.heft;
 
-import java.util.List;
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.TreeMap;
 
 /**
  * A data class that models a site as a collection of processors.
  * The number of processors can only be specified in the constructor.
  *
+ * The processors are tracked by the times at which they become available,
+ * in a sorted multiset, so that the available time for a job is determined
+ * in time logarithmic in the number of processors.
+ *
  * @author Karan Vahi
  * @version $Revision$
  */
@@ -36,14 +38,17 @@ public class Site {
     private int mNumProcessors;
 
     /**
-     * A list of processors making up the site.
+     * The number of processors available from a time onwards, indexed by
+     * the time. Processors that have not been scheduled a job yet are
+     * available from time 0.
      */
-    private List mProcessors;
+    private TreeMap<Long,Integer> mAvailableTimes;
 
     /**
-     * The index to the processor that is to be used for scheduling a job.
+     * The available time of the processor that is to be used for scheduling
+     * a job, or null if no job is tentatively scheduled.
      */
-    private int mCurrentProcessorIndex;
+    private Long mCurrentProcessorTime;
 
     /**
      * The logical name assigned to the site.
@@ -56,87 +61,78 @@ public class Site {
      * @param name  the name to be assigned to the site.
      */
     public Site( String name ) {
-        mName          = name;
-        mNumProcessors = 0;
-        mProcessors    = new LinkedList();
-        mCurrentProcessorIndex = 0;
+        this( name, 0 );
     }
 
     /**
      * The overloaded constructor.
      *
      * @param name  the name to be assigned to the site.
-     * @param  num   the number of processors.
+     * @param num   the number of processors.
      */
     public Site( String name, int num ){
         mName          = name;
         mNumProcessors = num;
-        mCurrentProcessorIndex = -1;
-        mProcessors    = new LinkedList( );
+        mCurrentProcessorTime = null;
+        mAvailableTimes = new TreeMap<Long,Integer>();
+        if( num > 0 ){
+            mAvailableTimes.put( 0L, num );
+        }
     }
 
-
     /**
-     * Returns the earliest time the site is available for scheduling
-     * a job.  It is non insertion based scheduling policy.
+     * Returns the earliest time available on the site, after the time
+     * passed. The processor on which the job is tentatively scheduled is the
+     * one that became available last before the time passed, so that
+     * processors available earlier are kept for jobs that are ready earlier.
+     * If no processor is available by then, the one that becomes available
+     * first is picked.
      *
-     * @param start     the time at which to start the search.
+     * @param start  the time from which to determine the available time.
      *
-     * @return long
+     * @return the available time.
      */
     public long getAvailableTime( long start ){
-        int num = 0;
-
-        //each processor is checked for start of list
-        long result  = Long.MAX_VALUE;
-        long current;
-        ListIterator it;
-        for( it = mProcessors.listIterator( ); it.hasNext(); num++ ){
-            Processor p = ( Processor ) it.next();
-            current     = p.getAvailableTime( start );
-            if( current < result ){
-                //tentatively schedule a job on the processor
-                result = current;
-                mCurrentProcessorIndex = num;
-            }
-        }
-
-        if( result > start && num < mNumProcessors ){
-            //tentatively schedule a job to an unused processor as yet.
-            result = start;
-            mCurrentProcessorIndex = num++;
-            //if using a normal iterator
-            //could use addLast() method
-            it.add( new Processor () );
-
+        if( mAvailableTimes.isEmpty() ){
+            throw new RuntimeException( "Unable to scheduled to site" );
         }
 
-        //sanity check
-        if( result == Long.MAX_VALUE ){
-            throw new RuntimeException( "Unable to scheduled to site" );
+        Long time = mAvailableTimes.floorKey( start );
+        if( time == null ){
+            time = mAvailableTimes.firstKey();
         }
+        //tentatively schedule a job on the processor
+        mCurrentProcessorTime = time;
 
-        return result;
+        return ( time > start ) ? time : start;
     }
 
 
     /**
-     * Schedules a job to the site.
+     * Schedules a job to the site, on the processor picked by the last call
+     * to getAvailableTime.
      *
-     * @param start    the start time of the job.
-     * @param end      the end time for the job
+     * @param start  the start time of the job.
+     * @param end    the end time of the job
      */
     public void scheduleJob( long start, long end ){
         //sanity check
-        if(  mCurrentProcessorIndex == -1 ){
+        if(  mCurrentProcessorTime == null ){
             throw new RuntimeException( "Invalid State. The job needs to be tentatively scheduled first!" );
         }
 
-        Processor p = ( Processor )mProcessors.get( mCurrentProcessorIndex );
-        p.scheduleJob( start, end );
+        int count = mAvailableTimes.get( mCurrentProcessorTime );
+        if( count == 1 ){
+            mAvailableTimes.remove( mCurrentProcessorTime );
+        }
+        else{
+            mAvailableTimes.put( mCurrentProcessorTime, count - 1 );
+        }
+        Integer existing = mAvailableTimes.get( end );
+        mAvailableTimes.put( end, ( existing == null ) ? 1 : existing + 1 );
 
-        //reset the index
-        mCurrentProcessorIndex = -1;
+        //reset the tentative processor
+        mCurrentProcessorTime = null;
     }
 
 
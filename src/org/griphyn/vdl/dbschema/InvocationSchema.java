@@ -240,8 +240,51 @@ public class InvocationSchema extends DatabaseSchema
     saveInvocation( InvocationRecord ivr )
     throws SQLException
   {
-    // big outer try
     try {
+      insertInvocation( ivr );
+      m_dbdriver.commit();
+      return true;
+    } catch ( SQLException e ) {
+      rollbackInvocation( e );
+      throw e; // re-throw
+    }
+  }
+
+  /**
+   * Inserts a batch of invocation records into the database, within a
+   * single transaction. If one of the records cannot be inserted, none
+   * of the records in the batch are.
+   *
+   * @param records is the list of invocation records to store.
+   * @return the number of records inserted.
+   */
+  public int
+    saveInvocations( List<InvocationRecord> records )
+    throws SQLException
+  {
+    try {
+      for ( Iterator<InvocationRecord> i=records.iterator(); i.hasNext(); ) {
+	insertInvocation( i.next() );
+      }
+      m_dbdriver.commit();
+      return records.size();
+    } catch ( SQLException e ) {
+      rollbackInvocation( e );
+      throw e; // re-throw
+    }
+  }
+
+  /**
+   * Inserts an invocation record into the database, without committing
+   * the current transaction.
+   *
+   * @param ivr is the invocation record to store.
+   * @exception SQLException if something goes awry during insertion.
+   */
+  protected void
+    insertInvocation( InvocationRecord ivr )
+    throws SQLException
+  {
       long id = -1;
       try {
 	id = m_dbdriver.sequence1( "invocation_id_seq" );
@@ -328,11 +371,19 @@ public class InvocationSchema extends DatabaseSchema
 	  saveLFN( id, s );
 	}
       }
+  }
 
-      // done
-      m_dbdriver.commit();
-      return true;
-    } catch ( SQLException e ) {
+  /**
+   * Logs the complete exception chain of a failed insertion, and rolls
+   * back the current transaction.
+   *
+   * @param e is the exception thrown during insertion.
+   * @exception SQLException if the rollback fails.
+   */
+  private void
+    rollbackInvocation( SQLException e )
+    throws SQLException
+  {
       // show complete exception chain
       for ( SQLException walk=e; walk != null; walk=walk.getNextException() ) {
 	Logging.instance().log( "app", 0, walk.getSQLState() + ": " +
@@ -349,8 +400,6 @@ public class InvocationSchema extends DatabaseSchema
       m_dbdriver.cancelPreparedStatement( "stmt.save.ivr" );
       m_dbdriver.rollback();
       Logging.instance().log("xaction", 1, "FINAL rollback" );
-      throw e; // re-throw
-    }
   }
 
   /**
@@ -16,6 +16,7 @@ package org.griphyn.vdl.dbschema;
 
 import edu.isi.pegasus.planner.invocation.InvocationRecord;
 import java.sql.*;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Properties;
@@ -197,6 +198,24 @@ public class NXDInvSchema extends DatabaseSchema
 	throw new SQLException (e.getMessage());
     } 
   }
+
+  /**
+   * Inserts a batch of invocation records into the database, one
+   * resource per record.
+   *
+   * @param records is the list of invocation records to store.
+   * @return the number of records inserted.
+   */
+  public int
+    saveInvocations( List<InvocationRecord> records )
+      throws SQLException
+  {
+    int result = 0;
+    for ( Iterator<InvocationRecord> i=records.iterator(); i.hasNext(); ) {
+      if ( saveInvocation( i.next() ) ) ++result;
+    }
+    return result;
+  }
 }
 
 
@@ -18,6 +18,7 @@ import java.sql.SQLException;
 import edu.isi.pegasus.planner.invocation.InvocationRecord;
 import java.net.InetAddress;
 import java.util.Date;
+import java.util.List;
 
 /**
  * This interface defines a common base for all database schemas that
@@ -62,4 +63,14 @@ public interface PTC extends Catalog
   public boolean
     saveInvocation( InvocationRecord ivr )
     throws SQLException;
+
+  /**
+   * Inserts a batch of invocation records into the database.
+   *
+   * @param records is the list of invocation records to store.
+   * @return the number of records inserted.
+   */
+  public int
+    saveInvocations( List<InvocationRecord> records )
+    throws SQLException;
 }
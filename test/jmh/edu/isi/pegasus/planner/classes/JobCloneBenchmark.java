@@ -0,0 +1,114 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.classes;
+
+import edu.isi.pegasus.planner.namespace.Condor;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark for cloning a job with profiles in all the namespaces, as
+ * done when clustering jobs and creating the auxiliary jobs. Run with the gc
+ * profiler ( -prof gc ) to get the bytes allocated per clone, that are
+ * reported as gc.alloc.rate.norm .
+ *
+ * The modify parameter sets how many profiles are changed in the clone
+ * afterwards, as the clustering and transfer refiners do for some of the
+ * namespaces of the jobs they create.
+ *
+ * @version $Revision$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class JobCloneBenchmark {
+
+    /**
+     * The number of profiles per namespace of the job cloned.
+     */
+    @Param( { "4", "16" } )
+    public int profiles;
+
+    /**
+     * The number of profiles modified in the clone.
+     */
+    @Param( { "0", "1" } )
+    public int modify;
+
+    /**
+     * The job that is cloned.
+     */
+    private Job mJob;
+
+    /**
+     * Creates the job that is cloned.
+     */
+    @Setup
+    public void createJob(){
+        mJob = new Job();
+        mJob.setTransformation( "pegasus", "preprocess", "4.0" );
+        mJob.setLogicalID( "ID0000001" );
+        mJob.setName( "preprocess_ID0000001" );
+        for( int i = 0; i < profiles; i++ ){
+            //bypass the key checks of the namespaces
+            mJob.envVariables.construct( "VARIABLE_" + i, "value" + i );
+            mJob.condorVariables.construct( "+attribute_" + i, "value" + i );
+            mJob.vdsNS.construct( "key." + i, "value" + i );
+            mJob.globusRSL.construct( "key" + i, "value" + i );
+            mJob.dagmanVariables.construct( "KEY" + i, "value" + i );
+            mJob.addMetadata( "key" + i, "value" + i );
+        }
+        for( int i = 0; i < 4; i++ ){
+            PegasusFile input = new PegasusFile( "f.input." + i );
+            input.setLinkage( PegasusFile.LINKAGE.input );
+            mJob.addInputFile( input );
+            PegasusFile output = new PegasusFile( "f.output." + i );
+            output.setLinkage( PegasusFile.LINKAGE.output );
+            mJob.addOutputFile( output );
+        }
+    }
+
+    /**
+     * Clones the job, and modifies the clone.
+     *
+     * @return the clone
+     */
+    @Benchmark
+    public Job cloneJob(){
+        Job clone = (Job)mJob.clone();
+        if( modify > 0 ){
+            clone.condorVariables.construct( Condor.PRIORITY_KEY, "10" );
+            clone.vdsNS.construct( Pegasus.CLUSTER_ARGUMENTS, "-n 4" );
+        }
+        return clone;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.dax;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark for generating a DAX of fan in jobs, with ADAG and with the
+ * StreamingADAG. The time reported is for generating the whole DAX. Run with
+ * -prof gc to compare the allocation, or with a small heap to compare the
+ * memory required, for example
+ * <pre>
+ *   ant bench-java -Dbench.args="StreamingADAGBenchmark -p jobs=1000000 -jvmArgs -Xmx256m"
+ * </pre>
+ *
+ * @version $Revision$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class StreamingADAGBenchmark {
+
+    /**
+     * The writer to use, either adag or streaming.
+     */
+    @Param( { "adag", "streaming" } )
+    public String writer;
+
+    /**
+     * The number of jobs in the DAX.
+     */
+    @Param( { "100000" } )
+    public int jobs;
+
+    /**
+     * Whether to gzip compress the streamed DAX.
+     */
+    @Param( { "false" } )
+    public boolean gzip;
+
+    private java.io.File mDAXFile;
+
+    /**
+     * Creates the file to write the DAX to.
+     */
+    @Setup
+    public void setup() throws IOException {
+        mDAXFile = java.io.File.createTempFile( "benchmark", ".dax" );
+    }
+
+    /**
+     * Generates the DAX, with each job depending on the previous ten.
+     *
+     * @return the size of the DAX written out
+     */
+    @Benchmark
+    public long generate(){
+        ADAG adag = null;
+        StreamingADAG dax = null;
+        if( writer.equals( "adag" ) ){
+            adag = new ADAG( "benchmark" );
+        }
+        else{
+            dax = new StreamingADAG( mDAXFile.getAbsolutePath(), "benchmark", gzip );
+        }
+
+        for( int i = 0; i < jobs; i++ ){
+            Job job = new Job( "ID" + i, "pegasus", "preprocess", "4.0" );
+            job.addArgument( "-a preprocess -T60 -i " ).addArgument( new File( "f.b" + ( i - 1 ) ) );
+            job.uses( new File( "f.b" + ( i - 1 ) ), File.LINK.INPUT );
+            job.uses( new File( "f.b" + i ), File.LINK.OUTPUT );
+            if( adag != null ){
+                adag.addJob( job );
+            }
+            else{
+                dax.addJob( job );
+            }
+            for( int p = Math.max( 0, i - 10 ); p < i; p++ ){
+                if( adag != null ){
+                    adag.addDependency( "ID" + p, "ID" + i );
+                }
+                else{
+                    dax.addDependency( "ID" + p, "ID" + i );
+                }
+            }
+        }
+
+        if( adag != null ){
+            adag.writeToFile( mDAXFile.getAbsolutePath() );
+        }
+        else{
+            dax.close();
+        }
+        return mDAXFile.length();
+    }
+
+    /**
+     * Removes the DAX file.
+     */
+    @TearDown
+    public void tearDown(){
+        mDAXFile.delete();
+    }
+}
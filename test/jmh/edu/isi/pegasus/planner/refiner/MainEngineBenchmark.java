@@ -0,0 +1,165 @@
+/**
+ *  Copyright 2007-2017 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark for the refinement stages of the MainEngine and the
+ * CondorGenerator.
+ *
+ * Each measured invocation executes exactly one stage on a freshly parsed
+ * synthetic workflow, that has already been refined by all the preceding
+ * stages. The time reported is for that stage alone. Run with the gc profiler
+ * ( -prof gc ) to also get the bytes allocated per stage, that are reported as
+ * gc.alloc.rate.norm .
+ *
+ * The shape, size and clustering of the workflow can be overridden on the
+ * command line, for example
+ * <pre>
+ *   ant bench-java -Dbench.args="-p shape=montage -p size=100000 -p stage=transfer -prof gc"
+ * </pre>
+ *
+ * @version $Revision$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 10 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" } )
+public class MainEngineBenchmark {
+
+    /**
+     * The shape of the synthetic workflow.
+     */
+    @Param( { "diamond", "fanout", "pipeline", "montage" } )
+    public String shape;
+
+    /**
+     * The approximate number of compute jobs in the synthetic workflow.
+     */
+    @Param( { "1000" } )
+    public int size;
+
+    /**
+     * The clustering technique to apply in the clustering stage.
+     */
+    @Param( { "horizontal" } )
+    public String clustering;
+
+    /**
+     * The stage being measured.
+     */
+    @Param( { "data_reuse", "site_selection", "clustering", "transfer",
+              "create_dir", "cleanup", "reduce_edges", "code_generation" } )
+    public String stage;
+
+    /**
+     * The directory containing the generated workflow and catalogs.
+     */
+    private File mDirectory;
+
+    /**
+     * The properties file for the generated workflow.
+     */
+    private File mProperties;
+
+    /**
+     * Counter to generate a fresh submit directory for every iteration.
+     */
+    private int mIteration;
+
+    /**
+     * The pipeline set up for the current iteration.
+     */
+    private PlannerPipeline mPipeline;
+
+    /**
+     * Generates the synthetic workflow once per trial.
+     *
+     * @throws IOException
+     */
+    @Setup( Level.Trial )
+    public void generateWorkflow() throws IOException{
+        mDirectory  = Files.createTempDirectory( "pegasus-jmh-" + shape + "-" + size ).toFile();
+        mProperties = new SyntheticWorkflow( SyntheticWorkflow.SHAPE.valueOf( shape ), size ).writeTo( mDirectory );
+        mIteration  = 0;
+    }
+
+    /**
+     * Parses the workflow and runs all stages preceding the one measured.
+     */
+    @Setup( Level.Iteration )
+    public void prepareStage(){
+        mPipeline = new PlannerPipeline( mProperties,
+                                         new File( mDirectory, "workflow.dax" ),
+                                         new File( mDirectory, "submit" + mIteration++ ),
+                                         clustering );
+        mPipeline.advanceTo( PlannerPipeline.STAGE.valueOf( stage ) );
+    }
+
+    /**
+     * Executes the stage being measured.
+     *
+     * @return the result of the stage
+     */
+    @Benchmark
+    public Object runStage(){
+        return mPipeline.execute( PlannerPipeline.STAGE.valueOf( stage ) );
+    }
+
+    /**
+     * Drops the refined workflow, so that it does not count towards the heap
+     * of the next iteration.
+     */
+    @TearDown( Level.Iteration )
+    public void release(){
+        mPipeline = null;
+    }
+
+    /**
+     * Deletes the generated workflow and all the submit directories.
+     *
+     * @throws IOException
+     */
+    @TearDown( Level.Trial )
+    public void deleteWorkflow() throws IOException{
+        Files.walk( mDirectory.toPath() ).
+              sorted( Comparator.reverseOrder() ).
+              map( Path::toFile ).
+              forEach( File::delete );
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ *  Copyright 2007-2017 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.site.SiteFactory;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationFactory;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PlannerCache;
+import edu.isi.pegasus.planner.classes.PlannerOptions;
+import edu.isi.pegasus.planner.code.CodeGenerator;
+import edu.isi.pegasus.planner.code.CodeGeneratorFactory;
+import edu.isi.pegasus.planner.common.PegasusConfiguration;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.parser.DAXParserFactory;
+import edu.isi.pegasus.planner.parser.Parser;
+import edu.isi.pegasus.planner.parser.dax.Callback;
+import edu.isi.pegasus.planner.parser.dax.DAXParser;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Drives the refinement stages of MainEngine.runPlanner() one at a time, so
+ * that each stage can be timed on its own. The stages are executed in the
+ * same order and with the same arguments as the MainEngine.
+ *
+ * @version $Revision$
+ */
+public class PlannerPipeline {
+
+    /**
+     * The stages of the planner pipeline, in the order they are executed.
+     */
+    public static enum STAGE {
+        data_reuse,
+        site_selection,
+        clustering,
+        transfer,
+        create_dir,
+        cleanup,
+        reduce_edges,
+        code_generation
+    };
+
+    /**
+     * The bag of initialization objects.
+     */
+    private PegasusBag mBag;
+
+    /**
+     * The workflow being refined.
+     */
+    private ADag mDag;
+
+    /**
+     * The data reuse engine. Retained as the transfer engine requires the
+     * deleted jobs.
+     */
+    private DataReuseEngine mReuseEngine;
+
+    /**
+     * The bridge to the replica catalog.
+     */
+    private ReplicaCatalogBridge mRCBridge;
+
+    /**
+     * The worker package deployment engine.
+     */
+    private DeployWorkerPackage mDeployer;
+
+    /**
+     * The next stage to be executed.
+     */
+    private int mNextStage;
+
+    /**
+     * The overloaded constructor. Sets up the bag in the same manner as
+     * CPlanner and parses the DAX.
+     *
+     * @param properties   the properties file for the workflow
+     * @param dax          the DAX file
+     * @param submitDir    the submit directory
+     * @param clustering   the clustering technique to use, can be null
+     */
+    public PlannerPipeline( File properties, File dax, File submitDir, String clustering ){
+        PegasusProperties props = PegasusProperties.getInstance( properties.getAbsolutePath() );
+        LogManager logger = LogManagerFactory.loadSingletonInstance( props );
+        logger.setLevel( LogManager.FATAL_MESSAGE_LEVEL );
+
+        PlannerOptions options = new PlannerOptions();
+        options.setDAX( dax.getAbsolutePath() );
+        options.setExecutionSites( SyntheticWorkflow.COMPUTE_SITE );
+        options.setOutputSite( "local" );
+        options.setSubmitDirectory( submitDir );
+        options.setRandomDir( submitDir.getName() );
+        options.setClusteringTechnique( clustering );
+        submitDir.mkdirs();
+        try{
+            props.writeOutProperties( submitDir.getAbsolutePath() );
+        }
+        catch( java.io.IOException ioe ){
+            throw new RuntimeException( "Unable to write out properties to directory " + submitDir, ioe );
+        }
+
+        mBag = new PegasusBag();
+        mBag.add( PegasusBag.PEGASUS_PROPERTIES, props );
+        mBag.add( PegasusBag.PLANNER_OPTIONS, options );
+        mBag.add( PegasusBag.PEGASUS_LOGMANAGER, logger );
+
+        PegasusConfiguration configurator = new PegasusConfiguration( logger );
+        configurator.loadConfigurationPropertiesAndOptions( props, options );
+
+        List<String> sites = new LinkedList<String>();
+        sites.add( SyntheticWorkflow.COMPUTE_SITE );
+        SiteStore store = SiteFactory.loadSiteStore( sites, mBag );
+        store.setForPlannerUse( props, options );
+        configurator.updateSiteStoreAndOptions( store, options );
+        mBag.add( PegasusBag.SITE_STORE, store );
+        mBag.add( PegasusBag.TRANSFORMATION_CATALOG, TransformationFactory.loadInstance( mBag ) );
+
+        Parser p = (Parser)DAXParserFactory.loadDAXParser( mBag, "DAX2CDAG", dax.getAbsolutePath() );
+        Callback cb = ((DAXParser)p).getDAXCallback();
+        p.startParser( dax.getAbsolutePath() );
+        mDag = (ADag)cb.getConstructedObject();
+        mDag.generateFlowName();
+        mDag.setFlowTimestamp( options.getDateTime( props.useExtendedTimeStamp() ) );
+        mDag.generateFlowID();
+        mDag.setReleaseVersion();
+        mDag.setRootWorkflowUUID( mDag.getWorkflowUUID() );
+
+        mNextStage = 0;
+    }
+
+    /**
+     * Executes all stages up to, but not including the stage passed.
+     *
+     * @param stage  the stage to stop before
+     */
+    public void advanceTo( STAGE stage ){
+        while( mNextStage < stage.ordinal() ){
+            execute( STAGE.values()[ mNextStage ] );
+        }
+    }
+
+    /**
+     * Executes the next stage, that has to be the stage passed.
+     *
+     * @param stage  the stage to execute
+     *
+     * @return the result of the stage, to be consumed by the benchmark
+     */
+    public Object execute( STAGE stage ){
+        if( stage.ordinal() != mNextStage ){
+            throw new IllegalStateException( "Stage " + stage + " executed out of order. Next stage is " +
+                                             STAGE.values()[ mNextStage ] );
+        }
+        mNextStage++;
+
+        Object result = null;
+        switch( stage ){
+            case data_reuse:
+                mDag.setWorkflowRefinementStarted( true );
+                mRCBridge = new ReplicaCatalogBridge( mDag, mBag );
+                mDag.getWorkflowMetrics().lockTaskMetrics( true );
+                mReuseEngine = new DataReuseEngine( mDag, mBag );
+                mDag = mReuseEngine.reduceWorkflow( mDag, mRCBridge );
+                result = mDag;
+                break;
+
+            case site_selection:
+                InterPoolEngine ipEngine = new InterPoolEngine( mDag, mBag );
+                ipEngine.determineSites();
+                mBag = ipEngine.getPegasusBag();
+                mDeployer = DeployWorkerPackage.loadDeployWorkerPackage( mBag );
+                mDeployer.initialize( mDag );
+                result = mDag;
+                break;
+
+            case clustering:
+                if( mBag.getPlannerOptions().getClusteringTechnique() != null ){
+                    try{
+                        mDag = new NodeCollapser( mBag ).cluster( mDag );
+                    }
+                    catch( Exception e ){
+                        throw new RuntimeException( "Unable to cluster the workflow", e );
+                    }
+                }
+                result = mDag;
+                break;
+
+            case transfer:
+                PlannerCache plannerCache  = new PlannerCache();
+                plannerCache.initialize( mBag, mDag );
+                TransferEngine transferEngine = new TransferEngine( mDag,
+                                                                    mBag,
+                                                                    mReuseEngine.getDeletedJobs(),
+                                                                    mReuseEngine.getDeletedLeafJobs() );
+                transferEngine.addTransferNodes( mRCBridge, plannerCache );
+                mBag.add( PegasusBag.PLANNER_CACHE, plannerCache );
+                mRCBridge.closeConnection();
+                mDag = mDeployer.addSetupNodes( mDag );
+                result = mDag;
+                break;
+
+            case create_dir:
+                new CreateDirectory( mBag ).addCreateDirectoryNodes( mDag );
+                result = mDag;
+                break;
+
+            case cleanup:
+                mDag = new CleanupEngine( mBag ).addCleanupJobs( mDag );
+                mDag = new RemoveDirectory( mDag, mBag, mBag.getPlannerOptions().getSubmitDirectory() ).addRemoveDirectoryNodes( mDag );
+                result = mDag;
+                break;
+
+            case reduce_edges:
+                //always measure the reduction, with LCA if none is configured
+                String reducer = mBag.getPegasusProperties().getEdgeReducer();
+                result = MainEngine.reduceEdges( reducer.equalsIgnoreCase( "None" ) ? "LCA" : reducer,
+                                                 mDag );
+                break;
+
+            case code_generation:
+                try{
+                    CodeGenerator generator = CodeGeneratorFactory.loadInstance( mBag );
+                    Collection<File> files = generator.generateCode( mDag );
+                    result = files;
+                }
+                catch( Exception e ){
+                    throw new RuntimeException( "Unable to generate code", e );
+                }
+                finally{
+                    mBag.getHandleToPlannerCache().close();
+                }
+                break;
+
+            default:
+                throw new RuntimeException( "Unknown stage " + stage );
+        }
+        return result;
+    }
+
+    /**
+     * Returns the workflow in its current state of refinement.
+     *
+     * @return ADag
+     */
+    public ADag getWorkflow(){
+        return mDag;
+    }
+
+    /**
+     * Plans a synthetic workflow end to end, printing out the time taken by
+     * each stage. Useful to sanity check the pipeline outside of JMH.
+     *
+     * @param args  shape size [clustering]
+     *
+     * @throws Exception
+     */
+    public static void main( String[] args ) throws Exception{
+        SyntheticWorkflow.SHAPE shape = SyntheticWorkflow.SHAPE.valueOf( args.length > 0 ? args[0] : "diamond" );
+        int size = args.length > 1 ? Integer.parseInt( args[1] ) : 1000;
+        String clustering = args.length > 2 ? args[2] : null;
+
+        File dir = java.nio.file.Files.createTempDirectory( "pegasus-bench" ).toFile();
+        File props = new SyntheticWorkflow( shape, size ).writeTo( dir );
+        PlannerPipeline pipeline = new PlannerPipeline( props,
+                                                        new File( dir, "workflow.dax" ),
+                                                        new File( dir, "submit" ),
+                                                        clustering );
+        for( STAGE stage : STAGE.values() ){
+            long start = System.nanoTime();
+            pipeline.execute( stage );
+            System.out.println( stage + " " + ( System.nanoTime() - start ) / 1000000 + " ms" );
+        }
+        System.out.println( "Submit files written to " + dir );
+    }
+}
@@ -0,0 +1,416 @@
+/**
+ *  Copyright 2007-2017 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.planner.dax.ADAG;
+import edu.isi.pegasus.planner.dax.Executable;
+import edu.isi.pegasus.planner.dax.File;
+import edu.isi.pegasus.planner.dax.Job;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates synthetic workflows of a configurable size and shape, together
+ * with the site and transformation catalogs and the properties file required
+ * to plan them.
+ *
+ * The transformations and the raw inputs are embedded in the DAX itself, so
+ * that no transformation or replica catalog files are required.
+ *
+ * @version $Revision$
+ */
+public class SyntheticWorkflow {
+
+    /**
+     * The shapes of workflows that can be generated.
+     */
+    public static enum SHAPE {
+        /** one split job fanning out to N independent jobs */
+        fanout,
+        /** repeated diamonds, each with a preprocess, two findrange and an analyze job */
+        diamond,
+        /** independent pipelines of fixed length */
+        pipeline,
+        /** a montage like workflow with project, diff, background and add stages */
+        montage
+    };
+
+    /**
+     * The namespace for the synthetic transformations.
+     */
+    public static final String NAMESPACE = "pegasus";
+
+    /**
+     * The version for the synthetic transformations.
+     */
+    public static final String VERSION = "4.0";
+
+    /**
+     * The compute site in the generated site catalog.
+     */
+    public static final String COMPUTE_SITE = "condorpool";
+
+    /**
+     * The length of each chain in the pipeline shape.
+     */
+    public static final int PIPELINE_LENGTH = 8;
+
+    /**
+     * The shape of the workflow.
+     */
+    private final SHAPE mShape;
+
+    /**
+     * The approximate number of compute jobs in the workflow.
+     */
+    private final int mSize;
+
+    /**
+     * The abstract workflow being generated.
+     */
+    private ADAG mDAX;
+
+    /**
+     * The names of the executables already added to the workflow.
+     */
+    private Set<String> mExecutables;
+
+    /**
+     * Running counter used to generate job ids.
+     */
+    private int mJobCounter;
+
+    /**
+     * The overloaded constructor.
+     *
+     * @param shape  the shape of the workflow
+     * @param size   the approximate number of compute jobs
+     */
+    public SyntheticWorkflow( SHAPE shape, int size ){
+        mShape = shape;
+        mSize  = Math.max( size, 4 );
+    }
+
+    /**
+     * Writes out the DAX, the site catalog and the properties file into
+     * the directory passed.
+     *
+     * @param directory  the directory to write to
+     *
+     * @return the properties file written out
+     *
+     * @throws IOException
+     */
+    public java.io.File writeTo( java.io.File directory ) throws IOException{
+        directory.mkdirs();
+        java.io.File dax   = new java.io.File( directory, "workflow.dax" );
+        java.io.File sites = new java.io.File( directory, "sites.xml" );
+        java.io.File tc    = new java.io.File( directory, "tc.txt" );
+        java.io.File props = new java.io.File( directory, "pegasus.properties" );
+
+        this.generate().writeToFile( dax.getAbsolutePath() );
+        writeSiteCatalog( sites, directory );
+        //the transformations are all in the DAX
+        new FileWriter( tc ).close();
+
+        PrintWriter pw = new PrintWriter( new FileWriter( props ) );
+        pw.println( "pegasus.catalog.site.file=" + sites.getAbsolutePath() );
+        pw.println( "pegasus.catalog.transformation.file=" + tc.getAbsolutePath() );
+        pw.println( "pegasus.data.configuration=sharedfs" );
+        pw.println( "pegasus.dir.storage.deep=false" );
+        pw.println( "pegasus.condor.logs.symlink=false" );
+        pw.println( "pegasus.metrics.app=benchmark" );
+        pw.close();
+
+        return props;
+    }
+
+    /**
+     * Generates the abstract workflow.
+     *
+     * @return ADAG
+     */
+    public ADAG generate(){
+        mDAX = new ADAG( mShape + "-" + mSize );
+        mExecutables = new HashSet<String>();
+        mJobCounter = 0;
+
+        switch( mShape ){
+            case fanout:
+                generateFanout();
+                break;
+
+            case diamond:
+                generateDiamond();
+                break;
+
+            case pipeline:
+                generatePipeline();
+                break;
+
+            case montage:
+                generateMontage();
+                break;
+
+            default:
+                throw new RuntimeException( "Unsupported workflow shape " + mShape );
+        }
+        return mDAX;
+    }
+
+    /**
+     * One split job fanning out to N jobs.
+     */
+    private void generateFanout(){
+        File input = rawInput( "fanout.in" );
+        List<File> splits = new ArrayList<File>();
+        for( int i = 0; i < mSize - 1; i++ ){
+            splits.add( new File( "split_" + i ) );
+        }
+        Job split = addJob( "split", list( input ), splits );
+        for( int i = 0; i < splits.size(); i++ ){
+            Job worker = addJob( "process", list( splits.get(i) ), list( output( "process_" + i + ".out" ) ) );
+            mDAX.addDependency( split, worker );
+        }
+    }
+
+    /**
+     * Repeated diamonds of four jobs each.
+     */
+    private void generateDiamond(){
+        for( int d = 0; d < mSize / 4; d++ ){
+            File fa  = rawInput( "f.a." + d );
+            File fb1 = new File( "f.b1." + d );
+            File fb2 = new File( "f.b2." + d );
+            File fc1 = new File( "f.c1." + d );
+            File fc2 = new File( "f.c2." + d );
+            Job preprocess = addJob( "preprocess", list( fa ), list( fb1, fb2 ) );
+            Job left       = addJob( "findrange", list( fb1 ), list( fc1 ) );
+            Job right      = addJob( "findrange", list( fb2 ), list( fc2 ) );
+            Job analyze    = addJob( "analyze", list( fc1, fc2 ), list( output( "f.d." + d ) ) );
+            mDAX.addDependency( preprocess, left );
+            mDAX.addDependency( preprocess, right );
+            mDAX.addDependency( left, analyze );
+            mDAX.addDependency( right, analyze );
+        }
+    }
+
+    /**
+     * Independent chains of length PIPELINE_LENGTH.
+     */
+    private void generatePipeline(){
+        int chains = Math.max( 1, mSize / PIPELINE_LENGTH );
+        for( int c = 0; c < chains; c++ ){
+            File previous = rawInput( "pipeline_" + c + ".in" );
+            Job parent = null;
+            for( int s = 0; s < PIPELINE_LENGTH; s++ ){
+                File next = ( s == PIPELINE_LENGTH - 1 )?
+                                output( "pipeline_" + c + ".out" ):
+                                new File( "pipeline_" + c + "_" + s );
+                Job job = addJob( "stage" + s, list( previous ), list( next ) );
+                if( parent != null ){
+                    mDAX.addDependency( parent, job );
+                }
+                parent   = job;
+                previous = next;
+            }
+        }
+    }
+
+    /**
+     * A montage like workflow. Each image is projected, neighbouring projections
+     * are diffed, all the fits are concatenated into a background model that
+     * is applied to every projection before all images are added together.
+     */
+    private void generateMontage(){
+        int images = Math.max( 2, ( mSize - 5 ) / 3 );
+        List<Job> projections  = new ArrayList<Job>();
+        List<File> projected   = new ArrayList<File>();
+        for( int i = 0; i < images; i++ ){
+            File p = new File( "p_" + i + ".fits" );
+            projections.add( addJob( "mProjectPP", list( rawInput( "raw_" + i + ".fits" ) ), list( p ) ) );
+            projected.add( p );
+        }
+
+        List<File> fits = new ArrayList<File>();
+        List<Job> diffs = new ArrayList<Job>();
+        for( int i = 0; i < images - 1; i++ ){
+            File fit = new File( "fit_" + i + ".txt" );
+            Job diff = addJob( "mDiffFit", list( projected.get(i), projected.get(i+1) ), list( fit ) );
+            mDAX.addDependency( projections.get(i), diff );
+            mDAX.addDependency( projections.get(i+1), diff );
+            fits.add( fit );
+            diffs.add( diff );
+        }
+
+        File fitsTable = new File( "fits.tbl" );
+        Job concat = addJob( "mConcatFit", fits, list( fitsTable ) );
+        for( Job diff : diffs ){
+            mDAX.addDependency( diff, concat );
+        }
+
+        File corrections = new File( "corrections.tbl" );
+        Job model = addJob( "mBgModel", list( fitsTable ), list( corrections ) );
+        mDAX.addDependency( concat, model );
+
+        List<File> corrected = new ArrayList<File>();
+        List<Job> backgrounds = new ArrayList<Job>();
+        for( int i = 0; i < images; i++ ){
+            File c = new File( "c_" + i + ".fits" );
+            Job background = addJob( "mBackground", list( projected.get(i), corrections ), list( c ) );
+            mDAX.addDependency( projections.get(i), background );
+            mDAX.addDependency( model, background );
+            corrected.add( c );
+            backgrounds.add( background );
+        }
+
+        File imageTable = new File( "images.tbl" );
+        Job imgtbl = addJob( "mImgtbl", corrected, list( imageTable ) );
+        List<File> addInputs = new ArrayList<File>( corrected );
+        addInputs.add( imageTable );
+        File mosaic = new File( "mosaic.fits" );
+        Job add = addJob( "mAdd", addInputs, list( mosaic ) );
+        for( Job background : backgrounds ){
+            mDAX.addDependency( background, imgtbl );
+            mDAX.addDependency( background, add );
+        }
+        mDAX.addDependency( imgtbl, add );
+
+        Job shrink = addJob( "mJPEG", list( mosaic ), list( output( "mosaic.jpg" ) ) );
+        mDAX.addDependency( add, shrink );
+    }
+
+    /**
+     * Adds a job to the workflow, registering the executable if required.
+     *
+     * @param name     the transformation name
+     * @param inputs   the input files
+     * @param outputs  the output files
+     *
+     * @return the job added
+     */
+    private Job addJob( String name, List<File> inputs, List<File> outputs ){
+        if( mExecutables.add( name ) ){
+            Executable e = new Executable( NAMESPACE, name, VERSION );
+            e.setArchitecture( Executable.ARCH.X86_64 ).setOS( Executable.OS.LINUX );
+            e.setInstalled( true );
+            e.addPhysicalFile( "file:///usr/bin/pegasus-keg", COMPUTE_SITE );
+            mDAX.addExecutable( e );
+        }
+
+        Job j = new Job( String.format( "ID%07d", ++mJobCounter ), NAMESPACE, name, VERSION );
+        j.addArgument( "-a " + name + " -T 60 -i" );
+        for( File f : inputs ){
+            j.addArgument( " " ).addArgument( f );
+            j.uses( f, File.LINK.INPUT );
+        }
+        j.addArgument( " -o" );
+        for( File f : outputs ){
+            j.addArgument( " " ).addArgument( f );
+            j.uses( f, File.LINK.OUTPUT );
+        }
+        j.addProfile( "pegasus", "runtime", "60" );
+        mDAX.addJob( j );
+        return j;
+    }
+
+    /**
+     * Returns a raw input file with a replica on the local site.
+     *
+     * @param lfn  the lfn
+     *
+     * @return File
+     */
+    private File rawInput( String lfn ){
+        File f = new File( lfn );
+        f.addPhysicalFile( "gsiftp://storage.example.org/inputs/" + lfn, "local" );
+        mDAX.addFile( f );
+        return f;
+    }
+
+    /**
+     * Returns a workflow output file that is transferred and registered.
+     *
+     * @param lfn  the lfn
+     *
+     * @return File
+     */
+    private File output( String lfn ){
+        File f = new File( lfn );
+        f.setTransfer( File.TRANSFER.TRUE );
+        f.setRegister( false );
+        return f;
+    }
+
+    /**
+     * Convenience method to wrap files in a list.
+     *
+     * @param files  the files
+     *
+     * @return List
+     */
+    private static List<File> list( File... files ){
+        List<File> result = new ArrayList<File>( files.length );
+        for( File f : files ){
+            result.add( f );
+        }
+        return result;
+    }
+
+    /**
+     * Writes out a site catalog with a local site and a condor pool with a
+     * shared filesystem.
+     *
+     * @param sites     the file to write to
+     * @param directory the base directory for the scratch and storage
+     *
+     * @throws IOException
+     */
+    private void writeSiteCatalog( java.io.File sites, java.io.File directory ) throws IOException{
+        String base = directory.getAbsolutePath();
+        PrintWriter pw = new PrintWriter( new FileWriter( sites ) );
+        pw.println( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" );
+        pw.println( "<sitecatalog xmlns=\"http://pegasus.isi.edu/schema/sitecatalog\" " +
+                    "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" " +
+                    "xsi:schemaLocation=\"http://pegasus.isi.edu/schema/sitecatalog http://pegasus.isi.edu/schema/sc-4.0.xsd\" " +
+                    "version=\"4.0\">" );
+        pw.println( "  <site handle=\"local\" arch=\"x86_64\" os=\"LINUX\">" );
+        pw.println( "    <directory path=\"" + base + "/work\" type=\"shared-scratch\">" );
+        pw.println( "      <file-server operation=\"all\" url=\"file://" + base + "/work\"/>" );
+        pw.println( "    </directory>" );
+        pw.println( "    <directory path=\"" + base + "/outputs\" type=\"shared-storage\">" );
+        pw.println( "      <file-server operation=\"all\" url=\"file://" + base + "/outputs\"/>" );
+        pw.println( "    </directory>" );
+        pw.println( "  </site>" );
+        pw.println( "  <site handle=\"" + COMPUTE_SITE + "\" arch=\"x86_64\" os=\"LINUX\">" );
+        pw.println( "    <directory path=\"" + base + "/scratch\" type=\"shared-scratch\">" );
+        pw.println( "      <file-server operation=\"all\" url=\"file://" + base + "/scratch\"/>" );
+        pw.println( "    </directory>" );
+        pw.println( "    <profile namespace=\"pegasus\" key=\"style\">condor</profile>" );
+        pw.println( "    <profile namespace=\"condor\" key=\"universe\">vanilla</profile>" );
+        pw.println( "    <profile namespace=\"env\" key=\"PEGASUS_HOME\">/usr</profile>" );
+        pw.println( "    <profile namespace=\"pegasus\" key=\"clusters.size\">10</profile>" );
+        pw.println( "  </site>" );
+        pw.println( "</sitecatalog>" );
+        pw.close();
+    }
+}
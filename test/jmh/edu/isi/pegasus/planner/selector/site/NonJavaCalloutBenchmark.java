@@ -0,0 +1,167 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.site;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark for mapping jobs with the NonJavaCallout site selector,
+ * against a stub site selector shell script that maps every job to the same
+ * site. The time reported is for mapping all the jobs, so the throughput is
+ * the number of jobs divided by it.
+ *
+ * Launching the site selector once per job takes seconds per job, so only
+ * compare the two modes on a handful of jobs, for example
+ * <pre>
+ *   ant bench-java -Dbench.args="NonJavaCalloutBenchmark -p mode=perjob,coprocess -p jobs=10"
+ * </pre>
+ *
+ * @version $Revision$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class NonJavaCalloutBenchmark {
+
+    /**
+     * The stub site selector, that answers both in the co-process and in the
+     * per job mode.
+     */
+    public static final String STUB_SELECTOR =
+        "#!/bin/sh\n" +
+        "if [ \"$1\" = \"--coprocess\" ]; then\n" +
+        "  while read line; do\n" +
+        "    case \"$line\" in\n" +
+        "      end=*) echo \"${line#end=} SOLUTION:local\" ;;\n" +
+        "    esac\n" +
+        "  done\n" +
+        "else\n" +
+        "  echo \"SOLUTION:local\"\n" +
+        "fi\n";
+
+    /**
+     * How the site selector is invoked, either coprocess or perjob.
+     */
+    @Param( { "coprocess" } )
+    public String mode;
+
+    /**
+     * The number of jobs to map.
+     */
+    @Param( { "1000", "50000" } )
+    public int jobs;
+
+    /**
+     * The number of jobs written out together to the co-process.
+     */
+    @Param( { "64" } )
+    public int batch;
+
+    private File mScript;
+
+    private NonJavaCallout mSelector;
+
+    private List<Job> mJobs;
+
+    /**
+     * Writes out the stub site selector and creates the jobs.
+     */
+    @Setup
+    public void setup() throws IOException {
+        mScript = File.createTempFile( "selector", ".sh" );
+        Files.write( mScript.toPath(), STUB_SELECTOR.getBytes() );
+        mScript.setExecutable( true );
+
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty( "pegasus.selector.site.path", mScript.getAbsolutePath() );
+        props.setProperty( "pegasus.selector.site.coprocess", "true" );
+        props.setProperty( "pegasus.selector.site.coprocess.batch", Integer.toString( batch ) );
+        LogManager logger = LogManagerFactory.loadSingletonInstance();
+        logger.setLevel( LogManager.WARNING_MESSAGE_LEVEL );
+        logger.logEventStart( "benchmark.selector.site", "mode", mode );
+
+        PegasusBag bag = new PegasusBag();
+        bag.add( PegasusBag.PEGASUS_PROPERTIES, props );
+        bag.add( PegasusBag.PEGASUS_LOGMANAGER, logger );
+        mSelector = new NonJavaCallout();
+        mSelector.initialize( bag );
+
+        mJobs = new ArrayList<Job>( jobs );
+        for( int i = 0; i < jobs; i++ ){
+            Job job = new Job();
+            job.setTransformation( "pegasus", "preprocess", "4.0" );
+            job.setLogicalID( "ID" + i );
+            job.setName( "preprocess_ID" + i );
+            mJobs.add( job );
+        }
+    }
+
+    /**
+     * Maps all the jobs.
+     *
+     * @return the site of the last job
+     */
+    @Benchmark
+    public String mapJobs(){
+        List<String> sites = new LinkedList<String>();
+        if( mode.equals( "perjob" ) ){
+            for( Job job : mJobs ){
+                mSelector.mapJob( job, sites );
+            }
+        }
+        else{
+            mSelector.mapJobs( mJobs, sites );
+        }
+        return mJobs.get( jobs - 1 ).getSiteHandle();
+    }
+
+    /**
+     * Removes the stub site selector.
+     */
+    @TearDown
+    public void tearDown(){
+        LogManagerFactory.loadSingletonInstance().logEventCompletion();
+        mScript.delete();
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.aws.batch.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import software.amazon.awssdk.services.batch.BatchClient;
+import software.amazon.awssdk.services.batch.model.ClientException;
+import software.amazon.awssdk.services.batch.model.DescribeJobsRequest;
+import software.amazon.awssdk.services.batch.model.DescribeJobsResponse;
+import software.amazon.awssdk.services.batch.model.JobDetail;
+import software.amazon.awssdk.services.batch.model.JobStatus;
+import software.amazon.awssdk.services.batch.model.JobSummary;
+import software.amazon.awssdk.services.batch.model.ListJobsRequest;
+import software.amazon.awssdk.services.batch.model.ListJobsResponse;
+import software.amazon.awssdk.services.batch.model.SubmitJobRequest;
+import software.amazon.awssdk.services.batch.model.SubmitJobResponse;
+
+/**
+ * A local stand in for AWS Batch, that enforces the limits of the AWS Batch
+ * API. Each job moves through the states SUBMITTED, RUNNABLE and RUNNING, one
+ * state every time the succeeded jobs are listed, and then either succeeds,
+ * or fails if its name contains "fail".
+ *
+ * @version $Revision$
+ */
+public class StubBatchClient implements BatchClient {
+
+    /**
+     * The default page size of list jobs.
+     */
+    public static final int DEFAULT_MAX_RESULTS = 100;
+
+    /**
+     * The states a job goes through before it is done.
+     */
+    private static final JobStatus[] STATES = { JobStatus.SUBMITTED, JobStatus.RUNNABLE, JobStatus.RUNNING };
+
+    /**
+     * The jobs indexed by their aws id, in submission order.
+     */
+    private final Map<String,StubJob> mJobs;
+
+    /**
+     * The number of calls to list jobs, that requested a page other than
+     * the first one.
+     */
+    private final AtomicInteger mPagedListCalls;
+
+    /**
+     * The number of calls to describe jobs.
+     */
+    private final AtomicInteger mDescribeCalls;
+
+    /**
+     * The largest number of jobs requested in a describe jobs call.
+     */
+    private int mMaxDescribeSize;
+
+    /**
+     * Whether submissions should fail.
+     */
+    private boolean mFailSubmissions;
+
+    public StubBatchClient(){
+        mJobs = new LinkedHashMap<String,StubJob>();
+        mPagedListCalls = new AtomicInteger( 0 );
+        mDescribeCalls  = new AtomicInteger( 0 );
+    }
+
+    /**
+     * Makes all job submissions fail.
+     */
+    public void failSubmissions(){
+        mFailSubmissions = true;
+    }
+
+    public SubmitJobResponse submitJob( SubmitJobRequest request ){
+        if( mFailSubmissions ){
+            throw ClientException.builder().message( "Submission failed for " + request.jobName() ).build();
+        }
+        String id = "aws-" + request.jobName();
+        synchronized( mJobs ){
+            mJobs.put( id, new StubJob( id, request.jobName() ) );
+        }
+        return SubmitJobResponse.builder().jobId( id ).jobName( request.jobName() ).build();
+    }
+
+    public ListJobsResponse listJobs( ListJobsRequest request ){
+        if( request.nextToken() == null && JobStatus.SUCCEEDED.toString().equals( request.jobStatus() ) ){
+            tick();
+        }
+        else if( request.nextToken() != null ){
+            mPagedListCalls.incrementAndGet();
+        }
+        int maxResults = ( request.maxResults() == null ) ? DEFAULT_MAX_RESULTS : request.maxResults();
+        int start = ( request.nextToken() == null ) ? 0 : Integer.parseInt( request.nextToken() );
+
+        List<JobSummary> matches = new ArrayList<JobSummary>();
+        synchronized( mJobs ){
+            for( StubJob job : mJobs.values() ){
+                if( job.status().toString().equals( request.jobStatus() ) ){
+                    matches.add( JobSummary.builder().jobId( job.mID ).jobName( job.mName ).build() );
+                }
+            }
+        }
+        int end = Math.min( matches.size(), start + maxResults );
+        return ListJobsResponse.builder().
+                        jobSummaryList( matches.subList( Math.min( start, end ), end ) ).
+                        nextToken( end < matches.size() ? Integer.toString( end ) : null ).
+                    build();
+    }
+
+    public DescribeJobsResponse describeJobs( DescribeJobsRequest request ){
+        mDescribeCalls.incrementAndGet();
+        synchronized( mJobs ){
+            mMaxDescribeSize = Math.max( mMaxDescribeSize, request.jobs().size() );
+            if( request.jobs().size() > Synch.MAX_DESCRIBE_JOBS ){
+                throw ClientException.builder().message( "Too many jobs " + request.jobs().size() ).build();
+            }
+            List<JobDetail> details = new LinkedList<JobDetail>();
+            for( String id : request.jobs() ){
+                StubJob job = mJobs.get( id );
+                if( job != null ){
+                    details.add( JobDetail.builder().jobId( job.mID ).jobName( job.mName ).status( job.status() ).build() );
+                }
+            }
+            return DescribeJobsResponse.builder().jobs( details ).build();
+        }
+    }
+
+    public void close(){
+    }
+
+    /**
+     * Returns the number of list jobs calls for pages other than the first.
+     *
+     * @return int
+     */
+    public int getPagedListCalls(){
+        return mPagedListCalls.get();
+    }
+
+    /**
+     * Returns the number of describe jobs calls.
+     *
+     * @return int
+     */
+    public int getDescribeCalls(){
+        return mDescribeCalls.get();
+    }
+
+    /**
+     * Returns the largest number of jobs requested in a describe jobs call.
+     *
+     * @return int
+     */
+    public int getMaxDescribeSize(){
+        synchronized( mJobs ){
+            return mMaxDescribeSize;
+        }
+    }
+
+    /**
+     * Moves all the jobs to their next state.
+     */
+    private void tick(){
+        synchronized( mJobs ){
+            for( StubJob job : mJobs.values() ){
+                job.mTicks++;
+            }
+        }
+    }
+
+    /**
+     * A job submitted to the stub.
+     */
+    private static class StubJob{
+
+        private final String mID;
+
+        private final String mName;
+
+        private int mTicks;
+
+        public StubJob( String id, String name ){
+            mID   = id;
+            mName = name;
+        }
+
+        public JobStatus status(){
+            if( mTicks < STATES.length ){
+                return STATES[ mTicks ];
+            }
+            return mName.contains( "fail" ) ? JobStatus.FAILED : JobStatus.SUCCEEDED;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.aws.batch.impl;
+
+import edu.isi.pegasus.aws.batch.classes.AWSJob;
+import edu.isi.pegasus.aws.batch.classes.Tuple;
+import edu.isi.pegasus.aws.batch.common.AWSJobstateWriter;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class to test the submission and monitoring of jobs in Synch, against
+ * a stub of AWS Batch.
+ *
+ * @version $Revision$
+ */
+public class SynchTest {
+
+    /**
+     * The prefix used for the tests.
+     */
+    private static final String PREFIX = "synch-test";
+
+    private StubBatchClient mClient;
+
+    private AtomicInteger mLogsRetrieved;
+
+    private Synch mSynch;
+
+    @Before
+    public void setUp() throws Exception {
+        mClient = new StubBatchClient();
+        mLogsRetrieved = new AtomicInteger( 0 );
+        mSynch = new Synch(){
+            protected Tuple<File,File> retrieveLogs( AWSJob j ){
+                mLogsRetrieved.incrementAndGet();
+                return null;
+            }
+        };
+        Properties props = new Properties();
+        props.setProperty( Synch.AWS_PROPERTY_PREFIX + ".region", "us-west-2" );
+        props.setProperty( Synch.AWS_PROPERTY_PREFIX + ".account", "000000000000" );
+        props.setProperty( Synch.AWS_BATCH_PROPERTY_PREFIX + ".prefix", PREFIX );
+        props.setProperty( Synch.AWS_BATCH_PROPERTY_PREFIX + ".submit.threads", "4" );
+        mSynch.initialze( props, Level.WARN, new EnumMap<Synch.BATCH_ENTITY_TYPE,String>( Synch.BATCH_ENTITY_TYPE.class ), mClient );
+        mSynch.setSleepTimes( 5, 50 );
+    }
+
+    @Test
+    public void testThousandsOfJobs() {
+        List<AWSJob> jobs = this.run( 2000, 10 );
+        assertEquals( Synch.TASK_FAILURE_EXITCODE, mSynch.awaitTermination() );
+
+        for( AWSJob job : jobs ){
+            AWSJob.JOBSTATE expected = job.getID().contains( "fail" ) ?
+                                       AWSJob.JOBSTATE.failed:
+                                       AWSJob.JOBSTATE.succeeded;
+            assertEquals( job.getID(), expected, job.getJobState() );
+        }
+        assertEquals( jobs.size(), mLogsRetrieved.get() );
+        assertTrue( "list jobs was not paged", mClient.getPagedListCalls() > 0 );
+        assertTrue( mClient.getDescribeCalls() > 0 );
+        assertTrue( mClient.getMaxDescribeSize() <= Synch.MAX_DESCRIBE_JOBS );
+    }
+
+    @Test
+    public void testAllJobsSucceed() {
+        List<AWSJob> jobs = this.run( 50, 0 );
+        assertEquals( 0, mSynch.awaitTermination() );
+        for( AWSJob job : jobs ){
+            assertEquals( AWSJob.JOBSTATE.succeeded, job.getJobState() );
+        }
+    }
+
+    @Test
+    public void testSubmissionFailure() {
+        mClient.failSubmissions();
+        this.run( 10, 0 );
+        assertEquals( Synch.NON_TASK_FAILURE_EXITCODE, mSynch.awaitTermination() );
+    }
+
+    @After
+    public void tearDown() {
+        new File( PREFIX + AWSJobstateWriter.JOBSTATE_LOG_FILENAME ).delete();
+    }
+
+    /**
+     * Starts the monitoring, submits the jobs and signals the monitoring
+     * thread to exit after they complete.
+     *
+     * @param count      the number of jobs to submit
+     * @param failEvery  every nth job fails, 0 if none should
+     *
+     * @return the jobs submitted
+     */
+    private List<AWSJob> run( int count, int failEvery ){
+        List<AWSJob> jobs = new LinkedList<AWSJob>();
+        mSynch.monitor();
+        for( int i = 1; i <= count; i++ ){
+            AWSJob j = new AWSJob();
+            j.setID( ( failEvery > 0 && i % failEvery == 0 ) ? "fail-job" + i : "job" + i );
+            j.setCommand( "myjob.sh", "60" );
+            mSynch.submit( j );
+            jobs.add( j );
+        }
+        mSynch.signalToExitAfterJobsComplete();
+        return jobs;
+    }
+}
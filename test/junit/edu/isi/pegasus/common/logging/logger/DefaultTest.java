@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.common.logging.logger;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.format.Simple;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Properties;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the level guarded and parameterized logging of the Default
+ * logger, and for its asynchronous writer.
+ *
+ * @version $Revision$
+ */
+public class DefaultTest {
+
+    @Test
+    public void testFormat() {
+        assertEquals( "job ID1 on isi", LogManager.format( "job {} on {}", "ID1", "isi" ) );
+        assertEquals( "job ID1 on {}", LogManager.format( "job {} on {}", "ID1" ) );
+        assertEquals( "job ID1", LogManager.format( "job {}", "ID1", "isi" ) );
+        assertEquals( "size null", LogManager.format( "size {}", (Object)null ) );
+        assertEquals( "no placeholders", LogManager.format( "no placeholders" ) );
+    }
+
+    @Test
+    public void testLevelGuard() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Default logger = this.create( out, new Properties() );
+        logger.setLevel( LogManager.INFO_MESSAGE_LEVEL );
+        assertTrue( logger.isLoggable( LogManager.INFO_MESSAGE_LEVEL ) );
+        assertFalse( logger.isLoggable( LogManager.DEBUG_MESSAGE_LEVEL ) );
+
+        logger.log( () -> { fail( "debug message built at INFO level" ); return null; },
+                    LogManager.DEBUG_MESSAGE_LEVEL );
+        logger.log( "Setting up site mapping for job {}", LogManager.DEBUG_MESSAGE_LEVEL, "ID1" );
+        logger.log( "Mapped job {} to {}", LogManager.INFO_MESSAGE_LEVEL, "ID1", "isi" );
+        logger.log( () -> "Supplied", LogManager.INFO_MESSAGE_LEVEL );
+
+        String result = out.toString();
+        assertFalse( result.contains( "Setting up" ) );
+        assertTrue( result.contains( "Mapped job ID1 to isi" ) );
+        assertTrue( result.contains( "Supplied" ) );
+        assertEquals( 2, result.split( "\\[INFO\\]" ).length - 1 );
+    }
+
+    @Test
+    public void testAsyncWriter() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Properties props = new Properties();
+        props.setProperty( LogManager.ASYNC_PROPERTY_KEY, "true" );
+        props.setProperty( LogManager.ASYNC_BUFFER_PROPERTY_KEY, "4" );
+        Default logger = this.create( out, props );
+        logger.setLevel( LogManager.DEBUG_MESSAGE_LEVEL );
+
+        //more messages than the buffer holds
+        for( int i = 0; i < 100; i++ ){
+            logger.log( "message {}", LogManager.DEBUG_MESSAGE_LEVEL, i );
+        }
+        logger.flush();
+
+        String[] lines = out.toString().split( "\n" );
+        assertEquals( 100, lines.length );
+        for( int i = 0; i < lines.length; i++ ){
+            assertTrue( lines[i], lines[i].contains( "[DEBUG]" ) && lines[i].trim().endsWith( "message " + i ) );
+        }
+    }
+
+    private Default create( ByteArrayOutputStream out, Properties props ){
+        Default logger = new Default();
+        logger.initialize( new Simple(), props );
+        logger.logEventStart( "test.logging.default", "setup", "0" );
+        logger.setOutputWriter( out );
+        logger.setErrorWriter( out );
+        return logger;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.common.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the CompactStringSet.
+ *
+ * @version $Revision$
+ */
+public class CompactStringSetTest {
+
+    @Test
+    public void testAddAndContains() {
+        CompactStringSet set = new CompactStringSet( 4 );
+        int n = 100000;
+        for( int i = 0; i < n; i++ ){
+            assertTrue( set.add( "ID" + i ) );
+        }
+        assertEquals( n, set.size() );
+        for( int i = 0; i < n; i++ ){
+            assertTrue( set.contains( "ID" + i ) );
+            assertFalse( set.add( "ID" + i ) );
+        }
+        assertFalse( set.contains( "ID" + n ) );
+        assertFalse( set.contains( "ID" ) );
+        assertEquals( n, set.size() );
+    }
+
+    @Test
+    public void testLongAndNonAsciiStrings() {
+        CompactStringSet set = new CompactStringSet();
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0; i < 300; i++ ){
+            sb.append( 'x' );
+        }
+        String longer = sb.toString();
+        assertTrue( set.add( longer ) );
+        assertTrue( set.add( "été" ) );
+        assertTrue( set.add( "" ) );
+        assertTrue( set.contains( longer ) );
+        assertFalse( set.contains( longer.substring( 1 ) ) );
+        assertTrue( set.contains( "été" ) );
+        assertTrue( set.contains( "" ) );
+        assertEquals( 3, set.size() );
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the Directory based replica catalog, and the persisted
+ * index of the directory.
+ *
+ * @version $Revision$
+ */
+public class DirectoryTest {
+
+    private static final String SEP = File.separator;
+
+    private Path mRoot;
+
+    private File mIndex;
+
+    @Before
+    public void setUp() throws IOException {
+        mRoot = Files.createTempDirectory( "directory-rc" );
+        Files.createDirectories( mRoot.resolve( "D1" ).resolve( "D2" ) );
+        for( String file : new String[]{ "f.1", "f.2", "D1" + SEP + "f.3", "D1" + SEP + "D2" + SEP + "f.4" } ){
+            Files.createFile( mRoot.resolve( file ) );
+        }
+        this.age( mRoot, 60 );
+        this.age( mRoot.resolve( "D1" ), 60 );
+        this.age( mRoot.resolve( "D1" ).resolve( "D2" ), 60 );
+        //the index is kept outside of the directory it indexes
+        mIndex = new File( mRoot.toString() + ".index" );
+    }
+
+    @Test
+    public void testDeepAndFlatLFNs() {
+        Directory catalog = this.connect( false, null );
+        assertEquals( new HashSet( Arrays.asList( "f.1", "f.2", "D1" + SEP + "f.3", "D1" + SEP + "D2" + SEP + "f.4" ) ),
+                      catalog.list() );
+        assertEquals( "file://" + mRoot.resolve( "D1" ).resolve( "f.3" ),
+                      catalog.lookup( "D1" + SEP + "f.3", "isi" ) );
+        catalog.close();
+
+        catalog = this.connect( true, null );
+        assertEquals( new HashSet( Arrays.asList( "f.1", "f.2", "f.3", "f.4" ) ), catalog.list() );
+        catalog.close();
+    }
+
+    @Test
+    public void testPersistedIndex() throws IOException {
+        Directory catalog = this.connect( false, mIndex.getAbsolutePath() );
+        assertEquals( 4, catalog.list().size() );
+        catalog.close();
+        assertTrue( mIndex.exists() );
+
+        //a file added without changing the modification time of its
+        //directory is not noticed, as the directory is not listed again
+        Path d1 = mRoot.resolve( "D1" );
+        FileTime modified = Files.getLastModifiedTime( d1 );
+        Files.createFile( d1.resolve( "g" ) );
+        Files.setLastModifiedTime( d1, modified );
+
+        Set lfns = new HashSet( Arrays.asList( "D1" + SEP + "f.3", "D1" + SEP + "g", ".." + SEP + "f.1", "f.5" ) );
+        catalog = this.connect( false, mIndex.getAbsolutePath() );
+        Map result = catalog.lookup( lfns );
+        assertEquals( 1, result.size() - this.countEmpty( result ) );
+        Collection c = (Collection) result.get( "D1" + SEP + "f.3" );
+        assertEquals( "file://" + d1.resolve( "f.3" ), ( (ReplicaCatalogEntry)c.iterator().next() ).getPFN() );
+        catalog.close();
+
+        //once the directory is modified, it is listed again
+        this.age( d1, 30 );
+        catalog = this.connect( false, mIndex.getAbsolutePath() );
+        result = catalog.lookupNoAttributes( lfns );
+        assertEquals( 2, result.size() - this.countEmpty( result ) );
+        assertTrue( catalog.list().contains( "D1" + SEP + "g" ) );
+        catalog.close();
+
+        //removed directories are dropped on a refresh
+        Files.delete( d1.resolve( "D2" ).resolve( "f.4" ) );
+        Files.delete( d1.resolve( "D2" ) );
+        this.age( d1, 20 );
+        catalog = this.connect( false, mIndex.getAbsolutePath() );
+        assertFalse( catalog.list().contains( "D1" + SEP + "D2" + SEP + "f.4" ) );
+        assertTrue( catalog.lookupNoAttributes( "D1" + SEP + "D2" + SEP + "f.4" ).isEmpty() );
+        catalog.close();
+    }
+
+    @Test
+    public void testPersistedIndexWithFlatLFNs() throws IOException {
+        Directory catalog = this.connect( true, mIndex.getAbsolutePath() );
+        assertEquals( 4, catalog.list().size() );
+        catalog.close();
+        assertTrue( mIndex.exists() );
+
+        //the flat lfns are populated from the index, so a directory that
+        //is not modified is not listed again
+        Path d1 = mRoot.resolve( "D1" );
+        FileTime modified = Files.getLastModifiedTime( d1 );
+        Files.createFile( d1.resolve( "g" ) );
+        Files.setLastModifiedTime( d1, modified );
+
+        catalog = this.connect( true, mIndex.getAbsolutePath() );
+        assertEquals( new HashSet( Arrays.asList( "f.1", "f.2", "f.3", "f.4" ) ), catalog.list() );
+        catalog.close();
+
+        this.age( d1, 30 );
+        catalog = this.connect( true, mIndex.getAbsolutePath() );
+        assertEquals( "file://" + d1.resolve( "g" ), catalog.lookup( "g", "isi" ) );
+        catalog.close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try( Stream<Path> paths = Files.walk( mRoot ) ){
+            paths.sorted( Comparator.reverseOrder() ).forEach( ( p ) -> p.toFile().delete() );
+        }
+        mIndex.delete();
+    }
+
+    private Directory connect( boolean flat, String index ) {
+        Properties props = new Properties();
+        props.setProperty( Directory.DIRECTORY_PROPERTY_KEY, mRoot.toString() );
+        props.setProperty( Directory.SITE_PROPERTY_KEY, "isi" );
+        props.setProperty( Directory.FLAT_LFN_PROPERTY_KEY, Boolean.toString( flat ) );
+        props.setProperty( Directory.THREADS_PROPERTY_KEY, "4" );
+        if( index != null ){
+            props.setProperty( Directory.INDEX_PROPERTY_KEY, index );
+        }
+        Directory catalog = new Directory();
+        assertTrue( catalog.connect( props ) );
+        return catalog;
+    }
+
+    /**
+     * Sets the modification time of a directory to some minutes ago.
+     */
+    private void age( Path directory, int minutes ) throws IOException {
+        Files.setLastModifiedTime( directory, FileTime.fromMillis(
+            System.currentTimeMillis() - TimeUnit.MINUTES.toMillis( minutes ) ) );
+    }
+
+    private int countEmpty( Map result ){
+        int empty = 0;
+        for( Object value : result.values() ){
+            empty += ( (Collection)value ).isEmpty() ? 1 : 0;
+        }
+        return empty;
+    }
+}
@@ -247,6 +247,73 @@ public class JDBCRCTest {
         assertEquals(1, map.size());
     }
 
+    @Test
+    public void bulkInsertLookupRemove() {
+        jdbcrc.insert("a", new ReplicaCatalogEntry("b", "x"));
+
+        Map<String, List> x = new HashMap<String, List>();
+        for (int i = 0; i < 1200; i++) {
+            List l = new ArrayList();
+            ReplicaCatalogEntry rce = new ReplicaCatalogEntry("p" + i, "x");
+            rce.addAttribute("size", Integer.toString(i));
+            l.add(rce);
+            x.put("l" + i, l);
+        }
+        x.put("a", new ArrayList(Arrays.asList(new ReplicaCatalogEntry("c", "y"))));
+        assertEquals(1200, jdbcrc.insert(x));
+
+        Set lfns = new HashSet(x.keySet());
+        lfns.add("missing");
+        Map map = jdbcrc.lookup(lfns);
+        assertEquals(1202, map.size());
+        assertTrue(((Collection) map.get("missing")).isEmpty());
+        assertEquals(2, ((Collection) map.get("a")).size());
+        Collection c = (Collection) map.get("l7");
+        assertEquals(1, c.size());
+        assertEquals("7", ((ReplicaCatalogEntry) c.iterator().next()).getAttribute("size"));
+
+        map = jdbcrc.lookupNoAttributes(lfns, "y");
+        assertEquals(new TreeSet(Arrays.asList("c")), map.get("a"));
+        assertTrue(((Collection) map.get("l7")).isEmpty());
+
+        lfns.remove("a");
+        assertEquals(1200, jdbcrc.remove(lfns));
+        map = jdbcrc.lookupNoAttributes(lfns);
+        assertTrue(((Collection) map.get("l7")).isEmpty());
+    }
+
+    @Test
+    public void lookupWithBatchSizeOne() {
+        jdbcrc.insert("a", new ReplicaCatalogEntry("b", "x"));
+        jdbcrc.insert("a", new ReplicaCatalogEntry("c", "y"));
+
+        Properties props = new Properties();
+        props.setProperty("db.driver", "sqlite");
+        props.setProperty("db.url", "jdbc:sqlite:jdbcrc_test.db");
+        props.setProperty(JDBCRC.BATCH_SIZE_PROPERTY_KEY, "1");
+
+        // the bulk mode is off, so no batch statement may be prepared
+        JDBCRC single = new JDBCRC() {
+            @Override
+            protected java.sql.PreparedStatement getBatchStatement(int i) {
+                throw new AssertionError("batch statement " + i + " used with a batch size of 1");
+            }
+        };
+        single.connect(props);
+        try {
+            Set<String> lfns = new HashSet<String>(Arrays.asList("a", "missing"));
+            Map map = single.lookup(lfns);
+            assertEquals(2, ((Collection) map.get("a")).size());
+            assertTrue(((Collection) map.get("missing")).isEmpty());
+
+            map = single.lookupNoAttributes(lfns, "y");
+            assertEquals(new TreeSet<String>(Arrays.asList("c")), map.get("a"));
+            assertTrue(((Collection) map.get("missing")).isEmpty());
+        } finally {
+            single.close();
+        }
+    }
+
     @After
     public void tearDown() {
         jdbcrc.delete("a", "b");
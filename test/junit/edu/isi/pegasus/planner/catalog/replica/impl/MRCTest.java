@@ -0,0 +1,269 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.replica.impl;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.ReplicaCatalog;
+import edu.isi.pegasus.planner.catalog.replica.ReplicaCatalogEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the lookups of the MRC, sent to the catalogs one after
+ * another and concurrently.
+ *
+ * @version $Revision$
+ */
+public class MRCTest {
+
+    private static final Set LFNS = new HashSet( Arrays.asList( "f.a", "f.b", "f.c", "f.d" ) );
+
+    private LogManager mLogger;
+
+    private List<File> mFiles;
+
+    private List<MRC> mCatalogs;
+
+    @Before
+    public void setUp() {
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.setLevel( LogManager.INFO_MESSAGE_LEVEL );
+        mLogger.logEventStart( "test.catalog.replica.mrc", "setup", "0" );
+        mFiles = new ArrayList<File>();
+        mCatalogs = new ArrayList<MRC>();
+    }
+
+    @Test
+    public void testMergeInPriorityOrder() throws IOException {
+        for( boolean parallel : new boolean[]{ false, true } ){
+            MRC catalog = this.connect( parallel, false, null );
+            Map result = catalog.lookup( LFNS );
+            assertEquals( Arrays.asList( "file:///a/f.a", "file:///b/f.a" ), this.getPFNs( result, "f.a" ) );
+            assertEquals( Arrays.asList( "file:///a/f.b" ), this.getPFNs( result, "f.b" ) );
+            assertEquals( Arrays.asList( "file:///b/f.c" ), this.getPFNs( result, "f.c" ) );
+            assertTrue( ( (Collection)result.get( "f.d" ) ).isEmpty() );
+
+            result = catalog.lookup( LFNS, "isi" );
+            assertEquals( Arrays.asList( "file:///a/f.a" ), this.getPFNs( result, "f.a" ) );
+            assertEquals( Arrays.asList( "file:///b/f.c" ), this.getPFNs( result, "f.c" ) );
+
+            result = catalog.lookupNoAttributes( LFNS, "ucsd" );
+            assertEquals( new HashSet( Arrays.asList( "file:///b/f.a" ) ), new HashSet( (Collection)result.get( "f.a" ) ) );
+            assertEquals( 2, ( (Collection)catalog.lookupNoAttributes( LFNS ).get( "f.a" ) ).size() );
+        }
+    }
+
+    @Test
+    public void testFirstCatalogResolvingLFN() throws IOException {
+        for( boolean parallel : new boolean[]{ false, true } ){
+            MRC catalog = this.connect( parallel, true, null );
+            Map result = catalog.lookup( LFNS );
+            assertEquals( Arrays.asList( "file:///a/f.a" ), this.getPFNs( result, "f.a" ) );
+            assertEquals( Arrays.asList( "file:///b/f.c" ), this.getPFNs( result, "f.c" ) );
+        }
+
+        //the catalogs after the first one are only asked for the lfns
+        //that are not resolved yet
+        MRC catalog = this.connect( false, true, null );
+        final List<Set> queries = new ArrayList<Set>();
+        catalog.add( "z", this.stub( ( lfns ) -> {
+            queries.add( new HashSet( lfns ) );
+            return new HashMap();
+        } ) );
+        catalog.lookup( LFNS );
+        assertEquals( Arrays.asList( new HashSet( Arrays.asList( "f.d" ) ) ), queries );
+    }
+
+    @Test
+    public void testTimeout() throws IOException {
+        MRC catalog = this.connect( true, false, "0.2" );
+        catalog.add( "z", this.stub( ( lfns ) -> {
+            try{
+                Thread.sleep( 10000 );
+            }
+            catch( InterruptedException e ){
+                //cancelled by the MRC
+            }
+            return new HashMap();
+        } ) );
+
+        long start = System.currentTimeMillis();
+        Map result = catalog.lookup( LFNS );
+        assertTrue( System.currentTimeMillis() - start < 5000 );
+        assertEquals( Arrays.asList( "file:///a/f.a", "file:///b/f.a" ), this.getPFNs( result, "f.a" ) );
+    }
+
+    @Test
+    public void testBusyCatalogNotQueriedConcurrently() throws Exception {
+        MRC catalog = this.connect( true, false, "0.2" );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger running = new AtomicInteger( 0 );
+        final AtomicInteger calls = new AtomicInteger( 0 );
+        catalog.add( "z", this.stub( ( lfns ) -> {
+            calls.incrementAndGet();
+            assertEquals( 1, running.incrementAndGet() );
+            //a catalog blocked on I/O ignores the cancellation
+            while( release.getCount() > 0 ){
+                try{
+                    release.await();
+                }
+                catch( InterruptedException e ){
+                    //keep blocking
+                }
+            }
+            running.decrementAndGet();
+            return new HashMap();
+        } ) );
+
+        catalog.lookup( LFNS );
+        //the catalog still running the lookup that timed out is skipped
+        Map result = catalog.lookup( LFNS );
+        assertEquals( Arrays.asList( "file:///a/f.a", "file:///b/f.a" ), this.getPFNs( result, "f.a" ) );
+        assertEquals( 1, calls.get() );
+
+        release.countDown();
+        catalog.close();
+        mCatalogs.remove( catalog );
+        assertEquals( 0, running.get() );
+    }
+
+    @Test
+    public void testFailureWithBusyCatalog() throws Exception {
+        MRC catalog = this.connect( true, false, "0.2" );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        catalog.add( "z", this.stub( ( lfns ) -> {
+            //a catalog blocked on I/O ignores the cancellation
+            while( release.getCount() > 0 ){
+                try{
+                    release.await();
+                }
+                catch( InterruptedException e ){
+                    //keep blocking
+                }
+            }
+            return new HashMap();
+        } ) );
+        final AtomicInteger calls = new AtomicInteger( 0 );
+        catalog.add( "y", this.stub( ( lfns ) -> {
+            if( calls.incrementAndGet() > 1 ){
+                throw new RuntimeException( "catalog y failed" );
+            }
+            return new HashMap();
+        } ) );
+
+        catalog.lookup( LFNS );
+        //the failure of y is reported, although z is skipped as busy
+        try{
+            catalog.lookup( LFNS );
+            fail( "the failure of catalog y was not reported" );
+        }
+        catch( RuntimeException e ){
+            assertEquals( "catalog y failed", e.getMessage() );
+        }
+        finally{
+            release.countDown();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for( MRC catalog : mCatalogs ){
+            catalog.close();
+        }
+        for( File file : mFiles ){
+            file.delete();
+        }
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * Connects a MRC to the file based catalogs a and b. The catalog b is
+     * configured first, but queried after a.
+     */
+    private MRC connect( boolean parallel, boolean first, String timeout ) throws IOException {
+        Properties props = new Properties();
+        this.addCatalog( props, "b",
+                         "f.a file:///b/f.a site=\"ucsd\"",
+                         "f.c file:///b/f.c site=\"isi\"" );
+        this.addCatalog( props, "a",
+                         "f.a file:///a/f.a site=\"isi\"",
+                         "f.b file:///a/f.b site=\"isi\"" );
+        props.setProperty( "mrc." + MRC.PARALLEL_KEY, Boolean.toString( parallel ) );
+        props.setProperty( "mrc." + MRC.PARALLEL_KEY + "." + MRC.PARALLEL_FIRST_KEY, Boolean.toString( first ) );
+        if( timeout != null ){
+            props.setProperty( "mrc." + MRC.PARALLEL_KEY + "." + MRC.PARALLEL_TIMEOUT_KEY, timeout );
+        }
+
+        MRC catalog = new MRC();
+        assertTrue( catalog.connect( props ) );
+        mCatalogs.add( catalog );
+        return catalog;
+    }
+
+    private void addCatalog( Properties props, String name, String... lines ) throws IOException {
+        File rc = File.createTempFile( "replica-" + name, ".txt" );
+        Files.write( rc.toPath(), Arrays.asList( lines ), Charset.defaultCharset() );
+        mFiles.add( rc );
+        props.setProperty( "mrc." + name, "SimpleFile" );
+        props.setProperty( "mrc." + name + ".file", rc.getAbsolutePath() );
+        props.setProperty( "mrc." + name + ".read.only", "true" );
+    }
+
+    /**
+     * Returns a catalog that answers the lookups for a set of lfns with a
+     * callback.
+     */
+    private ReplicaCatalog stub( java.util.function.Function<Set,Map> lookup ){
+        return (ReplicaCatalog)Proxy.newProxyInstance(
+            ReplicaCatalog.class.getClassLoader(),
+            new Class[]{ ReplicaCatalog.class },
+            ( proxy, method, args ) -> {
+                if( method.getName().equals( "lookup" ) && args.length == 1 && args[0] instanceof Set ){
+                    return lookup.apply( (Set)args[0] );
+                }
+                return method.getReturnType().equals( boolean.class ) ? (Object)false : null;
+            } );
+    }
+
+    private List<String> getPFNs( Map result, String lfn ){
+        List<String> pfns = new ArrayList<String>();
+        for( Object rce : (Collection)result.get( lfn ) ){
+            pfns.add( ( (ReplicaCatalogEntry)rce ).getPFN() );
+        }
+        return pfns;
+    }
+}
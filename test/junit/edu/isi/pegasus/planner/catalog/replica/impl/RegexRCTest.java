@@ -24,6 +24,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -124,6 +128,107 @@ public class RegexRCTest {
         assertTrue(c.contains(new ReplicaCatalogEntry("b")));
     }
 
+    @Test
+    public void firstMatchInInsertionOrder() {
+        HashMap attr = new HashMap();
+        attr.put("regex", "true");
+
+        // unanchored, prefix and suffix indexed patterns all match f.txt
+        regex.insert(".*", new ReplicaCatalogEntry("any/[0]", attr));
+        regex.insert("f\\.(.*)", new ReplicaCatalogEntry("prefix/[1]", attr));
+        regex.insert(".*\\.txt", new ReplicaCatalogEntry("suffix/[0]", attr));
+        regex.insert("f.txt", new ReplicaCatalogEntry("literal", attr));
+
+        Collection<ReplicaCatalogEntry> c = regex.lookup("f.txt");
+        assertEquals(1, c.size());
+        assertEquals("any/f.txt", c.iterator().next().getPFN());
+
+        List<String> pfns = new java.util.ArrayList<String>();
+        for (ReplicaCatalogEntry x : regex.lookupWithHandle("f.txt", null)) {
+            pfns.add(x.getPFN());
+        }
+        assertEquals(java.util.Arrays.asList("any/f.txt", "prefix/txt", "suffix/f.txt", "literal"), pfns);
+    }
+
+    @Test
+    public void prefixAndSuffixIndex() {
+        HashMap attr = new HashMap();
+        attr.put("regex", "true");
+
+        regex.insert("ab+c", new ReplicaCatalogEntry("quantified", attr));
+        regex.insert("run_(\\d+)\\.out", new ReplicaCatalogEntry("run/[1]", attr));
+        regex.insert("(.*)\\d", new ReplicaCatalogEntry("digit/[1]", attr));
+        regex.insert("x|run_7.out", new ReplicaCatalogEntry("alternation", attr));
+
+        assertNull(regex.lookup("ac", null));
+        assertEquals("quantified", regex.lookup("abbc", null));
+        assertEquals("run/7", regex.lookup("run_7.out", null));
+        assertEquals("digit/run_7.out", regex.lookup("run_7.out7", null));
+        assertEquals("alternation", regex.lookup("x", null));
+        assertNull(regex.lookup("run_7.ou", null));
+    }
+
+    @Test
+    public void escapeSequenceSuffix() {
+        assertEquals("", RegexIndex.literalSuffix("\\x41b"));
+        assertEquals("", RegexIndex.literalSuffix("a\\u0041b"));
+        assertEquals("", RegexIndex.literalSuffix("a\\0101b"));
+        assertEquals("", RegexIndex.literalSuffix("a\\cAb"));
+        assertEquals("", RegexIndex.literalSuffix("a\\db"));
+        assertEquals("b", RegexIndex.literalSuffix("a\\-b"));
+        assertEquals("txt", RegexIndex.literalSuffix("(.*)\\.txt"));
+
+        HashMap attr = new HashMap();
+        attr.put("regex", "true");
+
+        regex.insert(".*\\x41b", new ReplicaCatalogEntry("hex", attr));
+        regex.insert(".*\\u0043d", new ReplicaCatalogEntry("unicode", attr));
+        regex.insert(".*\\0105f", new ReplicaCatalogEntry("octal", attr));
+        regex.insert(".*\\cGh", new ReplicaCatalogEntry("control", attr));
+
+        assertEquals("hex", regex.lookup("xAb", null));
+        assertEquals("unicode", regex.lookup("xCd", null));
+        assertEquals("octal", regex.lookup("xEf", null));
+        assertEquals("control", regex.lookup("x\u0007h", null));
+        assertNull(regex.lookup("x41b", null));
+    }
+
+    @Test
+    public void bulkLookup() {
+        HashMap attr = new HashMap();
+        attr.put("regex", "true");
+
+        regex.insert("a", new ReplicaCatalogEntry("b", "x"));
+        regex.insert("f(\\d+)", new ReplicaCatalogEntry("file://[1]", attr));
+        regex.insert("f(\\d)(\\d*)", new ReplicaCatalogEntry("second/[1]", attr));
+
+        // enough lfns to be looked up in parallel
+        Set<String> lfns = new HashSet<String>();
+        for (int i = 0; i < 5000; i++) {
+            lfns.add("f" + i);
+        }
+        lfns.add("a");
+        lfns.add("missing");
+
+        Map result = regex.lookup(lfns);
+        assertEquals(lfns.size(), result.size());
+        for (int i = 0; i < 5000; i++) {
+            Collection<ReplicaCatalogEntry> c = (Collection) result.get("f" + i);
+            assertEquals(1, c.size());
+            assertEquals("file://" + i, c.iterator().next().getPFN());
+        }
+        assertEquals(0, ((Collection) result.get("missing")).size());
+        assertEquals(1, ((Collection) result.get("a")).size());
+
+        result = regex.lookup(lfns, "x");
+        assertEquals(1, ((Collection) result.get("a")).size());
+        assertEquals(0, ((Collection) result.get("f7")).size());
+
+        result = regex.lookupNoAttributes(lfns, null);
+        assertEquals(2, ((Collection) result.get("f42")).size());
+        assertTrue(((Collection) result.get("f42")).contains("second/4"));
+    }
+
     @After
     public void tearDown() {
         rcFile.delete();
@@ -24,6 +24,7 @@ import org.junit.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -129,6 +130,61 @@ public class SimpleFileTest {
     }
 
 
+    @Test
+    public void journalAppendsChanges() throws IOException {
+        System.out.println( "journalAppendsChanges" );
+        File rc = this.createRC();
+        byte[] original = Files.readAllBytes( rc.toPath() );
+
+        mCatalog = this.connectJournaled( rc, false, SimpleFile.DEFAULT_JOURNAL_COMPACT_RECORDS );
+        mCatalog.insert( "f.new", new ReplicaCatalogEntry( "file:///tmp/f.new", "isi" ) );
+        assertEquals( 1, mCatalog.delete( "f.a", "file:///tmp/f.a" ) );
+        mCatalog.insert( "f b", new ReplicaCatalogEntry( "file:///tmp/f.b", "local" ) );
+        mCatalog.close();
+
+        //the file is left untouched, and the changes are in the journal
+        assertArrayEquals( original, Files.readAllBytes( rc.toPath() ) );
+        File journal = new File( rc.getAbsolutePath() + SimpleFile.JOURNAL_SUFFIX );
+        assertTrue( journal.exists() );
+
+        for( boolean mmap : new boolean[]{ false, true } ){
+            mCatalog = this.connectJournaled( rc, mmap, SimpleFile.DEFAULT_JOURNAL_COMPACT_RECORDS );
+            assertTrue( mCatalog.lookup( "f.a" ).isEmpty() );
+            assertEquals( "file:///tmp/f.new", mCatalog.lookup( "f.new", "isi" ) );
+            assertEquals( 2, mCatalog.lookup( "f b" ).size() );
+            assertEquals( "file:///tmp/" + EXPANDED_USER + "/f.c", mCatalog.lookup( "f.c", "isi" ) );
+            assertEquals( 3, mCatalog.list().size() );
+            mCatalog.close();
+        }
+        journal.delete();
+        rc.delete();
+    }
+
+    @Test
+    public void journalCompaction() throws IOException {
+        System.out.println( "journalCompaction" );
+        File rc = this.createRC();
+        File journal = new File( rc.getAbsolutePath() + SimpleFile.JOURNAL_SUFFIX );
+
+        mCatalog = this.connectJournaled( rc, true, 4 );
+        mCatalog.insert( "f.new", new ReplicaCatalogEntry( "file:///tmp/f.new", "isi" ) );
+        mCatalog.close();
+        assertTrue( journal.exists() );
+
+        //the second batch takes the journal beyond 4 records
+        mCatalog = this.connectJournaled( rc, true, 4 );
+        assertEquals( 1, mCatalog.remove( "f b" ) );
+        mCatalog.close();
+        assertFalse( journal.exists() );
+
+        mCatalog = this.connectJournaled( rc, false, 4 );
+        assertEquals( new java.util.TreeSet( java.util.Arrays.asList( "f.a", "f.c", "f.new" ) ), mCatalog.list() );
+        assertEquals( "file:///tmp/f.new", mCatalog.lookup( "f.new", "isi" ) );
+        mCatalog.close();
+        rc.delete();
+    }
+
+
     @After
     public void tearDown() {
         mCatalog.close();
@@ -141,6 +197,28 @@ public class SimpleFileTest {
         }
     }
 
+    private File createRC() throws IOException {
+        File rc = File.createTempFile( "replica-journal", ".txt" );
+        Files.write( rc.toPath(), java.util.Arrays.asList(
+                        "# file-based replica catalog",
+                        "f.a file:///tmp/f.a site=\"isi\"",
+                        "\"f b\" file:///tmp/f.b site=\"isi\"",
+                        "f.c file:///tmp/${USER}/f.c site=\"isi\"" ),
+                     java.nio.charset.Charset.defaultCharset() );
+        return rc;
+    }
+
+    private SimpleFile connectJournaled( File rc, boolean mmap, int compact ) {
+        SimpleFile catalog = new SimpleFile();
+        Properties props = new Properties();
+        props.setProperty( "file", rc.getAbsolutePath() );
+        props.setProperty( SimpleFile.JOURNAL_KEY, "true" );
+        props.setProperty( SimpleFile.MMAP_KEY, Boolean.toString( mmap ) );
+        props.setProperty( SimpleFile.JOURNAL_COMPACT_KEY, Integer.toString( compact ) );
+        catalog.connect( props );
+        return catalog;
+    }
+
     private void setupCatalog(String file, boolean readOnly ) {
         mCatalog = new SimpleFile();
         //mRCFile  = new File( mTestSetup.getInputDirectory(), file );
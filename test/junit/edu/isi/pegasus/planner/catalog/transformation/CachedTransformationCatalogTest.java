@@ -0,0 +1,124 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.catalog.transformation;
+
+import edu.isi.pegasus.planner.catalog.TransformationCatalog;
+import edu.isi.pegasus.planner.catalog.transformation.classes.TCType;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the cache of the transformation catalog lookups, against a
+ * backend that counts the lookups passed on to it.
+ *
+ * @version $Revision$
+ */
+public class CachedTransformationCatalogTest {
+
+    private AtomicInteger mBackendLookups;
+
+    private CachedTransformationCatalog mCatalog;
+
+    @Before
+    public void setUp() {
+        mBackendLookups = new AtomicInteger( 0 );
+        //the backend only knows of pegasus::keg on the site isi
+        TransformationCatalog backend = (TransformationCatalog)Proxy.newProxyInstance(
+            TransformationCatalog.class.getClassLoader(),
+            new Class[]{ TransformationCatalog.class },
+            ( proxy, method, args ) -> {
+                switch( method.getName() ){
+                    case "lookup":
+                        mBackendLookups.incrementAndGet();
+                        if( "keg".equals( args[1] ) && ( args[3] == null || "isi".equals( args[3] ) ) ){
+                            TransformationCatalogEntry entry = new TransformationCatalogEntry( "pegasus", "keg", null );
+                            entry.setResourceId( "isi" );
+                            entry.setType( TCType.INSTALLED );
+                            return new ArrayList<TransformationCatalogEntry>( Arrays.asList( entry ) );
+                        }
+                        return null;
+                    case "insert":
+                        return 1;
+                    default:
+                        return null;
+                }
+            } );
+        mCatalog = new CachedTransformationCatalog( backend );
+    }
+
+    @Test
+    public void testPositiveAndNegativeLookups() throws Exception {
+        for( int i = 0; i < 10; i++ ){
+            List<TransformationCatalogEntry> entries = mCatalog.lookup( "pegasus", "keg", null, "isi", null );
+            assertEquals( 1, entries.size() );
+            assertEquals( "isi", entries.get( 0 ).getResourceId() );
+            //callers can modify the lists returned
+            entries.clear();
+
+            assertNull( mCatalog.lookup( "pegasus", "keg", null, "local", null ) );
+        }
+        assertEquals( 2, mBackendLookups.get() );
+        assertEquals( 18, mCatalog.getHits() );
+        assertEquals( 2, mCatalog.getMisses() );
+
+        //the lookups on a list of sites share the lookups per site
+        assertEquals( 1, mCatalog.lookup( "pegasus", "keg", null, Arrays.asList( "local", "isi" ), null ).size() );
+        assertNull( mCatalog.lookup( "pegasus", "keg", null, Arrays.asList( "local" ), null ) );
+        assertEquals( 2, mBackendLookups.get() );
+    }
+
+    @Test
+    public void testModificationClearsCache() throws Exception {
+        mCatalog.lookup( "pegasus", "keg", null, "isi", null );
+        mCatalog.lookup( "pegasus", "keg", null, "isi", null );
+        assertEquals( 1, mBackendLookups.get() );
+
+        assertEquals( 1, mCatalog.insert( new TransformationCatalogEntry( "pegasus", "preprocess", null ), false ) );
+        assertEquals( 0, mCatalog.size() );
+        mCatalog.lookup( "pegasus", "keg", null, "isi", null );
+        assertEquals( 2, mBackendLookups.get() );
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        List<Future<List<TransformationCatalogEntry>>> results = new ArrayList();
+        for( int i = 0; i < 1000; i++ ){
+            final String site = ( i % 2 == 0 ) ? "isi" : "site" + ( i % 10 );
+            results.add( executor.submit( () -> mCatalog.lookup( "pegasus", "keg", null, site, null ) ) );
+        }
+        for( int i = 0; i < results.size(); i++ ){
+            List<TransformationCatalogEntry> entries = results.get( i ).get();
+            assertEquals( ( i % 2 == 0 ) ? 1 : 0, ( entries == null ) ? 0 : entries.size() );
+        }
+        executor.shutdown();
+
+        //isi and the sites site1, site3, site5, site7 and site9
+        assertEquals( 6, mBackendLookups.get() );
+        assertEquals( 1000, mCatalog.getHits() + mCatalog.getMisses() );
+    }
+}
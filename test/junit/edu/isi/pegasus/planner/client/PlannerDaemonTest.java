@@ -0,0 +1,167 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.client;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the planner daemon, against a stub planner that records the
+ * requests it plans.
+ *
+ * @version $Revision$
+ */
+public class PlannerDaemonTest {
+
+    /**
+     * A stub planner, that writes out the arguments, properties and the number
+     * of requests it planned to a file named planned in the launch directory.
+     */
+    public static class StubPlanner {
+
+        private static int sRequests = 0;
+
+        public static void setCacheSiteStores( boolean cache ){
+        }
+
+        public static int run( String[] args, String launchDirectory, Properties properties ) throws Exception {
+            sRequests++;
+            String planned = Arrays.asList( args ) + " " + properties + " " + sRequests + " " +
+                             ( StubPlanner.class.getClassLoader() == ClassLoader.getSystemClassLoader() );
+            Files.write( new File( launchDirectory, "planned" ).toPath(), planned.getBytes() );
+            return Integer.parseInt( properties.getProperty( "exitcode", "0" ) );
+        }
+    }
+
+    private File mDirectory;
+
+    private LogManager mLogger;
+
+    private PlannerDaemon mDaemon;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = Files.createTempDirectory( "plan-daemon" ).toFile();
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.setLevel( LogManager.INFO_MESSAGE_LEVEL );
+        mLogger.logEventStart( "test.client.plan-daemon", "setup", "0" );
+        mDaemon = new PlannerDaemon( 0, 1, new File( mDirectory, "plan-daemon" ),
+                                     StubPlanner.class.getName(), mLogger );
+        new Thread( mDaemon ).start();
+    }
+
+    @Test
+    public void testSplitArguments() {
+        List<String> args = new ArrayList<String>();
+        Properties properties = new Properties();
+        assertTrue( PlannerDaemon.splitArguments(
+                        new String[]{ "-Dpegasus.log.*=/tmp/x.log", "-Xmx1g", "-D", "pegasus.a=b=c",
+                                      "--dax", "x.dax", "-D", "pegasus.b" },
+                        args, properties ) );
+        assertEquals( Arrays.asList( "--dax", "x.dax", "-D", "pegasus.b" ), args );
+        assertEquals( "/tmp/x.log", properties.getProperty( "pegasus.log.*" ) );
+        assertEquals( "b=c", properties.getProperty( "pegasus.a" ) );
+        assertEquals( 2, properties.size() );
+
+        assertFalse( PlannerDaemon.splitArguments( new String[]{ "--dax", "x.dax", "-vV" }, args, properties ) );
+        assertFalse( PlannerDaemon.splitArguments( new String[]{ "--version" }, args, properties ) );
+    }
+
+    @Test
+    public void testPlansInIsolatedPlanner() throws Exception {
+        assertEquals( "exit=0", this.send( mDaemon.getToken(), "--dax", "x.dax", "--deferred" ) );
+        assertEquals( "[--dax, x.dax, --deferred] {} 1 false", this.getPlanned() );
+
+        //the planner is kept across requests
+        assertEquals( "exit=5", this.send( mDaemon.getToken(), "-Dexitcode=5", "--dax", "y.dax" ) );
+        assertEquals( "[--dax, y.dax] {exitcode=5} 2 false", this.getPlanned() );
+    }
+
+    @Test
+    public void testDaemonFile() throws Exception {
+        File daemonFile = new File( mDirectory, "plan-daemon" );
+        for( int i = 0; i < 100 && !daemonFile.exists(); i++ ){
+            Thread.sleep( 50 );
+        }
+        String contents = new String( Files.readAllBytes( daemonFile.toPath() ) ).trim();
+        assertEquals( mDaemon.getPort() + " " + mDaemon.getToken(), contents );
+        assertEquals( "rw-------",
+                      PosixFilePermissions.toString( Files.getPosixFilePermissions( daemonFile.toPath() ) ) );
+    }
+
+    @Test
+    public void testRejectsWrongToken() throws Exception {
+        assertNull( this.send( "wrong", "--dax", "x.dax" ) );
+        assertFalse( new File( mDirectory, "planned" ).exists() );
+    }
+
+    @Test
+    public void testFallbackForVersion() throws Exception {
+        assertEquals( "fallback", this.send( mDaemon.getToken(), "-V" ) );
+        assertFalse( new File( mDirectory, "planned" ).exists() );
+    }
+
+    @After
+    public void tearDown() {
+        mDaemon.shutdown();
+        mLogger.logEventCompletion();
+        for( File f : mDirectory.listFiles() ){
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * Sends a request to the daemon.
+     *
+     * @return the response, or null if the connection is closed without one
+     */
+    private String send( String token, String... args ) throws Exception {
+        try( Socket socket = new Socket( InetAddress.getLoopbackAddress(), mDaemon.getPort() ) ){
+            PrintWriter out = new PrintWriter( socket.getOutputStream(), true );
+            out.println( token );
+            out.println( mDirectory.getAbsolutePath() );
+            out.println( args.length );
+            for( String arg : args ){
+                out.println( arg );
+            }
+            BufferedReader in = new BufferedReader( new InputStreamReader( socket.getInputStream() ) );
+            return in.readLine();
+        }
+    }
+
+    private String getPlanned() throws Exception {
+        return new String( Files.readAllBytes( new File( mDirectory, "planned" ).toPath() ) );
+    }
+}
@@ -97,6 +97,55 @@ public class RuntimeClusteringTest {
         assertEquals(jobs.size(), results.size());
     }
 
+    @Test
+    public void testMaxRunTime() throws Exception {
+        Method bestFit = mCluster.getClass().getDeclaredMethod("bestFitBinPack", List.class, double.class);
+        bestFit.setAccessible(true);
+
+        List<Job> jobs = new LinkedList<Job>();
+        double total = 0;
+        for (int i = 0; i < 1000; ++i) {
+            Job j = new Job();
+            j.setName(i + "");
+            double runtime = (i == 500) ? 120 : 1 + (i * 37) % 50 + 0.5;
+            j.vdsNS.construct(Pegasus.RUNTIME_KEY, runtime + "");
+            total += (i == 500) ? 0 : runtime;
+            jobs.add(j);
+        }
+
+        List<List<Job>> results = (List<List<Job>>) bestFit.invoke(mCluster, jobs, 100d);
+        int clustered = 0;
+        for (List<Job> bin : results) {
+            double time = 0;
+            for (Job j : bin) {
+                time += Double.parseDouble((String) j.vdsNS.get(Pegasus.RUNTIME_KEY));
+            }
+            assertTrue(time <= 100);
+            clustered += bin.size();
+        }
+        // the job longer than the max run time is not clustered
+        assertEquals(jobs.size() - 1, clustered);
+        // best fit packs the bins almost full
+        assertTrue(results.size() <= Math.ceil(total / 100) + 1);
+    }
+
+    @Test
+    public void testFractionalRunTimes() throws Exception {
+        List<Job> jobs = new LinkedList<Job>();
+        for (int i = 0; i < 4; ++i) {
+            Job j = new Job();
+            j.setName(i + "");
+            j.vdsNS.construct(Pegasus.RUNTIME_KEY, "0.5");
+            jobs.add(j);
+        }
+
+        // jobs with runtimes less than a second are spread across the bins
+        List<List<Job>> results = (List<List<Job>>) mBestFitMethod.invoke(mCluster, jobs, 2);
+        assertEquals(2, results.size());
+        assertEquals(2, results.get(0).size());
+        assertEquals(2, results.get(1).size());
+    }
+
     @After
     public void tearDown() {
         mLogger = null;
@@ -0,0 +1,107 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.code.generator.condor;
+
+import edu.isi.pegasus.planner.code.CodeGeneratorException;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class to test the writing out of submit files on a pool of threads.
+ *
+ * @version $Revision$
+ */
+public class SubmitFileWriterTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = Files.createTempDirectory( "submit-writer" ).toFile();
+    }
+
+    @Test
+    public void testWriteReusesBuffers() throws Exception {
+        //more files than pooled buffers
+        int threads = 2;
+        int count   = threads * SubmitFileWriter.BUFFERS_PER_THREAD * 10;
+        SubmitFileWriter writer = new SubmitFileWriter( threads );
+        for( int i = 0; i < count; i++ ){
+            PrintWriter pw = writer.open( new File( mDirectory, "job" + i + ".sub" ) );
+            pw.println( "executable = /bin/job" + i );
+            //the first file is larger than the initial buffer
+            for( int j = 0; j < ( i == 0 ? 1000 : 1 ); j++ ){
+                pw.println( "arguments = " + j );
+            }
+            pw.println( "queue" );
+            pw.close();
+        }
+        writer.close();
+        assertEquals( count, writer.getFilesWritten() );
+
+        for( int i = 1; i < count; i++ ){
+            String expected = "executable = /bin/job" + i + System.lineSeparator() +
+                              "arguments = 0" + System.lineSeparator() +
+                              "queue" + System.lineSeparator();
+            assertEquals( expected, this.read( new File( mDirectory, "job" + i + ".sub" ) ) );
+        }
+        String first = this.read( new File( mDirectory, "job0.sub" ) );
+        assertTrue( first.startsWith( "executable = /bin/job0" ) );
+        assertTrue( first.contains( "arguments = 999" ) );
+        assertTrue( first.endsWith( "queue" + System.lineSeparator() ) );
+    }
+
+    @Test
+    public void testTruncatesExistingFile() throws Exception {
+        File f = new File( mDirectory, "existing.sub" );
+        Files.write( f.toPath(), "a much longer previous submit file".getBytes() );
+        SubmitFileWriter writer = new SubmitFileWriter( 1 );
+        PrintWriter pw = writer.open( f );
+        pw.print( "queue" );
+        pw.close();
+        writer.close();
+        assertEquals( "queue", this.read( f ) );
+    }
+
+    @Test( expected = CodeGeneratorException.class )
+    public void testWriteFailure() throws Exception {
+        SubmitFileWriter writer = new SubmitFileWriter( 2 );
+        PrintWriter pw = writer.open( new File( new File( mDirectory, "missing" ), "job.sub" ) );
+        pw.println( "queue" );
+        pw.close();
+        writer.close();
+    }
+
+    @After
+    public void tearDown() {
+        for( File f : mDirectory.listFiles() ){
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    private String read( File f ) throws Exception {
+        return new String( Files.readAllBytes( f.toPath() ), Charset.defaultCharset() );
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.dax;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the streaming DAX writer, comparing the DAX it writes out
+ * against the one written out by ADAG.
+ *
+ * @version $Revision$
+ */
+public class StreamingADAGTest {
+
+    private java.io.File mDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = Files.createTempDirectory( "streaming-adag" ).toFile();
+    }
+
+    @Test
+    public void testSameAsADAG() throws Exception {
+        ADAG adag = new ADAG( "diamond" );
+        java.io.File daxfile = new java.io.File( mDirectory, "diamond.dax" );
+        StreamingADAG dax = new StreamingADAG( daxfile.getAbsolutePath(), "diamond", false );
+
+        Executable preprocess = new Executable( "pegasus", "preprocess", "4.0" );
+        preprocess.addPhysicalFile( new PFN( "file:///opt/pegasus/bin/keg", "local" ) );
+        adag.addExecutable( preprocess );
+        dax.addExecutable( preprocess );
+        File input = new File( "f.a" );
+        input.addPhysicalFile( "file:///tmp/f.a", "local" );
+        adag.addFile( input );
+        dax.addFile( input );
+        adag.addMetaData( "creator", "test" );
+        dax.addMetaData( "creator", "test" );
+
+        for( int i = 0; i < 4; i++ ){
+            Job job = this.createJob( i );
+            adag.addJob( job );
+            dax.addJob( job );
+        }
+        adag.addDependency( "ID0", "ID1", "label & more" );
+        dax.addDependency( "ID0", "ID1", "label & more" );
+        String[][] dependencies = { { "ID1", "ID0" }, { "ID2", "ID0" }, { "ID3", "ID1" }, { "ID3", "ID2" } };
+        for( String[] d : dependencies ){
+            adag.addDependency( d[1], d[0] );
+            dax.addDependency( d[1], d[0] );
+        }
+        dax.close();
+
+        StringWriter expected = new StringWriter();
+        adag.writeToWriter( expected, true );
+        assertEquals( this.stripTimestamps( expected.toString() ),
+                      this.stripTimestamps( new String( Files.readAllBytes( daxfile.toPath() ), "UTF-8" ) ) );
+    }
+
+    @Test
+    public void testGzipAndInterleavedDependencies() throws Exception {
+        java.io.File daxfile = new java.io.File( mDirectory, "chain.dax.gz" );
+        StreamingADAG dax = new StreamingADAG( daxfile.getAbsolutePath(), "chain", true );
+        int n = 1000;
+        for( int i = 0; i < n; i++ ){
+            dax.addJob( this.createJob( i ) );
+            if( i > 0 ){
+                dax.addDependency( "ID" + ( i - 1 ), "ID" + i );
+            }
+        }
+        assertEquals( n, dax.getJobCount() );
+        dax.close();
+
+        int jobs = 0;
+        int children = 0;
+        boolean dependencies = false;
+        try( BufferedReader in = new BufferedReader( new InputStreamReader(
+                new GZIPInputStream( new FileInputStream( daxfile ) ), "UTF-8" ) ) ){
+            String line;
+            while( ( line = in.readLine() ) != null ){
+                if( line.contains( "<job " ) ){
+                    //all jobs precede the dependencies
+                    assertFalse( dependencies );
+                    jobs++;
+                }
+                else if( line.contains( "<child " ) ){
+                    dependencies = true;
+                    children++;
+                }
+            }
+        }
+        assertEquals( n, jobs );
+        assertEquals( n - 1, children );
+    }
+
+    @Test
+    public void testValidation() throws Exception {
+        StreamingADAG dax = new StreamingADAG( new java.io.File( mDirectory, "invalid.dax" ).getAbsolutePath(), "invalid", false );
+        dax.addJob( this.createJob( 0 ) );
+        try{
+            dax.addJob( this.createJob( 0 ) );
+            fail( "duplicate job id accepted" );
+        }
+        catch( RuntimeException e ){}
+        try{
+            dax.addDependency( "ID0", "ID1" );
+            fail( "dependency on a job not added accepted" );
+        }
+        catch( RuntimeException e ){}
+        try{
+            dax.addExecutable( new Executable( "pegasus", "preprocess", "4.0" ) );
+            fail( "executable accepted after the first job" );
+        }
+        catch( RuntimeException e ){}
+        assertTrue( dax.containsJobId( "ID0" ) );
+        assertFalse( dax.containsJobId( "ID1" ) );
+        dax.close();
+    }
+
+    @After
+    public void tearDown() {
+        for( java.io.File f : mDirectory.listFiles() ){
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    private Job createJob( int i ){
+        Job job = new Job( "ID" + i, "pegasus", "preprocess", "4.0" );
+        job.addArgument( "-a preprocess -T60 -i " ).addArgument( new File( "f.a" ) );
+        job.uses( new File( "f.a" ), File.LINK.INPUT );
+        job.uses( new File( "f.b" + i ), File.LINK.OUTPUT );
+        return job;
+    }
+
+    private String stripTimestamps( String dax ){
+        return dax.replaceAll( "<!-- generated on: .* -->", "" );
+    }
+}
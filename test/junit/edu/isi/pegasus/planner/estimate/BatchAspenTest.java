@@ -0,0 +1,174 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.estimate;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the memoizing Aspen estimator, against a stub estimate
+ * client that records each time it is launched.
+ *
+ * @version $Revision$
+ */
+public class BatchAspenTest {
+
+    /**
+     * Estimates the runtime as the time metadata, both when invoked per job
+     * and in batch mode. Fails in batch mode, if a file named nobatch exists.
+     */
+    public static final String STUB_CLIENT =
+        "#!/bin/sh\n" +
+        "echo launched >> \"$ASPENPATH/launches\"\n" +
+        "if [ \"$1\" = \"--batch\" ]; then\n" +
+        "  if [ -f \"$ASPENPATH/nobatch\" ]; then exit 1; fi\n" +
+        "  while read line; do\n" +
+        "    for kv in $line; do\n" +
+        "      case \"$kv\" in time=*) echo \"runtime=${kv#time=}\" ;; esac\n" +
+        "    done\n" +
+        "    echo \"memory=100\"\n" +
+        "    echo\n" +
+        "  done\n" +
+        "else\n" +
+        "  for kv in \"$@\"; do\n" +
+        "    case \"$kv\" in time=*) echo \"runtime=${kv#time=}\" ;; esac\n" +
+        "  done\n" +
+        "  echo \"memory=100\"\n" +
+        "fi\n";
+
+    private File mDirectory;
+
+    private LogManager mLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = Files.createTempDirectory( "aspen" ).toFile();
+        File client = new File( mDirectory, Aspen.PEGASUS_ASPEN_CLIENT_NAME );
+        Files.write( client.toPath(), STUB_CLIENT.getBytes() );
+        client.setExecutable( true );
+
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.setLevel( LogManager.INFO_MESSAGE_LEVEL );
+        mLogger.logEventStart( "test.estimate.aspen", "setup", "0" );
+    }
+
+    @Test
+    public void testMemoizesBySortedMetadata() throws Exception {
+        BatchAspen estimator = this.createEstimator( false );
+        List<Job> jobs = this.createJobs( 300, 3 );
+        Map<Job,Map<String,String>> estimates = estimator.getAllEstimates( jobs );
+        for( int i = 0; i < jobs.size(); i++ ){
+            assertEquals( Integer.toString( 10 * ( i % 3 ) ), estimates.get( jobs.get( i ) ).get( "runtime" ) );
+            assertEquals( "100", estimates.get( jobs.get( i ) ).get( "memory" ) );
+        }
+        assertEquals( 3, estimator.getInvocations() );
+        assertEquals( 3, this.getLaunches() );
+
+        //estimated already
+        assertEquals( "20", estimator.getRuntime( jobs.get( 2 ) ) );
+        assertEquals( 3, this.getLaunches() );
+    }
+
+    @Test
+    public void testBatchClient() throws Exception {
+        BatchAspen estimator = this.createEstimator( true );
+        List<Job> jobs = this.createJobs( 200, 40 );
+        Map<Job,Map<String,String>> estimates = estimator.getAllEstimates( jobs );
+        for( int i = 0; i < jobs.size(); i++ ){
+            assertEquals( Integer.toString( 10 * ( i % 40 ) ), estimates.get( jobs.get( i ) ).get( "runtime" ) );
+        }
+        assertEquals( 40, estimator.getInvocations() );
+        //one client per thread
+        assertTrue( this.getLaunches() <= 2 );
+    }
+
+    @Test
+    public void testFallbackWithoutBatchSupport() throws Exception {
+        new File( mDirectory, "nobatch" ).createNewFile();
+        BatchAspen estimator = this.createEstimator( true );
+        List<Job> jobs = this.createJobs( 20, 5 );
+        Map<Job,Map<String,String>> estimates = estimator.getAllEstimates( jobs );
+        for( int i = 0; i < jobs.size(); i++ ){
+            assertEquals( Integer.toString( 10 * ( i % 5 ) ), estimates.get( jobs.get( i ) ).get( "runtime" ) );
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        for( File f : mDirectory.listFiles() ){
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    private BatchAspen createEstimator( boolean batch ){
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty( Aspen.ASPEN_BIN_PROPERTY_KEY, mDirectory.getAbsolutePath() );
+        props.setProperty( Aspen.ASPEN_MODELS_PROPERTY_KEY, mDirectory.getAbsolutePath() );
+        props.setProperty( BatchAspen.ASPEN_THREADS_PROPERTY_KEY, "2" );
+        props.setProperty( BatchAspen.ASPEN_BATCH_PROPERTY_KEY, Boolean.toString( batch ) );
+
+        PegasusBag bag = new PegasusBag();
+        bag.add( PegasusBag.PEGASUS_PROPERTIES, props );
+        bag.add( PegasusBag.PEGASUS_LOGMANAGER, mLogger );
+        BatchAspen estimator = new BatchAspen();
+        estimator.initialize( null, bag );
+        return estimator;
+    }
+
+    /**
+     * Creates jobs with a number of distinct metadata, that are added in
+     * alternating order.
+     */
+    private List<Job> createJobs( int n, int distinct ){
+        List<Job> jobs = new ArrayList<Job>( n );
+        for( int i = 0; i < n; i++ ){
+            Job job = new Job();
+            job.setTransformation( "pegasus", "preprocess", "4.0" );
+            job.setLogicalID( "ID" + i );
+            String time = Integer.toString( 10 * ( i % distinct ) );
+            if( i % 2 == 0 ){
+                job.addMetadata( "appmodel", "md/md.aspen" );
+                job.addMetadata( "time", time );
+            }
+            else{
+                job.addMetadata( "time", time );
+                job.addMetadata( "appmodel", "md/md.aspen" );
+            }
+            jobs.add( job );
+        }
+        return jobs;
+    }
+
+    private int getLaunches() throws Exception {
+        return Files.readAllLines( new File( mDirectory, "launches" ).toPath() ).size();
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.invocation;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.griphyn.vdl.dbschema.PTC;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class to test the non-blocking kickstart ingest server, and the
+ * batched insertion of the invocation records.
+ *
+ * @version $Revision$
+ */
+public class IngestServerTest {
+
+    @Test
+    public void testConcurrentClients() throws Exception {
+        final IngestServer server = new IngestServer( 0, 4, null, null, 10 );
+        Thread t = new Thread( server );
+        t.start();
+
+        final int clients = 32;
+        final int requests = 5;
+        final AtomicInteger answered = new AtomicInteger( 0 );
+        List<Thread> threads = new LinkedList<Thread>();
+        for( int i = 0; i < clients; i++ ){
+            final int client = i;
+            Thread c = new Thread(){
+                public void run(){
+                    try{
+                        Socket s = new Socket( InetAddress.getByName( "127.0.0.1" ), server.getPort() );
+                        PrintWriter out = new PrintWriter( s.getOutputStream(), true );
+                        BufferedReader in = new BufferedReader( new InputStreamReader( s.getInputStream() ) );
+                        for( int j = 0; j < requests; j++ ){
+                            //pipeline the requests, the answers come in order
+                            out.println( "PARSE /does/not/exist/" + client + "." + j + " ECP/1.0" );
+                        }
+                        for( int j = 0; j < requests; j++ ){
+                            if( "300 Result code 5".equals( in.readLine() ) ){
+                                answered.incrementAndGet();
+                            }
+                        }
+                        out.println( "QUIT" );
+                        assertEquals( "200 Good-bye", in.readLine() );
+                        s.close();
+                    }
+                    catch( Exception e ){
+                        throw new RuntimeException( e );
+                    }
+                }
+            };
+            c.start();
+            threads.add( c );
+        }
+        for( Thread c : threads ){
+            c.join();
+        }
+        assertEquals( clients * requests, answered.get() );
+
+        Socket s = new Socket( InetAddress.getByName( "127.0.0.1" ), server.getPort() );
+        PrintWriter out = new PrintWriter( s.getOutputStream(), true );
+        BufferedReader in = new BufferedReader( new InputStreamReader( s.getInputStream() ) );
+        out.println( "PARSE /does/not/exist" );
+        assertEquals( "400 Illegal request format", in.readLine() );
+        out.println( "PARSE /does/not/exist ECP/2.0" );
+        assertEquals( "501 Unrecognized version", in.readLine() );
+        out.println( "STATS" );
+        String stats = in.readLine();
+        assertTrue( stats, stats.startsWith( "200 connections=" + ( clients + 1 ) ) );
+        assertTrue( stats, stats.contains( "requests=" + ( clients * requests ) ) );
+        out.println( "SHUTDOWN" );
+        assertEquals( "200 Shutting down server, good-bye", in.readLine() );
+        s.close();
+
+        t.join( 30000 );
+        assertFalse( t.isAlive() );
+        assertEquals( clients * requests, server.getRequests() );
+        assertEquals( clients * requests, server.getFailures() );
+        assertEquals( 0, server.getParsed() );
+    }
+
+    @Test
+    public void testBatchedInserts() throws Exception {
+        CountingPTC ptc = new CountingPTC();
+        InvocationBatchWriter writer = new InvocationBatchWriter( ptc, 20, 10, 50 );
+        writer.start();
+        for( int i = 0; i < 95; i++ ){
+            writer.add( record( i ) );
+        }
+        //the same record twice, and one already in the catalog
+        writer.add( record( 0 ) );
+        writer.add( record( CountingPTC.EXISTING_PID ) );
+        writer.close();
+
+        assertEquals( 97, writer.getQueued() );
+        assertEquals( 95, writer.getInserted() );
+        assertEquals( 2, writer.getDuplicates() );
+        assertEquals( 0, writer.getFailed() );
+        assertEquals( 95, ptc.mSaved.get() );
+        assertTrue( "records were not batched", writer.getBatches() < 95 );
+        assertTrue( writer.getHighWater() <= 20 );
+        assertEquals( 0, writer.getPending() );
+    }
+
+    @Test
+    public void testFailedBatch() throws Exception {
+        CountingPTC ptc = new CountingPTC();
+        InvocationBatchWriter writer = new InvocationBatchWriter( ptc, 100, 100, 1000 );
+        writer.start();
+        for( int i = 0; i < 10; i++ ){
+            writer.add( record( i ) );
+        }
+        writer.add( record( CountingPTC.BAD_PID ) );
+        writer.close();
+
+        //the good records are inserted one at a time
+        assertEquals( 10, writer.getInserted() );
+        assertEquals( 1, writer.getFailed() );
+        assertEquals( 0, writer.getBatches() );
+    }
+
+    /**
+     * Creates an invocation record.
+     *
+     * @param pid  the pid of the record
+     *
+     * @return the record
+     */
+    private InvocationRecord record( int pid ) throws Exception {
+        InvocationRecord ivr = new InvocationRecord();
+        ivr.setStart( new Date( 1000000L ) );
+        ivr.setHostAddress( InetAddress.getByName( "127.0.0.1" ) );
+        ivr.setPID( pid );
+        return ivr;
+    }
+
+    /**
+     * A PTC that counts the records saved, and remembers their pids.
+     */
+    private static class CountingPTC implements PTC {
+
+        /**
+         * The pid of a record that already exists.
+         */
+        static final int EXISTING_PID = 1000;
+
+        /**
+         * The pid of a record that cannot be saved.
+         */
+        static final int BAD_PID = 2000;
+
+        private final AtomicInteger mSaved = new AtomicInteger( 0 );
+
+        private final Set<Integer> mPIDs = new HashSet<Integer>();
+
+        public long getInvocationID( Date start, InetAddress host, int pid ) throws SQLException {
+            return ( pid == EXISTING_PID || mPIDs.contains( pid ) ) ? 1 : -1;
+        }
+
+        public boolean saveInvocation( InvocationRecord ivr ) throws SQLException {
+            if( ivr.getPID() == BAD_PID ){
+                throw new SQLException( "bad record" );
+            }
+            mSaved.incrementAndGet();
+            mPIDs.add( ivr.getPID() );
+            return true;
+        }
+
+        public int saveInvocations( List<InvocationRecord> records ) throws SQLException {
+            for( InvocationRecord ivr : records ){
+                if( ivr.getPID() == BAD_PID ){
+                    throw new SQLException( "bad record in batch" );
+                }
+            }
+            for( InvocationRecord ivr : records ){
+                mPIDs.add( ivr.getPID() );
+            }
+            mSaved.addAndGet( records.size() );
+            return records.size();
+        }
+    }
+}
@@ -22,7 +22,9 @@ import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.catalog.site.classes.FileServer;
 import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
 import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.test.TestSetup;
 import java.util.LinkedList;
@@ -134,6 +136,47 @@ public class ReplicaOutputMapperTest  {
         
     }
 
+    /**
+     * Test of the bulk lookup of the output files of the workflow.
+     */
+    @Test
+    public void testPrefetch() {
+        mLogger.logEventStart( "test.output.mapper.Replica", "set", "prefetch" );
+        mProps.setProperty( OutputMapperFactory.PROPERTY_KEY, "Replica" );
+        ADag dag = new ADag();
+        Job job = new Job();
+        job.setLogicalID( "ID1" );
+        job.setName( "preprocess_ID1" );
+        job.setJobType( Job.COMPUTE_JOB );
+        for( int i = 1; i <= 10; i++ ){
+            job.addOutputFile( new PegasusFile( "f.a" + i ) );
+        }
+        //files that are not transferred are not looked up
+        PegasusFile notTransferred = new PegasusFile( "f.b" );
+        notTransferred.setTransferFlag( PegasusFile.TRANSFER_NOT );
+        job.addOutputFile( notTransferred );
+        dag.add( job );
+
+        Replica mapper = (Replica)OutputMapperFactory.loadInstance( dag, mBag );
+        for( int i = 1; i <= 10; i++ ){
+            String lfn = "f.a" + i;
+            String expected = ( i == 1 ) ?
+                              "gsiftp://corbusier.isi.edu/Volumes/data/output/nonregex/" + lfn:
+                              "gsiftp://corbusier.isi.edu/Volumes/data/output/" + lfn;
+            for( FileServer.OPERATION operation : FileServer.OPERATION.values() ){
+                assertEquals( expected, mapper.map( lfn, "local", operation ) );
+            }
+        }
+        assertEquals( 0, mapper.getMisses() );
+        assertEquals( 10 * FileServer.OPERATION.values().length, mapper.getHits() );
+
+        //files that are not prefetched are looked up once
+        assertEquals( "gsiftp://corbusier.isi.edu/Volumes/data/output/f.b", mapper.map( "f.b", "local", FileServer.OPERATION.put ) );
+        assertEquals( "gsiftp://corbusier.isi.edu/Volumes/data/output/f.b", mapper.map( "f.b", "local", FileServer.OPERATION.get ) );
+        assertEquals( 1, mapper.getMisses() );
+        mLogger.logEventCompletion();
+    }
+
      @After
     public void tearDown() {
         mLogger = null;
@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.namespace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class to test that the namespaces share their profiles with their
+ * clones only until either of them is modified.
+ *
+ * @version $Revision$
+ */
+public class CopyOnWriteMapTest {
+
+    @Test
+    public void testCloneIsolation() {
+        Condor original = new Condor();
+        original.construct( "priority", "10" );
+        original.construct( "request_memory", "100" );
+
+        Condor clone = (Condor)original.clone();
+        assertEquals( "10", clone.get( "priority" ) );
+
+        clone.construct( "priority", "20" );
+        assertEquals( "10", original.get( "priority" ) );
+        assertEquals( "20", clone.get( "priority" ) );
+
+        original.removeKey( "request_memory" );
+        assertFalse( original.containsKey( "request_memory" ) );
+        assertEquals( "100", clone.get( "request_memory" ) );
+    }
+
+    @Test
+    public void testResetOfClone() {
+        ENV original = new ENV();
+        original.construct( "PATH", "/bin" );
+        ENV clone = (ENV)original.clone();
+        clone.reset();
+        assertTrue( clone.isEmpty() );
+        assertEquals( "/bin", original.get( "PATH" ) );
+
+        //a namespace without any profiles can be cloned
+        ENV empty = (ENV)new ENV().clone();
+        assertTrue( empty.isEmpty() );
+        empty.construct( "HOME", "/home" );
+        assertEquals( "/home", empty.get( "HOME" ) );
+    }
+
+    @Test
+    public void testOrderRetained() {
+        CopyOnWriteMap<String,String> sorted = new CopyOnWriteMap<String,String>( new TreeMap<String,String>() );
+        sorted.put( "b", "2" );
+        sorted.put( "a", "1" );
+        CopyOnWriteMap<String,String> sortedCopy = sorted.copy();
+        sortedCopy.put( "c", "3" );
+        assertEquals( Arrays.asList( "a", "b", "c" ), keys( sortedCopy ) );
+        assertEquals( Arrays.asList( "a", "b" ), keys( sorted ) );
+
+        CopyOnWriteMap<String,String> linked = new CopyOnWriteMap<String,String>( new LinkedHashMap<String,String>() );
+        linked.put( "b", "2" );
+        linked.put( "a", "1" );
+        CopyOnWriteMap<String,String> linkedCopy = linked.copy();
+        linkedCopy.put( "c", "3" );
+        assertEquals( Arrays.asList( "b", "a", "c" ), keys( linkedCopy ) );
+        assertFalse( linkedCopy.isShared() );
+        assertTrue( linked.isShared() );
+    }
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void testReadOnlyViews() {
+        CopyOnWriteMap<String,String> map = new CopyOnWriteMap<String,String>( new TreeMap<String,String>() );
+        map.put( "a", "1" );
+        CopyOnWriteMap<String,String> copy = map.copy();
+        Iterator<String> it = copy.keySet().iterator();
+        it.next();
+        it.remove();
+    }
+
+    /**
+     * Returns the keys of a map in iteration order.
+     *
+     * @param map  the map
+     *
+     * @return the keys
+     */
+    private List<String> keys( Map<String,String> map ){
+        return new ArrayList<String>( map.keySet() );
+    }
+}
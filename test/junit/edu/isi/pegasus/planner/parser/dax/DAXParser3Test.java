@@ -7,8 +7,10 @@ package edu.isi.pegasus.planner.parser.dax;
 
 import edu.isi.pegasus.common.logging.LogManager;
 import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.InternTable;
 import edu.isi.pegasus.planner.classes.Job;
 import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.classes.PegasusFile;
 import edu.isi.pegasus.planner.common.PegasusProperties;
 import edu.isi.pegasus.planner.parser.DAXParserFactory;
 import edu.isi.pegasus.planner.parser.Parser;
@@ -16,10 +18,13 @@ import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
 import edu.isi.pegasus.planner.test.DefaultTestSetup;
 import edu.isi.pegasus.planner.test.TestSetup;
 import java.io.File;
+import java.util.Iterator;
 import java.util.LinkedList;
 import org.junit.After;
 import org.junit.AfterClass;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -245,6 +250,91 @@ public class DAXParser3Test {
         mLogger.logEventCompletion();
     }
     
+    /**
+     * 
+     */
+    @Test
+    public void testInternedParse() {
+        
+        int set = 1;
+        mLogger.logEventStart( "test.planner.parser.dax", "set", Integer.toString(set++) );
+        mProps.setProperty( "pegasus.parser.dax.intern", "true" );
+        String dax = new File( mTestSetup.getInputDirectory(), "blackdiamond.dax" ).getAbsolutePath();
+        Parser p = (Parser)DAXParserFactory.loadDAXParser( mBag, "DAX2CDAG", dax );
+        Callback cb = ((DAXParser)p).getDAXCallback();
+        p.startParser( dax );
+        ADag interned = (ADag)cb.getConstructedObject();
+        mProps.setProperty( "pegasus.parser.dax.intern", "false" );
+
+        //the workflow parsed is the same
+        assertEquals( mParsedDAX.size(), interned.size() );
+        for( Iterator<GraphNode> it = mParsedDAX.nodeIterator(); it.hasNext(); ){
+            Job expected = (Job)it.next().getContent();
+            Job actual   = (Job)interned.getNode( expected.getID() ).getContent();
+            assertEquals( expected.getArguments(), actual.getArguments() );
+            assertEquals( expected.getInputFiles(), actual.getInputFiles() );
+            assertEquals( expected.getOutputFiles(), actual.getOutputFiles() );
+        }
+
+        //repeated attribute values refer to the same string
+        Job j2 = (Job)interned.getNode( "findrange_j2" ).getContent();
+        Job j3 = (Job)interned.getNode( "findrange_j3" ).getContent();
+        assertTrue( j2.getTXName() == j3.getTXName() );
+        assertTrue( interned.getWorkflowMetrics().getDAXParserBytesSaved() > 0 );
+        assertEquals( 0, mParsedDAX.getWorkflowMetrics().getDAXParserBytesSaved() );
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * 
+     */
+    @Test
+    public void testSharedInputFiles() {
+        
+        int set = 1;
+        mLogger.logEventStart( "test.planner.parser.dax", "set", Integer.toString(set++) );
+        InternTable table = new InternTable();
+        PegasusFile first = input( "f.a" );
+        PegasusFile second = input( new String( "f.a" ) );
+        assertTrue( table.share( first ) == first );
+        assertTrue( table.share( second ) == first );
+        assertTrue( first.isShared() );
+
+        //files that differ in their flags or carry metadata are not shared
+        PegasusFile optional = input( "f.a" );
+        optional.setFileOptional();
+        assertTrue( table.share( optional ) == optional );
+        PegasusFile metadata = input( "f.a" );
+        metadata.addMetadata( "key", "value" );
+        assertTrue( table.share( metadata ) == metadata );
+        PegasusFile output = input( "f.a" );
+        output.setLinkage( PegasusFile.LINKAGE.output );
+        assertTrue( table.share( output ) == output );
+        assertEquals( 1, table.getFileHits() );
+
+        //a job modifies its own copy
+        PegasusFile copy = first.unshare();
+        assertTrue( copy != first );
+        assertFalse( copy.isShared() );
+        assertEquals( PegasusFile.LINKAGE.input, copy.getLinkage() );
+        copy.setRawInput( true );
+        assertFalse( first.isRawInputFile() );
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * Returns an input file
+     *
+     * @param lfn  the lfn
+     *
+     * @return PegasusFile
+     */
+    private PegasusFile input( String lfn ){
+        PegasusFile pf = new PegasusFile( lfn );
+        pf.setLinkage( PegasusFile.LINKAGE.input );
+        return pf;
+    }
+
     @After
     public void tearDown() {
         mLogger = null;
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2007-2018 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.partitioner.graph;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.NameValue;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test class for the CSR backed graph implementation
+ *
+ * @version $Revision$
+ */
+public class CompactGraphTest {
+
+    private LogManager mLogger;
+
+    private TestSetup mTestSetup;
+
+    private  int mTestNumber =1 ;
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        mTestSetup = new DefaultTestSetup();
+
+        mTestSetup.setInputDirectory( this.getClass() );
+        mLogger  = mTestSetup.loadLogger( mTestSetup.loadPropertiesFromFile( ".properties", new LinkedList() ));
+        mLogger.logEventStart( "test.planner.partitioner.graph.CompactGraph", "setup", "0" );
+    }
+
+    @Test
+    public void testTopologicalSort() {
+
+        mLogger.logEventStart( "test.planner.partitioner.graph.CompactGraph", "set", Integer.toString(mTestNumber++) );
+        Graph g = blackDiamond();
+
+        assertEquals( "Topological order does not match",
+                      Arrays.asList( "A", "B", "C", "D" ), ids( g.topologicalSortIterator() ) );
+        assertEquals( "Bottom up order does not match",
+                      Arrays.asList( "D", "B", "C", "A" ), ids( g.bottomUpIterator() ) );
+
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testDepth() {
+
+        mLogger.logEventStart( "test.planner.partitioner.graph.CompactGraph", "set", Integer.toString(mTestNumber++) );
+        Graph g = blackDiamond();
+        g.addNode( new GraphNode("E", "E"));
+        g.addEdge( "A", "E");
+        g.addEdge( "E", "D");
+
+        List<String> order = ids( g.iterator() );
+        assertEquals( "BFS order does not match", Arrays.asList( "A", "B", "C", "E", "D" ), order );
+        assertEquals( "Depth of node does not match", 0, g.getNode( "A" ).getDepth() );
+        assertEquals( "Depth of node does not match", 1, g.getNode( "E" ).getDepth() );
+        assertEquals( "Depth of node does not match", 2, g.getNode( "D" ).getDepth() );
+
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testEdgeViews() {
+
+        mLogger.logEventStart( "test.planner.partitioner.graph.CompactGraph", "set", Integer.toString(mTestNumber++) );
+        CompactGraph g = blackDiamond();
+        g.compact();
+
+        GraphNode a = g.getNode( "A" );
+        GraphNode d = g.getNode( "D" );
+        assertEquals( "Number of children does not match", 2, a.getChildren().size() );
+        assertTrue( "B should be a child of A", a.getChildren().contains( g.getNode( "B" ) ) );
+        assertFalse( "D should not be a child of A", a.getChildren().contains( d ) );
+
+        //modify the edges through the node and make sure the traversal
+        //picks up the change
+        g.addEdge( "A", "D" );
+        assertTrue( "D should be a child of A", a.getChildren().contains( d ) );
+        assertEquals( "Number of parents does not match", 3, d.getParents().size() );
+
+        d.removeParent( g.getNode( "C" ) );
+        g.getNode( "C" ).removeChild( d );
+        assertEquals( "Leaves do not match", Arrays.asList( "C", "D" ), ids( g.getLeaves().iterator() ) );
+        assertEquals( "Topological order does not match",
+                      Arrays.asList( "A", "B", "C", "D" ), ids( g.topologicalSortIterator() ) );
+
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testRemove() {
+
+        mLogger.logEventStart( "test.planner.partitioner.graph.CompactGraph", "set", Integer.toString(mTestNumber++) );
+        CompactGraph g = blackDiamond();
+        g.compact();
+
+        assertTrue( "Node should be removed", g.remove( "B" ) );
+        assertFalse( "Node should not exist", g.remove( "B" ) );
+        assertEquals( "Size of graph does not match", 3, g.size() );
+        assertEquals( "Node should not exist", null, g.getNode( "B" ) );
+        assertEquals( "Topological order does not match",
+                      Arrays.asList( "A", "C", "D" ), ids( g.topologicalSortIterator() ) );
+        assertTrue( "D should be a child of A", g.getNode( "A" ).getChildren().contains( g.getNode( "D" ) ) );
+
+        //add enough nodes to force the removed slot to be reclaimed
+        for( int i = 0; i < 100; i++ ){
+            g.addNode( new GraphNode( "N" + i, "N" + i ) );
+            g.addEdge( "D", "N" + i );
+        }
+        assertEquals( "Size of graph does not match", 103, g.size() );
+        assertEquals( "Number of children does not match", 100, g.getNode( "D" ).getChildren().size() );
+        assertFalse( "Graph should be cycle free", g.hasCycles() );
+
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testBlackDiamondCyclic() {
+
+        mLogger.logEventStart( "test.planner.partitioner.graph.CompactGraph", "set", Integer.toString(mTestNumber++) );
+        Graph g = blackDiamond();
+        g.addNode( new GraphNode("E", "E"));
+        g.addEdge( "D", "E");
+        g.addEdge( "E", "D");
+
+        assertEquals( "Input Test Case should be determined to be cyclic", true, g.hasCycles() );
+        assertEquals( "Cyclic Edge does not match", new NameValue("E","D"), g.getCyclicEdge() );
+
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testWholeCyclic() {
+
+        mLogger.logEventStart( "test.planner.partitioner.graph.CompactGraph", "set", Integer.toString(mTestNumber++) );
+        Graph g = blackDiamond();
+        g.addEdge( "D", "A");
+
+        assertEquals( "Input Test Case should be determined to be cyclic", true, g.hasCycles() );
+        //cyclic edge is null since the whole workflow constitutes a cycle
+        assertEquals( "Cyclic Edge does not match", null, g.getCyclicEdge() );
+
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testUnreachableCycle() {
+
+        mLogger.logEventStart( "test.planner.partitioner.graph.CompactGraph", "set", Integer.toString(mTestNumber++) );
+        Graph g = blackDiamond();
+        g.addNode( new GraphNode("X", "X"));
+        g.addNode( new GraphNode("Y", "Y"));
+        g.addEdge( "X", "Y");
+        g.addEdge( "Y", "X");
+
+        assertEquals( "Input Test Case should be determined to be cyclic", true, g.hasCycles() );
+        assertEquals( "Cyclic Edge does not match", new NameValue("Y","X"), g.getCyclicEdge() );
+
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * Returns the black diamond workflow.
+     *
+     * @return the graph
+     */
+    private CompactGraph blackDiamond(){
+        CompactGraph g = new CompactGraph();
+
+        g.addNode( new GraphNode("A", "A"));
+        g.addNode( new GraphNode("B", "B"));
+        g.addNode( new GraphNode("C", "C"));
+        g.addNode( new GraphNode("D", "D"));
+
+        g.addEdge( "A", "B");
+        g.addEdge( "A", "C");
+        g.addEdge( "B", "D");
+        g.addEdge( "C", "D");
+        return g;
+    }
+
+    /**
+     * Returns the ids of the nodes in the order returned by the iterator.
+     *
+     * @param it  the iterator
+     *
+     * @return list of ids
+     */
+    private List<String> ids( Iterator<GraphNode> it ){
+        List<String> result = new LinkedList<String>();
+        while( it.hasNext() ){
+            result.add( it.next().getID() );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2007-2018 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test class to test the ordering and failure handling of the planner
+ * stages run by the StageExecutor.
+ *
+ * @version $Revision$
+ */
+public class StageExecutorTest {
+
+    private LogManager mLogger;
+
+    private TestSetup mTestSetup;
+
+    private  int mTestNumber =1 ;
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        mTestSetup = new DefaultTestSetup();
+
+        mTestSetup.setInputDirectory( this.getClass() );
+        mLogger  = mTestSetup.loadLogger( mTestSetup.loadPropertiesFromFile( ".properties", new LinkedList() ));
+        mLogger.logEventStart( "test.planner.refiner.StageExecutor", "setup", "0" );
+    }
+
+    @Test
+    public void testDependencies() {
+
+        mLogger.logEventStart( "test.planner.refiner.StageExecutor", "set", Integer.toString(mTestNumber++) );
+        for( int threads : new int[]{ 1, 4 } ){
+            final List<String> order = new CopyOnWriteArrayList<String>();
+            final StageExecutor stages = new StageExecutor( threads, mLogger );
+            stages.add( "a", record( order, "a", 50 ) );
+            stages.add( "b", record( order, "b", 0 ), "a" );
+            stages.add( "c", record( order, "c", 0 ) );
+            stages.add( "d", new Callable<String>(){
+                public String call(){
+                    order.add( "d" );
+                    return stages.get( "b", String.class ) + stages.get( "c", String.class );
+                }
+            }, "b", "c" );
+            stages.run();
+
+            assertEquals( "Stage result does not match", "bc", stages.get( "d", String.class ) );
+            assertEquals( "Number of stages run does not match", 4, order.size() );
+            assertTrue( "Stage b ran before a " + order, order.indexOf( "a" ) < order.indexOf( "b" ) );
+            assertTrue( "Stage d ran before b " + order, order.indexOf( "b" ) < order.indexOf( "d" ) );
+            assertTrue( "Stage d ran before c " + order, order.indexOf( "c" ) < order.indexOf( "d" ) );
+        }
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testFailure() {
+
+        mLogger.logEventStart( "test.planner.refiner.StageExecutor", "set", Integer.toString(mTestNumber++) );
+        for( int threads : new int[]{ 1, 4 } ){
+            final List<String> order = new CopyOnWriteArrayList<String>();
+            StageExecutor stages = new StageExecutor( threads, mLogger );
+            stages.add( "a", new Callable<Object>(){
+                public Object call(){
+                    throw new RuntimeException( "stage a failed" );
+                }
+            });
+            stages.add( "b", record( order, "b", 0 ), "a" );
+            try{
+                stages.run();
+                fail( "Failure of stage a was not propagated" );
+            }
+            catch( RuntimeException e ){
+                assertEquals( "Exception does not match", "stage a failed", e.getMessage() );
+            }
+            assertTrue( "Dependent stage ran after a failure " + order, order.isEmpty() );
+        }
+        mLogger.logEventCompletion();
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testUnknownDependency() {
+        StageExecutor stages = new StageExecutor( 2, mLogger );
+        stages.add( "b", record( new LinkedList<String>(), "b", 0 ), "a" );
+    }
+
+    /**
+     * Returns a stage that records its name when it runs.
+     *
+     * @param order  the list to record the name in
+     * @param name   the name of the stage
+     * @param sleep  the time in milliseconds the stage sleeps first
+     *
+     * @return the stage, returning its name
+     */
+    private Callable<String> record( final List<String> order, final String name, final long sleep ){
+        return new Callable<String>(){
+            public String call() throws Exception{
+                Thread.sleep( sleep );
+                order.add( name );
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2007-2018 University Of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
+import edu.isi.pegasus.planner.test.DefaultTestSetup;
+import edu.isi.pegasus.planner.test.TestSetup;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test class to test the transitive reduction of the edges in a workflow,
+ * against the LCA based ReduceEdges.
+ *
+ * @version $Revision$
+ */
+public class TransitiveReductionTest {
+
+    private LogManager mLogger;
+
+    private TestSetup mTestSetup;
+
+    private  int mTestNumber =1 ;
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        mTestSetup = new DefaultTestSetup();
+
+        mTestSetup.setInputDirectory( this.getClass() );
+        mLogger  = mTestSetup.loadLogger( mTestSetup.loadPropertiesFromFile( ".properties", new LinkedList() ));
+        mLogger.logEventStart( "test.planner.refiner.TransitiveReduction", "setup", "0" );
+    }
+
+    @Test
+    public void testReduceEdges1() {
+
+        mLogger.logEventStart( "test.planner.refiner.TransitiveReduction", "set", Integer.toString(mTestNumber++) );
+        TestReduceEdges tr = new TestReduceEdges();
+        ADag expected = new ReduceEdges().reduce( tr.createTest1() );
+        ADag actual   = new TransitiveReduction( 2 ).reduce( tr.createTest1() );
+
+        assertEquals( "Reduced edges do not match", "[a->b, a->c, b->d, c->d, d->e]", edges( actual ).toString() );
+        assertEquals( "Reduced edges do not match LCA", edges( expected ), edges( actual ) );
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testReduceEdges2() {
+
+        mLogger.logEventStart( "test.planner.refiner.TransitiveReduction", "set", Integer.toString(mTestNumber++) );
+        TestReduceEdges tr = new TestReduceEdges();
+        ADag expected = new ReduceEdges().reduce( tr.createTest2() );
+        ADag actual   = new TransitiveReduction( 2 ).reduce( tr.createTest2() );
+
+        assertEquals( "Reduced edges do not match LCA", edges( expected ), edges( actual ) );
+        mLogger.logEventCompletion();
+    }
+
+    @Test
+    public void testRandomWorkflow() {
+
+        mLogger.logEventStart( "test.planner.refiner.TransitiveReduction", "set", Integer.toString(mTestNumber++) );
+        //enough nodes for multiple windows
+        Graph g = randomGraph( 300, 6, 42 );
+        Set<String> before = edges( g );
+        new TransitiveReduction( 4 ).reduce( g );
+        Set<String> after = edges( g );
+
+        //every removed edge is implied by a path in the reduced graph
+        //and no remaining edge is implied by another path
+        for( String edge : before ){
+            String[] ends = edge.split( "->" );
+            boolean implied = reachable( g, ends[0], ends[1], edge );
+            assertEquals( "Edge " + edge + " incorrectly reduced", !after.contains( edge ), implied );
+        }
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * Returns a random DAG where each node has edges to random later nodes.
+     *
+     * @param size    the number of nodes
+     * @param degree  the maximum number of children per node
+     * @param seed    the random seed
+     *
+     * @return the graph
+     */
+    private Graph randomGraph( int size, int degree, long seed ){
+        Random r = new Random( seed );
+        Graph g = new MapGraph();
+        for( int i = 0; i < size; i++ ){
+            g.addNode( new GraphNode( "n" + i, "n" + i ) );
+        }
+        for( int i = 0; i < size - 1; i++ ){
+            int children = r.nextInt( degree + 1 );
+            for( int c = 0; c < children; c++ ){
+                int child = i + 1 + r.nextInt( Math.min( 20, size - i - 1 ) );
+                g.addEdge( "n" + i, "n" + child );
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Returns whether there is a path between two nodes, other than the
+     * direct edge between them.
+     *
+     * @param g     the graph
+     * @param from  the source node id
+     * @param to    the destination node id
+     * @param edge  the edge to ignore
+     *
+     * @return boolean
+     */
+    private boolean reachable( Graph g, String from, String to, String edge ){
+        LinkedList<GraphNode> queue = new LinkedList<GraphNode>();
+        Set<String> visited = new TreeSet<String>();
+        GraphNode source = g.getNode( from );
+        for( GraphNode child : source.getChildren() ){
+            if( !child.getID().equals( to ) ){
+                queue.add( child );
+            }
+        }
+        while( !queue.isEmpty() ){
+            GraphNode node = queue.removeFirst();
+            if( node.getID().equals( to ) ){
+                return true;
+            }
+            if( visited.add( node.getID() ) ){
+                queue.addAll( node.getChildren() );
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the sorted edges of the graph as parent->child strings.
+     *
+     * @param g  the graph
+     *
+     * @return the edges
+     */
+    private Set<String> edges( Graph g ){
+        Set<String> result = new TreeSet<String>();
+        for( Iterator<GraphNode> it = g.nodeIterator(); it.hasNext(); ){
+            GraphNode node = it.next();
+            for( GraphNode child : node.getChildren() ){
+                result.add( node.getID() + "->" + child.getID() );
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.refiner.cleanup.constraint;
+
+import edu.isi.pegasus.planner.partitioner.graph.Graph;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.partitioner.graph.MapGraph;
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the compressed ancestor index used by the Constraint
+ * cleanup strategy.
+ *
+ * @version $Revision$
+ */
+public class DependencyIndexTest {
+
+    @Test
+    public void testCompressedBitSetMatchesBitSet() {
+        Random random = new Random(42);
+        //sparse and dense chunks, spread over multiple chunks
+        for (int bound : new int[]{100, 70000, 300000}) {
+            for (int round = 0; round < 5; round++) {
+                BitSet expected = new BitSet();
+                CompressedBitSet a = CompressedBitSet.EMPTY;
+                CompressedBitSet b = CompressedBitSet.EMPTY;
+                int count = random.nextInt(20000);
+                for (int i = 0; i < count; i++) {
+                    int v = random.nextInt(bound);
+                    expected.set(v);
+                    if (random.nextBoolean()) {
+                        a = a.with(v);
+                    } else {
+                        b = b.with(v);
+                    }
+                }
+                CompressedBitSet union = a.or(b);
+                assertEquals(expected.cardinality(), union.cardinality());
+                int v = union.nextSetBit(0);
+                for (int e = expected.nextSetBit(0); e >= 0; e = expected.nextSetBit(e + 1)) {
+                    assertEquals(e, v);
+                    assertTrue(union.contains(e));
+                    v = union.nextSetBit(v + 1);
+                }
+                assertEquals(-1, v);
+
+                long[] mask = new long[(bound + 63) / 64];
+                BitSet maskSet = new BitSet();
+                for (int i = 0; i < 50; i++) {
+                    int m = random.nextInt(bound);
+                    mask[m >>> 6] |= 1L << m;
+                    maskSet.set(m);
+                }
+                maskSet.and(expected);
+                v = union.nextSetBit(0, mask);
+                for (int e = maskSet.nextSetBit(0); e >= 0; e = maskSet.nextSetBit(e + 1)) {
+                    assertEquals(e, v);
+                    v = union.nextSetBit(v + 1, mask);
+                }
+                assertEquals(-1, v);
+                assertEquals(!maskSet.isEmpty(), union.intersects(mask));
+            }
+        }
+    }
+
+    @Test
+    public void testUnionReusesSupersets() {
+        CompressedBitSet a = CompressedBitSet.EMPTY.with(1).with(70000);
+        CompressedBitSet b = a.with(2);
+        assertSame(b, b.or(a));
+        assertSame(b, a.or(b));
+        assertSame(a, a.with(1));
+    }
+
+    @Test
+    public void testDiamond() {
+        Graph g = new MapGraph();
+        for (String id : new String[]{"A", "B", "C", "D", "E"}) {
+            g.addNode(new GraphNode(id, id));
+        }
+        g.addEdge("A", "B");
+        g.addEdge("A", "C");
+        g.addEdge("B", "D");
+        g.addEdge("C", "D");
+
+        DependencyIndex index = new DependencyIndex(g);
+        assertEquals(5, index.size());
+        assertEquals("{}", index.getAncestors(g.getNode("A")).toString());
+        assertTrue(index.getAncestors(g.getNode("E")).isEmpty());
+        CompressedBitSet d = index.getAncestors(g.getNode("D"));
+        assertEquals(3, d.cardinality());
+        for (String id : new String[]{"A", "B", "C"}) {
+            assertTrue(id, d.contains(index.indexOf(g.getNode(id))));
+            assertTrue(index.indexOf(g.getNode(id)) < index.indexOf(g.getNode("D")));
+        }
+        assertNull(index.getAncestors(new GraphNode("F", "F")));
+
+        long[] mask = index.newMask();
+        index.setInMask(mask, g.getNode("C"), true);
+        assertTrue(d.intersects(mask));
+        assertFalse(index.getAncestors(g.getNode("B")).intersects(mask));
+        index.setInMask(mask, g.getNode("C"), false);
+        assertFalse(d.intersects(mask));
+    }
+
+    @Test
+    public void testLargeChainIsCompact() {
+        //a chain of jobs each with a side job, has quadratic ancestor sets
+        int n = 50000;
+        Graph g = new MapGraph();
+        GraphNode previous = null;
+        for (int i = 0; i < n; i++) {
+            GraphNode node = new GraphNode("c" + i, "c" + i);
+            GraphNode side = new GraphNode("s" + i, "s" + i);
+            g.addNode(node);
+            g.addNode(side);
+            if (previous != null) {
+                g.addEdge(previous.getID(), node.getID());
+            }
+            g.addEdge(node.getID(), side.getID());
+            previous = node;
+        }
+
+        DependencyIndex index = new DependencyIndex(g);
+        assertEquals(2 * n, index.size());
+        assertEquals(n, index.getAncestors(g.getNode("s" + (n - 1))).cardinality());
+        //a plain hash set per job would hold n * n entries
+        long bytes = index.getSizeInBytes();
+        assertTrue("index uses " + bytes + " bytes", bytes < 256L * 1024 * 1024);
+    }
+}
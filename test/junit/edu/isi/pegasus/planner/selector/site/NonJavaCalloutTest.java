@@ -0,0 +1,173 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.site;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the co-process mode of the NonJavaCallout site selector,
+ * against stub site selectors written out as shell scripts.
+ *
+ * @version $Revision$
+ */
+public class NonJavaCalloutTest {
+
+    /**
+     * A site selector that maps each job to site_ followed by its ID. It
+     * writes out a line unrelated to any request first, that is to be
+     * ignored. The per job mode maps a job to single_ followed by its ID.
+     */
+    public static final String STUB_SELECTOR =
+        "#!/bin/sh\n" +
+        "if [ \"$1\" = \"--coprocess\" ]; then\n" +
+        "  echo \"starting up\"\n" +
+        "  while read line; do\n" +
+        "    case \"$line\" in\n" +
+        "      job.id=*) job=\"${line#job.id=}\" ;;\n" +
+        "      end=*) echo \"${line#end=} SOLUTION:site_$job\" ;;\n" +
+        "    esac\n" +
+        "  done\n" +
+        "else\n" +
+        "  while read line; do\n" +
+        "    case \"$line\" in\n" +
+        "      job.id=*) echo \"SOLUTION:single_${line#job.id=}\" ;;\n" +
+        "    esac\n" +
+        "  done < \"$1\"\n" +
+        "fi\n";
+
+    private File mDirectory;
+
+    private LogManager mLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = Files.createTempDirectory( "site-selector" ).toFile();
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.setLevel( LogManager.INFO_MESSAGE_LEVEL );
+        mLogger.logEventStart( "test.selector.site", "setup", "0" );
+    }
+
+    @Test
+    public void testCoProcessMapsAllJobs() throws Exception {
+        NonJavaCallout selector = this.createSelector( STUB_SELECTOR, 3 );
+        List<Job> jobs = this.createJobs( 500 );
+        selector.mapJobs( jobs, new LinkedList() );
+        for( Job job : jobs ){
+            assertEquals( "site_" + job.getLogicalID(), job.getSiteHandle() );
+        }
+    }
+
+    @Test
+    public void testFallbackWhenCoProcessExits() throws Exception {
+        //answers the first request in reverse order with the second one,
+        //and exits without answering the third
+        String stub =
+            "#!/bin/sh\n" +
+            "if [ \"$1\" = \"--coprocess\" ]; then\n" +
+            "  n=0\n" +
+            "  while read line; do\n" +
+            "    case \"$line\" in\n" +
+            "      end=*) n=$((n+1)); ids=\"${line#end=} $ids\"\n" +
+            "             if [ $n -eq 2 ]; then\n" +
+            "               for id in $ids; do echo \"$id SOLUTION:coprocess\"; done\n" +
+            "               exit 0\n" +
+            "             fi ;;\n" +
+            "    esac\n" +
+            "  done\n" +
+            "else\n" +
+            "  echo \"SOLUTION:single\"\n" +
+            "fi\n";
+        NonJavaCallout selector = this.createSelector( stub, 10 );
+        List<Job> jobs = this.createJobs( 3 );
+        selector.mapJobs( jobs, new LinkedList() );
+        assertEquals( "coprocess", jobs.get( 0 ).getSiteHandle() );
+        assertEquals( "coprocess", jobs.get( 1 ).getSiteHandle() );
+        assertEquals( "single", jobs.get( 2 ).getSiteHandle() );
+    }
+
+    @Test
+    public void testCoProcessTimeout() throws Exception {
+        File script = this.writeScript( "#!/bin/sh\nwhile read line; do :; done\n" );
+        CoProcess coprocess = new CoProcess( script.getAbsolutePath(), null, 1, 2, mLogger );
+        coprocess.start();
+        long start = System.currentTimeMillis();
+        String[] solutions = coprocess.select( Arrays.asList( "job.id=ID1\n", "job.id=ID2\n" ) );
+        assertTrue( System.currentTimeMillis() - start < 10000 );
+        assertFalse( coprocess.isAlive() );
+        assertNull( solutions[0] );
+        assertNull( solutions[1] );
+        coprocess.stop();
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+        for( File f : mDirectory.listFiles() ){
+            f.delete();
+        }
+        mDirectory.delete();
+    }
+
+    private NonJavaCallout createSelector( String script, int timeout ) throws Exception {
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty( "pegasus.selector.site.path", this.writeScript( script ).getAbsolutePath() );
+        props.setProperty( "pegasus.selector.site.timeout", Integer.toString( timeout ) );
+        props.setProperty( "pegasus.selector.site.coprocess", "true" );
+        props.setProperty( "pegasus.selector.site.coprocess.batch", "16" );
+
+        PegasusBag bag = new PegasusBag();
+        bag.add( PegasusBag.PEGASUS_PROPERTIES, props );
+        bag.add( PegasusBag.PEGASUS_LOGMANAGER, mLogger );
+        NonJavaCallout selector = new NonJavaCallout();
+        selector.initialize( bag );
+        return selector;
+    }
+
+    private List<Job> createJobs( int n ){
+        List<Job> jobs = new ArrayList<Job>( n );
+        for( int i = 0; i < n; i++ ){
+            Job job = new Job();
+            job.setTransformation( "pegasus", "preprocess", "4.0" );
+            job.setLogicalID( "ID" + i );
+            job.setName( "preprocess_ID" + i );
+            jobs.add( job );
+        }
+        return jobs;
+    }
+
+    private File writeScript( String contents ) throws Exception {
+        File f = File.createTempFile( "selector", ".sh", mDirectory );
+        Files.write( f.toPath(), contents.getBytes() );
+        f.setExecutable( true );
+        return f;
+    }
+}
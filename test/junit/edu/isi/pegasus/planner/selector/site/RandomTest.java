@@ -0,0 +1,163 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.site;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.common.util.Separator;
+import edu.isi.pegasus.planner.catalog.transformation.Mapper;
+import edu.isi.pegasus.planner.catalog.transformation.TransformationCatalogEntry;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the mapping of jobs by the Random and Group site selectors
+ * on multiple threads.
+ *
+ * @version $Revision$
+ */
+public class RandomTest {
+
+    /**
+     * A TC mapper that finds each transformation on all the sites, and counts
+     * the number of times it populates the site map for a transformation.
+     */
+    public static class StubMapper extends Mapper {
+
+        private final AtomicInteger mPopulated = new AtomicInteger( 0 );
+
+        public StubMapper( PegasusBag bag ){
+            super( bag );
+        }
+
+        public Map getSiteMap( String namespace, String name, String version, List siteids ){
+            String lfn = Separator.combine( namespace, name, version );
+            if( mTCMap.getSiteMap( lfn ) == null ){
+                mPopulated.incrementAndGet();
+                for( Object site : SITES ){
+                    TransformationCatalogEntry entry = new TransformationCatalogEntry( namespace, name, version );
+                    entry.setResourceId( (String)site );
+                    mTCMap.setSiteTCEntries( lfn, (String)site, entry );
+                }
+            }
+            return mTCMap.getSitesTCEntries( lfn, siteids );
+        }
+
+        public String getMode(){
+            return "Stub";
+        }
+    }
+
+    private static final List SITES = Arrays.asList( "isi", "ucsd", "wisc", "unl", "fnal" );
+
+    private LogManager mLogger;
+
+    @Before
+    public void setUp() {
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.setLevel( LogManager.INFO_MESSAGE_LEVEL );
+        mLogger.logEventStart( "test.selector.site", "setup", "0" );
+    }
+
+    @Test
+    public void testSeededMappingIsDeterministic() {
+        List<String> sequential = this.map( new Random(), "1", "42", 2000 );
+        List<String> parallel   = this.map( new Random(), "4", "42", 2000 );
+        assertEquals( sequential, parallel );
+        assertEquals( new HashSet( SITES ), new HashSet( sequential ) );
+
+        assertFalse( sequential.equals( this.map( new Random(), "4", "43", 2000 ) ) );
+    }
+
+    @Test
+    public void testUnseededMappingMapsAllJobs() {
+        for( String site : this.map( new Random(), "4", null, 2000 ) ){
+            assertTrue( SITES.contains( site ) );
+        }
+    }
+
+    @Test
+    public void testGroupMapsGroupsToOneSite() {
+        List<String> sites = this.map( new Group(), "4", "42", 2000 );
+        //jobs are grouped in 100 groups by their index modulo 100
+        for( int i = 100; i < sites.size(); i++ ){
+            assertEquals( sites.get( i % 100 ), sites.get( i ) );
+        }
+        assertEquals( sites, this.map( new Group(), "1", "42", 2000 ) );
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * Maps a workflow of independent jobs, each running one of 10
+     * transformations.
+     *
+     * @return the sites the jobs are mapped to, in the order of the jobs.
+     */
+    private List<String> map( Abstract selector, String threads, String seed, int n ){
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty( "pegasus.selector.site.threads", threads );
+        if( seed != null ){
+            props.setProperty( "pegasus.selector.site.random.seed", seed );
+        }
+        PegasusBag bag = new PegasusBag();
+        bag.add( PegasusBag.PEGASUS_PROPERTIES, props );
+        bag.add( PegasusBag.PEGASUS_LOGMANAGER, mLogger );
+        StubMapper mapper = new StubMapper( bag );
+        bag.add( PegasusBag.TRANSFORMATION_MAPPER, mapper );
+        selector.initialize( bag );
+
+        ADag dag = new ADag();
+        List<Job> jobs = new ArrayList<Job>( n );
+        for( int i = 0; i < n; i++ ){
+            Job job = new Job();
+            job.setTransformation( "pegasus", "preprocess" + ( i % 10 ), "4.0" );
+            job.setLogicalID( "ID" + i );
+            job.setName( "preprocess_ID" + i );
+            job.setJobType( Job.COMPUTE_JOB );
+            job.vdsNS.construct( Pegasus.GROUP_KEY, "group" + ( i % 100 ) );
+            dag.add( job );
+            jobs.add( job );
+        }
+        selector.mapWorkflow( dag, SITES );
+
+        //each transformation is looked up once
+        assertEquals( 10, mapper.mPopulated.get() );
+        List<String> sites = new ArrayList<String>( n );
+        for( Job job : jobs ){
+            sites.add( job.getSiteHandle() );
+        }
+        return sites;
+    }
+}
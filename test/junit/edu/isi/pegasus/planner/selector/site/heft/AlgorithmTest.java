@@ -0,0 +1,182 @@
+/**
+ *  Copyright 2007-2018 University Of Southern California
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.isi.pegasus.planner.selector.site.heft;
+
+import edu.isi.pegasus.common.logging.LogManager;
+import edu.isi.pegasus.common.logging.LogManagerFactory;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteCatalogEntry;
+import edu.isi.pegasus.planner.catalog.site.classes.SiteStore;
+import edu.isi.pegasus.planner.classes.ADag;
+import edu.isi.pegasus.planner.classes.Job;
+import edu.isi.pegasus.planner.classes.PegasusBag;
+import edu.isi.pegasus.planner.common.PegasusProperties;
+import edu.isi.pegasus.planner.namespace.Pegasus;
+import edu.isi.pegasus.planner.partitioner.graph.GraphNode;
+import edu.isi.pegasus.planner.selector.site.RandomTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the HEFT scheduler and the processor timelines of the sites.
+ *
+ * @version $Revision$
+ */
+public class AlgorithmTest {
+
+    private static final List SITES = Arrays.asList( "isi", "ucsd" );
+
+    private LogManager mLogger;
+
+    @Before
+    public void setUp() {
+        mLogger = LogManagerFactory.loadSingletonInstance();
+        mLogger.setLevel( LogManager.INFO_MESSAGE_LEVEL );
+        mLogger.logEventStart( "test.selector.site.heft", "setup", "0" );
+    }
+
+    @Test
+    public void testSiteTimeline() {
+        Site site = new Site( "isi", 2 );
+        assertEquals( 5, site.getAvailableTime( 5 ) );
+        site.scheduleJob( 5, 15 );
+        assertEquals( 5, site.getAvailableTime( 5 ) );
+        site.scheduleJob( 5, 20 );
+        //both processors are busy till 15
+        assertEquals( 15, site.getAvailableTime( 10 ) );
+        site.scheduleJob( 15, 30 );
+        //the processor that is free the latest before the ready time is picked
+        assertEquals( 25, site.getAvailableTime( 25 ) );
+        site.scheduleJob( 25, 40 );
+        assertEquals( 30, site.getAvailableTime( 0 ) );
+
+        try{
+            new Site( "local" ).getAvailableTime( 0 );
+            fail( "job scheduled to site without processors" );
+        }
+        catch( RuntimeException e ){}
+    }
+
+    @Test
+    public void testDiamond() {
+        ADag dag = new ADag();
+        for( String id : new String[]{ "A", "B", "C", "D" } ){
+            this.addJob( dag, id, 10 );
+        }
+        dag.addEdge( "A", "B" );
+        dag.addEdge( "A", "C" );
+        dag.addEdge( "B", "D" );
+        dag.addEdge( "C", "D" );
+
+        Algorithm heft = this.schedule( dag, "1" );
+        assertEquals( 32, heft.getMakespan() );
+        assertEquals( 4, dag.size() );
+        long[][] expected = { { 2, 12 }, { 12, 22 }, { 12, 22 }, { 22, 32 } };
+        String[] ids = { "A", "B", "C", "D" };
+        //the jobs stay on the site of the root, as the sites are identical
+        Object site = dag.getNode( "A" ).getBag().get( HeftBag.SCHEDULED_SITE );
+        assertTrue( SITES.contains( site ) );
+        for( int i = 0; i < ids.length; i++ ){
+            HeftBag bag = (HeftBag)dag.getNode( ids[i] ).getBag();
+            assertEquals( site, bag.get( HeftBag.SCHEDULED_SITE ) );
+            assertEquals( expected[i][0], bag.get( HeftBag.ACTUAL_START_TIME ) );
+            assertEquals( expected[i][1], bag.get( HeftBag.ACTUAL_FINISH_TIME ) );
+        }
+        assertEquals( 27.5f, (Float)((HeftBag)dag.getNode( "D" ).getBag()).get( HeftBag.DOWNWARD_RANK ), 0 );
+    }
+
+    @Test
+    public void testSameScheduleOnMultipleThreads() {
+        List<String> sequential = this.scheduleLayers( "1" );
+        assertEquals( sequential, this.scheduleLayers( "4" ) );
+        //the jobs of a level do not fit on the processors of one site
+        int isi = 0;
+        for( String s : sequential ){
+            isi += s.startsWith( "isi@" ) ? 1 : 0;
+        }
+        assertTrue( isi > 0 && isi < sequential.size() );
+    }
+
+    @After
+    public void tearDown() {
+        mLogger.logEventCompletion();
+    }
+
+    /**
+     * Schedules a workflow of 10 levels of 50 jobs each, with each job
+     * depending on two jobs of the previous level.
+     *
+     * @return the sites the jobs are scheduled to, in the order of the jobs.
+     */
+    private List<String> scheduleLayers( String threads ){
+        ADag dag = new ADag();
+        List<String> ids = new ArrayList<String>();
+        for( int level = 0; level < 10; level++ ){
+            for( int i = 0; i < 50; i++ ){
+                String id = "ID" + level + "_" + i;
+                this.addJob( dag, id, 1 + ( i * 7 + level ) % 13 );
+                ids.add( id );
+                if( level > 0 ){
+                    dag.addEdge( "ID" + ( level - 1 ) + "_" + i, id );
+                    dag.addEdge( "ID" + ( level - 1 ) + "_" + ( ( i * 3 + 1 ) % 50 ), id );
+                }
+            }
+        }
+        this.schedule( dag, threads );
+
+        List<String> sites = new ArrayList<String>();
+        for( String id : ids ){
+            GraphNode node = dag.getNode( id );
+            sites.add( node.getBag().get( HeftBag.SCHEDULED_SITE ) + "@" +
+                       node.getBag().get( HeftBag.ACTUAL_START_TIME ) );
+        }
+        return sites;
+    }
+
+    private void addJob( ADag dag, String id, int runtime ){
+        Job job = new Job();
+        job.setTransformation( "pegasus", "preprocess", "4.0" );
+        job.setLogicalID( id );
+        job.setName( id );
+        job.setJobType( Job.COMPUTE_JOB );
+        job.vdsNS.construct( Pegasus.RUNTIME_KEY, Integer.toString( runtime ) );
+        dag.add( job );
+    }
+
+    private Algorithm schedule( ADag dag, String threads ){
+        PegasusProperties props = PegasusProperties.nonSingletonInstance();
+        props.setProperty( "pegasus.selector.site.threads", threads );
+        PegasusBag bag = new PegasusBag();
+        bag.add( PegasusBag.PEGASUS_PROPERTIES, props );
+        bag.add( PegasusBag.PEGASUS_LOGMANAGER, mLogger );
+        bag.add( PegasusBag.TRANSFORMATION_MAPPER, new RandomTest.StubMapper( bag ) );
+        SiteStore store = new SiteStore();
+        for( Object site : SITES ){
+            store.addEntry( new SiteCatalogEntry( (String)site ) );
+        }
+        bag.add( PegasusBag.SITE_STORE, store );
+
+        Algorithm heft = new Algorithm( bag );
+        heft.schedule( dag, SITES );
+        return heft;
+    }
+}
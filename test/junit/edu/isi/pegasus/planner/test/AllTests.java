@@ -23,14 +23,21 @@ import org.junit.runners.Suite.SuiteClasses;
 @Suite.SuiteClasses({
     edu.isi.pegasus.common.util.VersionTest.class,
     edu.isi.pegasus.common.util.PegasusURLTest.class,
+    edu.isi.pegasus.common.logging.logger.DefaultTest.class,
+    edu.isi.pegasus.aws.batch.impl.SynchTest.class,
     edu.isi.pegasus.planner.namespace.PegasusTest.class,
+    edu.isi.pegasus.planner.namespace.CopyOnWriteMapTest.class,
+    edu.isi.pegasus.planner.invocation.IngestServerTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.RegexRCTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.JDBCRCTest.class,
     edu.isi.pegasus.planner.catalog.replica.impl.SimpleFileTest.class,
+    edu.isi.pegasus.planner.catalog.replica.impl.MRCTest.class,
+    edu.isi.pegasus.planner.catalog.replica.impl.DirectoryTest.class,
     edu.isi.pegasus.planner.catalog.site.impl.XMLTest.class,
     edu.isi.pegasus.planner.catalog.transformation.impl.TextTest.class,
     edu.isi.pegasus.planner.cluster.RuntimeClusteringTest.class,
     edu.isi.pegasus.planner.code.generator.condor.CondorEnvironmentEscapeTest.class,
+    edu.isi.pegasus.planner.code.generator.condor.SubmitFileWriterTest.class,
     edu.isi.pegasus.planner.code.generator.condor.style.GliteTest.class,
     edu.isi.pegasus.planner.code.generator.condor.style.CondorTest.class,
     edu.isi.pegasus.planner.code.generator.condor.style.CondorGTest.class,
@@ -39,9 +46,21 @@ import org.junit.runners.Suite.SuiteClasses;
     edu.isi.pegasus.planner.mapper.output.ReplicaOutputMapperTest.class,
     edu.isi.pegasus.planner.mapper.output.FixedOutputMapperTest.class,
     edu.isi.pegasus.planner.refiner.DataReuseEngineTest.class,
+    edu.isi.pegasus.planner.refiner.TransitiveReductionTest.class,
+    edu.isi.pegasus.planner.refiner.StageExecutorTest.class,
+    edu.isi.pegasus.planner.refiner.cleanup.constraint.DependencyIndexTest.class,
+    edu.isi.pegasus.planner.selector.site.NonJavaCalloutTest.class,
+    edu.isi.pegasus.planner.selector.site.RandomTest.class,
+    edu.isi.pegasus.planner.selector.site.heft.AlgorithmTest.class,
+    edu.isi.pegasus.planner.estimate.BatchAspenTest.class,
+    edu.isi.pegasus.planner.client.PlannerDaemonTest.class,
+    edu.isi.pegasus.planner.dax.StreamingADAGTest.class,
+    edu.isi.pegasus.common.util.CompactStringSetTest.class,
+    edu.isi.pegasus.planner.catalog.transformation.CachedTransformationCatalogTest.class,
     edu.isi.pegasus.common.util.GLiteEscapeTest.class,
     edu.isi.pegasus.common.util.VariableExpanderTest.class,
     edu.isi.pegasus.planner.partitioner.graph.CycleCheckerTest.class,
+    edu.isi.pegasus.planner.partitioner.graph.CompactGraphTest.class,
     edu.isi.pegasus.planner.parser.dax.DAXParser3Test.class 
 })
 public class AllTests {